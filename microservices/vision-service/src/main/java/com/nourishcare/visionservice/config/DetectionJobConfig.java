@@ -0,0 +1,66 @@
+package com.nourishcare.visionservice.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Configuration
+public class DetectionJobConfig {
+
+    private static final Logger logger = LoggerFactory.getLogger(DetectionJobConfig.class);
+
+    @Value("${vision.jobs.workers:4}")
+    private int workers;
+
+    @Value("${vision.jobs.queue-capacity:32}")
+    private int queueCapacity;
+
+    @Value("${vision.jobs.event-senders:2}")
+    private int eventSenders;
+
+    /**
+     * Workers for asynchronous detection jobs.
+     * The queue is bounded and the policy aborts, so a full queue surfaces as a rejected
+     * submission (HTTP 429) instead of unbounded backlog or blocking the request thread.
+     */
+    @Bean(name = "detectionJobExecutor", destroyMethod = "shutdownNow")
+    public ThreadPoolExecutor detectionJobExecutor() {
+        AtomicInteger counter = new AtomicInteger();
+        ThreadFactory threadFactory = runnable -> {
+            Thread thread = new Thread(runnable, "detection-job-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(workers, workers, 60, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<>(queueCapacity), threadFactory, new ThreadPoolExecutor.AbortPolicy());
+        executor.allowCoreThreadTimeOut(true);
+
+        logger.info("Detection job executor created (workers: {}, queue: {})", workers, queueCapacity);
+        return executor;
+    }
+
+    /**
+     * Threads that write job events to SSE clients, so a slow client never holds up a detection worker.
+     * Each subscriber has at most one pending send task, so the queue is bounded by the subscriber count.
+     */
+    @Bean(name = "jobEventSender", destroyMethod = "shutdownNow")
+    public ExecutorService jobEventSender() {
+        AtomicInteger counter = new AtomicInteger();
+        return Executors.newFixedThreadPool(eventSenders, runnable -> {
+            Thread thread = new Thread(runnable, "job-events-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+}
@@ -0,0 +1,49 @@
+package com.nourishcare.visionservice.config;
+
+import com.netflix.appinfo.HealthCheckHandler;
+import com.netflix.appinfo.InstanceInfo.InstanceStatus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.actuate.health.HealthComponent;
+import org.springframework.boot.actuate.health.HealthEndpoint;
+import org.springframework.boot.actuate.health.Status;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class EurekaReadinessConfig {
+
+    private static final Logger logger = LoggerFactory.getLogger(EurekaReadinessConfig.class);
+
+    private static final String READINESS_GROUP = "readiness";
+
+    /**
+     * Eureka status from the readiness health group only, not the aggregate health.
+     * Aggregate health includes dependencies such as the Vision client pool and MongoDB, so one of
+     * them going down would deregister every instance, even ones that can still serve from YOLO.
+     * Replaces the Spring Cloud handler that follows aggregate health.
+     */
+    @Bean
+    public HealthCheckHandler readinessHealthCheckHandler(ObjectProvider<HealthEndpoint> healthEndpoint) {
+        return currentStatus -> {
+            HealthEndpoint endpoint = healthEndpoint.getIfAvailable();
+            if (endpoint == null) {
+                return currentStatus;
+            }
+            HealthComponent readiness = endpoint.healthForPath(READINESS_GROUP);
+            if (readiness == null) {
+                logger.warn("No '{}' health group, reporting Eureka status {}", READINESS_GROUP, currentStatus);
+                return currentStatus;
+            }
+            Status status = readiness.getStatus();
+            if (Status.UP.equals(status)) {
+                return InstanceStatus.UP;
+            }
+            if (Status.OUT_OF_SERVICE.equals(status)) {
+                return InstanceStatus.OUT_OF_SERVICE;
+            }
+            return Status.UNKNOWN.equals(status) ? InstanceStatus.UNKNOWN : InstanceStatus.DOWN;
+        };
+    }
+}
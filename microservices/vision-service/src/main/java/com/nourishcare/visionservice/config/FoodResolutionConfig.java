@@ -0,0 +1,71 @@
+package com.nourishcare.visionservice.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Configuration
+public class FoodResolutionConfig {
+
+    private static final Logger logger = LoggerFactory.getLogger(FoodResolutionConfig.class);
+
+    @Value("${vision.resolution.threads:8}")
+    private int threads;
+
+    @Value("${vision.resolution.queue-capacity:64}")
+    private int queueCapacity;
+
+    @Value("${usda.cache.refresh-threads:2}")
+    private int refreshThreads;
+
+    /**
+     * Dedicated pool for per-object USDA resolution (search, embeddings, nutrition lookup).
+     * Bounded on both threads and queue; when saturated it rejects, and the request resubmits the
+     * rejected names as its own lookups finish, or reports them unresolved, rather than running them
+     * inline past its resolution deadline.
+     */
+    @Bean(name = "foodResolutionExecutor", destroyMethod = "shutdownNow")
+    public ExecutorService foodResolutionExecutor() {
+        AtomicInteger counter = new AtomicInteger();
+        ThreadFactory threadFactory = runnable -> {
+            Thread thread = new Thread(runnable, "food-resolution-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<>(queueCapacity), threadFactory, new ThreadPoolExecutor.AbortPolicy());
+        executor.allowCoreThreadTimeOut(true);
+
+        logger.info("Food resolution executor created (threads: {}, queue: {})", threads, queueCapacity);
+        return executor;
+    }
+
+    /**
+     * Small pool for stale-while-revalidate refreshes of cached USDA lookups.
+     * Rejects when full; the cache then keeps serving the stale entry and retries on a later hit.
+     */
+    @Bean(name = "usdaRefreshExecutor", destroyMethod = "shutdownNow")
+    public ExecutorService usdaRefreshExecutor() {
+        AtomicInteger counter = new AtomicInteger();
+        ThreadFactory threadFactory = runnable -> {
+            Thread thread = new Thread(runnable, "usda-refresh-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(refreshThreads, refreshThreads, 60, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<>(256), threadFactory, new ThreadPoolExecutor.AbortPolicy());
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+}
@@ -0,0 +1,39 @@
+package com.nourishcare.visionservice.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Configuration
+public class YoloTilingConfig {
+
+    private static final Logger logger = LoggerFactory.getLogger(YoloTilingConfig.class);
+
+    @Value("${vision.yolo.tiling.parallelism:0}")
+    private int parallelism;
+
+    /**
+     * Fork-join pool for tiled YOLO inference on high-resolution images.
+     * Kept apart from the common pool so tile inference never competes with parallel streams elsewhere;
+     * a parallelism of 0 uses one worker per available core.
+     */
+    @Bean(name = "yoloTilePool", destroyMethod = "shutdownNow")
+    public ForkJoinPool yoloTilePool() {
+        int workers = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+        AtomicInteger counter = new AtomicInteger();
+        ForkJoinPool.ForkJoinWorkerThreadFactory threadFactory = pool -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            thread.setName("yolo-tile-" + counter.incrementAndGet());
+            return thread;
+        };
+
+        logger.info("YOLO tile pool created (parallelism: {})", workers);
+        return new ForkJoinPool(workers, threadFactory, null, false);
+    }
+}
@@ -1,17 +1,29 @@
 package com.nourishcare.visionservice.controller;
 
+import com.nourishcare.visionservice.model.DetectionJob;
 import com.nourishcare.visionservice.model.FoodDetection;
+import com.nourishcare.visionservice.service.DetectionJobService;
+import com.nourishcare.visionservice.service.DetectionStage;
+import com.nourishcare.visionservice.service.InferenceBudgetPolicy;
+import com.nourishcare.visionservice.service.UploadedImage;
 import com.nourishcare.visionservice.service.VisionService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.net.URI;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.RejectedExecutionException;
 
 @RestController
 @RequestMapping("/api/vision")
@@ -20,6 +32,15 @@ public class VisionController {
     @Autowired
     private VisionService visionService;
 
+    @Autowired
+    private DetectionJobService detectionJobService;
+
+    @Autowired
+    private InferenceBudgetPolicy inferenceBudgetPolicy;
+
+    @Value("${vision.batch.max-images:32}")
+    private int maxBatchImages;
+
     /**
      * Health check endpoint
      */
@@ -32,10 +53,13 @@ public class VisionController {
     }
 
     /**
-     * Upload image and detect food items
+     * Upload image and detect food items.
+     * An optional latency budget (request parameter, else the tenant's default) selects the local model profile.
      */
     @PostMapping("/detect-food")
-    public ResponseEntity<?> detectFoodItems(@RequestParam("image") MultipartFile file) {
+    public ResponseEntity<?> detectFoodItems(@RequestParam("image") MultipartFile file,
+                                             @RequestParam(value = "latencyBudgetMs", required = false) Long latencyBudgetMs,
+                                             @RequestHeader(value = "X-Tenant-Id", required = false) String tenantId) {
         try {
             // Validate file
             if (file.isEmpty()) {
@@ -55,7 +79,8 @@ public class VisionController {
             }
 
             // Process image
-            FoodDetection detection = visionService.detectFoodItems(file);
+            FoodDetection detection = visionService.detectFoodItems(UploadedImage.from(file),
+                inferenceBudgetPolicy.interactive(tenantId, latencyBudgetMs), DetectionStage.Listener.NONE);
             
             // Format response to match frontend expectations
             Map<String, Object> response = new HashMap<>();
@@ -75,6 +100,139 @@ public class VisionController {
         }
     }
 
+    /**
+     * Upload an image and detect food items asynchronously; returns a job id at once.
+     * Poll /jobs/{id} or subscribe to /jobs/{id}/events for progress. A full job queue answers 429.
+     */
+    @PostMapping("/jobs")
+    public ResponseEntity<?> submitDetectionJob(@RequestParam("image") MultipartFile file) {
+        String contentType = file.getContentType();
+        if (file.isEmpty() || contentType == null || !contentType.startsWith("image/")) {
+            Map<String, Object> error = new HashMap<>();
+            error.put("success", false);
+            error.put("message", "Please upload a valid image file");
+            return ResponseEntity.badRequest().body(error);
+        }
+
+        try {
+            DetectionJob job = detectionJobService.submit(UploadedImage.from(file));
+
+            Map<String, Object> response = detectionJobService.toEvent(job);
+            response.put("success", true);
+            response.put("statusUrl", "/api/vision/jobs/" + job.getId());
+            response.put("eventsUrl", "/api/vision/jobs/" + job.getId() + "/events");
+            return ResponseEntity.status(HttpStatus.ACCEPTED)
+                .location(URI.create("/api/vision/jobs/" + job.getId()))
+                .body(response);
+
+        } catch (RejectedExecutionException e) {
+            long retryAfter = detectionJobService.retryAfterSeconds();
+            Map<String, Object> error = new HashMap<>();
+            error.put("success", false);
+            error.put("message", "Detection queue is full, retry in " + retryAfter + "s");
+            error.put("retryAfterSeconds", retryAfter);
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfter))
+                .body(error);
+
+        } catch (Exception e) {
+            Map<String, Object> error = new HashMap<>();
+            error.put("success", false);
+            error.put("message", "Failed to queue image: " + e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(error);
+        }
+    }
+
+    /**
+     * Current state of a detection job, including the result once it has succeeded
+     */
+    @GetMapping("/jobs/{id}")
+    public ResponseEntity<?> getDetectionJob(@PathVariable String id) {
+        Optional<DetectionJob> job = detectionJobService.getJob(id);
+        if (!job.isPresent()) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(detectionJobService.toEvent(job.get()));
+    }
+
+    /**
+     * Server-sent events with the job's stage transitions (DECODED, DETECTED, RESOLVED, SAVED) and final result
+     */
+    @GetMapping(value = "/jobs/{id}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> streamDetectionJob(@PathVariable String id) {
+        return detectionJobService.subscribe(id)
+            .map(ResponseEntity::ok)
+            .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+
+    /**
+     * Upload several images and detect food items in all of them, with shared Vision and USDA calls
+     * for the images that go to Google Vision
+     */
+    @PostMapping("/detect-food/batch")
+    public ResponseEntity<?> detectFoodItemsBatch(@RequestParam("images") MultipartFile[] files) {
+        try {
+            // Validate files
+            if (files == null || files.length == 0) {
+                Map<String, Object> error = new HashMap<>();
+                error.put("success", false);
+                error.put("message", "Please select at least one image file");
+                return ResponseEntity.badRequest().body(error);
+            }
+
+            if (files.length > maxBatchImages) {
+                Map<String, Object> error = new HashMap<>();
+                error.put("success", false);
+                error.put("message", "At most " + maxBatchImages + " images can be uploaded at once");
+                return ResponseEntity.badRequest().body(error);
+            }
+
+            List<UploadedImage> images = new ArrayList<>();
+            for (MultipartFile file : files) {
+                String contentType = file.getContentType();
+                if (file.isEmpty() || contentType == null || !contentType.startsWith("image/")) {
+                    Map<String, Object> error = new HashMap<>();
+                    error.put("success", false);
+                    error.put("message", "Please upload valid image files only: " + file.getOriginalFilename());
+                    return ResponseEntity.badRequest().body(error);
+                }
+                images.add(UploadedImage.from(file));
+            }
+
+            // Process images
+            List<FoodDetection> detections = visionService.detectFoodItemsBatch(images);
+
+            // Format one result per image, in upload order
+            List<Map<String, Object>> results = new ArrayList<>();
+            for (FoodDetection detection : detections) {
+                Map<String, Object> result = new HashMap<>();
+                result.put("filename", detection.getOriginalFilename());
+                result.put("detectedItems", detection.getDetectedFoods());
+                result.put("totalItems", detection.getDetectedFoods().size());
+                result.put("detectionId", detection.getId());
+                if (detection.getMetadata() != null) {
+                    // Failed Vision calls and objects whose USDA lookup did not complete
+                    result.put("metadata", detection.getMetadata());
+                }
+                results.add(result);
+            }
+
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", true);
+            response.put("message", "Food items detected successfully");
+            response.put("results", results);
+            response.put("totalImages", results.size());
+
+            return ResponseEntity.ok(response);
+
+        } catch (Exception e) {
+            Map<String, Object> error = new HashMap<>();
+            error.put("success", false);
+            error.put("message", "Failed to process images: " + e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(error);
+        }
+    }
+
     /**
      * Get all food detections
      */
@@ -0,0 +1,123 @@
+package com.nourishcare.visionservice.model;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Document(collection = "detection_cache")
+public class CachedDetectionResult {
+
+    @Id
+    private String id;
+
+    private String sha256;
+    private Long perceptualHash;
+
+    // 16-bit bands of the perceptual hash, indexed for near-duplicate lookup
+    private Integer hashBand0;
+    private Integer hashBand1;
+    private Integer hashBand2;
+    private Integer hashBand3;
+
+    private String detectionId;
+    private List<FoodDetection.DetectedFood> detectedFoods;
+
+    private LocalDateTime createdAt;
+    private LocalDateTime expiresAt;
+
+    // Constructors
+    public CachedDetectionResult() {
+        this.createdAt = LocalDateTime.now();
+    }
+
+    // Getters and Setters
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getSha256() {
+        return sha256;
+    }
+
+    public void setSha256(String sha256) {
+        this.sha256 = sha256;
+    }
+
+    public Long getPerceptualHash() {
+        return perceptualHash;
+    }
+
+    public void setPerceptualHash(Long perceptualHash) {
+        this.perceptualHash = perceptualHash;
+    }
+
+    public Integer getHashBand0() {
+        return hashBand0;
+    }
+
+    public void setHashBand0(Integer hashBand0) {
+        this.hashBand0 = hashBand0;
+    }
+
+    public Integer getHashBand1() {
+        return hashBand1;
+    }
+
+    public void setHashBand1(Integer hashBand1) {
+        this.hashBand1 = hashBand1;
+    }
+
+    public Integer getHashBand2() {
+        return hashBand2;
+    }
+
+    public void setHashBand2(Integer hashBand2) {
+        this.hashBand2 = hashBand2;
+    }
+
+    public Integer getHashBand3() {
+        return hashBand3;
+    }
+
+    public void setHashBand3(Integer hashBand3) {
+        this.hashBand3 = hashBand3;
+    }
+
+    public String getDetectionId() {
+        return detectionId;
+    }
+
+    public void setDetectionId(String detectionId) {
+        this.detectionId = detectionId;
+    }
+
+    public List<FoodDetection.DetectedFood> getDetectedFoods() {
+        return detectedFoods;
+    }
+
+    public void setDetectedFoods(List<FoodDetection.DetectedFood> detectedFoods) {
+        this.detectedFoods = detectedFoods;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(LocalDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    public LocalDateTime getExpiresAt() {
+        return expiresAt;
+    }
+
+    public void setExpiresAt(LocalDateTime expiresAt) {
+        this.expiresAt = expiresAt;
+    }
+}
@@ -0,0 +1,91 @@
+package com.nourishcare.visionservice.model;
+
+import java.time.LocalDateTime;
+
+/**
+ * State of one asynchronous detection job. Held in memory only; the finished detection itself
+ * is persisted as a {@link FoodDetection} as usual.
+ */
+public class DetectionJob {
+
+    public enum Status {
+        QUEUED,
+        RUNNING,
+        SUCCEEDED,
+        FAILED
+    }
+
+    private final String id;
+    private final String originalFilename;
+    private final LocalDateTime submittedAt;
+
+    // Written by the worker thread, read by pollers and event streams
+    private volatile Status status;
+    private volatile String stage;
+    private volatile FoodDetection detection;
+    private volatile String error;
+    private volatile LocalDateTime updatedAt;
+
+    public DetectionJob(String id, String originalFilename) {
+        this.id = id;
+        this.originalFilename = originalFilename;
+        this.submittedAt = LocalDateTime.now();
+        this.updatedAt = submittedAt;
+        this.status = Status.QUEUED;
+    }
+
+    public boolean isFinished() {
+        return status == Status.SUCCEEDED || status == Status.FAILED;
+    }
+
+    // Getters and Setters
+    public String getId() {
+        return id;
+    }
+
+    public String getOriginalFilename() {
+        return originalFilename;
+    }
+
+    public LocalDateTime getSubmittedAt() {
+        return submittedAt;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public void setStatus(Status status) {
+        this.status = status;
+        this.updatedAt = LocalDateTime.now();
+    }
+
+    public String getStage() {
+        return stage;
+    }
+
+    public void setStage(String stage) {
+        this.stage = stage;
+        this.updatedAt = LocalDateTime.now();
+    }
+
+    public FoodDetection getDetection() {
+        return detection;
+    }
+
+    public void setDetection(FoodDetection detection) {
+        this.detection = detection;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public void setError(String error) {
+        this.error = error;
+    }
+
+    public LocalDateTime getUpdatedAt() {
+        return updatedAt;
+    }
+}
@@ -0,0 +1,172 @@
+package com.nourishcare.visionservice.model;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+
+/**
+ * Memoised outcome of resolving one normalised food label to a USDA food, keyed by the label.
+ * The fingerprint records the embedding model and matching settings that produced it.
+ */
+@Document(collection = "label_resolutions")
+public class LabelResolution {
+
+    // Normalised label
+    @Id
+    private String id;
+    private String fingerprint;
+
+    // Null when the label was resolved and nothing matched well enough
+    private Integer fdcId;
+    private String description;
+    private String dataType;
+    private Double similarity;
+    private String method;
+
+    private Double caloriesPerHundredGrams;
+    private Double proteinPerHundredGrams;
+    private Double fatPerHundredGrams;
+    private Double carbohydratePerHundredGrams;
+    private Double fiberPerHundredGrams;
+    private Double sugarsPerHundredGrams;
+
+    private String modelVersion;
+
+    private LocalDateTime createdAt;
+    private LocalDateTime expiresAt;
+
+    // Constructors
+    public LabelResolution() {
+        this.createdAt = LocalDateTime.now();
+    }
+
+    // Getters and Setters
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getFingerprint() {
+        return fingerprint;
+    }
+
+    public void setFingerprint(String fingerprint) {
+        this.fingerprint = fingerprint;
+    }
+
+    public Integer getFdcId() {
+        return fdcId;
+    }
+
+    public void setFdcId(Integer fdcId) {
+        this.fdcId = fdcId;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public void setDescription(String description) {
+        this.description = description;
+    }
+
+    public String getDataType() {
+        return dataType;
+    }
+
+    public void setDataType(String dataType) {
+        this.dataType = dataType;
+    }
+
+    public Double getSimilarity() {
+        return similarity;
+    }
+
+    public void setSimilarity(Double similarity) {
+        this.similarity = similarity;
+    }
+
+    public String getMethod() {
+        return method;
+    }
+
+    public void setMethod(String method) {
+        this.method = method;
+    }
+
+    public Double getCaloriesPerHundredGrams() {
+        return caloriesPerHundredGrams;
+    }
+
+    public void setCaloriesPerHundredGrams(Double caloriesPerHundredGrams) {
+        this.caloriesPerHundredGrams = caloriesPerHundredGrams;
+    }
+
+    public Double getProteinPerHundredGrams() {
+        return proteinPerHundredGrams;
+    }
+
+    public void setProteinPerHundredGrams(Double proteinPerHundredGrams) {
+        this.proteinPerHundredGrams = proteinPerHundredGrams;
+    }
+
+    public Double getFatPerHundredGrams() {
+        return fatPerHundredGrams;
+    }
+
+    public void setFatPerHundredGrams(Double fatPerHundredGrams) {
+        this.fatPerHundredGrams = fatPerHundredGrams;
+    }
+
+    public Double getCarbohydratePerHundredGrams() {
+        return carbohydratePerHundredGrams;
+    }
+
+    public void setCarbohydratePerHundredGrams(Double carbohydratePerHundredGrams) {
+        this.carbohydratePerHundredGrams = carbohydratePerHundredGrams;
+    }
+
+    public Double getFiberPerHundredGrams() {
+        return fiberPerHundredGrams;
+    }
+
+    public void setFiberPerHundredGrams(Double fiberPerHundredGrams) {
+        this.fiberPerHundredGrams = fiberPerHundredGrams;
+    }
+
+    public Double getSugarsPerHundredGrams() {
+        return sugarsPerHundredGrams;
+    }
+
+    public void setSugarsPerHundredGrams(Double sugarsPerHundredGrams) {
+        this.sugarsPerHundredGrams = sugarsPerHundredGrams;
+    }
+
+    public String getModelVersion() {
+        return modelVersion;
+    }
+
+    public void setModelVersion(String modelVersion) {
+        this.modelVersion = modelVersion;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(LocalDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    public LocalDateTime getExpiresAt() {
+        return expiresAt;
+    }
+
+    public void setExpiresAt(LocalDateTime expiresAt) {
+        this.expiresAt = expiresAt;
+    }
+}
@@ -0,0 +1,25 @@
+package com.nourishcare.visionservice.repository;
+
+import com.nourishcare.visionservice.model.CachedDetectionResult;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.data.mongodb.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface CachedDetectionResultRepository extends MongoRepository<CachedDetectionResult, String> {
+
+    /**
+     * Find an unexpired cache entry for byte-identical image content
+     */
+    Optional<CachedDetectionResult> findFirstBySha256AndExpiresAtAfter(String sha256, LocalDateTime now);
+
+    /**
+     * Find unexpired near-duplicate candidates sharing at least one perceptual hash band
+     */
+    @Query("{ $or: [ { 'hashBand0': ?0 }, { 'hashBand1': ?1 }, { 'hashBand2': ?2 }, { 'hashBand3': ?3 } ], 'expiresAt': { $gt: ?4 } }")
+    List<CachedDetectionResult> findByAnyHashBand(int band0, int band1, int band2, int band3, LocalDateTime now);
+}
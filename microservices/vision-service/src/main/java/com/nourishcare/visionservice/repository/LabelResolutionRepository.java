@@ -0,0 +1,9 @@
+package com.nourishcare.visionservice.repository;
+
+import com.nourishcare.visionservice.model.LabelResolution;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface LabelResolutionRepository extends MongoRepository<LabelResolution, String> {
+}
@@ -0,0 +1,302 @@
+package com.nourishcare.visionservice.service;
+
+import com.nourishcare.visionservice.model.DetectionJob;
+import com.nourishcare.visionservice.model.FoodDetection;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Runs detections as background jobs on the bounded detection job executor.
+ * Submissions return immediately; clients poll the job or subscribe to its server-sent events,
+ * which report every pipeline stage and the final result. Finished jobs are kept for a
+ * retention period and then forgotten. Events are written to clients on the event sender threads;
+ * a client that falls behind skips to the latest state instead of slowing the job down.
+ */
+@Service
+public class DetectionJobService {
+
+    private static final Logger logger = LoggerFactory.getLogger(DetectionJobService.class);
+
+    @Autowired
+    private VisionService visionService;
+
+    @Autowired
+    @Qualifier("detectionJobExecutor")
+    private ThreadPoolExecutor detectionJobExecutor;
+
+    @Autowired
+    @Qualifier("jobEventSender")
+    private ExecutorService jobEventSender;
+
+    @Autowired
+    private InferenceBudgetPolicy inferenceBudgetPolicy;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${vision.jobs.retention-minutes:15}")
+    private long retentionMinutes;
+
+    @Value("${vision.jobs.sse-timeout-ms:120000}")
+    private long sseTimeoutMs;
+
+    private final Map<String, DetectionJob> jobs = new ConcurrentHashMap<>();
+    private final Map<String, List<Subscriber>> subscribers = new ConcurrentHashMap<>();
+
+    // Smoothed job duration, used to derive the Retry-After hint when the queue is full
+    private volatile double averageJobMillis = 3000;
+
+    private ScheduledExecutorService cleanupScheduler;
+
+    @PostConstruct
+    public void initialize() {
+        Gauge.builder("vision.jobs.queue.depth", detectionJobExecutor, executor -> executor.getQueue().size())
+            .description("Detection jobs waiting for a worker")
+            .register(meterRegistry);
+        Gauge.builder("vision.jobs.active", detectionJobExecutor, ThreadPoolExecutor::getActiveCount)
+            .description("Detection jobs currently running")
+            .register(meterRegistry);
+
+        cleanupScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "detection-job-cleanup");
+            thread.setDaemon(true);
+            return thread;
+        });
+        cleanupScheduler.scheduleWithFixedDelay(this::purgeFinishedJobs, 1, 1, TimeUnit.MINUTES);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        cleanupScheduler.shutdownNow();
+    }
+
+    /**
+     * Queue a detection of the image
+     *
+     * @throws RejectedExecutionException if the job queue is full
+     */
+    public DetectionJob submit(UploadedImage image) {
+        DetectionJob job = new DetectionJob(UUID.randomUUID().toString(), image.getOriginalFilename());
+        jobs.put(job.getId(), job);
+        try {
+            detectionJobExecutor.execute(() -> run(job, image));
+        } catch (RejectedExecutionException e) {
+            jobs.remove(job.getId());
+            meterRegistry.counter("vision.jobs.rejected").increment();
+            throw e;
+        }
+        meterRegistry.counter("vision.jobs.submitted").increment();
+        logger.info("📥 Queued detection job {} for {} (queue depth: {})",
+                   job.getId(), image.getOriginalFilename(), detectionJobExecutor.getQueue().size());
+        return job;
+    }
+
+    public Optional<DetectionJob> getJob(String id) {
+        return Optional.ofNullable(jobs.get(id));
+    }
+
+    /**
+     * Seconds a rejected client should wait before resubmitting, from the queue depth and recent job durations
+     */
+    public long retryAfterSeconds() {
+        int workers = Math.max(1, detectionJobExecutor.getMaximumPoolSize());
+        double waitMillis = averageJobMillis * (detectionJobExecutor.getQueue().size() + 1) / workers;
+        return Math.max(1, (long) Math.ceil(waitMillis / 1000));
+    }
+
+    /**
+     * Stream the job's progress; the current state is sent at once and the stream completes when the job finishes
+     */
+    public Optional<SseEmitter> subscribe(String id) {
+        DetectionJob job = jobs.get(id);
+        if (job == null) {
+            return Optional.empty();
+        }
+
+        SseEmitter emitter = new SseEmitter(sseTimeoutMs);
+        Subscriber subscriber = new Subscriber(emitter);
+
+        // Registration and the finished check are ordered against publish() by the job lock;
+        // a finished job only gets its final state and is never registered
+        synchronized (job) {
+            boolean finished = job.isFinished();
+            if (!finished) {
+                List<Subscriber> registered = subscribers.computeIfAbsent(id, key -> new CopyOnWriteArrayList<>());
+                registered.add(subscriber);
+                emitter.onCompletion(() -> registered.remove(subscriber));
+                emitter.onTimeout(() -> registered.remove(subscriber));
+                emitter.onError(error -> registered.remove(subscriber));
+            }
+            subscriber.offer(toEvent(job), finished);
+        }
+        return Optional.of(emitter);
+    }
+
+    private void run(DetectionJob job, UploadedImage image) {
+        long start = System.currentTimeMillis();
+        job.setStatus(DetectionJob.Status.RUNNING);
+        publish(job);
+
+        try {
+            // Jobs are not waited on interactively, so they run under the accuracy-first background budget
+            FoodDetection detection = visionService.detectFoodItems(image, inferenceBudgetPolicy.background(), stage -> {
+                job.setStage(stage.name());
+                publish(job);
+            });
+            job.setDetection(detection);
+            job.setStatus(DetectionJob.Status.SUCCEEDED);
+            meterRegistry.counter("vision.jobs.completed", "status", "succeeded").increment();
+        } catch (Exception e) {
+            logger.error("❌ Detection job {} failed: {}", job.getId(), e.getMessage(), e);
+            job.setError(e.getMessage());
+            job.setStatus(DetectionJob.Status.FAILED);
+            meterRegistry.counter("vision.jobs.completed", "status", "failed").increment();
+        }
+
+        averageJobMillis = 0.8 * averageJobMillis + 0.2 * (System.currentTimeMillis() - start);
+        publish(job);
+    }
+
+    /**
+     * Hand the job state to every subscriber's sender; never blocks on a client
+     */
+    private void publish(DetectionJob job) {
+        synchronized (job) {
+            boolean finished = job.isFinished();
+            List<Subscriber> registered = finished ? subscribers.remove(job.getId()) : subscribers.get(job.getId());
+            if (registered == null || registered.isEmpty()) {
+                return;
+            }
+            Map<String, Object> event = toEvent(job);
+            for (Subscriber subscriber : registered) {
+                subscriber.offer(event, finished);
+            }
+        }
+    }
+
+    /**
+     * One SSE client. Only the latest undelivered state is kept and at most one send task is queued,
+     * so states are delivered in order, the final one always last, and a slow client costs no memory.
+     */
+    private final class Subscriber {
+        private final SseEmitter emitter;
+        private final AtomicReference<PendingEvent> pending = new AtomicReference<>();
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+
+        Subscriber(SseEmitter emitter) {
+            this.emitter = emitter;
+        }
+
+        // Called under the job lock, so offers arrive in job state order
+        void offer(Map<String, Object> event, boolean finished) {
+            pending.set(new PendingEvent(event, finished));
+            if (scheduled.compareAndSet(false, true)) {
+                try {
+                    jobEventSender.execute(this::drain);
+                } catch (RejectedExecutionException e) {
+                    // Shutting down
+                    scheduled.set(false);
+                }
+            }
+        }
+
+        private void drain() {
+            while (true) {
+                PendingEvent next = pending.getAndSet(null);
+                if (next == null) {
+                    scheduled.set(false);
+                    // An offer may have landed after the last poll but before the flag was cleared
+                    if (pending.get() == null || !scheduled.compareAndSet(false, true)) {
+                        return;
+                    }
+                    continue;
+                }
+                if (send(emitter, next.event, next.finished) && next.finished) {
+                    emitter.complete();
+                }
+            }
+        }
+    }
+
+    private static final class PendingEvent {
+        private final Map<String, Object> event;
+        private final boolean finished;
+
+        PendingEvent(Map<String, Object> event, boolean finished) {
+            this.event = event;
+            this.finished = finished;
+        }
+    }
+
+    /**
+     * Send one job state event; returns false (and drops the emitter) if the client has gone
+     */
+    private boolean send(SseEmitter emitter, Map<String, Object> event, boolean finished) {
+        try {
+            emitter.send(SseEmitter.event()
+                .name(finished ? "complete" : "progress")
+                .data(event));
+            return true;
+        } catch (IOException | IllegalStateException e) {
+            emitter.completeWithError(e);
+            return false;
+        }
+    }
+
+    /**
+     * Job state in the shape sent to clients (polling and events)
+     */
+    public Map<String, Object> toEvent(DetectionJob job) {
+        Map<String, Object> event = new HashMap<>();
+        event.put("jobId", job.getId());
+        event.put("status", job.getStatus());
+        event.put("stage", job.getStage());
+        event.put("filename", job.getOriginalFilename());
+        event.put("submittedAt", job.getSubmittedAt().toString());
+        event.put("updatedAt", job.getUpdatedAt().toString());
+        FoodDetection detection = job.getDetection();
+        if (detection != null) {
+            event.put("detectionId", detection.getId());
+            event.put("detectedItems", detection.getDetectedFoods());
+            event.put("totalItems", detection.getDetectedFoods().size());
+        }
+        if (job.getError() != null) {
+            event.put("error", job.getError());
+        }
+        return event;
+    }
+
+    private void purgeFinishedJobs() {
+        LocalDateTime cutoff = LocalDateTime.now().minusMinutes(retentionMinutes);
+        jobs.values().removeIf(job -> job.isFinished() && job.getUpdatedAt().isBefore(cutoff));
+        // Subscriber lists are removed when their job finishes; this only catches stragglers
+        subscribers.keySet().removeIf(id -> !jobs.containsKey(id));
+    }
+}
@@ -0,0 +1,344 @@
+package com.nourishcare.visionservice.service;
+
+import com.nourishcare.visionservice.model.CachedDetectionResult;
+import com.nourishcare.visionservice.model.FoodDetection;
+import com.nourishcare.visionservice.repository.CachedDetectionResultRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.awt.image.BufferedImage;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Content-addressed cache of detection results.
+ * Uploads are keyed by exact SHA-256 and by a 64-bit perceptual hash, so client retries and
+ * re-scans of the same plate skip the Vision, USDA, embedding and Mongo stages entirely.
+ * A bounded in-memory LRU tier sits in front of a Mongo collection tier with TTL expiry.
+ */
+@Service
+public class DetectionResultCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(DetectionResultCache.class);
+
+    private static final String COLLECTION = "detection_cache";
+
+    private static final int PERCEPTUAL_HASH_DECODE_SIZE = 256;
+
+    // Mongo finds near-duplicates through four 16-bit hash bands; by pigeonhole, two hashes at most
+    // this far apart always share a band, so larger distances would silently miss in Mongo
+    private static final int MAX_BANDED_DISTANCE = 3;
+
+    @Autowired
+    private CachedDetectionResultRepository cachedDetectionResultRepository;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private ImageIngestionService imageIngestionService;
+
+    @Value("${vision.cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${vision.cache.memory-max-entries:1000}")
+    private int memoryMaxEntries;
+
+    @Value("${vision.cache.ttl-minutes:1440}")
+    private long ttlMinutes;
+
+    @Value("${vision.cache.max-hamming-distance:3}")
+    private int maxHammingDistance;
+
+    private Map<String, CacheEntry> memoryTier;
+
+    private Counter memoryExactHits;
+    private Counter memoryPerceptualHits;
+    private Counter mongoExactHits;
+    private Counter mongoPerceptualHits;
+    private Counter misses;
+
+    @PostConstruct
+    public void initialize() {
+        // Access-ordered map gives LRU eviction once the bound is reached
+        memoryTier = new LinkedHashMap<String, CacheEntry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CacheEntry> eldest) {
+                return size() > memoryMaxEntries;
+            }
+        };
+
+        if (maxHammingDistance > MAX_BANDED_DISTANCE) {
+            logger.warn("vision.cache.max-hamming-distance={} exceeds what the hash band lookup can find, using {}",
+                       maxHammingDistance, MAX_BANDED_DISTANCE);
+            maxHammingDistance = MAX_BANDED_DISTANCE;
+        }
+
+        memoryExactHits = cacheCounter("memory", "exact", "hit");
+        memoryPerceptualHits = cacheCounter("memory", "perceptual", "hit");
+        mongoExactHits = cacheCounter("mongo", "exact", "hit");
+        mongoPerceptualHits = cacheCounter("mongo", "perceptual", "hit");
+        misses = cacheCounter("all", "none", "miss");
+
+        if (!enabled) {
+            logger.info("Detection result cache disabled");
+            return;
+        }
+
+        try {
+            IndexOperations indexOps = mongoTemplate.indexOps(COLLECTION);
+            indexOps.ensureIndex(new Index().on("expiresAt", Sort.Direction.ASC).expire(0, TimeUnit.SECONDS));
+            indexOps.ensureIndex(new Index().on("sha256", Sort.Direction.ASC));
+            for (int band = 0; band < 4; band++) {
+                indexOps.ensureIndex(new Index().on("hashBand" + band, Sort.Direction.ASC));
+            }
+        } catch (Exception e) {
+            // The cache still works without indexes, only slower and without automatic expiry
+            logger.warn("Could not create detection cache indexes: {}", e.getMessage());
+        }
+
+        logger.info("✅ Detection result cache ready (memory: {} entries, TTL: {} min, max Hamming distance: {})",
+                    memoryMaxEntries, ttlMinutes, maxHammingDistance);
+    }
+
+    /**
+     * Compute the cache key of an upload. Only the SHA-256 is computed here; the perceptual hash,
+     * which needs a decode, is computed when an exact lookup misses. It is absent when the image
+     * cannot be decoded.
+     */
+    public ImageKey keyFor(UploadedImage image) {
+        String sha256 = PerceptualHash.sha256(image.getBytes());
+        return new ImageKey(sha256, () -> perceptualHash(image));
+    }
+
+    private Long perceptualHash(UploadedImage image) {
+        if (!enabled) {
+            return null;
+        }
+        try {
+            // The hash samples a 72x64 grid, so a heavily subsampled decode is enough
+            BufferedImage decoded = imageIngestionService.decode(image.getBytes(), PERCEPTUAL_HASH_DECODE_SIZE).getImage();
+            return PerceptualHash.dHash(decoded);
+        } catch (Exception e) {
+            logger.debug("Could not compute perceptual hash for {}: {}", image.getOriginalFilename(), e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Look up a previous result for the same or a near-identical image
+     */
+    public Optional<CachedResult> lookup(ImageKey key) {
+        if (!enabled) {
+            return Optional.empty();
+        }
+
+        long now = System.currentTimeMillis();
+        LocalDateTime nowTime = LocalDateTime.now();
+
+        // Exact matches first, in both tiers, so they never pay for the perceptual hash decode
+        synchronized (memoryTier) {
+            CacheEntry exact = memoryTier.get(key.sha256);
+            if (exact != null && exact.expiresAtMillis > now) {
+                memoryExactHits.increment();
+                return Optional.of(exact.result);
+            }
+        }
+        try {
+            Optional<CachedDetectionResult> exact =
+                cachedDetectionResultRepository.findFirstBySha256AndExpiresAtAfter(key.sha256, nowTime);
+            if (exact.isPresent()) {
+                mongoExactHits.increment();
+                return Optional.of(promote(exact.get()));
+            }
+        } catch (Exception e) {
+            logger.warn("Detection cache lookup in MongoDB failed: {}", e.getMessage());
+        }
+
+        Long perceptualHash = key.getPerceptualHash();
+        if (perceptualHash == null) {
+            misses.increment();
+            return Optional.empty();
+        }
+
+        // Tier 1: closest near-duplicate in the in-memory LRU
+        synchronized (memoryTier) {
+            CacheEntry closest = null;
+            int closestDistance = Integer.MAX_VALUE;
+            for (CacheEntry entry : memoryTier.values()) {
+                if (entry.perceptualHash == null || entry.expiresAtMillis <= now) {
+                    continue;
+                }
+                int distance = PerceptualHash.hammingDistance(entry.perceptualHash, perceptualHash);
+                if (distance <= maxHammingDistance && distance < closestDistance) {
+                    closest = entry;
+                    closestDistance = distance;
+                }
+            }
+            if (closest != null) {
+                memoryPerceptualHits.increment();
+                return Optional.of(closest.result);
+            }
+        }
+
+        // Tier 2: closest near-duplicate in the Mongo collection
+        try {
+            long hash = perceptualHash;
+            List<CachedDetectionResult> candidates = cachedDetectionResultRepository.findByAnyHashBand(
+                PerceptualHash.band(hash, 0), PerceptualHash.band(hash, 1),
+                PerceptualHash.band(hash, 2), PerceptualHash.band(hash, 3), nowTime);
+
+            CachedDetectionResult closest = null;
+            int closestDistance = Integer.MAX_VALUE;
+            for (CachedDetectionResult candidate : candidates) {
+                if (candidate.getPerceptualHash() == null) {
+                    continue;
+                }
+                int distance = PerceptualHash.hammingDistance(candidate.getPerceptualHash(), hash);
+                if (distance <= maxHammingDistance && distance < closestDistance) {
+                    closest = candidate;
+                    closestDistance = distance;
+                }
+            }
+
+            if (closest != null) {
+                mongoPerceptualHits.increment();
+                return Optional.of(promote(closest));
+            }
+        } catch (Exception e) {
+            logger.warn("Detection cache lookup in MongoDB failed: {}", e.getMessage());
+        }
+
+        misses.increment();
+        return Optional.empty();
+    }
+
+    /**
+     * Remember the result of a completed detection in both tiers
+     */
+    public void put(ImageKey key, String detectionId, List<FoodDetection.DetectedFood> detectedFoods) {
+        if (!enabled) {
+            return;
+        }
+
+        CachedResult result = new CachedResult(detectionId, detectedFoods);
+        long expiresAtMillis = System.currentTimeMillis() + TimeUnit.MINUTES.toMillis(ttlMinutes);
+        synchronized (memoryTier) {
+            memoryTier.put(key.sha256, new CacheEntry(key.getPerceptualHash(), expiresAtMillis, result));
+        }
+
+        try {
+            CachedDetectionResult document = new CachedDetectionResult();
+            document.setSha256(key.sha256);
+            document.setDetectionId(detectionId);
+            document.setDetectedFoods(detectedFoods);
+            document.setExpiresAt(document.getCreatedAt().plusMinutes(ttlMinutes));
+            if (key.getPerceptualHash() != null) {
+                long hash = key.getPerceptualHash();
+                document.setPerceptualHash(hash);
+                document.setHashBand0(PerceptualHash.band(hash, 0));
+                document.setHashBand1(PerceptualHash.band(hash, 1));
+                document.setHashBand2(PerceptualHash.band(hash, 2));
+                document.setHashBand3(PerceptualHash.band(hash, 3));
+            }
+            cachedDetectionResultRepository.save(document);
+        } catch (Exception e) {
+            logger.warn("Could not persist detection cache entry: {}", e.getMessage());
+        }
+    }
+
+    private CachedResult promote(CachedDetectionResult document) {
+        CachedResult result = new CachedResult(document.getDetectionId(), document.getDetectedFoods());
+        long expiresAtMillis = document.getExpiresAt()
+            .atZone(java.time.ZoneId.systemDefault()).toInstant().toEpochMilli();
+        synchronized (memoryTier) {
+            memoryTier.put(document.getSha256(),
+                new CacheEntry(document.getPerceptualHash(), expiresAtMillis, result));
+        }
+        return result;
+    }
+
+    private Counter cacheCounter(String tier, String match, String result) {
+        return Counter.builder("vision.detection.cache")
+            .description("Detection result cache lookups")
+            .tag("tier", tier)
+            .tag("match", match)
+            .tag("result", result)
+            .register(meterRegistry);
+    }
+
+    /**
+     * Cache key of one upload; the perceptual hash is computed on first use
+     */
+    public static class ImageKey {
+        private final String sha256;
+        private Supplier<Long> hasher;
+        private Long perceptualHash;
+
+        public ImageKey(String sha256, Long perceptualHash) {
+            this.sha256 = sha256;
+            this.perceptualHash = perceptualHash;
+        }
+
+        ImageKey(String sha256, Supplier<Long> hasher) {
+            this.sha256 = sha256;
+            this.hasher = hasher;
+        }
+
+        public String getSha256() { return sha256; }
+
+        public synchronized Long getPerceptualHash() {
+            if (hasher != null) {
+                perceptualHash = hasher.get();
+                hasher = null;
+            }
+            return perceptualHash;
+        }
+    }
+
+    /**
+     * Cached detection output
+     */
+    public static class CachedResult {
+        private final String detectionId;
+        private final List<FoodDetection.DetectedFood> detectedFoods;
+
+        public CachedResult(String detectionId, List<FoodDetection.DetectedFood> detectedFoods) {
+            this.detectionId = detectionId;
+            this.detectedFoods = detectedFoods;
+        }
+
+        public String getDetectionId() { return detectionId; }
+        public List<FoodDetection.DetectedFood> getDetectedFoods() { return detectedFoods; }
+    }
+
+    private static class CacheEntry {
+        private final Long perceptualHash;
+        private final long expiresAtMillis;
+        private final CachedResult result;
+
+        CacheEntry(Long perceptualHash, long expiresAtMillis, CachedResult result) {
+            this.perceptualHash = perceptualHash;
+            this.expiresAtMillis = expiresAtMillis;
+            this.result = result;
+        }
+    }
+}
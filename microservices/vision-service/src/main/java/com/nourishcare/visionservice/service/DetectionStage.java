@@ -0,0 +1,21 @@
+package com.nourishcare.visionservice.service;
+
+/**
+ * Pipeline stages reported to progress listeners, in order
+ */
+public enum DetectionStage {
+    DECODED,
+    DETECTED,
+    RESOLVED,
+    SAVED;
+
+    /**
+     * Receives stage transitions of one detection
+     */
+    @FunctionalInterface
+    public interface Listener {
+        Listener NONE = stage -> { };
+
+        void onStage(DetectionStage stage);
+    }
+}
@@ -0,0 +1,467 @@
+package com.nourishcare.visionservice.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Two-tier store of L2-normalised text embeddings.
+ * Tier 1 is a bounded in-heap LRU keyed by text. Tier 2 is a memory-mapped file of fixed-size
+ * records keyed by a 64-bit text hash, which survives restarts and can be seeded from a
+ * precomputed file (any store file written with the same model works as a warm file).
+ * Files are tied to the model by a fingerprint in the header; a file written by another model,
+ * even one of the same dimension, is discarded. The disk tier is append-only: once it holds
+ * max-entries vectors it stops accepting new ones, which then live in the memory tier only.
+ *
+ * <pre>
+ * header  int magic, int version, int dimension, int count, 16 bytes model fingerprint
+ * records long textHash, float[dimension] unit vector
+ * </pre>
+ */
+@Service
+public class EmbeddingStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(EmbeddingStore.class);
+
+    private static final int MAGIC = 0x454D4253; // "EMBS"
+    private static final int VERSION = 2;
+    private static final int HEADER_SIZE = 32;
+    private static final int COUNT_OFFSET = 12;
+    private static final int FINGERPRINT_OFFSET = 16;
+    private static final int FINGERPRINT_SIZE = 16;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${vision.embedding.memory-max-entries:5000}")
+    private int memoryMaxEntries;
+
+    @Value("${vision.embedding.disk.enabled:true}")
+    private boolean diskEnabled;
+
+    @Value("${vision.embedding.disk.path:${java.io.tmpdir}/nourishcare/embeddings.bin}")
+    private String diskPath;
+
+    @Value("${vision.embedding.disk.max-entries:100000}")
+    private int diskMaxEntries;
+
+    @Value("${vision.embedding.warm-file:}")
+    private String warmFile;
+
+    // Published last by open(); until then every lookup misses and nothing is stored
+    private volatile Map<String, float[]> memoryTier;
+
+    private final ReentrantReadWriteLock diskLock = new ReentrantReadWriteLock();
+    private RandomAccessFile diskFile;
+    private FileLock diskFileLock;
+    private MappedByteBuffer disk;
+    private int dimension;
+    private byte[] fingerprint;
+    private int recordSize;
+    private int diskCount;
+    private boolean diskFullLogged;
+
+    // Open-addressing hash -> record index table for the disk tier
+    private long[] slotHashes;
+    private int[] slotRecords;
+
+    private Counter memoryHits;
+    private Counter diskHits;
+    private Counter misses;
+    private Counter evictions;
+
+    /**
+     * Initialise both tiers for vectors of the given dimension from the model identified by the
+     * fingerprint (its URL or artefact checksum); called once the model is loaded
+     */
+    public synchronized void open(int dimension, String modelFingerprint) {
+        this.dimension = dimension;
+        this.fingerprint = fingerprintBytes(modelFingerprint);
+        this.recordSize = 8 + dimension * 4;
+
+        evictions = Counter.builder("vision.embedding.cache.evictions")
+            .description("Embeddings evicted from the in-memory tier")
+            .register(meterRegistry);
+        Map<String, float[]> tier = new LinkedHashMap<String, float[]>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, float[]> eldest) {
+                if (size() > memoryMaxEntries) {
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+
+        memoryHits = cacheCounter("memory", "hit");
+        diskHits = cacheCounter("disk", "hit");
+        misses = cacheCounter("all", "miss");
+        Gauge.builder("vision.embedding.cache.size", this, store -> store.memorySize())
+            .tag("tier", "memory")
+            .register(meterRegistry);
+        Gauge.builder("vision.embedding.cache.size", this, store -> store.diskCount)
+            .tag("tier", "disk")
+            .register(meterRegistry);
+
+        if (diskEnabled) {
+            try {
+                openDiskTier(Paths.get(diskPath));
+                if (warmFile != null && !warmFile.isEmpty()) {
+                    warmFrom(Paths.get(warmFile));
+                }
+            } catch (IOException e) {
+                logger.warn("⚠️ Embedding disk tier unavailable ({}), continuing with memory tier only", e.getMessage());
+                closeDiskTier();
+            }
+        }
+
+        memoryTier = tier;
+        logger.info("✅ Embedding store ready (dimension: {}, memory: {} entries, disk: {} of {} entries)",
+                    dimension, memoryMaxEntries, diskCount, disk != null ? diskMaxEntries : 0);
+    }
+
+    @PreDestroy
+    public synchronized void close() {
+        closeDiskTier();
+    }
+
+    /**
+     * Cached unit vector for the text, or null if neither tier has it or the store is not open yet
+     */
+    public float[] get(String text) {
+        Map<String, float[]> tier = memoryTier;
+        if (tier == null) {
+            return null;
+        }
+        synchronized (tier) {
+            float[] vector = tier.get(text);
+            if (vector != null) {
+                memoryHits.increment();
+                return vector;
+            }
+        }
+
+        float[] vector = readDisk(hash(text));
+        if (vector != null) {
+            diskHits.increment();
+            synchronized (tier) {
+                tier.put(text, vector);
+            }
+            return vector;
+        }
+
+        misses.increment();
+        return null;
+    }
+
+    /**
+     * L2-normalise the embedding, store it in both tiers (once open) and return the normalised copy
+     */
+    public float[] put(String text, float[] embedding) {
+        float[] vector = normalize(embedding);
+        Map<String, float[]> tier = memoryTier;
+        if (tier == null) {
+            return vector;
+        }
+        synchronized (tier) {
+            tier.put(text, vector);
+        }
+        writeDisk(hash(text), vector);
+        return vector;
+    }
+
+    /**
+     * Unit-length copy of the vector (zero vectors are returned unchanged)
+     */
+    public static float[] normalize(float[] vector) {
+        double sumSquares = 0;
+        for (float value : vector) {
+            sumSquares += value * value;
+        }
+        float[] normalized = vector.clone();
+        if (sumSquares == 0) {
+            return normalized;
+        }
+        float scale = (float) (1.0 / Math.sqrt(sumSquares));
+        for (int i = 0; i < normalized.length; i++) {
+            normalized[i] *= scale;
+        }
+        return normalized;
+    }
+
+    private int memorySize() {
+        Map<String, float[]> tier = memoryTier;
+        if (tier == null) {
+            return 0;
+        }
+        synchronized (tier) {
+            return tier.size();
+        }
+    }
+
+    private void openDiskTier(Path path) throws IOException {
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+        diskFile = new RandomAccessFile(path.toFile(), "rw");
+        FileChannel channel = diskFile.getChannel();
+
+        // One writer per file; a second process on the same path runs without the disk tier
+        diskFileLock = channel.tryLock();
+        if (diskFileLock == null) {
+            throw new IOException("embedding store " + path + " is locked by another process");
+        }
+
+        long capacityBytes = HEADER_SIZE + (long) diskMaxEntries * recordSize;
+        if (capacityBytes > Integer.MAX_VALUE) {
+            throw new IOException("vision.embedding.disk.max-entries exceeds the 2 GB mapping limit");
+        }
+        boolean fresh = diskFile.length() < HEADER_SIZE;
+        if (!fresh) {
+            diskFile.seek(0);
+            int magic = diskFile.readInt();
+            int version = diskFile.readInt();
+            int storedDimension = diskFile.readInt();
+            diskFile.readInt();
+            byte[] storedFingerprint = new byte[FINGERPRINT_SIZE];
+            diskFile.readFully(storedFingerprint);
+            if (magic != MAGIC || version != VERSION || storedDimension != dimension) {
+                logger.warn("⚠️ Embedding store {} has an incompatible layout, starting a new one", path);
+                diskFile.setLength(0);
+                fresh = true;
+            } else if (!Arrays.equals(storedFingerprint, fingerprint)) {
+                logger.warn("⚠️ Embedding store {} was written by a different model, starting a new one", path);
+                diskFile.setLength(0);
+                fresh = true;
+            }
+        }
+        if (diskFile.length() < capacityBytes) {
+            // Sparse on most filesystems: only written records take disk space
+            diskFile.setLength(capacityBytes);
+        }
+
+        disk = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacityBytes);
+        if (fresh) {
+            disk.putInt(0, MAGIC);
+            disk.putInt(4, VERSION);
+            disk.putInt(8, dimension);
+            disk.putInt(COUNT_OFFSET, 0);
+            for (int i = 0; i < FINGERPRINT_SIZE; i++) {
+                disk.put(FINGERPRINT_OFFSET + i, fingerprint[i]);
+            }
+        }
+
+        int slots = Integer.highestOneBit(Math.max(diskMaxEntries, 1) * 2 - 1) << 1;
+        slotHashes = new long[slots];
+        slotRecords = new int[slots];
+
+        int count = Math.min(disk.getInt(COUNT_OFFSET), diskMaxEntries);
+        for (int record = 0; record < count; record++) {
+            indexRecord(disk.getLong(recordOffset(record)), record);
+        }
+        diskCount = count;
+    }
+
+    private void warmFrom(Path path) throws IOException {
+        if (!Files.exists(path)) {
+            logger.warn("⚠️ Embedding warm file {} not found, skipping", path);
+            return;
+        }
+
+        int imported = 0;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer warm = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (warm.getInt(0) != MAGIC || warm.getInt(4) != VERSION || warm.getInt(8) != dimension) {
+                logger.warn("⚠️ Embedding warm file {} does not match dimension {}, skipping", path, dimension);
+                return;
+            }
+            byte[] warmFingerprint = new byte[FINGERPRINT_SIZE];
+            for (int i = 0; i < FINGERPRINT_SIZE; i++) {
+                warmFingerprint[i] = warm.get(FINGERPRINT_OFFSET + i);
+            }
+            if (!Arrays.equals(warmFingerprint, fingerprint)) {
+                logger.warn("⚠️ Embedding warm file {} was written by a different model, skipping", path);
+                return;
+            }
+
+            long available = (channel.size() - HEADER_SIZE) / recordSize;
+            int count = (int) Math.min(warm.getInt(COUNT_OFFSET), available);
+            float[] vector = new float[dimension];
+            for (int record = 0; record < count; record++) {
+                int offset = recordOffset(record);
+                long hash = warm.getLong(offset);
+                for (int i = 0; i < dimension; i++) {
+                    vector[i] = warm.getFloat(offset + 8 + i * 4);
+                }
+                if (writeDisk(hash, vector)) {
+                    imported++;
+                }
+            }
+        }
+        logger.info("✅ Warmed embedding store with {} vectors from {}", imported, path);
+    }
+
+    private float[] readDisk(long hash) {
+        if (disk == null) {
+            return null;
+        }
+        diskLock.readLock().lock();
+        try {
+            int record = findRecord(hash);
+            if (record < 0) {
+                return null;
+            }
+            int offset = recordOffset(record) + 8;
+            float[] vector = new float[dimension];
+            for (int i = 0; i < dimension; i++) {
+                vector[i] = disk.getFloat(offset + i * 4);
+            }
+            return vector;
+        } finally {
+            diskLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Append a vector to the disk tier; returns false if it was already present or the tier is full
+     */
+    private boolean writeDisk(long hash, float[] vector) {
+        if (disk == null) {
+            return false;
+        }
+        diskLock.writeLock().lock();
+        try {
+            if (findRecord(hash) >= 0) {
+                return false;
+            }
+            if (diskCount >= diskMaxEntries) {
+                if (!diskFullLogged) {
+                    logger.warn("⚠️ Embedding disk tier full at {} entries, new vectors stay in memory only", diskCount);
+                    diskFullLogged = true;
+                }
+                return false;
+            }
+
+            int record = diskCount;
+            int offset = recordOffset(record);
+            for (int i = 0; i < dimension; i++) {
+                disk.putFloat(offset + 8 + i * 4, vector[i]);
+            }
+            disk.putLong(offset, hash);
+            // Publishing the count last means a crash mid-write never exposes a partial record
+            disk.putInt(COUNT_OFFSET, record + 1);
+            diskCount = record + 1;
+            indexRecord(hash, record);
+            return true;
+        } finally {
+            diskLock.writeLock().unlock();
+        }
+    }
+
+    private int findRecord(long hash) {
+        long key = hash == 0 ? 1 : hash;
+        int mask = slotHashes.length - 1;
+        for (int slot = (int) (key ^ (key >>> 32)) & mask; slotHashes[slot] != 0; slot = (slot + 1) & mask) {
+            if (slotHashes[slot] == key) {
+                return slotRecords[slot];
+            }
+        }
+        return -1;
+    }
+
+    private void indexRecord(long hash, int record) {
+        long key = hash == 0 ? 1 : hash;
+        int mask = slotHashes.length - 1;
+        int slot = (int) (key ^ (key >>> 32)) & mask;
+        while (slotHashes[slot] != 0 && slotHashes[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        slotHashes[slot] = key;
+        slotRecords[slot] = record;
+    }
+
+    private int recordOffset(int record) {
+        return HEADER_SIZE + record * recordSize;
+    }
+
+    private void closeDiskTier() {
+        diskLock.writeLock().lock();
+        try {
+            if (disk != null) {
+                disk.force();
+                disk = null;
+            }
+            if (diskFileLock != null) {
+                diskFileLock.release();
+                diskFileLock = null;
+            }
+            if (diskFile != null) {
+                diskFile.close();
+                diskFile = null;
+            }
+        } catch (IOException e) {
+            logger.warn("Error closing embedding store: {}", e.getMessage());
+        } finally {
+            diskLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * First 128 bits of the SHA-256 of the model fingerprint, as stored in the header
+     */
+    public static byte[] fingerprintBytes(String modelFingerprint) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(modelFingerprint.getBytes(StandardCharsets.UTF_8));
+            return Arrays.copyOf(digest, FINGERPRINT_SIZE);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    /**
+     * First 64 bits of the SHA-256 of the text
+     */
+    private static long hash(String text) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(text.getBytes(StandardCharsets.UTF_8));
+            long hash = 0;
+            for (int i = 0; i < 8; i++) {
+                hash = (hash << 8) | (digest[i] & 0xFF);
+            }
+            return hash;
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private Counter cacheCounter(String tier, String result) {
+        return Counter.builder("vision.embedding.cache")
+            .description("Embedding store lookups by tier and result")
+            .tag("tier", tier)
+            .tag("result", result)
+            .register(meterRegistry);
+    }
+}
@@ -0,0 +1,131 @@
+package com.nourishcare.visionservice.service;
+
+import com.nourishcare.visionservice.usda.HnswIndex;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Nearest-neighbour lookup of detected labels against embeddings of every FDC food description.
+ * The HNSW index is built offline with {@link com.nourishcare.visionservice.usda.FdcVectorIndexBuilder}
+ * and memory-mapped at startup; when no index is configured, callers fall back to keyword search.
+ * A configured index is checked against the embedding model once that has loaded; until the check
+ * passes the index is unused and this indicator keeps the readiness group DOWN.
+ */
+@Service
+public class FoodVectorIndexService implements HealthIndicator {
+
+    private static final Logger logger = LoggerFactory.getLogger(FoodVectorIndexService.class);
+
+    @Autowired
+    private SemanticMatchingService semanticMatchingService;
+
+    @Value("${usda.vector-index.path:}")
+    private String indexPath;
+
+    // HNSW beam width at query time; larger trades latency for recall
+    @Value("${usda.vector-index.ef-search:64}")
+    private int efSearch;
+
+    private volatile HnswIndex index;
+    private volatile String state = "disabled";
+    private volatile String failure;
+    private CompletableFuture<Void> verified = CompletableFuture.completedFuture(null);
+
+    @PostConstruct
+    public void initialize() throws IOException {
+        if (indexPath == null || indexPath.isEmpty()) {
+            logger.info("ℹ️ No USDA vector index configured, label matching uses keyword search");
+            return;
+        }
+
+        long start = System.currentTimeMillis();
+        HnswIndex opened = HnswIndex.open(Paths.get(indexPath));
+        state = "verifying";
+        // The model is still loading; the index is only used once it is known to match it
+        verified = semanticMatchingService.whenLoaded().handle((ignored, error) -> {
+            verify(opened, error, start);
+            return null;
+        });
+    }
+
+    private void verify(HnswIndex opened, Throwable loadError, long start) {
+        if (loadError != null) {
+            fail("the embedding model failed to load");
+            return;
+        }
+        int modelDimension = semanticMatchingService.getDimension();
+        if (opened.getDimension() != modelDimension) {
+            fail("index has dimension " + opened.getDimension() + " but the embedding model produces " + modelDimension);
+            return;
+        }
+        String modelFingerprint = semanticMatchingService.getModelFingerprint();
+        if (!opened.matchesModel(modelFingerprint)) {
+            fail("index was built with another embedding model than the loaded one (" + modelFingerprint
+                + "); rebuild it with FdcVectorIndexBuilder");
+            return;
+        }
+        index = opened;
+        state = "ready";
+        logger.info("✅ USDA vector index mapped: {} foods from {} in {}ms",
+                   opened.getCount(), indexPath, System.currentTimeMillis() - start);
+    }
+
+    private void fail(String reason) {
+        failure = reason;
+        state = "failed";
+        logger.error("❌ USDA vector index {} not used: {}", indexPath, reason);
+    }
+
+    /**
+     * Completes once a configured index has been checked against the loaded model, whatever the outcome
+     */
+    public CompletableFuture<Void> whenVerified() {
+        return verified;
+    }
+
+    public boolean isAvailable() {
+        return index != null;
+    }
+
+    /**
+     * Short description of the candidate source, part of the label resolution memo fingerprint
+     */
+    public String describe() {
+        return index == null ? "keyword" : "hnsw:" + index.getCount() + "x" + index.getDimension() + ":ef" + efSearch;
+    }
+
+    /**
+     * The k foods whose descriptions are closest to the label, best first
+     */
+    public List<HnswIndex.Hit> search(String label, int k) {
+        if (index == null) {
+            return Collections.emptyList();
+        }
+        long start = System.nanoTime();
+        List<HnswIndex.Hit> hits = index.search(semanticMatchingService.embed(label), k, efSearch);
+        logger.debug("Vector index search for '{}' took {}µs", label, (System.nanoTime() - start) / 1000);
+        return hits;
+    }
+
+    @Override
+    public Health health() {
+        Health.Builder builder = "verifying".equals(state) || "failed".equals(state) ? Health.down() : Health.up();
+        builder.withDetail("state", state);
+        if (failure != null) {
+            builder.withDetail("failure", failure);
+        }
+        return builder.build();
+    }
+}
@@ -0,0 +1,237 @@
+package com.nourishcare.visionservice.service;
+
+import com.google.api.gax.grpc.GrpcCallContext;
+import com.google.api.gax.rpc.ApiException;
+import com.google.api.gax.rpc.StatusCode;
+import com.google.cloud.vision.v1.AnnotateImageRequest;
+import com.google.cloud.vision.v1.BatchAnnotateImagesRequest;
+import com.google.cloud.vision.v1.BatchAnnotateImagesResponse;
+import com.google.cloud.vision.v1.ImageAnnotatorClient;
+import com.google.cloud.vision.v1.ImageAnnotatorSettings;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded pool of long-lived Google Vision clients.
+ * Each client owns a warm gRPC channel, so uploads no longer pay for channel setup,
+ * TLS handshake and credential exchange on every request.
+ */
+@Service
+public class ImageAnnotatorClientPool implements HealthIndicator {
+
+    private static final Logger logger = LoggerFactory.getLogger(ImageAnnotatorClientPool.class);
+
+    @Autowired
+    private ImageAnnotatorSettings imageAnnotatorSettings;
+
+    @Value("${vision.api.mock:false}")
+    private boolean useMockService;
+
+    @Value("${vision.client.pool-size:4}")
+    private int poolSize;
+
+    @Value("${vision.client.borrow-timeout-ms:5000}")
+    private long borrowTimeoutMs;
+
+    @Value("${vision.client.call-deadline-ms:30000}")
+    private long callDeadlineMs;
+
+    private BlockingQueue<ImageAnnotatorClient> idleClients;
+
+    // Clients created or being created; a slot is reserved before creating so the pool never exceeds poolSize
+    private final AtomicInteger liveClients = new AtomicInteger();
+    private final AtomicLong reconnects = new AtomicLong();
+    private volatile boolean closed;
+
+    @PostConstruct
+    public void initialize() {
+        idleClients = new ArrayBlockingQueue<>(poolSize);
+
+        if (useMockService) {
+            logger.info("Vision API mock mode enabled - client pool left empty");
+            return;
+        }
+
+        logger.info("🚀 Warming {} Google Vision clients...", poolSize);
+        for (int i = 0; i < poolSize && reserveSlot(); i++) {
+            try {
+                idleClients.offer(createClient());
+            } catch (IOException e) {
+                // Missing slots are refilled lazily on borrow
+                logger.warn("Could not warm Vision client {}/{}: {}", i + 1, poolSize, e.getMessage());
+            }
+        }
+        logger.info("✅ Vision client pool ready: {}/{} clients connected", liveClients.get(), poolSize);
+    }
+
+    @PreDestroy
+    public void cleanup() {
+        closed = true;
+
+        List<ImageAnnotatorClient> clients = new ArrayList<>();
+        idleClients.drainTo(clients);
+        for (ImageAnnotatorClient client : clients) {
+            closeClient(client);
+        }
+        logger.info("🧹 Vision client pool closed");
+    }
+
+    /**
+     * Send a batch of annotate requests on a pooled client, bounded by the per-call deadline.
+     * Clients whose channel fails with a connection-level error are replaced before being returned.
+     */
+    public BatchAnnotateImagesResponse batchAnnotateImages(List<AnnotateImageRequest> requests) throws IOException {
+        ImageAnnotatorClient client = borrow();
+        boolean healthy = true;
+
+        try {
+            BatchAnnotateImagesRequest batchRequest = BatchAnnotateImagesRequest.newBuilder()
+                .addAllRequests(requests)
+                .build();
+            GrpcCallContext context = GrpcCallContext.createDefault()
+                .withTimeout(org.threeten.bp.Duration.ofMillis(callDeadlineMs));
+
+            return client.batchAnnotateImagesCallable().call(batchRequest, context);
+
+        } catch (ApiException e) {
+            healthy = !isConnectionFailure(e);
+            throw e;
+        } finally {
+            if (healthy) {
+                release(client);
+            } else {
+                logger.warn("Vision client channel failed, reconnecting");
+                replace(client);
+            }
+        }
+    }
+
+    private ImageAnnotatorClient borrow() throws IOException {
+        if (closed) {
+            throw new IOException("Vision client pool is closed");
+        }
+
+        ImageAnnotatorClient client = idleClients.poll();
+        if (client == null && reserveSlot()) {
+            // A slot was lost to a failed warm-up or reconnect; refill it now
+            return createClient();
+        }
+
+        try {
+            if (client == null) {
+                client = idleClients.poll(borrowTimeoutMs, TimeUnit.MILLISECONDS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for a Vision client", e);
+        }
+
+        if (client == null) {
+            throw new IOException("No Vision client available within " + borrowTimeoutMs + " ms");
+        }
+
+        if (!isUsable(client)) {
+            replace(client);
+            return borrow();
+        }
+        return client;
+    }
+
+    private void release(ImageAnnotatorClient client) {
+        if (closed || !idleClients.offer(client)) {
+            closeClient(client);
+        }
+    }
+
+    private void replace(ImageAnnotatorClient client) {
+        closeClient(client);
+        reconnects.incrementAndGet();
+
+        if (closed || !reserveSlot()) {
+            return;
+        }
+        try {
+            release(createClient());
+        } catch (IOException e) {
+            logger.warn("Vision client reconnect failed, slot will be refilled on next borrow: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Claim one of the poolSize client slots; false when all are taken
+     */
+    private boolean reserveSlot() {
+        while (true) {
+            int live = liveClients.get();
+            if (live >= poolSize) {
+                return false;
+            }
+            if (liveClients.compareAndSet(live, live + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Create a client in a slot already claimed with {@link #reserveSlot}; the slot is given back on failure
+     */
+    private ImageAnnotatorClient createClient() throws IOException {
+        try {
+            return ImageAnnotatorClient.create(imageAnnotatorSettings);
+        } catch (IOException | RuntimeException e) {
+            liveClients.decrementAndGet();
+            throw e;
+        }
+    }
+
+    private void closeClient(ImageAnnotatorClient client) {
+        liveClients.decrementAndGet();
+        try {
+            client.close();
+        } catch (Exception e) {
+            logger.debug("Error closing Vision client: {}", e.getMessage());
+        }
+    }
+
+    // Only catches clients closed underneath the pool; broken channels surface as UNAVAILABLE on the
+    // next call and are replaced then (gRPC reconnects idle channels on its own)
+    private boolean isUsable(ImageAnnotatorClient client) {
+        return !client.isShutdown() && !client.isTerminated();
+    }
+
+    private boolean isConnectionFailure(ApiException e) {
+        StatusCode.Code code = e.getStatusCode().getCode();
+        return code == StatusCode.Code.UNAVAILABLE || code == StatusCode.Code.UNKNOWN;
+    }
+
+    @Override
+    public Health health() {
+        if (useMockService) {
+            return Health.up().withDetail("mode", "mock").build();
+        }
+
+        Health.Builder builder = liveClients.get() > 0 ? Health.up() : Health.down();
+        return builder
+            .withDetail("poolSize", poolSize)
+            .withDetail("liveClients", liveClients.get())
+            .withDetail("idleClients", idleClients.size())
+            .withDetail("reconnects", reconnects.get())
+            .build();
+    }
+}
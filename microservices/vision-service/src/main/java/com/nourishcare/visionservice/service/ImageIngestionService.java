@@ -0,0 +1,405 @@
+package com.nourishcare.visionservice.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Header-first image ingestion for uploads.
+ * Dimensions and EXIF orientation are read without decoding pixels; when pixels are needed they are
+ * decoded with source subsampling close to the size the consumer actually uses, then rotated upright.
+ * ImageReaders are pooled per format, since creating one per upload is comparatively expensive.
+ */
+@Service
+public class ImageIngestionService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ImageIngestionService.class);
+
+    @Value("${vision.image.reader-pool-size:8}")
+    private int readerPoolSize;
+
+    private final Map<String, BlockingQueue<ImageReader>> readerPools = new ConcurrentHashMap<>();
+
+    @PreDestroy
+    public void cleanup() {
+        for (BlockingQueue<ImageReader> pool : readerPools.values()) {
+            ImageReader reader;
+            while ((reader = pool.poll()) != null) {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * Read dimensions and orientation from the image header only
+     *
+     * @throws IOException if the format is not supported or the header is unreadable
+     */
+    public ImageInfo probe(byte[] bytes) throws IOException {
+        String format = sniffFormat(bytes);
+        ImageReader reader = borrowReader(format, bytes);
+        try (ImageInputStream input = ImageIO.createImageInputStream(new ByteArrayInputStream(bytes))) {
+            reader.setInput(input, true, true);
+            return new ImageInfo(reader.getWidth(0), reader.getHeight(0), orientation(format, bytes));
+        } finally {
+            returnReader(format, reader);
+        }
+    }
+
+    /**
+     * Decode the image upright, subsampled so its longer side stays at or above targetLongSide
+     * (a target of 0 or less decodes at full resolution)
+     */
+    public DecodedImage decode(byte[] bytes, int targetLongSide) throws IOException {
+        String format = sniffFormat(bytes);
+        ImageReader reader = borrowReader(format, bytes);
+        BufferedImage raw;
+        ImageInfo info;
+        try (ImageInputStream input = ImageIO.createImageInputStream(new ByteArrayInputStream(bytes))) {
+            reader.setInput(input, true, true);
+            info = new ImageInfo(reader.getWidth(0), reader.getHeight(0), orientation(format, bytes));
+
+            ImageReadParam param = reader.getDefaultReadParam();
+            int longSide = Math.max(info.rawWidth, info.rawHeight);
+            int subsampling = targetLongSide > 0 ? Math.max(1, longSide / targetLongSide) : 1;
+            if (subsampling > 1) {
+                param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+            }
+            raw = reader.read(0, param);
+        } finally {
+            returnReader(format, reader);
+        }
+
+        BufferedImage upright = applyOrientation(raw, info.orientation);
+        return new DecodedImage(upright, info);
+    }
+
+    /**
+     * Upright JPEG of the image with its longer side at most maxDimension, written without EXIF or other
+     * metadata. The original bytes are kept when they are already upright, small enough and no larger
+     * than the re-encoded image (a maxDimension of 0 or less only re-encodes, it never scales).
+     */
+    public EncodedImage encodeForUpload(byte[] bytes, int maxDimension, float quality) throws IOException {
+        DecodedImage decoded = decode(bytes, maxDimension);
+        ImageInfo info = decoded.getInfo();
+        BufferedImage source = decoded.getImage();
+
+        int longSide = Math.max(source.getWidth(), source.getHeight());
+        double factor = maxDimension > 0 && longSide > maxDimension ? (double) maxDimension / longSide : 1.0;
+        int width = Math.max(1, (int) Math.round(source.getWidth() * factor));
+        int height = Math.max(1, (int) Math.round(source.getHeight() * factor));
+
+        // Subsampled decoding lands at up to twice the target size; finish with a smooth resize.
+        // JPEG has no alpha, so transparent pixels are flattened onto white.
+        BufferedImage target = source;
+        if (factor < 1.0 || source.getType() != BufferedImage.TYPE_3BYTE_BGR) {
+            target = new BufferedImage(width, height, BufferedImage.TYPE_3BYTE_BGR);
+            Graphics2D graphics = target.createGraphics();
+            try {
+                graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+                graphics.setColor(Color.WHITE);
+                graphics.fillRect(0, 0, width, height);
+                graphics.drawImage(source, 0, 0, width, height, null);
+            } finally {
+                graphics.dispose();
+            }
+        }
+
+        byte[] encoded = writeJpeg(target, quality);
+        boolean originalFits = info.orientation == 1
+            && (maxDimension <= 0 || Math.max(info.getWidth(), info.getHeight()) <= maxDimension);
+        if (originalFits && encoded.length >= bytes.length) {
+            return new EncodedImage(bytes, info.getWidth(), info.getHeight(), info);
+        }
+        return new EncodedImage(encoded, width, height, info);
+    }
+
+    private static byte[] writeJpeg(BufferedImage image, float quality) throws IOException {
+        Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName("jpeg");
+        if (!writers.hasNext()) {
+            throw new IOException("No JPEG writer available");
+        }
+        ImageWriter writer = writers.next();
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (ImageOutputStream stream = ImageIO.createImageOutputStream(output)) {
+            writer.setOutput(stream);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(quality);
+            // No metadata: only the minimal JFIF header is written, EXIF and thumbnails are dropped
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return output.toByteArray();
+    }
+
+    private ImageReader borrowReader(String format, byte[] bytes) throws IOException {
+        if (format != null) {
+            BlockingQueue<ImageReader> pool = readerPools.get(format);
+            ImageReader pooled = pool != null ? pool.poll() : null;
+            if (pooled != null) {
+                return pooled;
+            }
+            Iterator<ImageReader> readers = ImageIO.getImageReadersByFormatName(format);
+            if (readers.hasNext()) {
+                return readers.next();
+            }
+        }
+
+        // Unknown signature: let ImageIO probe the stream (not pooled)
+        try (ImageInputStream input = ImageIO.createImageInputStream(new ByteArrayInputStream(bytes))) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+            if (!readers.hasNext()) {
+                throw new IOException("Unsupported image format");
+            }
+            return readers.next();
+        }
+    }
+
+    private void returnReader(String format, ImageReader reader) {
+        reader.reset();
+        if (format == null) {
+            reader.dispose();
+            return;
+        }
+        BlockingQueue<ImageReader> pool = readerPools.computeIfAbsent(format,
+            key -> new ArrayBlockingQueue<>(readerPoolSize));
+        if (!pool.offer(reader)) {
+            reader.dispose();
+        }
+    }
+
+    /**
+     * Format name from the file signature, or null if unrecognised
+     */
+    static String sniffFormat(byte[] bytes) {
+        if (bytes.length >= 3 && (bytes[0] & 0xFF) == 0xFF && (bytes[1] & 0xFF) == 0xD8 && (bytes[2] & 0xFF) == 0xFF) {
+            return "jpeg";
+        }
+        if (bytes.length >= 8 && (bytes[0] & 0xFF) == 0x89 && bytes[1] == 'P' && bytes[2] == 'N' && bytes[3] == 'G') {
+            return "png";
+        }
+        if (bytes.length >= 4 && bytes[0] == 'G' && bytes[1] == 'I' && bytes[2] == 'F' && bytes[3] == '8') {
+            return "gif";
+        }
+        if (bytes.length >= 2 && bytes[0] == 'B' && bytes[1] == 'M') {
+            return "bmp";
+        }
+        return null;
+    }
+
+    private static int orientation(String format, byte[] bytes) {
+        if (!"jpeg".equals(format)) {
+            return 1;
+        }
+        try {
+            return jpegExifOrientation(bytes);
+        } catch (RuntimeException e) {
+            logger.debug("Ignoring malformed EXIF data: {}", e.getMessage());
+            return 1;
+        }
+    }
+
+    /**
+     * EXIF orientation tag (1-8) from the APP1 segment of a JPEG, or 1 when absent.
+     * Walks the marker segments up to the start of scan, so pixel data is never touched.
+     */
+    static int jpegExifOrientation(byte[] bytes) {
+        int offset = 2;
+        while (offset + 4 <= bytes.length) {
+            if ((bytes[offset] & 0xFF) != 0xFF) {
+                return 1;
+            }
+            int marker = bytes[offset + 1] & 0xFF;
+            if (marker == 0xDA || marker == 0xD9) {
+                return 1;
+            }
+            int length = ((bytes[offset + 2] & 0xFF) << 8) | (bytes[offset + 3] & 0xFF);
+            int segment = offset + 4;
+            if (marker == 0xE1 && length >= 8 && segment + 6 <= bytes.length
+                    && bytes[segment] == 'E' && bytes[segment + 1] == 'x' && bytes[segment + 2] == 'i'
+                    && bytes[segment + 3] == 'f' && bytes[segment + 4] == 0 && bytes[segment + 5] == 0) {
+                return tiffOrientation(bytes, segment + 6, Math.min(bytes.length, offset + 2 + length));
+            }
+            offset += 2 + length;
+        }
+        return 1;
+    }
+
+    private static int tiffOrientation(byte[] bytes, int tiff, int end) {
+        boolean littleEndian = bytes[tiff] == 'I' && bytes[tiff + 1] == 'I';
+        int ifd = tiff + readInt(bytes, tiff + 4, littleEndian);
+        if (ifd + 2 > end) {
+            return 1;
+        }
+        int entries = readShort(bytes, ifd, littleEndian);
+        for (int i = 0; i < entries; i++) {
+            int entry = ifd + 2 + i * 12;
+            if (entry + 12 > end) {
+                break;
+            }
+            if (readShort(bytes, entry, littleEndian) == 0x0112) {
+                int value = readShort(bytes, entry + 8, littleEndian);
+                return value >= 1 && value <= 8 ? value : 1;
+            }
+        }
+        return 1;
+    }
+
+    private static int readShort(byte[] bytes, int offset, boolean littleEndian) {
+        int b0 = bytes[offset] & 0xFF;
+        int b1 = bytes[offset + 1] & 0xFF;
+        return littleEndian ? (b1 << 8) | b0 : (b0 << 8) | b1;
+    }
+
+    private static int readInt(byte[] bytes, int offset, boolean littleEndian) {
+        int hi = readShort(bytes, littleEndian ? offset + 2 : offset, littleEndian);
+        int lo = readShort(bytes, littleEndian ? offset : offset + 2, littleEndian);
+        return (hi << 16) | lo;
+    }
+
+    /**
+     * Rotate or flip the decoded pixels so the image is upright for the given EXIF orientation
+     */
+    static BufferedImage applyOrientation(BufferedImage image, int orientation) {
+        if (orientation <= 1 || orientation > 8) {
+            return image;
+        }
+
+        int width = image.getWidth();
+        int height = image.getHeight();
+        boolean swap = orientation >= 5;
+        // x' = m00 x + m01 y + m02, y' = m10 x + m11 y + m12
+        AffineTransform transform;
+        switch (orientation) {
+            case 2: // mirror horizontal
+                transform = new AffineTransform(-1, 0, 0, 1, width, 0);
+                break;
+            case 3: // rotate 180
+                transform = new AffineTransform(-1, 0, 0, -1, width, height);
+                break;
+            case 4: // mirror vertical
+                transform = new AffineTransform(1, 0, 0, -1, 0, height);
+                break;
+            case 5: // transpose
+                transform = new AffineTransform(0, 1, 1, 0, 0, 0);
+                break;
+            case 6: // rotate 90 clockwise
+                transform = new AffineTransform(0, 1, -1, 0, height, 0);
+                break;
+            case 7: // transverse
+                transform = new AffineTransform(0, -1, -1, 0, height, width);
+                break;
+            default: // 8: rotate 90 counter-clockwise
+                transform = new AffineTransform(0, -1, 1, 0, 0, width);
+                break;
+        }
+
+        BufferedImage rotated = new BufferedImage(swap ? height : width, swap ? width : height,
+            BufferedImage.TYPE_3BYTE_BGR);
+        Graphics2D graphics = rotated.createGraphics();
+        try {
+            graphics.drawImage(image, transform, null);
+        } finally {
+            graphics.dispose();
+        }
+        return rotated;
+    }
+
+    /**
+     * Header facts about an image; width and height are as displayed, after EXIF orientation
+     */
+    public static class ImageInfo {
+        private final int rawWidth;
+        private final int rawHeight;
+        private final int orientation;
+
+        ImageInfo(int rawWidth, int rawHeight, int orientation) {
+            this.rawWidth = rawWidth;
+            this.rawHeight = rawHeight;
+            this.orientation = orientation;
+        }
+
+        public int getWidth() { return orientation >= 5 ? rawHeight : rawWidth; }
+        public int getHeight() { return orientation >= 5 ? rawWidth : rawHeight; }
+        public int getOrientation() { return orientation; }
+    }
+
+    /**
+     * Upright, possibly subsampled pixels plus the full-resolution header facts
+     */
+    public static class DecodedImage {
+        private final BufferedImage image;
+        private final ImageInfo info;
+
+        DecodedImage(BufferedImage image, ImageInfo info) {
+            this.image = image;
+            this.info = info;
+        }
+
+        public BufferedImage getImage() { return image; }
+        public ImageInfo getInfo() { return info; }
+
+        /**
+         * Factor from decoded pixel coordinates to full-resolution display coordinates
+         */
+        public double getScale() {
+            return (double) info.getWidth() / image.getWidth();
+        }
+    }
+
+    /**
+     * Image bytes prepared for upload, with the size of the image they encode and the original header facts
+     */
+    public static class EncodedImage {
+        private final byte[] bytes;
+        private final int width;
+        private final int height;
+        private final ImageInfo info;
+
+        EncodedImage(byte[] bytes, int width, int height, ImageInfo info) {
+            this.bytes = bytes;
+            this.width = width;
+            this.height = height;
+            this.info = info;
+        }
+
+        public byte[] getBytes() { return bytes; }
+        public int getWidth() { return width; }
+        public int getHeight() { return height; }
+        public ImageInfo getInfo() { return info; }
+
+        /**
+         * Factor from encoded pixel coordinates to full-resolution display coordinates
+         */
+        public double getScale() {
+            return (double) info.getWidth() / width;
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.nourishcare.visionservice.service;
+
+/**
+ * What a detection may spend on local inference: a latency budget in milliseconds (0 for none)
+ * and the accuracy the chosen model profile should still reach. The source names where the
+ * budget came from (request, tenant, interactive, background) for logs and metrics.
+ */
+public final class InferenceBudget {
+
+    private final long latencyMs;
+    private final double accuracyTarget;
+    private final String source;
+
+    public InferenceBudget(long latencyMs, double accuracyTarget, String source) {
+        this.latencyMs = latencyMs;
+        this.accuracyTarget = accuracyTarget;
+        this.source = source;
+    }
+
+    public long getLatencyMs() { return latencyMs; }
+    public double getAccuracyTarget() { return accuracyTarget; }
+    public String getSource() { return source; }
+
+    public boolean isUnbounded() {
+        return latencyMs <= 0;
+    }
+
+    @Override
+    public String toString() {
+        return source + "(" + (isUnbounded() ? "unbounded" : latencyMs + "ms") + ", accuracy >= " + accuracyTarget + ")";
+    }
+}
@@ -0,0 +1,77 @@
+package com.nourishcare.visionservice.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Decides the local inference budget of a detection.
+ * Interactive uploads get a tight latency budget, which a tenant default or an explicit
+ * per-request value can override; background jobs (back-fill) trade latency for accuracy.
+ */
+@Service
+public class InferenceBudgetPolicy {
+
+    private static final Logger logger = LoggerFactory.getLogger(InferenceBudgetPolicy.class);
+
+    @Value("${vision.yolo.budget.interactive-ms:150}")
+    private long interactiveMs;
+
+    @Value("${vision.yolo.budget.interactive-accuracy:0.5}")
+    private double interactiveAccuracy;
+
+    // 0 leaves background jobs without a latency bound
+    @Value("${vision.yolo.budget.background-ms:0}")
+    private long backgroundMs;
+
+    @Value("${vision.yolo.budget.background-accuracy:0.6}")
+    private double backgroundAccuracy;
+
+    // Per-tenant interactive budgets as tenant:ms pairs, e.g. "acme:80,clinic-eu:300"
+    @Value("${vision.yolo.budget.tenants:}")
+    private String tenantBudgetList;
+
+    private final Map<String, Long> tenantBudgets = new HashMap<>();
+
+    @PostConstruct
+    public void initialize() {
+        for (String pair : tenantBudgetList.split(",")) {
+            String[] parts = pair.split(":");
+            if (parts.length == 2 && !parts[0].trim().isEmpty()) {
+                tenantBudgets.put(parts[0].trim(), Long.parseLong(parts[1].trim()));
+            }
+        }
+        logger.info("✅ Inference budgets: interactive {}ms, background {}ms, {} tenant overrides",
+                   interactiveMs, backgroundMs, tenantBudgets.size());
+    }
+
+    /**
+     * Budget of an interactive upload: the requested budget if given, else the tenant's, else the default
+     */
+    public InferenceBudget interactive(String tenantId, Long requestedMs) {
+        if (requestedMs != null && requestedMs > 0) {
+            return new InferenceBudget(requestedMs, interactiveAccuracy, "request");
+        }
+        Long tenantMs = tenantId != null ? tenantBudgets.get(tenantId) : null;
+        if (tenantMs != null) {
+            return new InferenceBudget(tenantMs, interactiveAccuracy, "tenant");
+        }
+        return new InferenceBudget(interactiveMs, interactiveAccuracy, "interactive");
+    }
+
+    public InferenceBudget interactive() {
+        return interactive(null, null);
+    }
+
+    /**
+     * Budget of an asynchronous job
+     */
+    public InferenceBudget background() {
+        return new InferenceBudget(backgroundMs, backgroundAccuracy, "background");
+    }
+}
@@ -0,0 +1,220 @@
+package com.nourishcare.visionservice.service;
+
+import com.nourishcare.visionservice.model.LabelResolution;
+import com.nourishcare.visionservice.repository.LabelResolutionRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Memo of label → USDA food resolutions in Mongo, consulted before any USDA or embedding work.
+ * Every entry carries a fingerprint of the embedding model and matching settings; entries written
+ * under a different fingerprint are treated as misses and overwritten, so changing the model or
+ * thresholds invalidates the memo without a migration.
+ */
+@Service
+public class LabelResolutionMemo {
+
+    private static final Logger logger = LoggerFactory.getLogger(LabelResolutionMemo.class);
+
+    private static final String COLLECTION = "label_resolutions";
+
+    // Bump when the resolution logic changes in a way the settings below do not capture
+    private static final int RESOLVER_VERSION = 1;
+
+    @Autowired
+    private LabelResolutionRepository labelResolutionRepository;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private FoodVectorIndexService foodVectorIndexService;
+
+    @Autowired
+    private SemanticMatchingService semanticMatchingService;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${vision.matching.memo.enabled:true}")
+    private boolean enabled;
+
+    @Value("${vision.matching.memo.ttl-days:30}")
+    private long ttlDays;
+
+    @Value("${vision.matching.memo.negative-ttl-hours:24}")
+    private long negativeTtlHours;
+
+    @Value("${vision.matching.min-similarity:0.3}")
+    private double minSimilarity;
+
+    @Value("${usda.mode:api}")
+    private String usdaMode;
+
+    // Both set once the embedding model has loaded and the vector index check has settled; until then
+    // lookups miss and nothing is saved
+    private volatile String fingerprint;
+    private volatile String modelFingerprint;
+
+    @PostConstruct
+    public void initialize() {
+        if (!enabled) {
+            logger.info("Label resolution memo disabled");
+            return;
+        }
+
+        try {
+            mongoTemplate.indexOps(COLLECTION)
+                .ensureIndex(new Index().on("expiresAt", Sort.Direction.ASC).expire(0, TimeUnit.SECONDS));
+        } catch (Exception e) {
+            logger.warn("Could not create label resolution memo index: {}", e.getMessage());
+        }
+
+        CompletableFuture.allOf(semanticMatchingService.whenLoaded(), foodVectorIndexService.whenVerified())
+            .whenComplete((ignored, error) -> {
+                if (error != null) {
+                    logger.error("❌ Label resolution memo unused, the embedding model failed to load");
+                    return;
+                }
+                computeFingerprint();
+            });
+    }
+
+    private void computeFingerprint() {
+        // The loaded model's checksum when it came from a local export, so swapping the export invalidates the memo
+        String model = semanticMatchingService.getModelFingerprint();
+        String settings = "resolver=" + RESOLVER_VERSION
+            + ";model=" + model
+            + ";minSimilarity=" + minSimilarity
+            + ";usda=" + usdaMode.toLowerCase(Locale.ROOT)
+            + ";candidates=" + foodVectorIndexService.describe();
+        modelFingerprint = model;
+        fingerprint = PerceptualHash.sha256(settings.getBytes(StandardCharsets.UTF_8)).substring(0, 16);
+        logger.info("✅ Label resolution memo ready (fingerprint: {}, TTL: {} days)", fingerprint, ttlDays);
+    }
+
+    /**
+     * Memoised resolution for the label under the current fingerprint; an entry with a null fdcId
+     * means the label is known not to match any USDA food
+     */
+    public Optional<LabelResolution> lookup(String label) {
+        String current = fingerprint;
+        if (!enabled || current == null) {
+            return Optional.empty();
+        }
+
+        try {
+            Optional<LabelResolution> found = labelResolutionRepository.findById(normalize(label));
+            if (!found.isPresent()) {
+                record("miss");
+                return Optional.empty();
+            }
+            LabelResolution resolution = found.get();
+            if (!current.equals(resolution.getFingerprint())) {
+                record("invalidated");
+                return Optional.empty();
+            }
+            if (resolution.getExpiresAt() != null && resolution.getExpiresAt().isBefore(LocalDateTime.now())) {
+                record("expired");
+                return Optional.empty();
+            }
+            record(resolution.getFdcId() == null ? "negative_hit" : "hit");
+            return found;
+        } catch (Exception e) {
+            logger.warn("Label resolution memo lookup failed for '{}': {}", label, e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Remember that the label resolved to this USDA food
+     */
+    public void rememberMatch(String label, UsdaFoodDataService.UsdaFoodItem item, String dataType,
+                              double similarity, String method) {
+        LabelResolution resolution = newResolution(label, similarity, method);
+        resolution.setFdcId(item.fdcId);
+        resolution.setDescription(item.description);
+        resolution.setDataType(dataType);
+        resolution.setCaloriesPerHundredGrams(item.caloriesPerHundredGrams);
+        resolution.setProteinPerHundredGrams(item.proteinPerHundredGrams);
+        resolution.setFatPerHundredGrams(item.fatPerHundredGrams);
+        resolution.setCarbohydratePerHundredGrams(item.carbohydratePerHundredGrams);
+        resolution.setFiberPerHundredGrams(item.fiberPerHundredGrams);
+        resolution.setSugarsPerHundredGrams(item.sugarsPerHundredGrams);
+        resolution.setExpiresAt(resolution.getCreatedAt().plusDays(ttlDays));
+        save(resolution);
+    }
+
+    /**
+     * Remember that the label's best candidate fell below the similarity threshold
+     */
+    public void rememberNoMatch(String label, double bestSimilarity, String method) {
+        LabelResolution resolution = newResolution(label, bestSimilarity, method);
+        resolution.setExpiresAt(resolution.getCreatedAt().plusHours(negativeTtlHours));
+        save(resolution);
+    }
+
+    /**
+     * The memoised food in the shape the detection pipeline uses
+     */
+    public static UsdaFoodDataService.UsdaFoodItem toFoodItem(LabelResolution resolution) {
+        UsdaFoodDataService.UsdaFoodItem item = new UsdaFoodDataService.UsdaFoodItem();
+        item.fdcId = resolution.getFdcId();
+        item.description = resolution.getDescription();
+        item.caloriesPerHundredGrams = resolution.getCaloriesPerHundredGrams() != null
+            ? resolution.getCaloriesPerHundredGrams() : 0.0;
+        item.proteinPerHundredGrams = resolution.getProteinPerHundredGrams();
+        item.fatPerHundredGrams = resolution.getFatPerHundredGrams();
+        item.carbohydratePerHundredGrams = resolution.getCarbohydratePerHundredGrams();
+        item.fiberPerHundredGrams = resolution.getFiberPerHundredGrams();
+        item.sugarsPerHundredGrams = resolution.getSugarsPerHundredGrams();
+        return item;
+    }
+
+    /**
+     * Memo key: lower case, underscores and runs of whitespace collapsed to single spaces
+     */
+    static String normalize(String label) {
+        return label.toLowerCase(Locale.ROOT).replace('_', ' ').trim().replaceAll("\\s+", " ");
+    }
+
+    private LabelResolution newResolution(String label, double similarity, String method) {
+        LabelResolution resolution = new LabelResolution();
+        resolution.setId(normalize(label));
+        resolution.setFingerprint(fingerprint);
+        resolution.setModelVersion(modelFingerprint);
+        resolution.setSimilarity(similarity);
+        resolution.setMethod(method);
+        return resolution;
+    }
+
+    private void save(LabelResolution resolution) {
+        if (!enabled || resolution.getFingerprint() == null) {
+            return;
+        }
+        try {
+            labelResolutionRepository.save(resolution);
+        } catch (Exception e) {
+            logger.warn("Could not persist label resolution for '{}': {}", resolution.getId(), e.getMessage());
+        }
+    }
+
+    private void record(String result) {
+        meterRegistry.counter("vision.label.memo", "result", result).increment();
+    }
+}
@@ -0,0 +1,381 @@
+package com.nourishcare.visionservice.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Resolves model artefacts from a local models directory or a classpath bundle (models/...),
+ * verifies them against SHA-256 checksums, and loads models in parallel during startup.
+ * Checksums use the sha256sum format ({@code <hex>  <relative path>}) in SHA256SUMS files,
+ * read from the models directory and from the classpath bundle. Every load started with
+ * {@link #load} is awaited before the context finishes starting, so a missing or corrupt
+ * model still fails startup, just without the models loading one after the other.
+ */
+@Service
+public class ModelArtifactManager implements SmartInitializingSingleton {
+
+    private static final Logger logger = LoggerFactory.getLogger(ModelArtifactManager.class);
+
+    private static final String BUNDLE_PREFIX = "models/";
+    private static final String CHECKSUM_FILE = "SHA256SUMS";
+
+    // Local models directory, e.g. a volume provisioned on air-gapped nodes; empty for none
+    @Value("${vision.models.dir:}")
+    private String modelsDir;
+
+    // Classpath bundles that need a real directory (DJL models) are extracted here
+    @Value("${vision.models.cache-dir:${java.io.tmpdir}/nourishcare/models}")
+    private String cacheDir;
+
+    // Offline: never download models; artefacts missing locally fail startup
+    @Value("${vision.models.offline:false}")
+    private boolean offline;
+
+    // Reject artefacts that have no checksum entry instead of loading them unverified; on by default offline
+    @Value("${vision.models.require-checksums:${vision.models.offline:false}}")
+    private boolean requireChecksums;
+
+    private final Map<String, String> checksums = new TreeMap<>();
+    private final List<CompletableFuture<?>> loads = new ArrayList<>();
+    private ExecutorService loader;
+
+    @PostConstruct
+    public void initialize() throws IOException {
+        if (offline) {
+            // DJL must not try to reach its model zoo or native library mirrors either
+            System.setProperty("ai.djl.offline", "true");
+        }
+
+        ClassPathResource bundled = new ClassPathResource(BUNDLE_PREFIX + CHECKSUM_FILE);
+        if (bundled.exists()) {
+            try (InputStream input = bundled.getInputStream()) {
+                readChecksums(input);
+            }
+        }
+        Path local = localPath(CHECKSUM_FILE);
+        if (local != null && Files.isRegularFile(local)) {
+            try (InputStream input = Files.newInputStream(local)) {
+                readChecksums(input);
+            }
+        }
+
+        AtomicInteger counter = new AtomicInteger();
+        loader = Executors.newFixedThreadPool(2, runnable -> {
+            Thread thread = new Thread(runnable, "model-loader-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        if (checksums.isEmpty()) {
+            logger.warn("No {} found in the models directory or classpath bundle; model artefacts {}",
+                       CHECKSUM_FILE, requireChecksums ? "will be rejected" : "load unverified");
+        }
+        logger.info("✅ Model artefacts: dir={}, {} checksums, offline={}, require checksums={}",
+                   modelsDir.isEmpty() ? "(none)" : modelsDir, checksums.size(), offline, requireChecksums);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (loader != null) {
+            loader.shutdownNow();
+        }
+    }
+
+    public boolean isOffline() {
+        return offline;
+    }
+
+    /**
+     * Start loading a model on the loader pool; startup waits for it before completing
+     */
+    public <T> CompletableFuture<T> load(String name, Callable<T> task) {
+        CompletableFuture<T> future = CompletableFuture.supplyAsync(() -> {
+            long start = System.currentTimeMillis();
+            try {
+                T loaded = task.call();
+                logger.info("📦 Model '{}' loaded in {}ms", name, System.currentTimeMillis() - start);
+                return loaded;
+            } catch (Exception e) {
+                throw new CompletionException(new IllegalStateException("Loading model '" + name + "' failed", e));
+            }
+        }, loader);
+        synchronized (loads) {
+            loads.add(future);
+        }
+        return future;
+    }
+
+    /**
+     * Fail startup if any model failed to load
+     */
+    @Override
+    public void afterSingletonsInstantiated() {
+        List<CompletableFuture<?>> pending;
+        synchronized (loads) {
+            pending = new ArrayList<>(loads);
+        }
+        long start = System.currentTimeMillis();
+        CompletableFuture.allOf(pending.toArray(new CompletableFuture[0])).join();
+        logger.info("✅ {} models ready (waited {}ms after context start)", pending.size(), System.currentTimeMillis() - start);
+    }
+
+    /**
+     * Single-file artefact: a location with a scheme (classpath:, file:) is taken as is; a bare name
+     * is looked up in the models directory, then in the classpath bundle, then as a classpath resource.
+     * The result is checksum-verified and carries the file's SHA-256, which identifies the exact model loaded.
+     */
+    public ModelFile resolveFile(String location) throws IOException {
+        Resource resource;
+        String name = location;
+        Path local = location.contains(":") ? null : localPath(location);
+        if (location.contains(":")) {
+            resource = new PathMatchingResourcePatternResolver().getResource(location);
+            name = resource.getFilename();
+        } else if (local != null && Files.isRegularFile(local)) {
+            resource = new FileSystemResource(local);
+        } else if (new ClassPathResource(BUNDLE_PREFIX + location).exists()) {
+            resource = new ClassPathResource(BUNDLE_PREFIX + location);
+        } else {
+            resource = new ClassPathResource(location);
+        }
+
+        if (!resource.exists()) {
+            throw new IOException("Model artefact '" + location + "' not found (models dir: "
+                + (modelsDir.isEmpty() ? "none" : modelsDir) + ")");
+        }
+        try (InputStream input = resource.getInputStream()) {
+            return new ModelFile(resource, verify(name, input));
+        }
+    }
+
+    /**
+     * Directory artefact (e.g. a DJL model with its tokenizer) from the models directory, or extracted
+     * from the classpath bundle; every file with a checksum entry under it is verified. Empty when neither exists.
+     * The artefact's checksum covers every file in the directory, so it identifies the exact model loaded.
+     */
+    public Optional<ModelArtifact> resolveDirectory(String name) throws IOException {
+        Path local = localPath(name);
+        Path directory;
+        if (local != null && Files.isDirectory(local)) {
+            directory = local;
+        } else {
+            Resource[] bundled = new PathMatchingResourcePatternResolver()
+                .getResources("classpath*:" + BUNDLE_PREFIX + name + "/*");
+            if (bundled.length == 0) {
+                return Optional.empty();
+            }
+            directory = extract(name, bundled);
+        }
+
+        for (String listed : checksums.keySet()) {
+            if (listed.startsWith(name + "/") && !Files.isRegularFile(directory.resolve(listed.substring(name.length() + 1)))) {
+                throw new IOException("Model artefact '" + listed + "' is missing from " + directory);
+            }
+        }
+
+        List<Path> files;
+        try (Stream<Path> walk = Files.walk(directory)) {
+            files = walk.filter(Files::isRegularFile).sorted().collect(Collectors.toList());
+        }
+        int verified = 0;
+        StringBuilder manifest = new StringBuilder();
+        for (Path file : files) {
+            String fileName = relativeName(directory, file);
+            String relative = name + "/" + fileName;
+            String actual;
+            try (InputStream input = Files.newInputStream(file)) {
+                actual = sha256(input);
+            }
+            String expected = checksums.get(relative);
+            if (expected != null) {
+                if (!expected.equalsIgnoreCase(actual)) {
+                    throw new IOException("Checksum mismatch for model artefact '" + relative + "': expected "
+                        + expected + ", got " + actual);
+                }
+                verified++;
+            } else if (requireChecksums) {
+                throw new IOException("No checksum listed for model artefact '" + relative + "'");
+            }
+            manifest.append(actual).append("  ").append(fileName).append('\n');
+        }
+        if (verified == 0) {
+            logger.warn("Model directory '{}' has no checksum entries, loading unverified", name);
+        }
+
+        String checksum = manifestChecksum(manifest);
+        logger.info("📦 Model '{}' resolved to {} ({} of {} files verified, checksum {})",
+                   name, directory, verified, files.size(), checksum.substring(0, 12));
+        return Optional.of(new ModelArtifact(directory, checksum));
+    }
+
+    /**
+     * Checksum of a model directory as computed by {@link #resolveDirectory}, without verification;
+     * for offline tools that must identify a model the same way the service does
+     */
+    public static String checksumDirectory(Path directory) throws IOException {
+        List<Path> files;
+        try (Stream<Path> walk = Files.walk(directory)) {
+            files = walk.filter(Files::isRegularFile).sorted().collect(Collectors.toList());
+        }
+        StringBuilder manifest = new StringBuilder();
+        for (Path file : files) {
+            try (InputStream input = Files.newInputStream(file)) {
+                manifest.append(sha256(input)).append("  ").append(relativeName(directory, file)).append('\n');
+            }
+        }
+        return manifestChecksum(manifest);
+    }
+
+    private static String relativeName(Path directory, Path file) {
+        return directory.relativize(file).toString().replace('\\', '/');
+    }
+
+    // Files are listed relative to the directory, so a copy under another name has the same checksum
+    private static String manifestChecksum(StringBuilder manifest) throws IOException {
+        return sha256(new ByteArrayInputStream(manifest.toString().getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private Path extract(String name, Resource[] files) throws IOException {
+        Path target = Paths.get(cacheDir).resolve(name);
+        Path temp = Paths.get(cacheDir).resolve(name + "." + UUID.randomUUID() + ".tmp");
+        Files.createDirectories(temp);
+        for (Resource file : files) {
+            try (InputStream input = file.getInputStream()) {
+                Files.copy(input, temp.resolve(file.getFilename()), StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        // Replace any earlier extraction; checksums are verified on the result either way
+        if (Files.isDirectory(target)) {
+            try (Stream<Path> old = Files.list(target)) {
+                for (Path path : (Iterable<Path>) old::iterator) {
+                    Files.deleteIfExists(path);
+                }
+            }
+            Files.deleteIfExists(target);
+        }
+        Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+        return target;
+    }
+
+    private String verify(String name, InputStream input) throws IOException {
+        String expected = checksums.get(name);
+        if (expected == null && requireChecksums) {
+            throw new IOException("No checksum listed for model artefact '" + name + "'");
+        }
+        String actual = sha256(input);
+        if (expected == null) {
+            logger.warn("Model artefact '{}' has no checksum entry, loading unverified", name);
+        } else if (!expected.equalsIgnoreCase(actual)) {
+            throw new IOException("Checksum mismatch for model artefact '" + name + "': expected "
+                + expected + ", got " + actual);
+        }
+        return actual;
+    }
+
+    private void readChecksums(InputStream input) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+        String line;
+        while ((line = reader.readLine()) != null) {
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            String[] parts = line.split("\\s+", 2);
+            if (parts.length == 2) {
+                // sha256sum marks binary mode with a leading '*'
+                String path = parts[1].startsWith("*") ? parts[1].substring(1) : parts[1];
+                checksums.put(path.replace('\\', '/'), parts[0]);
+            }
+        }
+    }
+
+    private Path localPath(String relative) {
+        return modelsDir.isEmpty() ? null : Paths.get(modelsDir).resolve(relative);
+    }
+
+    /**
+     * A resolved directory artefact and the SHA-256 over all its files' checksums
+     */
+    public static final class ModelArtifact {
+        private final Path path;
+        private final String checksum;
+
+        ModelArtifact(Path path, String checksum) {
+            this.path = path;
+            this.checksum = checksum;
+        }
+
+        public Path getPath() { return path; }
+        public String getChecksum() { return checksum; }
+    }
+
+    /**
+     * A resolved single-file artefact and its SHA-256
+     */
+    public static final class ModelFile {
+        private final Resource resource;
+        private final String checksum;
+
+        ModelFile(Resource resource, String checksum) {
+            this.resource = resource;
+            this.checksum = checksum;
+        }
+
+        public Resource getResource() { return resource; }
+        public String getChecksum() { return checksum; }
+    }
+
+    static String sha256(InputStream input) throws IOException {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] buffer = new byte[1 << 16];
+            int read;
+            while ((read = input.read(buffer)) > 0) {
+                digest.update(buffer, 0, read);
+            }
+            StringBuilder hex = new StringBuilder();
+            for (byte b : digest.digest()) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package com.nourishcare.visionservice.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.GradientPaint;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Startup warm-up of the YOLO and MiniLM models and the image paths around them.
+ * Synthetic inferences at representative sizes run on a background thread once the application
+ * has started; until they finish this indicator reports DOWN, which keeps the instance out of the
+ * readiness group and, through the readiness-based Eureka health check, out of the registry.
+ */
+@Service
+public class ModelWarmupService implements HealthIndicator {
+
+    private static final Logger logger = LoggerFactory.getLogger(ModelWarmupService.class);
+
+    @Autowired
+    private YoloFoodDetectionService yoloFoodDetectionService;
+
+    @Autowired
+    private SemanticMatchingService semanticMatchingService;
+
+    @Autowired
+    private ImageIngestionService imageIngestionService;
+
+    @Value("${vision.warmup.enabled:true}")
+    private boolean enabled;
+
+    @Value("${vision.warmup.iterations:3}")
+    private int iterations;
+
+    // Synthetic upload sizes (WIDTHxHEIGHT), e.g. a small web image and a typical phone photo
+    @Value("${vision.warmup.image-sizes:640x480,1600x1200}")
+    private String imageSizeList;
+
+    @Value("${vision.upload.max-dimension:1024}")
+    private int uploadMaxDimension;
+
+    @Value("${vision.upload.jpeg-quality:0.85}")
+    private float uploadJpegQuality;
+
+    private volatile String phase = "pending";
+    private volatile long warmupMillis = -1;
+    private volatile String failure;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void startWarmup() {
+        if (!enabled) {
+            phase = "skipped";
+            logger.info("Model warm-up disabled");
+            return;
+        }
+        Thread thread = new Thread(this::warmUp, "model-warmup");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void warmUp() {
+        long start = System.currentTimeMillis();
+        try {
+            phase = "images";
+            List<BufferedImage> images = new ArrayList<>();
+            for (String size : imageSizeList.split(",")) {
+                String[] dimensions = size.trim().toLowerCase().split("x");
+                if (dimensions.length == 2) {
+                    images.add(syntheticImage(Integer.parseInt(dimensions[0].trim()), Integer.parseInt(dimensions[1].trim())));
+                }
+            }
+            warmUpImagePaths(images);
+
+            phase = "yolo";
+            long yoloStart = System.currentTimeMillis();
+            yoloFoodDetectionService.warmUp(images, iterations);
+            logger.info("🔥 YOLO warm-up: {} iterations over {} images in {}ms",
+                       iterations, images.size(), System.currentTimeMillis() - yoloStart);
+
+            phase = "embeddings";
+            long embeddingStart = System.currentTimeMillis();
+            semanticMatchingService.warmUp(iterations);
+            logger.info("🔥 Embedding warm-up: {} iterations in {}ms",
+                       iterations, System.currentTimeMillis() - embeddingStart);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            failure = "interrupted";
+        } catch (Exception e) {
+            // The models loaded at startup; a failed warm-up only means the first requests are slower
+            failure = e.getMessage();
+            logger.error("❌ Model warm-up failed, accepting traffic anyway: {}", e.getMessage(), e);
+        }
+        warmupMillis = System.currentTimeMillis() - start;
+        phase = "done";
+        logger.info("✅ Model warm-up finished in {}ms, instance ready for traffic", warmupMillis);
+    }
+
+    /**
+     * Decode and Vision upload re-encoding of the synthetic images, as JPEG uploads
+     */
+    private void warmUpImagePaths(List<BufferedImage> images) throws IOException {
+        for (BufferedImage image : images) {
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            ImageIO.write(image, "jpeg", output);
+            byte[] bytes = output.toByteArray();
+            for (int i = 0; i < iterations; i++) {
+                imageIngestionService.probe(bytes);
+                imageIngestionService.decode(bytes, yoloFoodDetectionService.getInputSize());
+                imageIngestionService.encodeForUpload(bytes, uploadMaxDimension, uploadJpegQuality);
+            }
+        }
+    }
+
+    /**
+     * Gradient with coloured blobs and noise, so inference sees textured, photo-like content
+     */
+    static BufferedImage syntheticImage(int width, int height) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_3BYTE_BGR);
+        Graphics2D graphics = image.createGraphics();
+        Random random = new Random(width * 31L + height);
+        try {
+            graphics.setPaint(new GradientPaint(0, 0, new Color(235, 225, 210), width, height, new Color(120, 90, 60)));
+            graphics.fillRect(0, 0, width, height);
+            for (int i = 0; i < 12; i++) {
+                graphics.setColor(new Color(random.nextInt(256), random.nextInt(256), random.nextInt(256)));
+                int size = Math.max(8, Math.min(width, height) / (3 + random.nextInt(6)));
+                graphics.fillOval(random.nextInt(width), random.nextInt(height), size, size);
+            }
+        } finally {
+            graphics.dispose();
+        }
+        for (int i = 0; i < width * height / 50; i++) {
+            image.setRGB(random.nextInt(width), random.nextInt(height), random.nextInt(0xFFFFFF));
+        }
+        return image;
+    }
+
+    public boolean isReady() {
+        return "done".equals(phase) || "skipped".equals(phase);
+    }
+
+    @Override
+    public Health health() {
+        Health.Builder builder = isReady() ? Health.up() : Health.down();
+        builder.withDetail("phase", phase);
+        if (warmupMillis >= 0) {
+            builder.withDetail("warmupMillis", warmupMillis);
+        }
+        if (failure != null) {
+            builder.withDetail("failure", failure);
+        }
+        return builder.build();
+    }
+}
@@ -0,0 +1,89 @@
+package com.nourishcare.visionservice.service;
+
+import java.awt.image.BufferedImage;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Image hashing helpers for content-addressed caching.
+ * SHA-256 identifies byte-identical uploads, the 64-bit difference hash (dHash)
+ * identifies re-encoded or slightly changed photos of the same plate.
+ */
+public final class PerceptualHash {
+
+    private static final int HASH_WIDTH = 9;
+    private static final int HASH_HEIGHT = 8;
+    private static final int SAMPLES_PER_CELL = 8;
+
+    private PerceptualHash() {
+    }
+
+    /**
+     * Hex-encoded SHA-256 of the raw upload bytes
+     */
+    public static String sha256(byte[] bytes) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(bytes);
+            StringBuilder hex = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                hex.append(Character.forDigit((b >> 4) & 0xF, 16));
+                hex.append(Character.forDigit(b & 0xF, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    /**
+     * 64-bit difference hash: the image is reduced to 9x8 grayscale cells and each bit
+     * records whether a cell is brighter than its right-hand neighbour
+     */
+    public static long dHash(BufferedImage image) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        int[] cells = new int[HASH_WIDTH * HASH_HEIGHT];
+
+        // Average a fixed grid of samples per cell; cheap even for 12 MP photos and
+        // far less noisy than interpolating straight down to 9x8
+        for (int cy = 0; cy < HASH_HEIGHT; cy++) {
+            for (int cx = 0; cx < HASH_WIDTH; cx++) {
+                int sum = 0;
+                for (int sy = 0; sy < SAMPLES_PER_CELL; sy++) {
+                    int y = (int) (((cy * SAMPLES_PER_CELL + sy + 0.5) * height) / (HASH_HEIGHT * SAMPLES_PER_CELL));
+                    for (int sx = 0; sx < SAMPLES_PER_CELL; sx++) {
+                        int x = (int) (((cx * SAMPLES_PER_CELL + sx + 0.5) * width) / (HASH_WIDTH * SAMPLES_PER_CELL));
+                        int rgb = image.getRGB(x, y);
+                        // ITU-R BT.601 luma with integer weights
+                        sum += (((rgb >> 16) & 0xFF) * 299 + ((rgb >> 8) & 0xFF) * 587 + (rgb & 0xFF) * 114) / 1000;
+                    }
+                }
+                cells[cy * HASH_WIDTH + cx] = sum;
+            }
+        }
+
+        long hash = 0L;
+        for (int y = 0; y < HASH_HEIGHT; y++) {
+            int row = y * HASH_WIDTH;
+            for (int x = 0; x < HASH_WIDTH - 1; x++) {
+                hash <<= 1;
+                if (cells[row + x] > cells[row + x + 1]) {
+                    hash |= 1L;
+                }
+            }
+        }
+        return hash;
+    }
+
+    public static int hammingDistance(long a, long b) {
+        return Long.bitCount(a ^ b);
+    }
+
+    /**
+     * One of the four 16-bit bands of a hash. Two hashes within Hamming distance 3
+     * always share at least one identical band, which makes near-duplicates indexable.
+     */
+    public static int band(long hash, int index) {
+        return (int) ((hash >>> (index * 16)) & 0xFFFF);
+    }
+}
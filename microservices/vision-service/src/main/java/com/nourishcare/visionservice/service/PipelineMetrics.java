@@ -0,0 +1,126 @@
+package com.nourishcare.visionservice.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-stage latency metrics and request traces for the detection pipeline.
+ * Every stage is recorded in the vision.pipeline.stage timer (tags: stage, path, outcome) and, for
+ * stages returning a collection, the vision.pipeline.stage.items summary; whole requests go to
+ * vision.pipeline.request. Stages running under a {@link PipelineTrace} are also added to it, and the
+ * finished trace is logged as one line: at INFO when the request was slow, else at DEBUG.
+ */
+@Service
+public class PipelineMetrics {
+
+    private static final Logger logger = LoggerFactory.getLogger(PipelineMetrics.class);
+
+    public static final String STAGE_TIMER = "vision.pipeline.stage";
+    public static final String REQUEST_TIMER = "vision.pipeline.request";
+
+    public static final String OUTCOME_SUCCESS = "success";
+    public static final String OUTCOME_EMPTY = "empty";
+    public static final String OUTCOME_ERROR = "error";
+
+    // Stages recorded outside any request (warm-up, background model use)
+    private static final String PATH_NONE = "none";
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    // Requests taking at least this long are logged with their full trace at INFO
+    @Value("${vision.trace.slow-request-ms:2000}")
+    private long slowRequestMs;
+
+    /**
+     * A pipeline stage body
+     */
+    @FunctionalInterface
+    public interface StageCall<T, E extends Exception> {
+        T call() throws E;
+    }
+
+    /**
+     * Time a stage under the current trace's detection path
+     */
+    public <T, E extends Exception> T time(String stage, StageCall<T, E> call) throws E {
+        PipelineTrace trace = PipelineTrace.current();
+        return time(stage, trace != null ? trace.getPath() : PATH_NONE, call);
+    }
+
+    /**
+     * Time a stage under an explicit detection path. An empty Optional or collection counts as an
+     * "empty" outcome, an exception as "error" (and is rethrown).
+     */
+    public <T, E extends Exception> T time(String stage, String path, StageCall<T, E> call) throws E {
+        long start = System.nanoTime();
+        String outcome = OUTCOME_ERROR;
+        try {
+            T result = call.call();
+            outcome = outcomeOf(result);
+            if (result instanceof Collection) {
+                meterRegistry.summary(STAGE_TIMER + ".items", "stage", stage, "path", path)
+                    .record(((Collection<?>) result).size());
+            } else if (result instanceof Map) {
+                meterRegistry.summary(STAGE_TIMER + ".items", "stage", stage, "path", path)
+                    .record(((Map<?, ?>) result).size());
+            }
+            return result;
+        } finally {
+            record(stage, path, outcome, start, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Record a stage that was timed by the caller
+     */
+    public void record(String stage, String path, String outcome, long startNanos, long durationNanos) {
+        meterRegistry.timer(STAGE_TIMER, "stage", stage, "path", path, "outcome", outcome)
+            .record(durationNanos, TimeUnit.NANOSECONDS);
+        PipelineTrace trace = PipelineTrace.current();
+        if (trace != null) {
+            trace.record(stage, path, outcome, startNanos, durationNanos);
+        }
+    }
+
+    /**
+     * Record the whole request under its final path and log its trace
+     */
+    public void finish(PipelineTrace trace, String outcome) {
+        long elapsed = trace.elapsedNanos();
+        Timer.builder(REQUEST_TIMER)
+            .description("Wall time of one detection request")
+            .tags("path", trace.getPath(), "outcome", outcome)
+            .register(meterRegistry)
+            .record(elapsed, TimeUnit.NANOSECONDS);
+
+        if (TimeUnit.NANOSECONDS.toMillis(elapsed) >= slowRequestMs) {
+            logger.info("🐢 Slow detection trace {}: {}", trace.getId(), trace.summary());
+        } else if (logger.isDebugEnabled()) {
+            logger.debug("Detection trace {}: {}", trace.getId(), trace.summary());
+        }
+    }
+
+    private static String outcomeOf(Object result) {
+        if (result instanceof Optional && !((Optional<?>) result).isPresent()) {
+            return OUTCOME_EMPTY;
+        }
+        if (result instanceof Collection && ((Collection<?>) result).isEmpty()) {
+            return OUTCOME_EMPTY;
+        }
+        if (result instanceof Map && ((Map<?, ?>) result).isEmpty()) {
+            return OUTCOME_EMPTY;
+        }
+        return OUTCOME_SUCCESS;
+    }
+}
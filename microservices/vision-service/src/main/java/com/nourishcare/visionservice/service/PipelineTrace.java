@@ -0,0 +1,150 @@
+package com.nourishcare.visionservice.service;
+
+import org.slf4j.MDC;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Timeline of one detection request: every pipeline stage it ran, with its offset from the start
+ * of the request, duration, outcome and thread. The trace is bound to the request thread and can be
+ * bound to worker threads that run part of the request (USDA lookups), so stages record themselves
+ * without the trace being passed around. The current detection path (yolo, vision) is carried
+ * along for stage metrics recorded deep in the pipeline.
+ */
+public final class PipelineTrace {
+
+    private static final ThreadLocal<PipelineTrace> CURRENT = new ThreadLocal<>();
+
+    private static final String MDC_KEY = "traceId";
+
+    private final String id;
+    private final String name;
+    private final long startNanos = System.nanoTime();
+    private final List<Span> spans = new ArrayList<>();
+    private volatile String path;
+
+    private PipelineTrace(String name, String path) {
+        this.id = UUID.randomUUID().toString().substring(0, 8);
+        this.name = name;
+        this.path = path;
+    }
+
+    /**
+     * Start a trace; bind it to the threads working on the request
+     */
+    public static PipelineTrace start(String name, String path) {
+        return new PipelineTrace(name, path);
+    }
+
+    /**
+     * The trace bound to this thread, if any
+     */
+    public static PipelineTrace current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Bind this trace to the calling thread (also as the traceId logging MDC key);
+     * closing the scope restores whatever was bound before
+     */
+    public Scope bind() {
+        PipelineTrace previous = CURRENT.get();
+        CURRENT.set(this);
+        MDC.put(MDC_KEY, id);
+        return () -> {
+            if (previous == null) {
+                CURRENT.remove();
+                MDC.remove(MDC_KEY);
+            } else {
+                CURRENT.set(previous);
+                MDC.put(MDC_KEY, previous.id);
+            }
+        };
+    }
+
+    public String getId() { return id; }
+    public String getPath() { return path; }
+
+    public void setPath(String path) {
+        this.path = path;
+    }
+
+    public long elapsedNanos() {
+        return System.nanoTime() - startNanos;
+    }
+
+    void record(String stage, String path, String outcome, long startNanos, long durationNanos) {
+        Span span = new Span(stage, path, outcome, startNanos - this.startNanos, durationNanos,
+            Thread.currentThread().getName());
+        synchronized (spans) {
+            spans.add(span);
+        }
+    }
+
+    public List<Span> getSpans() {
+        synchronized (spans) {
+            return new ArrayList<>(spans);
+        }
+    }
+
+    /**
+     * One line per request: name, final path, total time, then each stage as
+     * {@code stage@offset+duration(outcome)} in start order
+     */
+    public String summary() {
+        List<Span> ordered = getSpans();
+        ordered.sort((a, b) -> Long.compare(a.offsetNanos, b.offsetNanos));
+        StringBuilder line = new StringBuilder()
+            .append(name).append(" path=").append(path)
+            .append(" total=").append(TimeUnit.NANOSECONDS.toMillis(elapsedNanos())).append("ms");
+        for (Span span : ordered) {
+            line.append(' ').append(span);
+        }
+        return line.toString();
+    }
+
+    /**
+     * Unbinds a trace from a thread
+     */
+    @FunctionalInterface
+    public interface Scope extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+    /**
+     * One timed stage
+     */
+    public static final class Span {
+        private final String stage;
+        private final String path;
+        private final String outcome;
+        private final long offsetNanos;
+        private final long durationNanos;
+        private final String thread;
+
+        Span(String stage, String path, String outcome, long offsetNanos, long durationNanos, String thread) {
+            this.stage = stage;
+            this.path = path;
+            this.outcome = outcome;
+            this.offsetNanos = offsetNanos;
+            this.durationNanos = durationNanos;
+            this.thread = thread;
+        }
+
+        public String getStage() { return stage; }
+        public String getPath() { return path; }
+        public String getOutcome() { return outcome; }
+        public long getOffsetMillis() { return TimeUnit.NANOSECONDS.toMillis(offsetNanos); }
+        public double getDurationMillis() { return durationNanos / 1_000_000.0; }
+        public String getThread() { return thread; }
+
+        @Override
+        public String toString() {
+            return String.format("%s@%d+%.1fms(%s)", stage, getOffsetMillis(), getDurationMillis(), outcome);
+        }
+    }
+}
@@ -1,7 +1,7 @@
 package com.nourishcare.visionservice.service;
 
 import ai.djl.Application;
-import ai.djl.ModelException;
+import ai.djl.huggingface.translator.TextEmbeddingTranslatorFactory;
 import ai.djl.inference.Predictor;
 import ai.djl.repository.zoo.Criteria;
 import ai.djl.repository.zoo.ModelZoo;
@@ -9,43 +9,131 @@ import ai.djl.repository.zoo.ZooModel;
 import ai.djl.translate.TranslateException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 /**
  * DJL Semantic matching service - ONLY uses vector embeddings and cosine similarity
+ * (a dot product, since stored embeddings are L2-normalised)
  */
 @Service
 public class SemanticMatchingService {
     
     private static final Logger logger = LoggerFactory.getLogger(SemanticMatchingService.class);
+
+    public static final String MODEL_URL = "djl://ai.djl.huggingface.pytorch/sentence-transformers/all-MiniLM-L6-v2";
     
+    // Directory name of the exported model (TorchScript .pt plus tokenizer.json) in the models directory or bundle
+    private static final String MODEL_ARTIFACT = "all-MiniLM-L6-v2";
+
+    @Autowired
+    private EmbeddingStore embeddingStore;
+
+    @Autowired
+    private ModelArtifactManager modelArtifactManager;
+
+    @Autowired
+    private PipelineMetrics pipelineMetrics;
+
+    // Concurrent forward passes; each pooled predictor is used by one thread at a time
+    @Value("${vision.semantic.predictor-pool-size:2}")
+    private int predictorPoolSize;
+
+    @Value("${vision.semantic.max-batch-size:32}")
+    private int maxBatchSize;
+
+    // Longest a caller waits for a text another request is embedding before failing
+    @Value("${vision.semantic.coalesce-timeout-ms:30000}")
+    private long coalesceTimeoutMs;
+
     private ZooModel<String, float[]> model;
-    private final Map<String, float[]> embeddingCache = new ConcurrentHashMap<>();
+    private BlockingQueue<Predictor<String, float[]>> predictorPool;
+    private CompletableFuture<Void> loaded;
+    private volatile String modelFingerprint = MODEL_URL;
+    private volatile int dimension;
+
+    // Food-like labels and descriptions of typical lengths, embedded during warm-up only
+    private static final List<String> WARMUP_TEXTS = Arrays.asList(
+        "apple", "banana", "grilled chicken breast", "french fries", "pizza",
+        "Rice, white, long-grain, regular, enriched, cooked",
+        "Bread, whole-wheat, commercially prepared", "Broccoli, raw", "Salmon, Atlantic, farmed, cooked, dry heat",
+        "Cheese, cheddar", "Yogurt, Greek, plain, nonfat", "Pasta, cooked, enriched, without added salt",
+        "Strawberries, raw", "Egg, whole, cooked, scrambled", "Beef, ground, 85% lean meat / 15% fat, patty, cooked, broiled",
+        "Potatoes, baked, flesh and skin, without salt", "Avocados, raw, all commercial varieties", "sushi roll",
+        "Milk, reduced fat, fluid, 2% milkfat, with added vitamin A and vitamin D", "chocolate chip cookie",
+        "Oil, olive, salad or cooking", "Tomatoes, red, ripe, raw, year round average", "pho", "pancakes",
+        "Spinach, raw", "Oranges, raw, all commercial varieties", "hamburger", "Carrots, baby, raw",
+        "Beans, black, mature seeds, cooked, boiled, without salt", "croissant", "Shrimp, cooked", "green salad");
+
+    // Texts currently being embedded, so concurrent callers share one computation
+    private final Map<String, CompletableFuture<float[]>> inFlight = new ConcurrentHashMap<>();
     
     @PostConstruct
     public void initialize() {
+        logger.info("🚀 Initializing DJL Semantic Matching Service...");
+        // Loads on the model loader pool, in parallel with YOLO; callers wait for it
+        loaded = modelArtifactManager.load("minilm", () -> {
+            loadModel();
+            return null;
+        });
+    }
+
+    private void loadModel() {
         try {
-            logger.info("🚀 Initializing DJL Semantic Matching Service...");
-            
-            Criteria<String, float[]> criteria = Criteria.builder()
+            Criteria.Builder<String, float[]> builder = Criteria.builder()
                     .optApplication(Application.NLP.TEXT_EMBEDDING)
                     .setTypes(String.class, float[].class)
-                    .optModelUrls("djl://ai.djl.huggingface.pytorch/sentence-transformers/all-MiniLM-L6-v2")
-                    .optEngine("PyTorch")
-                    .build();
-            
-            model = ModelZoo.loadModel(criteria);
+                    .optEngine("PyTorch");
+
+            // Same model either way: a local copy avoids the model zoo download at every cold start
+            Optional<ModelArtifactManager.ModelArtifact> localModel = modelArtifactManager.resolveDirectory(MODEL_ARTIFACT);
+            if (localModel.isPresent()) {
+                builder.optModelPath(localModel.get().getPath())
+                    .optTranslatorFactory(new TextEmbeddingTranslatorFactory());
+                // Any export can sit under the artefact name, so the files identify the model, not the name
+                modelFingerprint = "sha256:" + localModel.get().getChecksum();
+            } else if (modelArtifactManager.isOffline()) {
+                throw new IllegalStateException("Embedding model '" + MODEL_ARTIFACT
+                    + "' is not in the models directory or bundle, and downloads are disabled");
+            } else {
+                logger.warn("Embedding model '{}' not found locally, downloading {}", MODEL_ARTIFACT, MODEL_URL);
+                builder.optModelUrls(MODEL_URL);
+            }
+
+            model = ModelZoo.loadModel(builder.build());
             logger.info("✅ DJL model loaded successfully");
             
-            // Test with sample
-            float[] test = getEmbedding("apple");
-            logger.info("✅ Model test successful, embedding dimension: {}", test.length);
+            predictorPool = new ArrayBlockingQueue<>(predictorPoolSize);
+            for (int i = 0; i < predictorPoolSize; i++) {
+                predictorPool.add(model.newPredictor());
+            }
+            
+            // Test with sample; the output dimension sizes the embedding store
+            float[] test = predict(Collections.singletonList("apple")).get(0);
+            logger.info("✅ Model test successful, embedding dimension: {}, predictor pool: {}",
+                       test.length, predictorPoolSize);
+            dimension = test.length;
+            embeddingStore.open(test.length, modelFingerprint);
             
         } catch (Exception e) {
             logger.error("❌ Failed to load DJL model: {}", e.getMessage(), e);
@@ -55,40 +143,95 @@ public class SemanticMatchingService {
     
     @PreDestroy
     public void cleanup() {
+        if (predictorPool != null) {
+            Predictor<String, float[]> predictor;
+            while ((predictor = predictorPool.poll()) != null) {
+                predictor.close();
+            }
+        }
         if (model != null) {
             model.close();
             logger.info("🧹 Model resources cleaned up");
         }
     }
     
+    /**
+     * Run synthetic forward passes at batch sizes from 1 to the maximum, plus the scoring kernels,
+     * so PyTorch lazy initialisation, tokenizer setup and JIT compilation happen before real traffic.
+     * Warm-up bypasses the embedding store, and sequential calls rotate through every pooled predictor.
+     */
+    public void warmUp(int iterations) throws TranslateException, InterruptedException {
+        loaded.join();
+        int[] batchSizes = {1, Math.min(8, maxBatchSize), Math.min(maxBatchSize, WARMUP_TEXTS.size())};
+        for (int i = 0; i < iterations; i++) {
+            for (int round = 0; round < predictorPoolSize; round++) {
+                for (int batchSize : batchSizes) {
+                    List<float[]> vectors = predict(WARMUP_TEXTS.subList(0, batchSize));
+                    int dim = vectors.get(0).length;
+                    float[] matrix = new float[vectors.size() * dim];
+                    for (int row = 0; row < vectors.size(); row++) {
+                        System.arraycopy(vectors.get(row), 0, matrix, row * dim, dim);
+                    }
+                    float[] scores = new float[vectors.size()];
+                    VectorKernels.scoreAll(vectors.get(0), matrix, vectors.size(), dim, scores);
+                    VectorKernels.topK(scores, vectors.size(), 5);
+                }
+            }
+        }
+    }
+
     /**
      * Find best USDA match using ONLY vector embeddings and cosine similarity
      */
     public SemanticMatch findBestMatch(String detectedLabel, List<String> usdaCandidates) {
+        List<SemanticMatch> top = findTopK(detectedLabel, usdaCandidates, 1);
+        if (top.isEmpty()) {
+            return new SemanticMatch(null, 0.0, "embeddings");
+        }
+        return top.get(0);
+    }
+
+    /**
+     * Score every candidate against the label and return the k most similar, best first.
+     * Embeddings are unit vectors, so cosine similarity is one dot product per candidate.
+     */
+    public List<SemanticMatch> findTopK(String detectedLabel, List<String> candidates, int k) {
         try {
-            logger.info("🔍 Computing embeddings for '{}' vs {} candidates", detectedLabel, usdaCandidates.size());
-            
-            float[] labelEmbedding = getEmbedding(detectedLabel);
+            logger.debug("Computing embeddings for '{}' vs {} candidates", detectedLabel, candidates.size());
             
-            String bestMatch = null;
-            double bestSimilarity = 0.0;
+            // Label and all uncached candidates are embedded together in one forward pass
+            List<String> texts = new ArrayList<>(candidates.size() + 1);
+            texts.add(detectedLabel);
+            texts.addAll(candidates);
+            Map<String, float[]> embeddings = getEmbeddings(texts);
             
-            for (String candidate : usdaCandidates) {
-                float[] candidateEmbedding = getEmbedding(candidate);
-                double similarity = cosineSimilarity(labelEmbedding, candidateEmbedding);
-                
-                logger.debug("  '{}' → {:.3f}", candidate, similarity);
-                
-                if (similarity > bestSimilarity) {
-                    bestSimilarity = similarity;
-                    bestMatch = candidate;
+            float[] labelEmbedding = embeddings.get(detectedLabel);
+            int dim = labelEmbedding.length;
+            int rows = candidates.size();
+
+            // Candidates packed into one contiguous row-major matrix for the scoring kernel
+            float[] matrix = new float[rows * dim];
+            for (int row = 0; row < rows; row++) {
+                System.arraycopy(embeddings.get(candidates.get(row)), 0, matrix, row * dim, dim);
+            }
+            float[] scores = new float[rows];
+            VectorKernels.scoreAll(labelEmbedding, matrix, rows, dim, scores);
+
+            List<SemanticMatch> matches = new ArrayList<>();
+            for (int index : VectorKernels.topK(scores, rows, k)) {
+                // Only positive similarities count as matches
+                if (scores[index] <= 0f) {
+                    break;
                 }
+                matches.add(new SemanticMatch(candidates.get(index), scores[index], "embeddings"));
             }
             
-            logger.info("🎯 Best match: '{}' → '{}' (cosine: {:.3f})", 
-                       detectedLabel, bestMatch, bestSimilarity);
+            if (!matches.isEmpty()) {
+                logger.debug("Best match: '{}' → '{}' (cosine: {})", detectedLabel,
+                            matches.get(0).getBestMatch(), String.format("%.3f", matches.get(0).getSimilarity()));
+            }
             
-            return new SemanticMatch(bestMatch, bestSimilarity, "embeddings");
+            return matches;
             
         } catch (Exception e) {
             logger.error("❌ Embedding matching failed: {}", e.getMessage(), e);
@@ -97,43 +240,123 @@ public class SemanticMatchingService {
     }
     
     /**
-     * Get vector embedding using DJL model (with caching)
+     * Identity of the loaded model: the model zoo URL, or the checksum of a locally loaded export.
+     * Anything persisted from its embeddings is only valid for the same fingerprint.
      */
-    private float[] getEmbedding(String text) throws TranslateException, ModelException {
-        if (embeddingCache.containsKey(text)) {
-            return embeddingCache.get(text);
-        }
-        
-        try (Predictor<String, float[]> predictor = model.newPredictor()) {
-            float[] embedding = predictor.predict(text);
-            embeddingCache.put(text, embedding);
-            return embedding;
+    public String getModelFingerprint() {
+        loaded.join();
+        return modelFingerprint;
+    }
+
+    /**
+     * Output dimension of the loaded model
+     */
+    public int getDimension() {
+        loaded.join();
+        return dimension;
+    }
+
+    /**
+     * Completes once the model has loaded, exceptionally if loading failed; lets startup code act on
+     * the model without blocking context initialisation on it
+     */
+    public CompletableFuture<Void> whenLoaded() {
+        return loaded.thenApply(ignored -> null);
+    }
+
+    /**
+     * L2-normalised embedding of one text, served from the embedding store when cached
+     */
+    public float[] embed(String text) {
+        try {
+            return getEmbeddings(Collections.singletonList(text)).get(text);
+        } catch (TranslateException e) {
+            throw new RuntimeException("Embedding failed for '" + text + "'", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while embedding '" + text + "'", e);
         }
     }
-    
+
     /**
-     * Calculate cosine similarity between two vectors
+     * Get L2-normalised embeddings for the given texts.
+     * Cached texts come from the embedding store; texts another request is already embedding are
+     * awaited rather than recomputed; the rest are embedded here in batched forward passes.
      */
-    private double cosineSimilarity(float[] a, float[] b) {
-        if (a.length != b.length) {
-            throw new IllegalArgumentException("Vector dimensions must match");
+    private Map<String, float[]> getEmbeddings(Collection<String> texts)
+            throws TranslateException, InterruptedException {
+        loaded.join();
+        Map<String, float[]> embeddings = new HashMap<>();
+        List<String> owned = new ArrayList<>();
+        Map<String, CompletableFuture<float[]>> awaited = new HashMap<>();
+
+        for (String text : new LinkedHashSet<>(texts)) {
+            float[] cached = embeddingStore.get(text);
+            if (cached != null) {
+                embeddings.put(text, cached);
+                continue;
+            }
+
+            CompletableFuture<float[]> mine = new CompletableFuture<>();
+            CompletableFuture<float[]> existing = inFlight.putIfAbsent(text, mine);
+            if (existing != null) {
+                awaited.put(text, existing);
+            } else {
+                owned.add(text);
+            }
         }
-        
-        double dotProduct = 0.0;
-        double normA = 0.0;
-        double normB = 0.0;
-        
-        for (int i = 0; i < a.length; i++) {
-            dotProduct += a[i] * b[i];
-            normA += a[i] * a[i];
-            normB += b[i] * b[i];
+
+        if (!owned.isEmpty()) {
+            Throwable failure = null;
+            try {
+                for (int start = 0; start < owned.size(); start += maxBatchSize) {
+                    List<String> batch = owned.subList(start, Math.min(start + maxBatchSize, owned.size()));
+                    List<float[]> vectors = predict(batch);
+                    for (int i = 0; i < batch.size(); i++) {
+                        String text = batch.get(i);
+                        float[] vector = embeddingStore.put(text, vectors.get(i));
+                        embeddings.put(text, vector);
+                        inFlight.remove(text).complete(vector);
+                    }
+                }
+            } catch (Throwable e) {
+                failure = e;
+                throw e;
+            } finally {
+                // Release waiters on anything this call still owns, including after an Error
+                for (String text : owned) {
+                    CompletableFuture<float[]> pending = inFlight.remove(text);
+                    if (pending != null) {
+                        pending.completeExceptionally(failure != null ? failure
+                            : new IllegalStateException("Embedding of '" + text + "' was abandoned"));
+                    }
+                }
+            }
         }
-        
-        if (normA == 0.0 || normB == 0.0) {
-            return 0.0;
+
+        for (Map.Entry<String, CompletableFuture<float[]>> entry : awaited.entrySet()) {
+            try {
+                embeddings.put(entry.getKey(), entry.getValue().get(coalesceTimeoutMs, TimeUnit.MILLISECONDS));
+            } catch (ExecutionException e) {
+                throw new TranslateException("Coalesced embedding failed for '" + entry.getKey() + "'", e.getCause());
+            } catch (TimeoutException e) {
+                throw new TranslateException("Coalesced embedding of '" + entry.getKey() + "' did not finish within "
+                    + coalesceTimeoutMs + "ms", e);
+            }
+        }
+        return embeddings;
+    }
+
+    /**
+     * One batched forward pass on a pooled predictor
+     */
+    private List<float[]> predict(List<String> texts) throws TranslateException, InterruptedException {
+        Predictor<String, float[]> predictor = predictorPool.take();
+        try {
+            return pipelineMetrics.time("embedding", () -> predictor.batchPredict(texts));
+        } finally {
+            predictorPool.add(predictor);
         }
-        
-        return dotProduct / (Math.sqrt(normA) * Math.sqrt(normB));
     }
     
     /**
@@ -0,0 +1,31 @@
+package com.nourishcare.visionservice.service;
+
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+
+/**
+ * Single buffered copy of an uploaded image.
+ * The multipart body is read exactly once, so every pipeline stage shares the same bytes.
+ */
+public class UploadedImage {
+
+    private final byte[] bytes;
+    private final String originalFilename;
+    private final String contentType;
+
+    public UploadedImage(byte[] bytes, String originalFilename, String contentType) {
+        this.bytes = bytes;
+        this.originalFilename = originalFilename;
+        this.contentType = contentType;
+    }
+
+    public static UploadedImage from(MultipartFile file) throws IOException {
+        return new UploadedImage(file.getBytes(), file.getOriginalFilename(), file.getContentType());
+    }
+
+    public byte[] getBytes() { return bytes; }
+    public String getOriginalFilename() { return originalFilename; }
+    public String getContentType() { return contentType; }
+    public long getSize() { return bytes.length; }
+}
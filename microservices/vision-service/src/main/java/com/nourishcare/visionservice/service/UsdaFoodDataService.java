@@ -3,16 +3,29 @@ package com.nourishcare.visionservice.service;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nourishcare.visionservice.usda.FdcIndexFormat;
+import com.nourishcare.visionservice.usda.OfflineFdcIndex;
+import com.nourishcare.visionservice.usda.UsdaHttpClient;
+import com.nourishcare.visionservice.usda.UsdaLookupCache;
+import com.nourishcare.visionservice.usda.UsdaNutrientParser;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestTemplate;
 import org.springframework.web.util.UriComponentsBuilder;
 
+import javax.annotation.PostConstruct;
+import java.io.IOException;
+import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
 
 @Service
 public class UsdaFoodDataService {
@@ -22,55 +35,105 @@ public class UsdaFoodDataService {
     
     @Value("${USDA_API_KEY}")
     private String usdaApiKey;
+
+    // "api" queries FoodData Central over HTTP, "offline" serves everything from the local index
+    @Value("${usda.mode:api}")
+    private String mode;
+
+    @Value("${usda.offline.index-path:}")
+    private String offlineIndexPath;
     
-    private final RestTemplate restTemplate = new RestTemplate();
+    @Autowired
+    private UsdaHttpClient usdaHttpClient;
+
     private final ObjectMapper objectMapper = new ObjectMapper();
 
+    private OfflineFdcIndex offlineIndex;
+
+    // Lookup caches for API mode; USDA data changes rarely and traffic concentrates on common foods
+    @Value("${usda.cache.enabled:true}")
+    private boolean cacheEnabled;
+
+    @Value("${usda.cache.max-entries:2000}")
+    private int cacheMaxEntries;
+
+    @Value("${usda.cache.ttl-minutes:1440}")
+    private long cacheTtlMinutes;
+
+    @Value("${usda.cache.negative-ttl-minutes:60}")
+    private long cacheNegativeTtlMinutes;
+
+    // How long past expiry an entry is still served while it is refreshed in the background
+    @Value("${usda.cache.stale-minutes:10080}")
+    private long cacheStaleMinutes;
+
+    @Autowired
+    @Qualifier("usdaRefreshExecutor")
+    private ExecutorService usdaRefreshExecutor;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private UsdaLookupCache<String, List<UsdaFood>> searchCache;
+    private UsdaLookupCache<Integer, float[]> nutritionCache;
+
+    @PostConstruct
+    public void initialize() throws IOException {
+        if (!"offline".equalsIgnoreCase(mode)) {
+            searchCache = new UsdaLookupCache<>("search", cacheMaxEntries, TimeUnit.MINUTES.toMillis(cacheTtlMinutes),
+                TimeUnit.MINUTES.toMillis(cacheNegativeTtlMinutes), TimeUnit.MINUTES.toMillis(cacheStaleMinutes),
+                usdaRefreshExecutor, meterRegistry);
+            nutritionCache = new UsdaLookupCache<>("nutrition", cacheMaxEntries, TimeUnit.MINUTES.toMillis(cacheTtlMinutes),
+                TimeUnit.MINUTES.toMillis(cacheNegativeTtlMinutes), TimeUnit.MINUTES.toMillis(cacheStaleMinutes),
+                usdaRefreshExecutor, meterRegistry);
+            logger.info("✅ USDA lookups use the FoodData Central API (cache: {}, ttl: {}min)",
+                       cacheEnabled ? cacheMaxEntries + " entries" : "disabled", cacheTtlMinutes);
+            return;
+        }
+        if (offlineIndexPath == null || offlineIndexPath.isEmpty()) {
+            throw new IllegalStateException("usda.mode=offline requires usda.offline.index-path");
+        }
+
+        long start = System.currentTimeMillis();
+        offlineIndex = OfflineFdcIndex.open(Paths.get(offlineIndexPath));
+        logger.info("✅ USDA offline index loaded: {} foods from {} in {}ms",
+                   offlineIndex.size(), offlineIndexPath, System.currentTimeMillis() - start);
+    }
+
     /**
      * Search for food item in USDA database and return nutrition info
      */
     public Optional<UsdaFoodItem> searchFoodItem(String foodName) {
         try {
-            logger.info("    USDA Search: '{}'", foodName);
+            logger.debug("    USDA Search: '{}'", foodName);
             
             // Clean and format the food name for search
             String cleanedFoodName = cleanFoodName(foodName);
             if (!foodName.equals(cleanedFoodName)) {
-                logger.info("    Cleaned query: '{}' → '{}'", foodName, cleanedFoodName);
+                logger.debug("    Cleaned query: '{}' → '{}'", foodName, cleanedFoodName);
+            }
+
+            if (offlineIndex != null) {
+                UsdaFood bestFood = findBestFoodMatch(searchOffline(cleanedFoodName, 25), cleanedFoodName);
+                return bestFood != null ? getFoodNutrition(bestFood.fdcId, bestFood.description) : Optional.empty();
             }
             
-            // Build the search URL with better parameters
-            String searchUrl = UriComponentsBuilder
-                .fromHttpUrl(USDA_API_BASE_URL + "/foods/search")
-                .queryParam("api_key", usdaApiKey)
-                .queryParam("query", cleanedFoodName)
-                .queryParam("dataType", "Foundation,Survey (FNDDS),SR Legacy")
-                .queryParam("pageSize", 25)
-                .queryParam("pageNumber", 1)
-                .queryParam("sortBy", "dataType.keyword")
-                .queryParam("sortOrder", "asc")
-                .build()
-                .toUriString();
-
-            logger.debug("    USDA API URL: {}", searchUrl);
-            
-            // Make the API call
-            UsdaSearchResponse response = restTemplate.getForObject(searchUrl, UsdaSearchResponse.class);
+            List<UsdaFood> foods = searchApi(cleanedFoodName, 25);
             
-            if (response != null && response.foods != null && !response.foods.isEmpty()) {
-                logger.info("    USDA returned {} results", response.foods.size());
+            if (!foods.isEmpty()) {
+                logger.debug("    USDA returned {} results", foods.size());
                 
                 // Log top 3 results for debugging
-                for (int i = 0; i < Math.min(3, response.foods.size()); i++) {
-                    UsdaFood food = response.foods.get(i);
-                    logger.info("      {}. {} ({})", i + 1, food.description, food.dataType);
+                for (int i = 0; i < Math.min(3, foods.size()); i++) {
+                    UsdaFood food = foods.get(i);
+                    logger.debug("      {}. {} ({})", i + 1, food.description, food.dataType);
                 }
                 
                 // Find the best match (prefer Foundation and SR Legacy data)
-                UsdaFood bestFood = findBestFoodMatch(response.foods, cleanedFoodName);
+                UsdaFood bestFood = findBestFoodMatch(foods, cleanedFoodName);
                 
                 if (bestFood != null) {
-                    logger.info("    Selected best match: '{}' (ID: {}, Type: {})", 
+                    logger.debug("    Selected best match: '{}' (ID: {}, Type: {})", 
                                bestFood.description, bestFood.fdcId, bestFood.dataType);
                     
                     // Get detailed nutrition information
@@ -100,30 +163,29 @@ public class UsdaFoodDataService {
             
             // Clean and format the food name for search
             String cleanedFoodName = cleanFoodName(foodName);
+
+            if (offlineIndex != null) {
+                List<UsdaFoodCandidate> results = new ArrayList<>();
+                for (OfflineFdcIndex.Match match : offlineIndex.search(cleanedFoodName, maxResults)) {
+                    UsdaFoodCandidate candidate = new UsdaFoodCandidate();
+                    candidate.fdcId = match.getFdcId();
+                    candidate.description = match.getDescription();
+                    candidate.dataType = match.getDataType();
+                    results.add(candidate);
+                }
+                logger.debug("    Offline index returned {} candidates for '{}'", results.size(), foodName);
+                return results;
+            }
             
-            // Build the search URL with better parameters
-            String searchUrl = UriComponentsBuilder
-                .fromHttpUrl(USDA_API_BASE_URL + "/foods/search")
-                .queryParam("api_key", usdaApiKey)
-                .queryParam("query", cleanedFoodName)
-                .queryParam("dataType", "Foundation,Survey (FNDDS),SR Legacy")
-                .queryParam("pageSize", Math.min(maxResults * 2, 50)) // Get more to filter
-                .queryParam("pageNumber", 1)
-                .queryParam("sortBy", "dataType.keyword")
-                .queryParam("sortOrder", "asc")
-                .build()
-                .toUriString();
-
-            // Make the API request
-            UsdaSearchResponse response = restTemplate.getForObject(searchUrl, UsdaSearchResponse.class);
+            List<UsdaFood> foods = searchApi(cleanedFoodName, Math.min(maxResults * 2, 50)); // Get more to filter
             
-            if (response != null && response.foods != null && !response.foods.isEmpty()) {
-                logger.debug("    Found {} USDA candidates for '{}'", response.foods.size(), foodName);
+            if (!foods.isEmpty()) {
+                logger.debug("    Found {} USDA candidates for '{}'", foods.size(), foodName);
                 
                 List<UsdaFoodCandidate> results = new ArrayList<>();
                 
                 // Convert to candidate objects (no nutrition data yet)
-                for (UsdaFood food : response.foods) {
+                for (UsdaFood food : foods) {
                     if (results.size() >= maxResults) break;
                     
                     UsdaFoodCandidate candidate = new UsdaFoodCandidate();
@@ -159,29 +221,15 @@ public class UsdaFoodDataService {
             // Clean and format the food name for search
             String cleanedFoodName = cleanFoodName(foodName);
             
-            // Build the search URL with better parameters
-            String searchUrl = UriComponentsBuilder
-                .fromHttpUrl(USDA_API_BASE_URL + "/foods/search")
-                .queryParam("api_key", usdaApiKey)
-                .queryParam("query", cleanedFoodName)
-                .queryParam("dataType", "Foundation,Survey (FNDDS),SR Legacy")
-                .queryParam("pageSize", Math.min(maxResults * 2, 50)) // Get more to filter
-                .queryParam("pageNumber", 1)
-                .queryParam("sortBy", "dataType.keyword")
-                .queryParam("sortOrder", "asc")
-                .build()
-                .toUriString();
-
-            // Make the API request
-            UsdaSearchResponse response = restTemplate.getForObject(searchUrl, UsdaSearchResponse.class);
+            List<UsdaFood> foods = searchApi(cleanedFoodName, Math.min(maxResults * 2, 50)); // Get more to filter
             
-            if (response != null && response.foods != null && !response.foods.isEmpty()) {
-                logger.debug("    Found {} USDA candidates for '{}'", response.foods.size(), foodName);
+            if (!foods.isEmpty()) {
+                logger.debug("    Found {} USDA candidates for '{}'", foods.size(), foodName);
                 
                 List<UsdaFoodItem> results = new ArrayList<>();
                 
                 // Convert and filter the results
-                for (UsdaFood food : response.foods) {
+                for (UsdaFood food : foods) {
                     if (results.size() >= maxResults) break;
                     
                     Optional<UsdaFoodItem> itemOpt = getFoodNutrition(food.fdcId, food.description);
@@ -273,39 +321,20 @@ public class UsdaFoodDataService {
      * Get detailed nutrition information for a specific food item
      */
     private Optional<UsdaFoodItem> getFoodNutrition(int fdcId, String description) {
+        if (offlineIndex != null) {
+            return getOfflineNutrition(fdcId, description);
+        }
+
         try {
-            String nutritionUrl = UriComponentsBuilder
-                .fromHttpUrl(USDA_API_BASE_URL + "/food/" + fdcId)
-                .queryParam("api_key", usdaApiKey)
-                .queryParam("format", "abridged")
-                .queryParam("nutrients", "208,203,204,205,291,269") // Energy, Protein, Fat, Carbs, Fiber, Sugar
-                .build()
-                .toUriString();
-
-            logger.debug("Getting nutrition data from: {}", nutritionUrl);
-            
-            // Get raw response first for debugging
-            String rawResponse = restTemplate.getForObject(nutritionUrl, String.class);
-            logger.debug("Raw USDA API response: {}", rawResponse);
-            
-            UsdaFoodDetail foodDetail = restTemplate.getForObject(nutritionUrl, UsdaFoodDetail.class);
-            
-            if (foodDetail != null) {
-                // Log the parsed response structure
-                logger.debug("Parsed USDA response - Description: {}, Nutrients count: {}", 
-                           foodDetail.description, 
-                           foodDetail.foodNutrients != null ? foodDetail.foodNutrients.size() : 0);
-                
-                double caloriesPerHundredGrams = extractCalories(foodDetail);
-                
-                UsdaFoodItem foodItem = new UsdaFoodItem();
-                foodItem.fdcId = fdcId;
-                foodItem.description = description;
-                foodItem.caloriesPerHundredGrams = caloriesPerHundredGrams;
-                
-                logger.info("Retrieved nutrition data: {} - {} kcal/100g", description, caloriesPerHundredGrams);
-                return Optional.of(foodItem);
+            float[] nutrients = fetchNutrients(fdcId);
+            if (nutrients == null) {
+                logger.warn("FDC ID {} not found in USDA FoodData Central", fdcId);
+                return Optional.empty();
             }
+            UsdaFoodItem foodItem = toFoodItem(fdcId, description, nutrients);
+
+            logger.debug("Retrieved nutrition data: {} - {} kcal/100g", description, foodItem.caloriesPerHundredGrams);
+            return Optional.of(foodItem);
             
         } catch (Exception e) {
             logger.error("Error getting nutrition data for FDC ID {}: {}", fdcId, e.getMessage());
@@ -315,62 +344,119 @@ public class UsdaFoodDataService {
     }
 
     /**
-     * Extract calorie information from USDA food detail response
+     * API search results, through the lookup cache; empty when USDA has no match
      */
-    private double extractCalories(UsdaFoodDetail foodDetail) {
-        if (foodDetail.foodNutrients != null) {
-            logger.debug("    Examining {} nutrients for calorie data", foodDetail.foodNutrients.size());
-            
-            // Log all available nutrients for debugging
-            for (UsdaFoodNutrient nutrient : foodDetail.foodNutrients) {
-                if (nutrient.nutrient != null) {
-                    logger.debug("    Available nutrient: Number={}, ID={}, Name='{}', Amount={}, Unit='{}'", 
-                               nutrient.nutrient.number,
-                               nutrient.nutrient.id, 
-                               nutrient.nutrient.name,
-                               nutrient.amount,
-                               nutrient.nutrient.unitName);
-                }
-            }
-            
-            // Look for Energy (kcal) - nutrient number 208 (not id!)
-            for (UsdaFoodNutrient nutrient : foodDetail.foodNutrients) {
-                if (nutrient.nutrient != null && 
-                    nutrient.nutrient.number != null &&
-                    nutrient.nutrient.number.equals("208") &&
-                    nutrient.amount != null) {
-                    
-                    String nutrientName = nutrient.nutrient.name != null ? nutrient.nutrient.name : "Energy";
-                    String unit = nutrient.nutrient.unitName != null ? nutrient.nutrient.unitName : "kcal";
-                    
-                    logger.info("    ✓ Calories found: {} {} per 100g (nutrient: {})", 
-                               nutrient.amount, unit, nutrientName);
-                    return nutrient.amount;
-                }
-            }
-            
-            // Try alternative energy nutrient IDs or names
-            for (UsdaFoodNutrient nutrient : foodDetail.foodNutrients) {
-                if (nutrient.nutrient != null && nutrient.amount != null) {
-                    String nutrientName = nutrient.nutrient.name != null ? nutrient.nutrient.name.toLowerCase() : "";
-                    
-                    // Check for energy by name
-                    if (nutrientName.contains("energy") || nutrientName.contains("calorie")) {
-                        logger.info("    ✓ Energy found by name: {} {} per 100g (nutrient: {}, ID: {})", 
-                                   nutrient.amount, 
-                                   nutrient.nutrient.unitName,
-                                   nutrient.nutrient.name,
-                                   nutrient.nutrient.id);
-                        return nutrient.amount;
-                    }
-                }
-            }
+    private List<UsdaFood> searchApi(String cleanedFoodName, int pageSize) throws IOException {
+        String key = cleanedFoodName + "|" + pageSize;
+        List<UsdaFood> foods = cacheEnabled ? searchCache.get(key, k -> loadSearch(cleanedFoodName, pageSize))
+                                            : loadSearch(cleanedFoodName, pageSize);
+        return foods != null ? foods : Collections.emptyList();
+    }
+
+    /**
+     * Nutrients per 100 g in FdcIndexFormat slot order through the lookup cache, or null if USDA has no such food
+     */
+    private float[] fetchNutrients(int fdcId) throws IOException {
+        return cacheEnabled ? nutritionCache.get(fdcId, this::loadNutrients) : loadNutrients(fdcId);
+    }
+
+    /**
+     * One search call to USDA; null when nothing matched, so the cache records a negative
+     */
+    private List<UsdaFood> loadSearch(String cleanedFoodName, int pageSize) throws IOException {
+        String searchUrl = UriComponentsBuilder
+            .fromHttpUrl(USDA_API_BASE_URL + "/foods/search")
+            .queryParam("api_key", usdaApiKey)
+            .queryParam("query", cleanedFoodName)
+            .queryParam("dataType", "Foundation,Survey (FNDDS),SR Legacy")
+            .queryParam("pageSize", pageSize)
+            .queryParam("pageNumber", 1)
+            .queryParam("sortBy", "dataType.keyword")
+            .queryParam("sortOrder", "asc")
+            .build()
+            .toUriString();
+
+        UsdaSearchResponse response = usdaHttpClient.get("search", searchUrl,
+            body -> objectMapper.readValue(body, UsdaSearchResponse.class));
+        if (response == null || response.foods == null || response.foods.isEmpty()) {
+            return null;
         }
-        
-        // If no calorie data found, return a reasonable estimate based on food type
-        double estimate = estimateCaloriesFromDescription(foodDetail.description);
-        logger.warn("    ⚠ No calorie data found, using estimate: {} kcal/100g", String.format("%.1f", estimate));
-        return estimate;
+        // Shared between callers through the cache
+        return Collections.unmodifiableList(response.foods);
+    }
+
+    /**
+     * One nutrition fetch, streamed straight into the nutrients we keep; null when USDA has no such food
+     */
+    private float[] loadNutrients(int fdcId) throws IOException {
+        String nutritionUrl = UriComponentsBuilder
+            .fromHttpUrl(USDA_API_BASE_URL + "/food/" + fdcId)
+            .queryParam("api_key", usdaApiKey)
+            .queryParam("format", "abridged")
+            .queryParam("nutrients", String.join(",", UsdaNutrientParser.NUTRIENT_NUMBERS)) // Energy, Protein, Fat, Carbs, Fiber, Sugar
+            .build()
+            .toUriString();
+
+        logger.debug("Getting nutrition data for FDC ID {}", fdcId);
+        try {
+            return usdaHttpClient.get("food", nutritionUrl, UsdaNutrientParser::parse).getNutrients();
+        } catch (UsdaHttpClient.NotFoundException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Nutrition lookup against the memory-mapped offline index
+     */
+    private Optional<UsdaFoodItem> getOfflineNutrition(int fdcId, String description) {
+        float[] nutrients = offlineIndex.nutrients(fdcId);
+        if (nutrients == null) {
+            logger.warn("FDC ID {} not present in offline index", fdcId);
+            return Optional.empty();
+        }
+        return Optional.of(toFoodItem(fdcId, description, nutrients));
+    }
+
+    /**
+     * Build the result from nutrients in FdcIndexFormat slot order, estimating calories when absent
+     */
+    private UsdaFoodItem toFoodItem(int fdcId, String description, float[] nutrients) {
+        UsdaFoodItem foodItem = new UsdaFoodItem();
+        foodItem.fdcId = fdcId;
+        foodItem.description = description;
+        float calories = nutrients[FdcIndexFormat.ENERGY_KCAL];
+        if (Float.isNaN(calories)) {
+            foodItem.caloriesPerHundredGrams = estimateCaloriesFromDescription(description);
+            logger.warn("    ⚠ No calorie data found, using estimate: {} kcal/100g",
+                       String.format("%.1f", foodItem.caloriesPerHundredGrams));
+        } else {
+            foodItem.caloriesPerHundredGrams = calories;
+        }
+        foodItem.proteinPerHundredGrams = nutrientOrNull(nutrients, FdcIndexFormat.PROTEIN);
+        foodItem.fatPerHundredGrams = nutrientOrNull(nutrients, FdcIndexFormat.FAT);
+        foodItem.carbohydratePerHundredGrams = nutrientOrNull(nutrients, FdcIndexFormat.CARBOHYDRATE);
+        foodItem.fiberPerHundredGrams = nutrientOrNull(nutrients, FdcIndexFormat.FIBER);
+        foodItem.sugarsPerHundredGrams = nutrientOrNull(nutrients, FdcIndexFormat.SUGARS);
+        return foodItem;
+    }
+
+    private static Double nutrientOrNull(float[] nutrients, int slot) {
+        return Float.isNaN(nutrients[slot]) ? null : (double) nutrients[slot];
+    }
+
+    /**
+     * Offline search results in the shape of the API search response
+     */
+    private List<UsdaFood> searchOffline(String cleanedFoodName, int maxResults) {
+        List<UsdaFood> foods = new ArrayList<>();
+        for (OfflineFdcIndex.Match match : offlineIndex.search(cleanedFoodName, maxResults)) {
+            UsdaFood food = new UsdaFood();
+            food.fdcId = match.getFdcId();
+            food.description = match.getDescription();
+            food.dataType = match.getDataType();
+            foods.add(food);
+        }
+        return foods;
     }
 
     /**
@@ -478,42 +564,6 @@ public class UsdaFoodDataService {
         public String dataType;
     }
 
-    @JsonIgnoreProperties(ignoreUnknown = true)
-    public static class UsdaFoodDetail {
-        @JsonProperty("fdcId")
-        public Integer fdcId;
-        
-        @JsonProperty("description")
-        public String description;
-        
-        @JsonProperty("foodNutrients")
-        public List<UsdaFoodNutrient> foodNutrients;
-    }
-
-    @JsonIgnoreProperties(ignoreUnknown = true)
-    public static class UsdaFoodNutrient {
-        @JsonProperty("nutrient")
-        public UsdaNutrient nutrient;
-        
-        @JsonProperty("amount")
-        public Double amount;
-    }
-
-    @JsonIgnoreProperties(ignoreUnknown = true)
-    public static class UsdaNutrient {
-        @JsonProperty("id")
-        public Integer id;
-        
-        @JsonProperty("number")
-        public String number;
-        
-        @JsonProperty("name")
-        public String name;
-        
-        @JsonProperty("unitName")
-        public String unitName;
-    }
-
     // Result DTOs for internal use
     public static class UsdaFoodCandidate {
         public int fdcId;
@@ -525,5 +575,11 @@ public class UsdaFoodDataService {
         public int fdcId;
         public String description;
         public double caloriesPerHundredGrams;
+        // Macronutrients per 100 g; null when unknown
+        public Double proteinPerHundredGrams;
+        public Double fatPerHundredGrams;
+        public Double carbohydratePerHundredGrams;
+        public Double fiberPerHundredGrams;
+        public Double sugarsPerHundredGrams;
     }
 }
\ No newline at end of file
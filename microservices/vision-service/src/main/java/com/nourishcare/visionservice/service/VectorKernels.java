@@ -0,0 +1,149 @@
+package com.nourishcare.visionservice.service;
+
+/**
+ * Similarity kernels for L2-normalised float vectors, where cosine similarity is a plain dot product.
+ * Loops are unrolled with independent accumulators so the JIT can keep several multiply-adds in
+ * flight, and the matrix kernel scores four rows per pass so each query element is loaded once per block.
+ */
+public final class VectorKernels {
+
+    private VectorKernels() {
+    }
+
+    /**
+     * Dot product of two equal-length vectors
+     */
+    public static float dot(float[] a, float[] b) {
+        if (a.length != b.length) {
+            throw new IllegalArgumentException("Vector dimensions must match");
+        }
+        return dot(a, b, 0, a.length);
+    }
+
+    /**
+     * Dot product of the query with dim floats of the matrix starting at offset
+     */
+    public static float dot(float[] query, float[] matrix, int offset, int dim) {
+        float s0 = 0f;
+        float s1 = 0f;
+        float s2 = 0f;
+        float s3 = 0f;
+        int i = 0;
+        for (int end = dim - 3; i < end; i += 4) {
+            s0 += query[i] * matrix[offset + i];
+            s1 += query[i + 1] * matrix[offset + i + 1];
+            s2 += query[i + 2] * matrix[offset + i + 2];
+            s3 += query[i + 3] * matrix[offset + i + 3];
+        }
+        for (; i < dim; i++) {
+            s0 += query[i] * matrix[offset + i];
+        }
+        return (s0 + s1) + (s2 + s3);
+    }
+
+    /**
+     * Score the query against every row of a row-major [rows, dim] matrix into scores[0..rows)
+     */
+    public static void scoreAll(float[] query, float[] matrix, int rows, int dim, float[] scores) {
+        if (query.length < dim || matrix.length < rows * dim || scores.length < rows) {
+            throw new IllegalArgumentException("Matrix, query and score sizes do not match");
+        }
+
+        int row = 0;
+        for (int end = rows - 3; row < end; row += 4) {
+            int o0 = row * dim;
+            int o1 = o0 + dim;
+            int o2 = o1 + dim;
+            int o3 = o2 + dim;
+            float s0 = 0f;
+            float s1 = 0f;
+            float s2 = 0f;
+            float s3 = 0f;
+            for (int i = 0; i < dim; i++) {
+                float q = query[i];
+                s0 += q * matrix[o0 + i];
+                s1 += q * matrix[o1 + i];
+                s2 += q * matrix[o2 + i];
+                s3 += q * matrix[o3 + i];
+            }
+            scores[row] = s0;
+            scores[row + 1] = s1;
+            scores[row + 2] = s2;
+            scores[row + 3] = s3;
+        }
+        for (; row < rows; row++) {
+            scores[row] = dot(query, matrix, row * dim, dim);
+        }
+    }
+
+    /**
+     * Indices of the k highest scores among scores[0..n), best first (ties keep the lower index first)
+     */
+    public static int[] topK(float[] scores, int n, int k) {
+        k = Math.min(k, n);
+        if (k <= 0) {
+            return new int[0];
+        }
+
+        // Min-heap of the current best k, ordered so the weakest entry sits at the root
+        int[] heap = new int[k];
+        int size = 0;
+        for (int i = 0; i < n; i++) {
+            if (size < k) {
+                heap[size] = i;
+                siftUp(heap, size++, scores);
+            } else if (better(i, heap[0], scores)) {
+                heap[0] = i;
+                siftDown(heap, size, scores);
+            }
+        }
+
+        int[] result = new int[size];
+        for (int out = size - 1; out >= 0; out--) {
+            result[out] = heap[0];
+            heap[0] = heap[--size];
+            siftDown(heap, size, scores);
+        }
+        return result;
+    }
+
+    private static boolean better(int a, int b, float[] scores) {
+        return scores[a] > scores[b] || (scores[a] == scores[b] && a < b);
+    }
+
+    private static void siftUp(int[] heap, int index, float[] scores) {
+        int item = heap[index];
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (!better(heap[parent], item, scores)) {
+                break;
+            }
+            heap[index] = heap[parent];
+            index = parent;
+        }
+        heap[index] = item;
+    }
+
+    private static void siftDown(int[] heap, int size, float[] scores) {
+        if (size == 0) {
+            return;
+        }
+        int index = 0;
+        int item = heap[0];
+        while (true) {
+            int child = 2 * index + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && better(heap[child], heap[child + 1], scores)) {
+                child++;
+            }
+            if (!better(item, heap[child], scores)) {
+                break;
+            }
+            heap[index] = heap[child];
+            index = child;
+        }
+        heap[index] = item;
+    }
+}
@@ -2,20 +2,36 @@ package com.nourishcare.visionservice.service;
 
 import com.google.cloud.vision.v1.*;
 import com.google.protobuf.ByteString;
+import com.google.rpc.Status;
 import com.nourishcare.visionservice.model.FoodDetection;
+import com.nourishcare.visionservice.model.LabelResolution;
 import com.nourishcare.visionservice.repository.FoodDetectionRepository;
+import com.nourishcare.visionservice.usda.HnswIndex;
+import com.nourishcare.visionservice.usda.UsdaHttpClient;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
+import javax.annotation.PostConstruct;
 import javax.imageio.ImageIO;
 import java.awt.image.BufferedImage;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Service
@@ -23,11 +39,25 @@ public class VisionService {
 
     private static final Logger logger = LoggerFactory.getLogger(VisionService.class);
 
+    // Google Vision accepts at most 16 images per batchAnnotateImages call
+    private static final int MAX_IMAGES_PER_VISION_BATCH = 16;
+
+    private static final float VISION_CONFIDENCE_THRESHOLD = 0.55f;
+
+    private static final String MODE_CASCADE = "cascade";
+    private static final String PATH_YOLO = "yolo";
+    private static final String PATH_VISION = "vision";
+    private static final String PATH_CACHE = "cache";
+    private static final String PATH_MOCK = "mock";
+    // A batch whose images took different paths
+    private static final String PATH_MIXED = "mixed";
+
+
     @Autowired
     private FoodDetectionRepository foodDetectionRepository;
 
     @Autowired
-    private ImageAnnotatorSettings imageAnnotatorSettings;
+    private ImageAnnotatorClientPool imageAnnotatorClientPool;
 
     @Autowired
     private UsdaFoodDataService usdaFoodDataService;
@@ -38,42 +68,174 @@ public class VisionService {
     @Autowired
     private SemanticMatchingService semanticMatchingService;
 
+    @Autowired
+    private FoodVectorIndexService foodVectorIndexService;
+
+    @Autowired
+    private LabelResolutionMemo labelResolutionMemo;
+
     @Autowired
     private YoloFoodDetectionService yoloFoodDetectionService;
 
+    @Autowired
+    private DetectionResultCache detectionResultCache;
+
+    @Autowired
+    private ImageIngestionService imageIngestionService;
+
+    @Autowired
+    private InferenceBudgetPolicy inferenceBudgetPolicy;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private PipelineMetrics pipelineMetrics;
+
+    @Autowired
+    @Qualifier("foodResolutionExecutor")
+    private ExecutorService foodResolutionExecutor;
+
     @Value("${vision.api.mock:false}")
     private boolean useMockService;
 
+    // Budget for resolving all objects of one request; lookups still running after it are cancelled
+    @Value("${vision.resolution.timeout-ms:8000}")
+    private long resolutionTimeoutMs;
+
+    // "vision" sends every image to Google Vision; "cascade" tries the local YOLO model first
+    @Value("${vision.detection.mode:vision}")
+    private String detectionMode;
+
+    // YOLO boxes below this confidence do not count; with none left the cascade falls back to Vision
+    @Value("${vision.cascade.min-confidence:0.5}")
+    private float cascadeMinConfidence;
+
+    // YOLO classes the model confuses too often to trust on their own; any of them sends the image to Vision
+    @Value("${vision.cascade.low-precision-classes:food,food-drinks,Fruit,Vegetable,Baked-goods,Dessert}")
+    private String lowPrecisionClassList;
+
+    private Set<String> lowPrecisionClasses;
+
+    // Images sent to Google Vision are downscaled to this longer side and re-encoded; 0 only re-encodes
+    @Value("${vision.upload.max-dimension:1024}")
+    private int uploadMaxDimension;
+
+    @Value("${vision.upload.jpeg-quality:0.85}")
+    private float uploadJpegQuality;
+
+    // Batch uploads are packed into Vision calls up to this payload size (base64 image content), below
+    // the 10 MB Vision API request limit; originals sent unchanged can be several MB each
+    @Value("${vision.batch.max-request-bytes:9437184}")
+    private long maxBatchRequestBytes;
+
+    // USDA lookups one batch upload keeps on the shared resolution executor at once; the rest wait their turn
+    @Value("${vision.resolution.batch-max-in-flight:8}")
+    private int batchResolutionMaxInFlight;
+
+    // Minimum label-to-description cosine similarity for a USDA match (part of the memo fingerprint)
+    @Value("${vision.matching.min-similarity:0.3}")
+    private double minSimilarity;
+
+    @PostConstruct
+    public void initialize() {
+        lowPrecisionClasses = new HashSet<>();
+        for (String name : lowPrecisionClassList.split(",")) {
+            if (!name.trim().isEmpty()) {
+                lowPrecisionClasses.add(name.trim().toLowerCase());
+            }
+        }
+        logger.info("✅ Detection mode: {} (cascade gate: {}, low-precision classes: {})",
+                   detectionMode, cascadeMinConfidence, lowPrecisionClasses);
+    }
+
     /**
      * Detect food items from uploaded image using Google Vision API and USDA validation
      */
     public FoodDetection detectFoodItems(MultipartFile file) throws IOException {
-        logger.info("Starting food detection for image: {}", file.getOriginalFilename());
+        return detectFoodItems(UploadedImage.from(file));
+    }
+
+    /**
+     * Detect food items from an already buffered upload
+     */
+    public FoodDetection detectFoodItems(UploadedImage image) throws IOException {
+        return detectFoodItems(image, DetectionStage.Listener.NONE);
+    }
+
+    /**
+     * Detect food items, reporting each pipeline stage to the listener as it completes
+     */
+    public FoodDetection detectFoodItems(UploadedImage image, DetectionStage.Listener progress) throws IOException {
+        return detectFoodItems(image, inferenceBudgetPolicy.interactive(), progress);
+    }
+
+    /**
+     * Detect food items with local inference held to the given budget, reporting each pipeline stage.
+     * The request is traced: its stages are timed and the trace is logged when it finishes.
+     */
+    public FoodDetection detectFoodItems(UploadedImage image, InferenceBudget budget,
+                                         DetectionStage.Listener progress) throws IOException {
+        String initialPath = useMockService ? PATH_MOCK
+            : MODE_CASCADE.equalsIgnoreCase(detectionMode) ? PATH_YOLO : PATH_VISION;
+        PipelineTrace trace = PipelineTrace.start("detect " + image.getOriginalFilename(), initialPath);
+        String outcome = PipelineMetrics.OUTCOME_ERROR;
+        try (PipelineTrace.Scope scope = trace.bind()) {
+            FoodDetection detection = runDetection(image, budget, progress);
+            List<FoodDetection.DetectedFood> foods = detection.getDetectedFoods();
+            outcome = foods == null || foods.isEmpty() ? PipelineMetrics.OUTCOME_EMPTY : PipelineMetrics.OUTCOME_SUCCESS;
+            return detection;
+        } finally {
+            pipelineMetrics.finish(trace, outcome);
+        }
+    }
+
+    private FoodDetection runDetection(UploadedImage image, InferenceBudget budget,
+                                       DetectionStage.Listener progress) throws IOException {
+        logger.info("Starting food detection for image: {}", image.getOriginalFilename());
 
         // Create initial food detection record
-        FoodDetection detection = new FoodDetection(
-            null, // imageUrl will be set later if needed
-            file.getOriginalFilename(),
-            file.getContentType(),
-            file.getSize()
-        );
+        FoodDetection detection = createDetectionRecord(image);
+
+        // Serve repeated and near-identical uploads from the result cache
+        DetectionResultCache.ImageKey cacheKey = detectionResultCache.keyFor(image);
+        Optional<DetectionResultCache.CachedResult> cached =
+            pipelineMetrics.time("cache_lookup", () -> detectionResultCache.lookup(cacheKey));
+        if (cached.isPresent()) {
+            PipelineTrace.current().setPath(PATH_CACHE);
+            logger.info("♻️ Detection cache hit for {} - reusing detection {}",
+                       image.getOriginalFilename(), cached.get().getDetectionId());
+            detection.setId(cached.get().getDetectionId());
+            detection.setDetectedFoods(cached.get().getDetectedFoods());
+            Map<String, Object> metadata = new HashMap<>();
+            metadata.put("cacheHit", true);
+            detection.setMetadata(metadata);
+            progress.onStage(DetectionStage.SAVED);
+            return detection;
+        }
 
         List<FoodDetection.DetectedFood> detectedFoods;
         
         if (useMockService) {
-            detectedFoods = mockFoodDetection(file.getOriginalFilename());
+            detectedFoods = mockFoodDetection(image.getOriginalFilename());
+            progress.onStage(DetectionStage.RESOLVED);
+        } else if (MODE_CASCADE.equalsIgnoreCase(detectionMode)) {
+            detectedFoods = detectFoodItemsWithCascade(image, budget, progress);
         } else {
-            detectedFoods = detectFoodItemsWithVisionAPI(file);
+            recordDetectionPath(PATH_VISION, "mode");
+            detectedFoods = detectFoodItemsWithVisionAPI(image, progress);
         }
 
         detection.setDetectedFoods(detectedFoods);
         
         // Save to database with error handling
         try {
-            logger.info("💾 Saving detection results to MongoDB...");
-            FoodDetection savedDetection = foodDetectionRepository.save(detection);
-            logger.info("✅ Successfully saved detection with ID: {}", savedDetection.getId());
+            logger.debug("💾 Saving detection results to MongoDB...");
+            FoodDetection savedDetection = pipelineMetrics.time("mongo_save", () -> foodDetectionRepository.save(detection));
+            logger.debug("✅ Successfully saved detection with ID: {}", savedDetection.getId());
             logger.info("🎉 ANALYSIS COMPLETE - {} food items detected and saved", detectedFoods.size());
+            detectionResultCache.put(cacheKey, savedDetection.getId(), detectedFoods);
+            progress.onStage(DetectionStage.SAVED);
             return savedDetection;
         } catch (Exception e) {
             logger.error("❌ Failed to save detection results to MongoDB: {}", e.getMessage());
@@ -82,42 +244,267 @@ public class VisionService {
             // Still return the detection object even if save failed
             // This allows the frontend to show results even if DB save fails
             logger.warn("⚠️ Returning unsaved detection results to frontend");
+            progress.onStage(DetectionStage.SAVED);
             return detection;
         }
     }
 
+    /**
+     * Detect food items for several images at once.
+     * In cascade mode each image goes through YOLO first, exactly as a single upload would, and only
+     * the images that fall back are sent to Google Vision. Vision images are packed into as few API
+     * batches as possible, each unique food name is resolved against USDA only once for them, and all
+     * detections are saved in one insert. The batch trace is tagged with the path its images took,
+     * or "mixed" when some were detected by YOLO and some by Vision.
+     */
+    public List<FoodDetection> detectFoodItemsBatch(List<UploadedImage> images) throws IOException {
+        String initialPath = useMockService ? PATH_MOCK
+            : MODE_CASCADE.equalsIgnoreCase(detectionMode) ? PATH_YOLO : PATH_VISION;
+        PipelineTrace trace = PipelineTrace.start("batch of " + images.size(), initialPath);
+        String outcome = PipelineMetrics.OUTCOME_ERROR;
+        try (PipelineTrace.Scope scope = trace.bind()) {
+            List<FoodDetection> detections = runBatchDetection(images, trace);
+            outcome = PipelineMetrics.OUTCOME_SUCCESS;
+            return detections;
+        } finally {
+            pipelineMetrics.finish(trace, outcome);
+        }
+    }
+
+    private List<FoodDetection> runBatchDetection(List<UploadedImage> images, PipelineTrace trace) throws IOException {
+        logger.info("Starting batch food detection for {} images", images.size());
+
+        List<FoodDetection> detections = new ArrayList<>();
+        for (UploadedImage image : images) {
+            detections.add(createDetectionRecord(image));
+        }
+
+        if (useMockService) {
+            for (int i = 0; i < images.size(); i++) {
+                detections.get(i).setDetectedFoods(mockFoodDetection(images.get(i).getOriginalFilename()));
+            }
+        } else if (MODE_CASCADE.equalsIgnoreCase(detectionMode)) {
+            detectFoodItemsBatchWithCascade(images, detections, trace);
+        } else {
+            recordDetectionPath(PATH_VISION, "mode", images.size());
+            detectFoodItemsBatchWithVisionAPI(images, detections);
+        }
+
+        try {
+            logger.debug("💾 Saving {} detection results to MongoDB in one insert...", detections.size());
+            List<FoodDetection> savedDetections =
+                pipelineMetrics.time("mongo_save", () -> foodDetectionRepository.saveAll(detections));
+            logger.info("🎉 BATCH ANALYSIS COMPLETE - {} images detected and saved", savedDetections.size());
+            return savedDetections;
+        } catch (Exception e) {
+            logger.error("❌ Failed to save batch detection results to MongoDB: {}", e.getMessage());
+            logger.warn("⚠️ Returning unsaved batch detection results to frontend");
+            return detections;
+        }
+    }
+
+    /**
+     * Batch variant of the cascade: YOLO per image, then one packed Vision pass over the images that fell back.
+     * If that Vision pass fails outright, only the fallback images are marked failed.
+     */
+    private void detectFoodItemsBatchWithCascade(List<UploadedImage> images, List<FoodDetection> detections,
+                                                 PipelineTrace trace) throws IOException {
+        InferenceBudget budget = inferenceBudgetPolicy.interactive();
+        List<UploadedImage> fallbackImages = new ArrayList<>();
+        List<FoodDetection> fallbackDetections = new ArrayList<>();
+        for (int i = 0; i < images.size(); i++) {
+            // Stages of each YOLO attempt are timed under the yolo path; a fallback switches it to vision
+            trace.setPath(PATH_YOLO);
+            Optional<List<FoodDetection.DetectedFood>> local =
+                detectFoodItemsWithYolo(images.get(i), budget, DetectionStage.Listener.NONE);
+            if (local.isPresent()) {
+                detections.get(i).setDetectedFoods(local.get());
+            } else {
+                fallbackImages.add(images.get(i));
+                fallbackDetections.add(detections.get(i));
+            }
+        }
+
+        int localImages = images.size() - fallbackImages.size();
+        logger.info("YOLO detected {} of {} batch images, {} go to Vision API",
+                   localImages, images.size(), fallbackImages.size());
+        if (fallbackImages.isEmpty()) {
+            return;
+        }
+
+        trace.setPath(PATH_VISION);
+        try {
+            detectFoodItemsBatchWithVisionAPI(fallbackImages, fallbackDetections);
+        } catch (IOException e) {
+            if (localImages == 0) {
+                throw e;
+            }
+            for (FoodDetection detection : fallbackDetections) {
+                markFailed(detection, e.getMessage());
+            }
+        }
+        trace.setPath(localImages == 0 ? PATH_VISION : PATH_MIXED);
+    }
+
+    private FoodDetection createDetectionRecord(UploadedImage image) {
+        return new FoodDetection(
+            null, // imageUrl will be set later if needed
+            image.getOriginalFilename(),
+            image.getContentType(),
+            image.getSize()
+        );
+    }
+
+    /**
+     * Local-first cascade: run the on-device YOLO model and fall back to Google Vision only when
+     * YOLO finds no box above the confidence gate, sees a class marked low-precision, or none of
+     * its boxes resolve to a USDA food
+     */
+    private List<FoodDetection.DetectedFood> detectFoodItemsWithCascade(UploadedImage image, InferenceBudget budget,
+                                                                         DetectionStage.Listener progress) throws IOException {
+        // DECODED is reported once, by YOLO unless the image could not be decoded for it
+        AtomicBoolean decodedReported = new AtomicBoolean();
+        Optional<List<FoodDetection.DetectedFood>> local = detectFoodItemsWithYolo(image, budget, stage -> {
+            if (stage == DetectionStage.DECODED) {
+                decodedReported.set(true);
+            }
+            progress.onStage(stage);
+        });
+        if (local.isPresent()) {
+            return local.get();
+        }
+        return detectFoodItemsWithVisionAPI(image, stage -> {
+            if (stage != DetectionStage.DECODED || !decodedReported.get()) {
+                progress.onStage(stage);
+            }
+        });
+    }
+
+    /**
+     * The YOLO step of the cascade: the resolved foods, or empty when the image must go to Google Vision.
+     * Either way the path taken and the reason are recorded.
+     */
+    private Optional<List<FoodDetection.DetectedFood>> detectFoodItemsWithYolo(UploadedImage image, InferenceBudget budget,
+                                                                                DetectionStage.Listener progress) {
+        logger.debug("===== STARTING YOLO CASCADE PIPELINE =====");
+
+        // Subsampled close to the model input size (or at native size for tiled inference) and rotated
+        // upright; boxes are scaled back below
+        ImageIngestionService.DecodedImage decoded;
+        try {
+            decoded = pipelineMetrics.time("decode", () -> {
+                ImageIngestionService.ImageInfo info = imageIngestionService.probe(image.getBytes());
+                return imageIngestionService.decode(image.getBytes(),
+                    yoloFoodDetectionService.getDecodeSize(info.getWidth(), info.getHeight()));
+            });
+        } catch (IOException e) {
+            logger.warn("Could not decode {} for YOLO: {}", image.getOriginalFilename(), e.getMessage());
+            recordDetectionPath(PATH_VISION, "undecodable");
+            return Optional.empty();
+        }
+        int imageWidth = decoded.getInfo().getWidth();
+        int imageHeight = decoded.getInfo().getHeight();
+        progress.onStage(DetectionStage.DECODED);
+
+        List<YoloFoodDetectionService.YoloDetection> confident = new ArrayList<>();
+        double scale = decoded.getScale();
+        BufferedImage frame = decoded.getImage();
+        List<YoloFoodDetectionService.YoloDetection> detections;
+        try {
+            detections = pipelineMetrics.time("yolo_detect", () -> yoloFoodDetectionService.detectFoodItems(frame, budget));
+        } catch (IOException e) {
+            // A failed inference is not the same as an empty plate; keep it apart in the path metrics
+            logger.warn("YOLO failed for {}, falling back to Vision API: {}", image.getOriginalFilename(), e.getMessage());
+            recordDetectionPath(PATH_VISION, "yolo_error");
+            return Optional.empty();
+        }
+        for (YoloFoodDetectionService.YoloDetection detection : detections) {
+            if (detection.getConfidence() >= cascadeMinConfidence) {
+                confident.add(new YoloFoodDetectionService.YoloDetection(detection.getClassName(), detection.getConfidence(),
+                    (int) Math.round(detection.getX1() * scale), (int) Math.round(detection.getY1() * scale),
+                    (int) Math.round(detection.getX2() * scale), (int) Math.round(detection.getY2() * scale)));
+            }
+        }
+
+        if (confident.isEmpty()) {
+            logger.info("YOLO found no box at confidence >= {}, falling back to Vision API", cascadeMinConfidence);
+            recordDetectionPath(PATH_VISION, "no_confident_boxes");
+            return Optional.empty();
+        }
+        for (YoloFoodDetectionService.YoloDetection detection : confident) {
+            if (lowPrecisionClasses.contains(detection.getClassName().toLowerCase())) {
+                logger.info("YOLO class '{}' is marked low-precision, falling back to Vision API", detection.getClassName());
+                recordDetectionPath(PATH_VISION, "low_precision_class");
+                return Optional.empty();
+            }
+        }
+        progress.onStage(DetectionStage.DETECTED);
+
+        // YOLO class names use '-' and '_' as word separators, which name cleaning would otherwise drop
+        Map<YoloFoodDetectionService.YoloDetection, String> names = new LinkedHashMap<>();
+        for (YoloFoodDetectionService.YoloDetection detection : confident) {
+            names.put(detection, cleanAndLogFoodName(detection.getClassName().replace('-', ' ').replace('_', ' ')));
+        }
+        Map<String, Optional<UsdaFoodDataService.UsdaFoodItem>> resolved =
+            resolveFoodNames(new LinkedHashSet<>(names.values()));
+
+        List<FoodDetection.DetectedFood> detectedFoods = new ArrayList<>();
+        for (Map.Entry<YoloFoodDetectionService.YoloDetection, String> entry : names.entrySet()) {
+            Optional<UsdaFoodDataService.UsdaFoodItem> usdaFood = resolved.getOrDefault(entry.getValue(), Optional.empty());
+            if (usdaFood.isPresent()) {
+                detectedFoods.add(createDetectedFoodFromYolo(entry.getValue(), entry.getKey().getConfidence(),
+                    usdaFood.get(), entry.getKey(), Collections.emptyMap(), imageWidth, imageHeight));
+            } else {
+                logger.debug("Discarding YOLO detection without USDA match: {}", entry.getValue());
+            }
+        }
+
+        if (detectedFoods.isEmpty()) {
+            logger.info("No YOLO detection resolved to a USDA food, falling back to Vision API");
+            recordDetectionPath(PATH_VISION, "unresolved");
+            return Optional.empty();
+        }
+
+        recordDetectionPath(PATH_YOLO, "confident");
+        progress.onStage(DetectionStage.RESOLVED);
+        return Optional.of(finishDetection(detectedFoods));
+    }
+
+    private void recordDetectionPath(String path, String reason) {
+        recordDetectionPath(path, reason, 1);
+    }
+
+    private void recordDetectionPath(String path, String reason, int images) {
+        meterRegistry.counter("vision.detection.path", "path", path, "reason", reason).increment(images);
+        // Later stages (and the request itself) are tagged with the path taken
+        PipelineTrace trace = PipelineTrace.current();
+        if (trace != null) {
+            trace.setPath(path);
+        }
+    }
+
     /**
      * Detect food items using Google Cloud Vision API with USDA validation
      */
-    private List<FoodDetection.DetectedFood> detectFoodItemsWithVisionAPI(MultipartFile file) throws IOException {
-        logger.info("===== STARTING VISION API DETECTION PIPELINE =====");
-        logger.info("Using Google Cloud Vision API for food detection");
+    private List<FoodDetection.DetectedFood> detectFoodItemsWithVisionAPI(UploadedImage image,
+                                                                          DetectionStage.Listener progress) throws IOException {
+        logger.debug("===== STARTING VISION API DETECTION PIPELINE =====");
+        logger.debug("Using Google Cloud Vision API for food detection");
         List<FoodDetection.DetectedFood> detectedFoods = new ArrayList<>();
 
-        try (ImageAnnotatorClient vision = ImageAnnotatorClient.create(imageAnnotatorSettings)) {
-            ByteString imgBytes = ByteString.copyFrom(file.getBytes());
-            Image img = Image.newBuilder().setContent(imgBytes).build();
-            
-            // Get image dimensions for bounding box conversion
-            int[] imageDimensions = getImageDimensions(file.getBytes());
-            int imageWidth = imageDimensions[0];
-            int imageHeight = imageDimensions[1];
-            logger.info("Image dimensions: {}x{} pixels", imageWidth, imageHeight);
+        try {
+            // Downscaled upload; boxes are mapped back to the original display dimensions
+            ImageIngestionService.EncodedImage upload = pipelineMetrics.time("decode", () -> prepareVisionUpload(image));
+            logger.debug("Image dimensions: {}x{} pixels", upload.getInfo().getWidth(), upload.getInfo().getHeight());
+            progress.onStage(DetectionStage.DECODED);
             
             // === STAGE 1: GOOGLE VISION API - OBJECT DETECTION ===
-            logger.info("=== STAGE 1: VISION API OBJECT DETECTION ===");
+            logger.debug("=== STAGE 1: VISION API OBJECT DETECTION ===");
             
-            // Use Vision API for comprehensive object detection
-            Feature objectFeature = Feature.newBuilder().setType(Feature.Type.OBJECT_LOCALIZATION).build();
-            
-            AnnotateImageRequest request = AnnotateImageRequest.newBuilder()
-                .addFeatures(objectFeature)
-                .setImage(img)
-                .build();
-
-            BatchAnnotateImagesResponse response = vision.batchAnnotateImages(
-                Collections.singletonList(request));
+            BatchAnnotateImagesResponse response = pipelineMetrics.time("vision_call", () ->
+                imageAnnotatorClientPool.batchAnnotateImages(Collections.singletonList(createObjectLocalizationRequest(upload))));
             List<AnnotateImageResponse> responses = response.getResponsesList();
+            progress.onStage(DetectionStage.DETECTED);
 
             for (AnnotateImageResponse res : responses) {
                 if (res.hasError()) {
@@ -125,67 +512,395 @@ public class VisionService {
                     continue;
                 }
                 
-                List<LocalizedObjectAnnotation> allObjects = res.getLocalizedObjectAnnotationsList();
-                logger.info("Vision API objects detected: {}", allObjects.size());
-                for (LocalizedObjectAnnotation obj : allObjects) {
-                    logger.info("  Object: {} ({:.2f})", obj.getName(), String.format("%.2f", obj.getScore()));
-                }
-
-                
-                // === STAGE 2: REFERENCE OBJECT DETECTION ===
-                logger.info("=== STAGE 2: REFERENCE OBJECT DETECTION ===");
-                Map<String, FoodDetection.BoundingBox> referenceObjects = 
-                    detectAndLogReferenceObjects(allObjects, imageWidth, imageHeight);
-                
-                // === STAGE 3: PROCESS VISION API FOOD DETECTIONS WITH USDA FILTERING ===
-                logger.info("=== STAGE 3: PROCESSING VISION API FOOD DETECTIONS ===");
-                
-                for (LocalizedObjectAnnotation visionObject : allObjects) {
-                    String objectName = visionObject.getName();
-                    float confidence = visionObject.getScore();
-                    
-                    logger.info("Processing Vision API detection: {} ({:.2f})", objectName, String.format("%.2f", confidence));
-                    
-                    // Apply confidence threshold (55%)
-                    if (confidence < 0.55f) {
-                        logger.info("Skipping {} - confidence {:.2f} below threshold (55%)", objectName, String.format("%.2f", confidence));
-                        continue;
-                    }
-                    
-                    // Stage 3a: Clean object name
-                    String cleanedName = cleanAndLogFoodName(objectName);
-                    
-                    // Stage 3b: USDA search with semantic matching to filter food items
-                    Optional<UsdaFoodDataService.UsdaFoodItem> usdaFood = searchAndLogUSDA(cleanedName);
-                    
-                    if (usdaFood.isPresent()) {
-                        // Create food detection with Vision API bounding box
-                        FoodDetection.DetectedFood food = createDetectedFoodFromVisionAPI(
-                            cleanedName, confidence, usdaFood.get(), visionObject, 
-                            referenceObjects, imageWidth, imageHeight);
-                        detectedFoods.add(food);
-                        logger.info("Added food item: {} with USDA match", cleanedName);
-                    } else {
-                        logger.info("Discarding Vision API detection (not a food item): {}", cleanedName);
-                    }
-                }
+                // Resolve every distinct object name concurrently, then assemble results in object order
+                Map<String, Optional<UsdaFoodDataService.UsdaFoodItem>> resolved =
+                    resolveFoodNames(collectCandidateFoodNames(res.getLocalizedObjectAnnotationsList()));
+                detectedFoods.addAll(processVisionResponse(res, upload,
+                    name -> resolved.getOrDefault(name, Optional.empty())));
             }
+            progress.onStage(DetectionStage.RESOLVED);
             
         } catch (Exception e) {
             logger.error("Error calling Vision API: {}", e.getMessage());
             throw new IOException("Vision API error: " + e.getMessage(), e);
         }
 
+        return finishDetection(detectedFoods);
+    }
+
+    /**
+     * Batch variant of the Vision API pipeline, filling in the food list of each detection record (same order).
+     * Uploads are packed into Vision calls by count and by payload size; a call that fails only fails its own
+     * images, which get an empty food list and the error in their metadata. Throws only if every call failed.
+     */
+    private void detectFoodItemsBatchWithVisionAPI(List<UploadedImage> images, List<FoodDetection> detections)
+            throws IOException {
+        logger.debug("===== STARTING BATCH VISION API DETECTION PIPELINE ({} images) =====", images.size());
+
+        List<AnnotateImageResponse> responses = new ArrayList<>(images.size());
+        List<ImageIngestionService.EncodedImage> uploads = new ArrayList<>(images.size());
+        for (UploadedImage image : images) {
+            uploads.add(pipelineMetrics.time("decode", () -> prepareVisionUpload(image)));
+        }
+
+        // === STAGE 1: GOOGLE VISION API - PACKED OBJECT DETECTION ===
+        Exception lastFailure = null;
+        int failedCalls = 0;
+        int calls = 0;
+        int start = 0;
+        while (start < images.size()) {
+            // An upload larger than the limit on its own still goes out, alone
+            int end = start;
+            long payloadBytes = 0;
+            List<AnnotateImageRequest> requests = new ArrayList<>();
+            while (end < images.size() && requests.size() < MAX_IMAGES_PER_VISION_BATCH) {
+                long uploadBytes = encodedPayloadBytes(uploads.get(end));
+                if (!requests.isEmpty() && payloadBytes + uploadBytes > maxBatchRequestBytes) {
+                    break;
+                }
+                requests.add(createObjectLocalizationRequest(uploads.get(end)));
+                payloadBytes += uploadBytes;
+                end++;
+            }
+
+            logger.debug("=== STAGE 1: VISION API BATCH OF {} IMAGES ({} KB) ===", requests.size(), payloadBytes / 1024);
+            calls++;
+            try {
+                responses.addAll(pipelineMetrics.time("vision_call",
+                    () -> imageAnnotatorClientPool.batchAnnotateImages(requests)).getResponsesList());
+            } catch (Exception e) {
+                logger.error("Vision API batch call for images {}-{} failed: {}", start, end - 1, e.getMessage());
+                meterRegistry.counter("vision.batch.failed.images").increment(requests.size());
+                failedCalls++;
+                lastFailure = e;
+                AnnotateImageResponse failed = AnnotateImageResponse.newBuilder()
+                    .setError(Status.newBuilder().setMessage("Vision API error: " + e.getMessage()))
+                    .build();
+                for (int i = start; i < end; i++) {
+                    responses.add(failed);
+                }
+            }
+            start = end;
+        }
+        if (failedCalls == calls && lastFailure != null) {
+            throw new IOException("Vision API error: " + lastFailure.getMessage(), lastFailure);
+        }
+
+        // === USDA RESOLUTION, DEDUPLICATED ACROSS THE WHOLE BATCH ===
+        List<Set<String>> candidateNames = new ArrayList<>(responses.size());
+        Set<String> uniqueNames = new LinkedHashSet<>();
+        for (AnnotateImageResponse res : responses) {
+            Set<String> names = res.hasError()
+                ? Collections.emptySet() : collectCandidateFoodNames(res.getLocalizedObjectAnnotationsList());
+            candidateNames.add(names);
+            uniqueNames.addAll(names);
+        }
+        logger.debug("Resolving {} unique food names against USDA for the batch", uniqueNames.size());
+
+        // A large batch takes only a window of the shared executor, so it neither starves other
+        // requests nor has the rest of its names rejected
+        Set<String> unresolved = new HashSet<>();
+        Map<String, Optional<UsdaFoodDataService.UsdaFoodItem>> resolved =
+            resolveFoodNames(uniqueNames, batchResolutionMaxInFlight, unresolved);
+
+        for (int i = 0; i < images.size(); i++) {
+            AnnotateImageResponse res = responses.get(i);
+            FoodDetection detection = detections.get(i);
+            if (res.hasError()) {
+                logger.error("Error in Vision API response for {}: {}",
+                    images.get(i).getOriginalFilename(), res.getError().getMessage());
+                markFailed(detection, res.getError().getMessage());
+                continue;
+            }
+
+            List<FoodDetection.DetectedFood> foods = processVisionResponse(res, uploads.get(i),
+                name -> resolved.getOrDefault(name, Optional.empty()));
+            detection.setDetectedFoods(finishDetection(foods));
+
+            // Objects whose lookup never completed are not "no USDA match"; tell the client the plate is incomplete
+            List<String> incomplete = new ArrayList<>();
+            for (String name : candidateNames.get(i)) {
+                if (unresolved.contains(name)) {
+                    incomplete.add(name);
+                }
+            }
+            if (!incomplete.isEmpty()) {
+                logger.warn("⚠ {} objects in {} could not be resolved against USDA: {}",
+                           incomplete.size(), images.get(i).getOriginalFilename(), incomplete);
+                Map<String, Object> metadata = new HashMap<>();
+                metadata.put("unresolvedObjects", incomplete);
+                detection.setMetadata(metadata);
+            }
+        }
+    }
+
+    /**
+     * Record a batch image that could not be detected: no foods, and the reason in its metadata
+     */
+    private static void markFailed(FoodDetection detection, String error) {
+        detection.setDetectedFoods(new ArrayList<>());
+        Map<String, Object> metadata = new HashMap<>();
+        metadata.put("error", error);
+        detection.setMetadata(metadata);
+    }
+
+    /**
+     * Size of an upload inside the Vision request, where image content is base64 encoded
+     */
+    private static long encodedPayloadBytes(ImageIngestionService.EncodedImage upload) {
+        return 4L * ((upload.getBytes().length + 2) / 3);
+    }
+
+    /**
+     * The image as sent to Google Vision: upright, downscaled and re-encoded as JPEG without metadata.
+     * Object localization boxes are resolution independent, so a smaller upload costs little accuracy
+     * while cutting request size and latency. Undecodable images are sent unchanged.
+     */
+    private ImageIngestionService.EncodedImage prepareVisionUpload(UploadedImage image) {
+        long start = System.currentTimeMillis();
+        ImageIngestionService.EncodedImage upload;
+        try {
+            upload = imageIngestionService.encodeForUpload(image.getBytes(), uploadMaxDimension, uploadJpegQuality);
+        } catch (Exception e) {
+            logger.warn("Could not re-encode {} for Vision API, sending original: {}",
+                       image.getOriginalFilename(), e.getMessage());
+            int[] dimensions = getImageDimensions(image.getBytes());
+            upload = new ImageIngestionService.EncodedImage(image.getBytes(), dimensions[0], dimensions[1],
+                new ImageIngestionService.ImageInfo(dimensions[0], dimensions[1], 1));
+        }
+
+        meterRegistry.summary("vision.upload.bytes", "image", "original").record(image.getSize());
+        meterRegistry.summary("vision.upload.bytes", "image", "sent").record(upload.getBytes().length);
+        logger.debug("Vision upload: {}x{} -> {}x{}, {} KB -> {} KB in {}ms",
+                   upload.getInfo().getWidth(), upload.getInfo().getHeight(), upload.getWidth(), upload.getHeight(),
+                   image.getSize() / 1024, upload.getBytes().length / 1024, System.currentTimeMillis() - start);
+        return upload;
+    }
+
+    private AnnotateImageRequest createObjectLocalizationRequest(ImageIngestionService.EncodedImage upload) {
+        ByteString imgBytes = ByteString.copyFrom(upload.getBytes());
+        Image img = Image.newBuilder().setContent(imgBytes).build();
+
+        // Use Vision API for comprehensive object detection
+        Feature objectFeature = Feature.newBuilder().setType(Feature.Type.OBJECT_LOCALIZATION).build();
+
+        return AnnotateImageRequest.newBuilder()
+            .addFeatures(objectFeature)
+            .setImage(img)
+            .build();
+    }
+
+    /**
+     * Cleaned names of all Vision API objects that pass the confidence threshold
+     */
+    private Set<String> collectCandidateFoodNames(List<LocalizedObjectAnnotation> objects) {
+        Set<String> names = new LinkedHashSet<>();
+        for (LocalizedObjectAnnotation object : objects) {
+            if (object.getScore() >= VISION_CONFIDENCE_THRESHOLD) {
+                names.add(cleanAndLogFoodName(object.getName()));
+            }
+        }
+        return names;
+    }
+
+    /**
+     * Resolve food names against USDA in parallel on the resolution executor, with no limit on lookups in flight
+     */
+    private Map<String, Optional<UsdaFoodDataService.UsdaFoodItem>> resolveFoodNames(Collection<String> names) {
+        return resolveFoodNames(names, Integer.MAX_VALUE, new HashSet<>());
+    }
+
+    /**
+     * Resolve food names against USDA in parallel on the resolution executor, keeping at most maxInFlight
+     * lookups submitted at once. All lookups share one deadline; any still running when it expires are
+     * cancelled and resolve to empty, so the caller gets whatever finished in time. A lookup the saturated
+     * executor rejects is submitted again once one of the request's own lookups has finished; with none of
+     * its own left to wait for, it resolves to empty. None run on the request thread. Names that resolved to
+     * empty because they were rejected, timed out or failed, rather than because USDA has no match, are
+     * added to unresolved.
+     */
+    private Map<String, Optional<UsdaFoodDataService.UsdaFoodItem>> resolveFoodNames(Collection<String> names,
+                                                                                    int maxInFlight,
+                                                                                    Set<String> unresolved) {
+        Map<String, Optional<UsdaFoodDataService.UsdaFoodItem>> resolved = new HashMap<>();
+        if (names.isEmpty()) {
+            return resolved;
+        }
+
+        long start = System.currentTimeMillis();
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(resolutionTimeoutMs);
+        // Lookups record their stages in the request's trace from the resolution threads
+        PipelineTrace trace = PipelineTrace.current();
+
+        Deque<String> pending = new ArrayDeque<>(names);
+        Map<String, Future<Optional<UsdaFoodDataService.UsdaFoodItem>>> inFlight = new LinkedHashMap<>();
+        int timedOut = 0;
+        boolean interrupted = false;
+        while (!inFlight.isEmpty() || !pending.isEmpty()) {
+            while (!interrupted && !pending.isEmpty() && inFlight.size() < maxInFlight && System.nanoTime() < deadline) {
+                String name = pending.peekFirst();
+                try {
+                    inFlight.put(name, foodResolutionExecutor.submit(() -> resolveFoodName(name, trace, deadline)));
+                    pending.removeFirst();
+                } catch (RejectedExecutionException e) {
+                    break;
+                }
+            }
+            if (inFlight.isEmpty()) {
+                // Rejected (or past the deadline) with nothing of this request's left to wait for
+                break;
+            }
+
+            // Wait for the oldest lookup, which frees a slot in the window and usually one in the executor
+            Iterator<Map.Entry<String, Future<Optional<UsdaFoodDataService.UsdaFoodItem>>>> oldest =
+                inFlight.entrySet().iterator();
+            Map.Entry<String, Future<Optional<UsdaFoodDataService.UsdaFoodItem>>> entry = oldest.next();
+            oldest.remove();
+            String name = entry.getKey();
+            Future<Optional<UsdaFoodDataService.UsdaFoodItem>> future = entry.getValue();
+            resolved.put(name, Optional.empty());
+            if (interrupted) {
+                future.cancel(true);
+                unresolved.add(name);
+                continue;
+            }
+            try {
+                resolved.put(name, future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS));
+            } catch (TimeoutException | CancellationException e) {
+                future.cancel(true);
+                unresolved.add(name);
+                timedOut++;
+            } catch (ExecutionException e) {
+                logger.error("USDA resolution failed for '{}': {}", name, e.getCause().getMessage());
+                unresolved.add(name);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                future.cancel(true);
+                unresolved.add(name);
+                interrupted = true;
+            }
+        }
+
+        // Names never submitted were rejected, unless the request ran out of time first
+        int rejected = 0;
+        boolean outOfTime = interrupted || System.nanoTime() >= deadline;
+        for (String name : pending) {
+            resolved.put(name, Optional.empty());
+            unresolved.add(name);
+            if (outOfTime) {
+                timedOut++;
+            } else {
+                rejected++;
+            }
+        }
+
+        if (rejected > 0) {
+            meterRegistry.counter("vision.resolution.dropped", "reason", "rejected").increment(rejected);
+            logger.warn("⚠ {} of {} food lookups were rejected by the saturated resolution executor",
+                       rejected, names.size());
+        }
+        if (timedOut > 0) {
+            meterRegistry.counter("vision.resolution.dropped", "reason", "timeout").increment(timedOut);
+            logger.warn("⚠ {} of {} food lookups missed the {}ms deadline and were dropped",
+                       timedOut, names.size(), resolutionTimeoutMs);
+        }
+        logger.debug("Resolved {} food names in {}ms", names.size(), System.currentTimeMillis() - start);
+        return resolved;
+    }
+
+    /**
+     * One lookup on a resolution thread, under the request's trace and with its USDA calls
+     * aborted by the request's deadline
+     */
+    private Optional<UsdaFoodDataService.UsdaFoodItem> resolveFoodName(String name, PipelineTrace trace, long deadline) {
+        if (System.nanoTime() >= deadline) {
+            // Queued past the deadline; the request has already stopped waiting
+            return Optional.empty();
+        }
+        try (UsdaHttpClient.DeadlineScope scope = UsdaHttpClient.withDeadline(deadline)) {
+            if (trace == null) {
+                return searchAndLogUSDA(name);
+            }
+            try (PipelineTrace.Scope traceScope = trace.bind()) {
+                return searchAndLogUSDA(name);
+            }
+        }
+    }
+
+    /**
+     * Turn one Vision API image response into detected foods, using the given USDA resolver.
+     * Boxes are reported in the original image's display coordinates, not those of the upload.
+     */
+    private List<FoodDetection.DetectedFood> processVisionResponse(
+            AnnotateImageResponse res, ImageIngestionService.EncodedImage upload,
+            Function<String, Optional<UsdaFoodDataService.UsdaFoodItem>> usdaResolver) {
+
+        List<FoodDetection.DetectedFood> detectedFoods = new ArrayList<>();
+        int imageWidth = upload.getInfo().getWidth();
+        int imageHeight = upload.getInfo().getHeight();
+
+        List<LocalizedObjectAnnotation> allObjects = res.getLocalizedObjectAnnotationsList();
+        logger.debug("Vision API objects detected: {}", allObjects.size());
+        for (LocalizedObjectAnnotation obj : allObjects) {
+            logger.debug("  Object: {} ({:.2f})", obj.getName(), String.format("%.2f", obj.getScore()));
+        }
+
+        
+        // === STAGE 2: REFERENCE OBJECT DETECTION ===
+        logger.debug("=== STAGE 2: REFERENCE OBJECT DETECTION ===");
+        Map<String, FoodDetection.BoundingBox> referenceObjects = 
+            detectAndLogReferenceObjects(allObjects, imageWidth, imageHeight);
+        
+        // === STAGE 3: PROCESS VISION API FOOD DETECTIONS WITH USDA FILTERING ===
+        logger.debug("=== STAGE 3: PROCESSING VISION API FOOD DETECTIONS ===");
+        
+        for (LocalizedObjectAnnotation visionObject : allObjects) {
+            String objectName = visionObject.getName();
+            float confidence = visionObject.getScore();
+            
+            logger.debug("Processing Vision API detection: {} ({:.2f})", objectName, String.format("%.2f", confidence));
+            
+            // Apply confidence threshold (55%)
+            if (confidence < VISION_CONFIDENCE_THRESHOLD) {
+                logger.debug("Skipping {} - confidence {:.2f} below threshold (55%)", objectName, String.format("%.2f", confidence));
+                continue;
+            }
+            
+            // Stage 3a: Clean object name
+            String cleanedName = cleanAndLogFoodName(objectName);
+            
+            // Stage 3b: USDA search with semantic matching to filter food items
+            Optional<UsdaFoodDataService.UsdaFoodItem> usdaFood = usdaResolver.apply(cleanedName);
+            
+            if (usdaFood.isPresent()) {
+                // Create food detection with Vision API bounding box
+                FoodDetection.DetectedFood food = createDetectedFoodFromVisionAPI(
+                    cleanedName, confidence, usdaFood.get(), visionObject, 
+                    referenceObjects, imageWidth, imageHeight, upload.getScale());
+                detectedFoods.add(food);
+                logger.debug("Added food item: {} with USDA match", cleanedName);
+            } else {
+                logger.debug("Discarding Vision API detection (not a food item): {}", cleanedName);
+            }
+        }
+
+        return detectedFoods;
+    }
+
+    /**
+     * Deduplicate, sort and log the final food list for one image
+     */
+    private List<FoodDetection.DetectedFood> finishDetection(List<FoodDetection.DetectedFood> detectedFoods) {
         // Remove duplicates and sort by confidence
         detectedFoods = removeDuplicatesAndSort(detectedFoods);
         
-        logger.info("===== PIPELINE COMPLETE =====");
-        logger.info("Successfully detected {} food items", detectedFoods.size());
+        logger.debug("===== PIPELINE COMPLETE =====");
+        logger.debug("Successfully detected {} food items", detectedFoods.size());
         
         // Log final summary
         for (int i = 0; i < detectedFoods.size(); i++) {
             FoodDetection.DetectedFood food = detectedFoods.get(i);
-            logger.info("  {}. {} - {}g - {} kcal", 
+            logger.debug("  {}. {} - {}g - {} kcal", 
                        i + 1, food.getName(), 
                        String.format("%.1f", food.getEstimatedGrams()), 
                        String.format("%.1f", food.getEstimatedCalories()));
@@ -325,22 +1040,21 @@ public class VisionService {
         int width = pixelMaxX - pixelMinX;
         int height = pixelMaxY - pixelMinY;
 
-        logger.info("Normalized to pixel conversion: ({:.3f},{:.3f})-({:.3f},{:.3f}) → ({}x{}) pixels at ({}, {})", 
+        logger.debug("Normalized to pixel conversion: ({:.3f},{:.3f})-({:.3f},{:.3f}) → ({}x{}) pixels at ({}, {})", 
                    minX, minY, maxX, maxY, width, height, pixelMinX, pixelMinY);
 
         return new FoodDetection.BoundingBox(pixelMinX, pixelMinY, width, height);
     }
 
     /**
-     * Extract image dimensions from Vision API image
+     * Display dimensions (after EXIF orientation) read from the image header, without decoding pixels
      */
     private int[] getImageDimensions(byte[] imageBytes) {
         try {
-            // For simplicity, we'll assume common image dimensions
-            // In a production system, you'd decode the image to get actual dimensions
-            // Most smartphone photos are around 1200-4000 pixels wide
-            return new int[]{1200, 800}; // width, height - default assumption
+            ImageIngestionService.ImageInfo info = imageIngestionService.probe(imageBytes);
+            return new int[]{info.getWidth(), info.getHeight()};
         } catch (Exception e) {
+            // Most smartphone photos are around 1200-4000 pixels wide
             logger.warn("Could not determine image dimensions, using defaults: {}", e.getMessage());
             return new int[]{1200, 800};
         }
@@ -522,7 +1236,7 @@ public class VisionService {
             .trim();
 
         if (!originalName.equals(cleanedName)) {
-            logger.info("  Name cleaning: '{}' → '{}'", originalName, cleanedName);
+            logger.debug("  Name cleaning: '{}' → '{}'", originalName, cleanedName);
         } else {
             logger.debug("  Name cleaning: '{}' (no changes)", originalName);
         }
@@ -534,18 +1248,36 @@ public class VisionService {
      * Search USDA with semantic matching and detailed logging (OPTIMIZED)
      */
     private Optional<UsdaFoodDataService.UsdaFoodItem> searchAndLogUSDA(String foodName) {
-        logger.info("  USDA query: '{}'", foodName);
+        logger.debug("  USDA query: '{}'", foodName);
+
+        // A repeat label costs one indexed read instead of USDA calls and forward passes
+        Optional<LabelResolution> memo = pipelineMetrics.time("label_memo", () -> labelResolutionMemo.lookup(foodName));
+        if (memo.isPresent()) {
+            LabelResolution resolution = memo.get();
+            if (resolution.getFdcId() == null) {
+                logger.debug("  ✗ Memoised: no USDA match for '{}'", foodName);
+                return Optional.empty();
+            }
+            logger.debug("  ✓ Memoised USDA match: '{}' → '{}' (similarity: {}, method: {})", foodName,
+                       resolution.getDescription(), String.format("%.3f", resolution.getSimilarity()), resolution.getMethod());
+            return Optional.of(LabelResolutionMemo.toFoodItem(resolution));
+        }
+
+        // With the vector index the label is matched against every FDC food directly, no keyword search
+        if (foodVectorIndexService.isAvailable()) {
+            return searchVectorIndexAndLog(foodName);
+        }
         
         // First, get potential USDA candidates WITHOUT nutrition data (fast)
-        List<UsdaFoodDataService.UsdaFoodCandidate> candidates = 
-            usdaFoodDataService.searchFoodCandidates(foodName, 10); // Get top 10 candidates
+        List<UsdaFoodDataService.UsdaFoodCandidate> candidates = pipelineMetrics.time("usda_search",
+            () -> usdaFoodDataService.searchFoodCandidates(foodName, 10)); // Get top 10 candidates
         
         if (candidates.isEmpty()) {
             logger.warn("  ✗ No USDA candidates found for: '{}'", foodName);
             return Optional.empty();
         }
         
-        logger.info("  Found {} USDA candidates for semantic matching", candidates.size());
+        logger.debug("  Found {} USDA candidates for semantic matching", candidates.size());
         
         // Extract food descriptions for semantic matching
         List<String> candidateDescriptions = candidates.stream()
@@ -556,26 +1288,28 @@ public class VisionService {
         SemanticMatchingService.SemanticMatch semanticMatch = 
             semanticMatchingService.findBestMatch(foodName, candidateDescriptions);
         
-        if (semanticMatch.getBestMatch() != null && semanticMatch.getSimilarity() > 0.3) {
+        if (semanticMatch.getBestMatch() != null && semanticMatch.getSimilarity() > minSimilarity) {
             // Find the corresponding USDA candidate
             UsdaFoodDataService.UsdaFoodCandidate bestCandidate = candidates.stream()
                 .filter(candidate -> candidate.description.equals(semanticMatch.getBestMatch()))
                 .findFirst()
                 .orElse(candidates.get(0)); // Fallback to first candidate
             
-            logger.info("  ✓ USDA semantic match: '{}' → '{}' (similarity: {:.3f}, method: {})", 
+            logger.debug("  ✓ USDA semantic match: '{}' → '{}' (similarity: {:.3f}, method: {})", 
                        foodName, bestCandidate.description, semanticMatch.getSimilarity(), semanticMatch.getMethod());
             
             // NOW fetch nutrition data for ONLY the best match
-            Optional<UsdaFoodDataService.UsdaFoodItem> nutritionData = 
-                usdaFoodDataService.getFoodNutritionByCandidate(bestCandidate);
+            Optional<UsdaFoodDataService.UsdaFoodItem> nutritionData = pipelineMetrics.time("usda_nutrition",
+                () -> usdaFoodDataService.getFoodNutritionByCandidate(bestCandidate));
             
             if (nutritionData.isPresent()) {
                 UsdaFoodDataService.UsdaFoodItem bestItem = nutritionData.get();
-                logger.info("    USDA ID: {}, Calories: {:.1f} kcal/100g", 
+                logger.debug("    USDA ID: {}, Calories: {:.1f} kcal/100g", 
                            bestItem.fdcId, String.format("%.1f", bestItem.caloriesPerHundredGrams));
                 
                 logCalorieExtraction(bestItem);
+                labelResolutionMemo.rememberMatch(foodName, bestItem, bestCandidate.dataType,
+                    semanticMatch.getSimilarity(), semanticMatch.getMethod());
                 return Optional.of(bestItem);
             } else {
                 logger.warn("  ✗ Failed to fetch nutrition data for best match: '{}'", bestCandidate.description);
@@ -585,16 +1319,50 @@ public class VisionService {
         } else {
             logger.warn("  ✗ No good semantic match found for: '{}' (best similarity: {:.3f})", 
                        foodName, semanticMatch.getSimilarity());
+            labelResolutionMemo.rememberNoMatch(foodName, semanticMatch.getSimilarity(), semanticMatch.getMethod());
             return Optional.empty();
         }
     }
 
+    /**
+     * Resolve a label through the HNSW index over all FDC food descriptions
+     */
+    private Optional<UsdaFoodDataService.UsdaFoodItem> searchVectorIndexAndLog(String foodName) {
+        List<HnswIndex.Hit> hits = pipelineMetrics.time("usda_search", () -> foodVectorIndexService.search(foodName, 1));
+        if (hits.isEmpty() || hits.get(0).getSimilarity() <= minSimilarity) {
+            logger.warn("  ✗ No good vector index match found for: '{}' (best similarity: {})", foodName,
+                       hits.isEmpty() ? "n/a" : String.format("%.3f", hits.get(0).getSimilarity()));
+            labelResolutionMemo.rememberNoMatch(foodName, hits.isEmpty() ? 0.0 : hits.get(0).getSimilarity(), "vector-index");
+            return Optional.empty();
+        }
+
+        HnswIndex.Hit hit = hits.get(0);
+        logger.debug("  ✓ USDA vector index match: '{}' → '{}' (similarity: {}, type: {})",
+                   foodName, hit.getDescription(), String.format("%.3f", hit.getSimilarity()), hit.getDataType());
+
+        UsdaFoodDataService.UsdaFoodCandidate candidate = new UsdaFoodDataService.UsdaFoodCandidate();
+        candidate.fdcId = hit.getFdcId();
+        candidate.description = hit.getDescription();
+        candidate.dataType = hit.getDataType();
+
+        Optional<UsdaFoodDataService.UsdaFoodItem> nutritionData =
+            pipelineMetrics.time("usda_nutrition", () -> usdaFoodDataService.getFoodNutritionByCandidate(candidate));
+        if (nutritionData.isPresent()) {
+            logCalorieExtraction(nutritionData.get());
+            labelResolutionMemo.rememberMatch(foodName, nutritionData.get(), hit.getDataType(),
+                hit.getSimilarity(), "vector-index");
+        } else {
+            logger.warn("  ✗ Failed to fetch nutrition data for vector match: '{}'", hit.getDescription());
+        }
+        return nutritionData;
+    }
+
     /**
      * Log calorie extraction details
      */
     private void logCalorieExtraction(UsdaFoodDataService.UsdaFoodItem item) {
         if (item.caloriesPerHundredGrams > 0) {
-            logger.info("  Calories extracted: {:.1f} kcal per 100g", String.format("%.1f", item.caloriesPerHundredGrams));
+            logger.debug("  Calories extracted: {:.1f} kcal per 100g", String.format("%.1f", item.caloriesPerHundredGrams));
         } else {
             logger.warn("  No calorie data available, using estimated value");
         }
@@ -627,7 +1395,7 @@ public class VisionService {
                 referenceObjects.put(objName, bbox);
                 
                 double realSize = knownObjects.get(objName);
-                logger.info("  Reference detected: {} → {:.1f} cm (bbox: {}x{} pixels)", 
+                logger.debug("  Reference detected: {} → {:.1f} cm (bbox: {}x{} pixels)", 
                            objName, realSize, bbox.getWidth(), bbox.getHeight());
             }
         }
@@ -635,7 +1403,7 @@ public class VisionService {
         if (referenceObjects.isEmpty()) {
             logger.warn("  No reference objects detected for scale estimation");
         } else {
-            logger.info("  Found {} reference objects for scale estimation", referenceObjects.size());
+            logger.debug("  Found {} reference objects for scale estimation", referenceObjects.size());
         }
         
         return referenceObjects;
@@ -647,7 +1415,7 @@ public class VisionService {
     private List<String> mapAndLogSpecificFoods(String genericTerm, List<EntityAnnotation> allLabels) {
         List<String> specificFoods = new ArrayList<>();
         
-        logger.info("  Mapping generic term: '{}'", genericTerm);
+        logger.debug("  Mapping generic term: '{}'", genericTerm);
         
         List<String> contextLabels = allLabels.stream()
             .map(annotation -> annotation.getDescription().toLowerCase())
@@ -656,7 +1424,7 @@ public class VisionService {
         List<String> mapped = mapToSpecificFoods(genericTerm, allLabels);
         
         if (!mapped.isEmpty()) {
-            logger.info("  ✓ Mapped to specific foods: {}", mapped);
+            logger.debug("  ✓ Mapped to specific foods: {}", mapped);
         } else {
             logger.debug("  No specific mapping found for: '{}'", genericTerm);
         }
@@ -673,7 +1441,7 @@ public class VisionService {
             Map<String, FoodDetection.BoundingBox> referenceObjects,
             int imageWidth, int imageHeight) {
 
-        logger.info("=== STAGE 5: PORTION ESTIMATION FOR {} (YOLO) ===", foodName.toUpperCase());
+        logger.debug("=== STAGE 5: PORTION ESTIMATION FOR {} (YOLO) ===", foodName.toUpperCase());
         
         FoodDetection.DetectedFood food = new FoodDetection.DetectedFood();
         food.setName(toTitleCase(foodName));
@@ -686,7 +1454,7 @@ public class VisionService {
             yoloDetection.getX1(), yoloDetection.getY1(), 
             yoloDetection.getWidth(), yoloDetection.getHeight());
         
-        logger.info("  YOLO food bounding box: {}x{} pixels at ({}, {})", 
+        logger.debug("  YOLO food bounding box: {}x{} pixels at ({}, {})", 
                    foodBox.getWidth(), foodBox.getHeight(), foodBox.getX(), foodBox.getY());
 
         // Calculate portion size with detailed logging
@@ -710,11 +1478,11 @@ public class VisionService {
         double caloriesPerGram = usdaFood.caloriesPerHundredGrams / 100.0;
         double totalCalories = estimatedGrams * caloriesPerGram;
 
-        logger.info("=== STAGE 6: FINAL CALORIE CALCULATION (YOLO) ===");
-        logger.info("  Food: {}", foodName);
-        logger.info("  Estimated portion: {}g", String.format("%.1f", estimatedGrams));
-        logger.info("  USDA calories: {} kcal/100g", String.format("%.1f", usdaFood.caloriesPerHundredGrams));
-        logger.info("  Final calories: {} kcal", String.format("%.1f", totalCalories));
+        logger.debug("=== STAGE 6: FINAL CALORIE CALCULATION (YOLO) ===");
+        logger.debug("  Food: {}", foodName);
+        logger.debug("  Estimated portion: {}g", String.format("%.1f", estimatedGrams));
+        logger.debug("  USDA calories: {} kcal/100g", String.format("%.1f", usdaFood.caloriesPerHundredGrams));
+        logger.debug("  Final calories: {} kcal", String.format("%.1f", totalCalories));
 
         // Set the calculated values
         food.setEstimatedGrams(estimatedGrams);
@@ -739,9 +1507,9 @@ public class VisionService {
             String foodName, double confidence, UsdaFoodDataService.UsdaFoodItem usdaFood,
             LocalizedObjectAnnotation visionObject,
             Map<String, FoodDetection.BoundingBox> referenceObjects,
-            int imageWidth, int imageHeight) {
+            int imageWidth, int imageHeight, double uploadScale) {
 
-        logger.info("=== STAGE 4: PORTION ESTIMATION FOR {} (VISION API) ===", foodName.toUpperCase());
+        logger.debug("=== STAGE 4: PORTION ESTIMATION FOR {} (VISION API) ===", foodName.toUpperCase());
         
         FoodDetection.DetectedFood food = new FoodDetection.DetectedFood();
         food.setName(toTitleCase(foodName));
@@ -755,23 +1523,29 @@ public class VisionService {
         
         // Get vertices to calculate bounding box
         List<com.google.cloud.vision.v1.Vertex> vertices = boundingPoly.getVerticesList();
-        if (vertices.size() >= 2) {
-            // Calculate min/max coordinates
-            int minX = Integer.MAX_VALUE, minY = Integer.MAX_VALUE;
-            int maxX = Integer.MIN_VALUE, maxY = Integer.MIN_VALUE;
-            
-            for (com.google.cloud.vision.v1.Vertex vertex : vertices) {
-                minX = Math.min(minX, vertex.getX());
-                minY = Math.min(minY, vertex.getY());
-                maxX = Math.max(maxX, vertex.getX());
-                maxY = Math.max(maxY, vertex.getY());
+        if (boundingPoly.getNormalizedVerticesCount() >= 2 || vertices.size() >= 2) {
+            FoodDetection.BoundingBox foodBox;
+            if (boundingPoly.getNormalizedVerticesCount() >= 2) {
+                // Normalized coordinates map straight onto the original image
+                foodBox = createBoundingBoxFromNormalized(boundingPoly, imageWidth, imageHeight);
+            } else {
+                // Pixel vertices are in upload coordinates and are scaled back up
+                int minX = Integer.MAX_VALUE, minY = Integer.MAX_VALUE;
+                int maxX = Integer.MIN_VALUE, maxY = Integer.MIN_VALUE;
+
+                for (com.google.cloud.vision.v1.Vertex vertex : vertices) {
+                    minX = Math.min(minX, vertex.getX());
+                    minY = Math.min(minY, vertex.getY());
+                    maxX = Math.max(maxX, vertex.getX());
+                    maxY = Math.max(maxY, vertex.getY());
+                }
+
+                foodBox = new FoodDetection.BoundingBox(
+                    (int) Math.round(minX * uploadScale), (int) Math.round(minY * uploadScale),
+                    (int) Math.round((maxX - minX) * uploadScale), (int) Math.round((maxY - minY) * uploadScale));
             }
             
-            // Convert to pixel coordinates and create bounding box
-            FoodDetection.BoundingBox foodBox = new FoodDetection.BoundingBox(
-                minX, minY, maxX - minX, maxY - minY);
-            
-            logger.info("  Vision API food bounding box: {}x{} pixels at ({}, {})", 
+            logger.debug("  Vision API food bounding box: {}x{} pixels at ({}, {})", 
                        foodBox.getWidth(), foodBox.getHeight(), foodBox.getX(), foodBox.getY());
 
             // Calculate portion size with detailed logging
@@ -795,11 +1569,11 @@ public class VisionService {
             double caloriesPerGram = usdaFood.caloriesPerHundredGrams / 100.0;
             double totalCalories = estimatedGrams * caloriesPerGram;
 
-            logger.info("=== STAGE 5: FINAL CALORIE CALCULATION (VISION API) ===");
-            logger.info("  Food: {}", foodName);
-            logger.info("  Estimated portion: {}g", String.format("%.1f", estimatedGrams));
-            logger.info("  USDA calories: {} kcal/100g", String.format("%.1f", usdaFood.caloriesPerHundredGrams));
-            logger.info("  Final calories: {} kcal", String.format("%.1f", totalCalories));
+            logger.debug("=== STAGE 5: FINAL CALORIE CALCULATION (VISION API) ===");
+            logger.debug("  Food: {}", foodName);
+            logger.debug("  Estimated portion: {}g", String.format("%.1f", estimatedGrams));
+            logger.debug("  USDA calories: {} kcal/100g", String.format("%.1f", usdaFood.caloriesPerHundredGrams));
+            logger.debug("  Final calories: {} kcal", String.format("%.1f", totalCalories));
 
             // Set the calculated values
             food.setEstimatedGrams(estimatedGrams);
@@ -833,7 +1607,7 @@ public class VisionService {
             LocalizedObjectAnnotation objectAnnotation, List<LocalizedObjectAnnotation> allObjects,
             Map<String, FoodDetection.BoundingBox> referenceObjects) {
 
-        logger.info("=== STAGE 5: PORTION ESTIMATION FOR {} ===", foodName.toUpperCase());
+        logger.debug("=== STAGE 5: PORTION ESTIMATION FOR {} ===", foodName.toUpperCase());
         
         FoodDetection.DetectedFood food = new FoodDetection.DetectedFood();
         food.setName(toTitleCase(foodName));
@@ -851,7 +1625,7 @@ public class VisionService {
             int imageHeight = 800;  // Default height
             FoodDetection.BoundingBox foodBox = createBoundingBoxFromNormalized(
                 objectAnnotation.getBoundingPoly(), imageWidth, imageHeight);
-            logger.info("  Food bounding box: {}x{} pixels", foodBox.getWidth(), foodBox.getHeight());
+            logger.debug("  Food bounding box: {}x{} pixels", foodBox.getWidth(), foodBox.getHeight());
             
             portionEstimate = portionEstimationService.estimatePortionWithReference(
                 foodBox, referenceObjects, foodName);
@@ -869,11 +1643,11 @@ public class VisionService {
         double caloriesPerGram = usdaFood.caloriesPerHundredGrams / 100.0;
         double totalCalories = estimatedGrams * caloriesPerGram;
 
-        logger.info("=== STAGE 6: FINAL CALORIE CALCULATION ===");
-        logger.info("  Food: {}", foodName);
-        logger.info("  Estimated portion: {:.1f}g", estimatedGrams);
-        logger.info("  USDA calories: {:.1f} kcal/100g", usdaFood.caloriesPerHundredGrams);
-        logger.info("  Final calories: {:.1f} kcal", totalCalories);
+        logger.debug("=== STAGE 6: FINAL CALORIE CALCULATION ===");
+        logger.debug("  Food: {}", foodName);
+        logger.debug("  Estimated portion: {:.1f}g", estimatedGrams);
+        logger.debug("  USDA calories: {:.1f} kcal/100g", usdaFood.caloriesPerHundredGrams);
+        logger.debug("  Final calories: {:.1f} kcal", totalCalories);
 
         // Set the calculated values
         food.setEstimatedGrams(estimatedGrams);
@@ -903,15 +1677,15 @@ public class VisionService {
     private void logPortionEstimation(String foodName, PortionEstimationService.PortionEstimate estimate, 
                                     boolean hasReference) {
         if (hasReference) {
-            logger.info("  Pixels per cm: {}", String.format("%.2f", 1.0 / estimate.scaleFactor));
-            logger.info("  Food area: {} cm²", String.format("%.1f", estimate.dimensions.area));
-            logger.info("  Reference object: {}", estimate.referenceObject);
-            logger.info("  Scale confidence: {}", String.format("%.2f", estimate.confidence));
+            logger.debug("  Pixels per cm: {}", String.format("%.2f", 1.0 / estimate.scaleFactor));
+            logger.debug("  Food area: {} cm²", String.format("%.1f", estimate.dimensions.area));
+            logger.debug("  Reference object: {}", estimate.referenceObject);
+            logger.debug("  Scale confidence: {}", String.format("%.2f", estimate.confidence));
         } else {
-            logger.info("  Using default portion estimate (no reference object)");
+            logger.debug("  Using default portion estimate (no reference object)");
         }
-        logger.info("  Estimated weight: {}g", String.format("%.1f", estimate.estimatedGrams));
-        logger.info("  Estimation method: {}", estimate.estimationMethod);
+        logger.debug("  Estimated weight: {}g", String.format("%.1f", estimate.estimatedGrams));
+        logger.debug("  Estimation method: {}", estimate.estimationMethod);
     }
 
     /**
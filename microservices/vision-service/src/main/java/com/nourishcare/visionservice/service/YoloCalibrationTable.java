@@ -0,0 +1,113 @@
+package com.nourishcare.visionservice.service;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Offline calibration of YOLO model profiles: latency and accuracy of each (variant, input size)
+ * measured on the deployment hardware and the food validation set.
+ * CSV lines are {@code variant,input_size,latency_ms,accuracy}; blank lines and lines starting
+ * with '#' are ignored. Latency should be a high percentile (p95) of single-image inference.
+ */
+public final class YoloCalibrationTable {
+
+    private final List<Entry> entries;
+
+    private YoloCalibrationTable(List<Entry> entries) {
+        this.entries = entries;
+    }
+
+    public static YoloCalibrationTable empty() {
+        return new YoloCalibrationTable(Collections.emptyList());
+    }
+
+    public static YoloCalibrationTable load(Path path) throws IOException {
+        return parse(Files.readAllLines(path, StandardCharsets.UTF_8));
+    }
+
+    static YoloCalibrationTable parse(List<String> lines) {
+        List<Entry> entries = new ArrayList<>();
+        for (int i = 0; i < lines.size(); i++) {
+            String line = lines.get(i).trim();
+            if (line.isEmpty() || line.startsWith("#") || line.toLowerCase().startsWith("variant,")) {
+                continue;
+            }
+            String[] fields = line.split(",");
+            if (fields.length != 4) {
+                throw new IllegalArgumentException("Calibration line " + (i + 1) + " needs 4 fields: " + line);
+            }
+            try {
+                entries.add(new Entry(new YoloModelProfile(fields[0].trim(), Integer.parseInt(fields[1].trim())),
+                    Double.parseDouble(fields[2].trim()), Double.parseDouble(fields[3].trim())));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Calibration line " + (i + 1) + " is malformed: " + line, e);
+            }
+        }
+        return new YoloCalibrationTable(entries);
+    }
+
+    public boolean isEmpty() {
+        return entries.isEmpty();
+    }
+
+    public List<Entry> getEntries() {
+        return entries;
+    }
+
+    /**
+     * The cheapest available profile expected to meet the budget's accuracy target within its latency.
+     * If none within the latency budget is accurate enough, the most accurate one within it is chosen;
+     * if none fits the budget at all, the fastest. Empty when no available profile is calibrated.
+     */
+    public Optional<Entry> select(InferenceBudget budget, Set<YoloModelProfile> available) {
+        List<Entry> calibrated = entries.stream()
+            .filter(entry -> available.contains(entry.getProfile()))
+            .collect(Collectors.toList());
+        if (calibrated.isEmpty()) {
+            return Optional.empty();
+        }
+
+        List<Entry> withinBudget = calibrated.stream()
+            .filter(entry -> budget.isUnbounded() || entry.getLatencyMs() <= budget.getLatencyMs())
+            .collect(Collectors.toList());
+
+        Optional<Entry> cheapestAccurate = withinBudget.stream()
+            .filter(entry -> entry.getAccuracy() >= budget.getAccuracyTarget())
+            .min(Comparator.comparingDouble(Entry::getLatencyMs));
+        if (cheapestAccurate.isPresent()) {
+            return cheapestAccurate;
+        }
+        if (!withinBudget.isEmpty()) {
+            return withinBudget.stream().max(Comparator.comparingDouble(Entry::getAccuracy));
+        }
+        return calibrated.stream().min(Comparator.comparingDouble(Entry::getLatencyMs));
+    }
+
+    /**
+     * Calibrated latency and accuracy of one profile
+     */
+    public static final class Entry {
+        private final YoloModelProfile profile;
+        private final double latencyMs;
+        private final double accuracy;
+
+        Entry(YoloModelProfile profile, double latencyMs, double accuracy) {
+            this.profile = profile;
+            this.latencyMs = latencyMs;
+            this.accuracy = accuracy;
+        }
+
+        public YoloModelProfile getProfile() { return profile; }
+        public double getLatencyMs() { return latencyMs; }
+        public double getAccuracy() { return accuracy; }
+    }
+}
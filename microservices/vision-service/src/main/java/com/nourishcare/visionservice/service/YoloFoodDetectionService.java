@@ -2,21 +2,39 @@ package com.nourishcare.visionservice.service;
 
 import ai.onnxruntime.*;
 import ai.onnxruntime.OrtSession.Result;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.core.io.ClassPathResource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
 import org.springframework.stereotype.Service;
 
 import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
+import java.awt.Rectangle;
 import java.awt.image.BufferedImage;
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.FloatBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 /**
  * YOLO Food Detection Service using ONNX Runtime
- * Detects food items from images using YOLOv8 model
+ * Detects food items from images using YOLOv8 models. Several model variants can be loaded and
+ * run at several letterboxed input sizes; each request's inference budget picks the cheapest
+ * profile that the offline calibration table expects to be accurate enough.
  */
 @Service
 public class YoloFoodDetectionService {
@@ -24,13 +42,115 @@ public class YoloFoodDetectionService {
     private static final Logger logger = LoggerFactory.getLogger(YoloFoodDetectionService.class);
     
     private OrtEnvironment env;
-    private OrtSession session;
+    private final Map<String, OrtSession> sessions = new LinkedHashMap<>();
+    private final Set<YoloModelProfile> profiles = new LinkedHashSet<>();
+    private YoloModelProfile defaultProfile;
+    private YoloCalibrationTable calibration = YoloCalibrationTable.empty();
+    private YoloPreprocessor preprocessor;
+    private final YoloOutputDecoder outputDecoder =
+        new YoloOutputDecoder(CLASS_NAMES, CONFIDENCE_THRESHOLD, NMS_THRESHOLD);
+    private YoloInferenceScheduler scheduler;
+    private CompletableFuture<Void> loaded;
+    
+    @Autowired
+    private MeterRegistry meterRegistry;
+    
+    @Autowired
+    private ModelArtifactManager modelArtifactManager;
+    
+    @Autowired
+    private PipelineMetrics pipelineMetrics;
+    
+    @Autowired
+    @Qualifier("yoloTilePool")
+    private ForkJoinPool tilePool;
+    
+    // Model variants as name=location pairs; bare locations are looked up in the models directory, then
+    // on the classpath (see ModelArtifactManager); "file:" and "classpath:" locations are used as given
+    @Value("${vision.yolo.variants:s=yolov8s.onnx}")
+    private String variantList;
+    
+    @Value("${vision.yolo.default-variant:s}")
+    private String defaultVariant;
+    
+    // Letterboxed input sizes to offer; models exported with a fixed input shape only run at that size
+    @Value("${vision.yolo.input-sizes:640}")
+    private String inputSizeList;
+    
+    @Value("${vision.yolo.default-input-size:640}")
+    private int defaultInputSize;
+    
+    // CSV of measured latency and accuracy per variant and input size (see YoloCalibrationTable)
+    @Value("${vision.yolo.calibration-file:}")
+    private String calibrationFile;
+    
+    // Session profile configuration
+    @Value("${vision.yolo.model-cache-dir:${java.io.tmpdir}/nourishcare/onnx-cache}")
+    private String modelCacheDir;
+    
+    @Value("${vision.yolo.session.optimization-level:ALL_OPT}")
+    private OrtSession.SessionOptions.OptLevel optimizationLevel;
+    
+    @Value("${vision.yolo.session.execution-mode:SEQUENTIAL}")
+    private OrtSession.SessionOptions.ExecutionMode executionMode;
+    
+    @Value("${vision.yolo.session.intra-op-threads:0}")
+    private int intraOpThreads;
+    
+    @Value("${vision.yolo.session.inter-op-threads:0}")
+    private int interOpThreads;
+    
+    @Value("${vision.yolo.session.cpu-arena:true}")
+    private boolean cpuArenaEnabled;
+    
+    @Value("${vision.yolo.session.memory-pattern:true}")
+    private boolean memoryPatternEnabled;
+    
+    // Micro-batching configuration
+    @Value("${vision.yolo.batching.enabled:true}")
+    private boolean batchingEnabled;
+    
+    @Value("${vision.yolo.batching.max-batch-size:8}")
+    private int batchMaxSize;
+    
+    @Value("${vision.yolo.batching.max-wait-ms:5}")
+    private long batchMaxWaitMs;
+    
+    @Value("${vision.yolo.batching.queue-capacity:256}")
+    private int batchQueueCapacity;
+    
+    @Value("${vision.yolo.batching.dispatchers:1}")
+    private int batchDispatchers;
+    
+    @Value("${vision.yolo.batching.result-timeout-ms:10000}")
+    private long batchResultTimeoutMs;
+    
+    // Input buffers kept between inferences (one per concurrently running inference is enough);
+    // inferences beyond that allocate a buffer that is dropped afterwards
+    @Value("${vision.yolo.preprocess.pooled-buffers:4}")
+    private int pooledInputBuffers;
+    
+    // Tiled inference: images whose longer side reaches min-long-side are cut into overlapping
+    // native-resolution tiles, run in parallel and merged, instead of being squashed to the model input
+    @Value("${vision.yolo.tiling.enabled:false}")
+    private boolean tilingEnabled;
+    
+    @Value("${vision.yolo.tiling.tile-size:640}")
+    private int tileSize;
+    
+    @Value("${vision.yolo.tiling.overlap:0.2}")
+    private float tileOverlap;
+    
+    @Value("${vision.yolo.tiling.min-long-side:1920}")
+    private int tilingMinLongSide;
     
     // YOLO model parameters
-    private static final int INPUT_WIDTH = 640;
-    private static final int INPUT_HEIGHT = 640;
     private static final float CONFIDENCE_THRESHOLD = 0.3f;
     private static final float NMS_THRESHOLD = 0.4f;
+    // Containment or alignment above which a tile-cut box is merged with a same-class box across a seam
+    private static final float SEAM_MERGE_THRESHOLD = 0.6f;
+    // Detection path tag of the YOLO stage metrics
+    private static final String PATH_YOLO = "yolo";
     
     // Food class names from test.yaml
     private static final String[] CLASS_NAMES = {
@@ -50,62 +170,225 @@ public class YoloFoodDetectionService {
     
     @PostConstruct
     public void initialize() {
+        logger.info("🚀 Initializing YOLO Food Detection Service...");
+        preprocessor = new YoloPreprocessor(pooledInputBuffers);
+        // Loads on the model loader pool, in parallel with the embedding model; callers wait for it
+        loaded = modelArtifactManager.load("yolo", () -> {
+            loadModels();
+            return null;
+        });
+    }
+    
+    private void loadModels() {
         try {
-            logger.info("🚀 Initializing YOLO Food Detection Service...");
-            
             // Initialize ONNX Runtime environment
             env = OrtEnvironment.getEnvironment();
             
-            // Load YOLO model from resources - copy to temp file first
-            ClassPathResource modelResource = new ClassPathResource("yolov8s.onnx");
-            
-            // Create temporary file
-            java.io.File tempFile = java.io.File.createTempFile("yolov8s", ".onnx");
-            tempFile.deleteOnExit();
-            
-            // Copy resource to temp file
-            try (java.io.InputStream inputStream = modelResource.getInputStream();
-                 java.io.FileOutputStream outputStream = new java.io.FileOutputStream(tempFile)) {
-                
-                byte[] buffer = new byte[8192];
-                int bytesRead;
-                while ((bytesRead = inputStream.read(buffer)) != -1) {
-                    outputStream.write(buffer, 0, bytesRead);
-                }
-            }
-            
-            String modelPath = tempFile.getAbsolutePath();
+            // Load every YOLO variant through the stable on-disk cache, preferring a previously optimised graph
+            loadVariants();
             
-            // Create ONNX session
-            OrtSession.SessionOptions sessionOptions = new OrtSession.SessionOptions();
-            session = env.createSession(modelPath, sessionOptions);
-            
-            logger.info("✅ YOLO model loaded successfully from: {}", modelPath);
             logger.info("📊 Model supports {} food classes", CLASS_NAMES.length);
             
             // Log model input/output info
             logModelInfo();
             
+            if (!calibrationFile.isEmpty()) {
+                calibration = YoloCalibrationTable.load(Paths.get(calibrationFile));
+                logger.info("✅ YOLO calibration table loaded: {} entries from {}",
+                           calibration.getEntries().size(), calibrationFile);
+            }
+            
+            // Micro-batching serves the default profile; other profiles run their requests directly
+            if (batchingEnabled) {
+                int maxBatchSize = resolveMaxBatchSize();
+                if (maxBatchSize > 1) {
+                    scheduler = new YoloInferenceScheduler(images -> runBatch(images, defaultProfile), maxBatchSize, batchMaxWaitMs,
+                        batchQueueCapacity, batchDispatchers, meterRegistry);
+                    scheduler.start();
+                }
+            }
+            
         } catch (Exception e) {
             logger.error("❌ Failed to initialize YOLO Food Detection Service: {}", e.getMessage(), e);
             throw new RuntimeException("YOLO model loading failed", e);
         }
     }
     
+    /**
+     * Open a session per configured variant and work out the input sizes each one can run at
+     */
+    private void loadVariants() throws IOException, OrtException {
+        List<Integer> inputSizes = new ArrayList<>();
+        for (String size : inputSizeList.split(",")) {
+            if (!size.trim().isEmpty()) {
+                inputSizes.add(Integer.parseInt(size.trim()));
+            }
+        }
+        
+        for (String pair : variantList.split(",")) {
+            String[] parts = pair.split("=", 2);
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("YOLO variant must be name=location: " + pair);
+            }
+            String name = parts[0].trim();
+            OrtSession variantSession = createSession(modelArtifactManager.resolveFile(parts[1].trim()));
+            sessions.put(name, variantSession);
+            
+            int fixedSize = fixedInputSize(variantSession);
+            if (fixedSize > 0) {
+                profiles.add(new YoloModelProfile(name, fixedSize));
+                logger.info("📐 YOLO variant '{}' has a fixed {}px input", name, fixedSize);
+            } else {
+                for (int size : inputSizes) {
+                    profiles.add(new YoloModelProfile(name, size));
+                }
+            }
+        }
+        
+        if (!sessions.containsKey(defaultVariant)) {
+            throw new IllegalStateException("Default YOLO variant '" + defaultVariant + "' is not configured");
+        }
+        defaultProfile = new YoloModelProfile(defaultVariant, defaultInputSize);
+        if (!profiles.contains(defaultProfile)) {
+            defaultProfile = profiles.stream().filter(p -> p.getVariant().equals(defaultVariant)).findFirst().get();
+            logger.warn("Default YOLO input size {} is not available, using {}", defaultInputSize, defaultProfile);
+        }
+        logger.info("✅ YOLO profiles: {} (default {})", profiles, defaultProfile);
+    }
+    
+    /**
+     * Input size of a model exported with a fixed spatial shape, or 0 if height and width are dynamic
+     */
+    private int fixedInputSize(OrtSession variantSession) throws OrtException {
+        NodeInfo input = variantSession.getInputInfo().get("images");
+        if (input != null && input.getInfo() instanceof TensorInfo) {
+            long[] shape = ((TensorInfo) input.getInfo()).getShape();
+            if (shape.length == 4 && shape[2] > 0 && shape[3] > 0) {
+                return (int) Math.max(shape[2], shape[3]);
+            }
+        }
+        return 0;
+    }
+    
+    /**
+     * Create the ONNX session from the model cache directory.
+     * The model is copied there once per model checksum; the first start also saves the
+     * optimised graph so later starts load it directly. Only hardware-independent optimisations
+     * (up to EXTENDED_OPT) are saved, keyed by the ONNX Runtime version and CPU architecture;
+     * ALL_OPT layout transformations depend on the host CPU and are re-applied at every load.
+     */
+    private OrtSession createSession(ModelArtifactManager.ModelFile model) throws IOException, OrtException {
+        Path cacheDir = Paths.get(modelCacheDir);
+        Files.createDirectories(cacheDir);
+        
+        // The content checksum identifies the model version, the same way MiniLM is identified
+        Resource modelResource = model.getResource();
+        String fingerprint = model.getChecksum().substring(0, 16);
+        String baseName = modelResource.getFilename().replace(".onnx", "") + "-" + fingerprint;
+        Path modelFile = cacheDir.resolve(baseName + ".onnx");
+        OrtSession.SessionOptions.OptLevel savedLevel =
+            optimizationLevel.compareTo(OrtSession.SessionOptions.OptLevel.EXTENDED_OPT) > 0
+                ? OrtSession.SessionOptions.OptLevel.EXTENDED_OPT : optimizationLevel;
+        Path optimizedFile = cacheDir.resolve(baseName + "-ort" + env.getVersion() + "-" + System.getProperty("os.arch")
+            + "-" + savedLevel.name().toLowerCase() + ".opt.onnx");
+        // Whatever the saved graph lacks is applied when it is loaded
+        OrtSession.SessionOptions.OptLevel loadLevel = optimizationLevel == savedLevel
+            ? OrtSession.SessionOptions.OptLevel.NO_OPT : optimizationLevel;
+        
+        if (Files.exists(optimizedFile)) {
+            try (OrtSession.SessionOptions options = createSessionOptions(loadLevel)) {
+                OrtSession cached = env.createSession(optimizedFile.toString(), options);
+                logger.info("✅ YOLO model loaded from optimised cache: {}", optimizedFile);
+                return cached;
+            } catch (OrtException e) {
+                logger.warn("Cached optimised YOLO model is unusable, rebuilding: {}", e.getMessage());
+                Files.deleteIfExists(optimizedFile);
+            }
+        }
+        
+        if (!Files.exists(modelFile)) {
+            // Copy through a private temp file so concurrent replicas never see a partial model
+            Path tempFile = Files.createTempFile(cacheDir, baseName, ".tmp");
+            try (InputStream inputStream = modelResource.getInputStream()) {
+                Files.copy(inputStream, tempFile, StandardCopyOption.REPLACE_EXISTING);
+            }
+            moveIntoCache(tempFile, modelFile);
+            logger.info("📦 YOLO model copied to cache: {}", modelFile);
+        }
+        
+        Path tempOptimizedFile = cacheDir.resolve(baseName + "." + UUID.randomUUID() + ".opt.tmp");
+        try (OrtSession.SessionOptions options = createSessionOptions(savedLevel)) {
+            options.setOptimizedModelFilePath(tempOptimizedFile.toString());
+            OrtSession created = env.createSession(modelFile.toString(), options);
+            if (!Files.exists(tempOptimizedFile)) {
+                logger.warn("✅ YOLO model loaded from {} but the optimised graph was not saved", modelFile);
+                if (loadLevel == OrtSession.SessionOptions.OptLevel.NO_OPT) {
+                    return created;
+                }
+                created.close();
+                try (OrtSession.SessionOptions fullOptions = createSessionOptions(optimizationLevel)) {
+                    return env.createSession(modelFile.toString(), fullOptions);
+                }
+            }
+            moveIntoCache(tempOptimizedFile, optimizedFile);
+            logger.info("✅ YOLO model loaded from {} (optimised graph saved to {})", modelFile, optimizedFile);
+            if (loadLevel == OrtSession.SessionOptions.OptLevel.NO_OPT) {
+                return created;
+            }
+            // The session that saved the graph stopped at the saved level; reload it with the host-specific passes
+            created.close();
+        }
+        try (OrtSession.SessionOptions options = createSessionOptions(loadLevel)) {
+            return env.createSession(optimizedFile.toString(), options);
+        }
+    }
+    
+    private OrtSession.SessionOptions createSessionOptions(OrtSession.SessionOptions.OptLevel level) throws OrtException {
+        OrtSession.SessionOptions options = new OrtSession.SessionOptions();
+        options.setOptimizationLevel(level);
+        options.setExecutionMode(executionMode);
+        options.setCPUArenaAllocator(cpuArenaEnabled);
+        options.setMemoryPatternOptimization(memoryPatternEnabled);
+        // 0 keeps the ONNX Runtime default (one thread per physical core)
+        if (intraOpThreads > 0) {
+            options.setIntraOpNumThreads(intraOpThreads);
+        }
+        if (interOpThreads > 0) {
+            options.setInterOpNumThreads(interOpThreads);
+        }
+        return options;
+    }
+    
+    private void moveIntoCache(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            // Another replica won the race; its copy is equivalent
+            Files.deleteIfExists(source);
+            if (!Files.exists(target)) {
+                throw e;
+            }
+        }
+    }
+    
     private void logModelInfo() {
         try {
             logger.info("🔍 YOLO Model Information:");
             
-            // Input info
-            Map<String, NodeInfo> inputInfo = session.getInputInfo();
-            for (Map.Entry<String, NodeInfo> entry : inputInfo.entrySet()) {
-                logger.info("  Input: {} -> {}", entry.getKey(), entry.getValue());
-            }
-            
-            // Output info
-            Map<String, NodeInfo> outputInfo = session.getOutputInfo();
-            for (Map.Entry<String, NodeInfo> entry : outputInfo.entrySet()) {
-                logger.info("  Output: {} -> {}", entry.getKey(), entry.getValue());
+            for (Map.Entry<String, OrtSession> variant : sessions.entrySet()) {
+                logger.info("  Variant: {}", variant.getKey());
+                
+                // Input info
+                Map<String, NodeInfo> inputInfo = variant.getValue().getInputInfo();
+                for (Map.Entry<String, NodeInfo> entry : inputInfo.entrySet()) {
+                    logger.info("  Input: {} -> {}", entry.getKey(), entry.getValue());
+                }
+                
+                // Output info
+                Map<String, NodeInfo> outputInfo = variant.getValue().getOutputInfo();
+                for (Map.Entry<String, NodeInfo> entry : outputInfo.entrySet()) {
+                    logger.info("  Output: {} -> {}", entry.getKey(), entry.getValue());
+                }
             }
             
         } catch (Exception e) {
@@ -116,8 +399,11 @@ public class YoloFoodDetectionService {
     @PreDestroy
     public void cleanup() {
         try {
-            if (session != null) {
-                session.close();
+            if (scheduler != null) {
+                scheduler.shutdown();
+            }
+            for (OrtSession variantSession : sessions.values()) {
+                variantSession.close();
             }
             if (env != null) {
                 env.close();
@@ -129,222 +415,271 @@ public class YoloFoodDetectionService {
     }
     
     /**
-     * Detect food items in an image using YOLO model
+     * Largest square model input size in pixels; images need not be decoded larger than this
+     */
+    public int getInputSize() {
+        loaded.join();
+        return profiles.stream().mapToInt(YoloModelProfile::getInputSize).max().orElse(defaultInputSize);
+    }
+    
+    /**
+     * Profile to run under the budget: the calibration table's choice, or the default profile
+     * when there is no budget or nothing relevant is calibrated
+     */
+    public YoloModelProfile selectProfile(InferenceBudget budget) {
+        loaded.join();
+        if (budget == null) {
+            return defaultProfile;
+        }
+        return calibration.select(budget, profiles)
+            .map(YoloCalibrationTable.Entry::getProfile)
+            .orElse(defaultProfile);
+    }
+
+    /**
+     * Whether an image of this size is run as tiles rather than as a single squashed frame
+     */
+    public boolean usesTiling(int width, int height) {
+        return tilingEnabled && Math.max(width, height) >= tilingMinLongSide;
+    }
+    
+    /**
+     * Longer side to decode an image of this size at: native resolution for tiling, else the model input size
+     */
+    public int getDecodeSize(int width, int height) {
+        return usesTiling(width, height) ? 0 : getInputSize();
+    }
+    
+    /**
+     * Run synthetic inferences through every profile, then through the default path (micro-batching
+     * or tiling, depending on size), so JIT compilation and ONNX Runtime kernel selection and arena
+     * growth happen before real traffic
      */
-    public List<YoloDetection> detectFoodItems(BufferedImage image) {
+    public void warmUp(List<BufferedImage> images, int iterations) throws OrtException, IOException {
+        loaded.join();
+        for (int i = 0; i < iterations; i++) {
+            for (YoloModelProfile profile : profiles) {
+                for (BufferedImage image : images) {
+                    runBatch(Collections.singletonList(image), profile);
+                }
+            }
+            for (BufferedImage image : images) {
+                detectFoodItems(image);
+            }
+        }
+    }
+    
+    /**
+     * Detect food items in an image using the default YOLO profile
+     */
+    public List<YoloDetection> detectFoodItems(BufferedImage image) throws IOException {
+        return detectFoodItems(image, null);
+    }
+    
+    /**
+     * Detect food items in an image using the YOLO profile chosen for the budget.
+     * An empty list means the model found nothing; inference failures are thrown, never reported as empty.
+     *
+     * @throws IOException if inference failed or its micro-batch did not complete in time
+     */
+    public List<YoloDetection> detectFoodItems(BufferedImage image, InferenceBudget budget) throws IOException {
         try {
-            logger.info("🔍 Detecting food items with YOLO model...");
-            
-            // Preprocess image
-            float[] inputArray = preprocessImage(image);
-            
-            // Create input tensor
-            long[] inputShape = {1, 3, INPUT_HEIGHT, INPUT_WIDTH};
-            OnnxTensor inputTensor = OnnxTensor.createTensor(env, FloatBuffer.wrap(inputArray), inputShape);
+            YoloModelProfile profile = selectProfile(budget);
+            logger.debug("Detecting food items with YOLO profile {} (budget: {})", profile, budget);
             
-            Map<String, OnnxTensor> inputs = Collections.singletonMap("images", inputTensor);
-            
-            // Run inference
-            Result result = session.run(inputs);
-            
-            // Process outputs
-            List<YoloDetection> detections = processOutputs(result, image.getWidth(), image.getHeight());
-            
-            // Cleanup
-            inputTensor.close();
-            result.close();
+            List<YoloDetection> detections;
+            if (usesTiling(image.getWidth(), image.getHeight())) {
+                profile = defaultProfile;
+                detections = detectFoodItemsTiled(image);
+            } else if (scheduler != null && profile.equals(defaultProfile)) {
+                // Join the next micro-batch with other concurrent callers
+                CompletableFuture<List<YoloDetection>> pending = scheduler.submit(image);
+                try {
+                    detections = pending.get(batchResultTimeoutMs, TimeUnit.MILLISECONDS);
+                } catch (TimeoutException | InterruptedException e) {
+                    // Withdraw the request so a dispatcher does not spend a batch slot on it
+                    pending.cancel(false);
+                    throw e;
+                }
+            } else {
+                detections = runBatch(Collections.singletonList(image), profile).get(0);
+            }
+            meterRegistry.counter("vision.yolo.profile", "variant", profile.getVariant(),
+                "input_size", String.valueOf(profile.getInputSize()),
+                "budget", budget != null ? budget.getSource() : "none").increment();
             
-            logger.info("✅ YOLO detected {} food items", detections.size());
+            logger.debug("YOLO detected {} food items", detections.size());
             return detections;
             
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for YOLO inference", e);
+        } catch (ExecutionException e) {
+            logger.error("❌ YOLO food detection failed: {}", e.getCause().getMessage(), e.getCause());
+            throw new IOException("YOLO inference failed: " + e.getCause().getMessage(), e.getCause());
         } catch (Exception e) {
             logger.error("❌ YOLO food detection failed: {}", e.getMessage(), e);
-            return new ArrayList<>();
+            throw new IOException("YOLO inference failed: " + e.getMessage(), e);
         }
     }
     
     /**
-     * Preprocess image for YOLO model
+     * Tiled inference on the fork-join pool: one whole-frame pass for large items plus overlapping
+     * native-resolution tiles for small ones, merged by a global NMS. Tiles bypass micro-batching
+     * and run as independent session runs, so one large image spreads across all workers.
      */
-    private float[] preprocessImage(BufferedImage image) {
-        int originalWidth = image.getWidth();
-        int originalHeight = image.getHeight();
-        
-        logger.debug("📏 Original image size: {}x{}", originalWidth, originalHeight);
-        
-        // Resize image to model input size
-        BufferedImage resizedImage = new BufferedImage(INPUT_WIDTH, INPUT_HEIGHT, BufferedImage.TYPE_INT_RGB);
-        resizedImage.getGraphics().drawImage(image, 0, 0, INPUT_WIDTH, INPUT_HEIGHT, null);
-        
-        // Convert to normalized float array [batch, channels, height, width]
-        float[] inputArray = new float[3 * INPUT_HEIGHT * INPUT_WIDTH];
-        
-        for (int y = 0; y < INPUT_HEIGHT; y++) {
-            for (int x = 0; x < INPUT_WIDTH; x++) {
-                int rgb = resizedImage.getRGB(x, y);
-                
-                // Extract RGB values
-                int r = (rgb >> 16) & 0xFF;
-                int g = (rgb >> 8) & 0xFF;
-                int b = rgb & 0xFF;
-                
-                // Normalize to [0, 1] and arrange as CHW format
-                int pixelIndex = y * INPUT_WIDTH + x;
-                inputArray[pixelIndex] = r / 255.0f;                           // R channel
-                inputArray[INPUT_HEIGHT * INPUT_WIDTH + pixelIndex] = g / 255.0f;     // G channel
-                inputArray[2 * INPUT_HEIGHT * INPUT_WIDTH + pixelIndex] = b / 255.0f; // B channel
-            }
-        }
-        
-        return inputArray;
+    private List<YoloDetection> detectFoodItemsTiled(BufferedImage image) {
+        long start = System.nanoTime();
+        int width = image.getWidth();
+        int height = image.getHeight();
+
+        List<Rectangle> regions = new ArrayList<>();
+        regions.add(new Rectangle(0, 0, width, height));
+        regions.addAll(YoloTiling.plan(width, height, tileSize, tileOverlap));
+
+        List<YoloTiling.Candidate> candidates = tilePool.invoke(new TileTask(image, regions, 0, regions.size()));
+        List<YoloDetection> detections = YoloTiling.merge(candidates, NMS_THRESHOLD, SEAM_MERGE_THRESHOLD);
+
+        long elapsed = System.nanoTime() - start;
+        meterRegistry.timer("vision.yolo.tiled.latency").record(elapsed, TimeUnit.NANOSECONDS);
+        meterRegistry.summary("vision.yolo.tiled.tiles").record(regions.size() - 1);
+        logger.debug("Tiled YOLO over {}x{}: {} tiles, {} raw boxes merged to {} in {}ms",
+                   width, height, regions.size() - 1, candidates.size(), detections.size(),
+                   TimeUnit.NANOSECONDS.toMillis(elapsed));
+        return detections;
     }
     
     /**
-     * Process YOLO model outputs
+     * Runs a range of regions, splitting in halves until each task holds a single region
      */
-    private List<YoloDetection> processOutputs(Result result, int originalWidth, int originalHeight) throws OrtException {
-        List<YoloDetection> detections = new ArrayList<>();
-        
-        // Get output tensors
-        OnnxTensor outputTensor = (OnnxTensor) result.get(0);
-        float[][][] output = (float[][][]) outputTensor.getValue();
+    private final class TileTask extends RecursiveTask<List<YoloTiling.Candidate>> {
+        private final BufferedImage image;
+        private final List<Rectangle> regions;
+        private final int from;
+        private final int to;
         
-        logger.info("📊 YOLO output shape: batch={}, features={}, detections={}", 
-                    output.length, output[0].length, output[0][0].length);
-        
-        // YOLOv8 output format: [batch, features, detections] where features = [x_center, y_center, width, height, class_scores...]
-        int numDetections = output[0][0].length;
-        int numFeatures = output[0].length;
-        
-        logger.info("🔍 Processing {} detections with {} features", numDetections, numFeatures);
+        TileTask(BufferedImage image, List<Rectangle> regions, int from, int to) {
+            this.image = image;
+            this.regions = regions;
+            this.from = from;
+            this.to = to;
+        }
         
-        // Process each detection (iterate over the third dimension)
-        for (int i = 0; i < numDetections; i++) {
-            // Extract features for this detection
-            float xCenter = output[0][0][i];     // x_center
-            float yCenter = output[0][1][i];     // y_center 
-            float width = output[0][2][i];       // width
-            float height = output[0][3][i];      // height
-            
-            // YOLOv8 doesn't have objectness confidence, class scores start at index 4
-            // Find best class from class scores (features 4 to 93 for 90 classes)
-            int bestClassIndex = -1;
-            float bestClassScore = 0;
-            
-            for (int j = 4; j < Math.min(numFeatures, 4 + CLASS_NAMES.length); j++) {
-                float classScore = output[0][j][i];
-                if (classScore > bestClassScore) {
-                    bestClassScore = classScore;
-                    bestClassIndex = j - 4; // Adjust for 0-based class index
-                }
-            }
-            
-            // Use class score as confidence (YOLOv8 doesn't have separate objectness)
-            float finalConfidence = bestClassScore;
-            
-            if (i == 0) {
-                logger.info("🎯 First detection debug: x_center={}, y_center={}, width={}, height={}, best_class={}, conf={}", 
-                           xCenter, yCenter, width, height, bestClassIndex >= 0 ? CLASS_NAMES[bestClassIndex] : "none", finalConfidence);
+        @Override
+        protected List<YoloTiling.Candidate> compute() {
+            if (to - from > 1) {
+                int middle = (from + to) >>> 1;
+                TileTask right = new TileTask(image, regions, middle, to);
+                right.fork();
+                List<YoloTiling.Candidate> candidates = new TileTask(image, regions, from, middle).compute();
+                candidates.addAll(right.join());
+                return candidates;
             }
             
-            // Filter by confidence threshold
-            if (finalConfidence > CONFIDENCE_THRESHOLD && bestClassIndex >= 0) {
-                // YOLO coordinates are relative to the 640x640 input image
-                // We need to scale them back to the original image size
-                float scaleX = (float) originalWidth / INPUT_WIDTH;
-                float scaleY = (float) originalHeight / INPUT_HEIGHT;
-                
-                // Convert from center/width format to corner format and scale to original image
-                float x1 = (xCenter - width / 2) * scaleX;
-                float y1 = (yCenter - height / 2) * scaleY;
-                float x2 = (xCenter + width / 2) * scaleX;
-                float y2 = (yCenter + height / 2) * scaleY;
-                
-                logger.info("🎯 Processing detection: class={}, conf={}, yolo_coords=({},{},{},{}), scale=({},{})", 
-                           CLASS_NAMES[bestClassIndex], finalConfidence, xCenter, yCenter, width, height,
-                           scaleX, scaleY);
-                logger.info("    Scaled coords: x1={}, y1={}, x2={}, y2={}", x1, y1, x2, y2);
-                
-                // Ensure coordinates are within image bounds
-                x1 = Math.max(0, Math.min(x1, originalWidth));
-                y1 = Math.max(0, Math.min(y1, originalHeight));
-                x2 = Math.max(0, Math.min(x2, originalWidth));
-                y2 = Math.max(0, Math.min(y2, originalHeight));
-                
-                logger.info("    Final coords: x1={}, y1={}, x2={}, y2={}", x1, y1, x2, y2);
-                
-                YoloDetection detection_obj = new YoloDetection(
-                    CLASS_NAMES[bestClassIndex],
-                    finalConfidence,
-                    (int) x1, (int) y1, (int) x2, (int) y2
-                );
-                
-                detections.add(detection_obj);
-                
-                logger.debug("🎯 Food detected: {} ({:.3f}) at [{:.0f},{:.0f},{:.0f},{:.0f}]",
-                           CLASS_NAMES[bestClassIndex], finalConfidence, x1, y1, x2, y2);
+            Rectangle region = regions.get(from);
+            // Sub-images share the parent raster; the preprocessor reads them in place
+            BufferedImage tile = image.getSubimage(region.x, region.y, region.width, region.height);
+            try {
+                List<YoloTiling.Candidate> candidates = new ArrayList<>();
+                for (YoloDetection detection : runBatch(Collections.singletonList(tile), defaultProfile).get(0)) {
+                    candidates.add(YoloTiling.toImage(detection, region, image.getWidth(), image.getHeight()));
+                }
+                return candidates;
+            } catch (OrtException e) {
+                throw new IllegalStateException("YOLO inference failed for tile " + region, e);
             }
         }
-        
-        // Apply Non-Maximum Suppression
-        return applyNMS(detections, NMS_THRESHOLD);
     }
     
     /**
-     * Apply Non-Maximum Suppression to remove overlapping detections
+     * Run one letterboxed [N,3,S,S] inference over several images and split the outputs per image.
+     * Preprocessing, inference and decoding are recorded as pipeline stages of the yolo path.
      */
-    private List<YoloDetection> applyNMS(List<YoloDetection> detections, float nmsThreshold) {
-        if (detections.isEmpty()) return detections;
-        
-        // Sort by confidence (highest first)
-        detections.sort((a, b) -> Float.compare(b.getConfidence(), a.getConfidence()));
+    private List<List<YoloDetection>> runBatch(List<BufferedImage> images, YoloModelProfile profile) throws OrtException {
+        int batchSize = images.size();
+        int inputSize = profile.getInputSize();
+        int imageFloats = 3 * inputSize * inputSize;
+        OrtSession session = sessions.get(profile.getVariant());
         
-        List<YoloDetection> filteredDetections = new ArrayList<>();
-        boolean[] suppressed = new boolean[detections.size()];
+        // Preprocess every image straight into a pooled direct buffer, held until the input tensor is closed
+        long start = System.nanoTime();
+        FloatBuffer inputBuffer = preprocessor.borrow(batchSize * imageFloats);
+        try {
+            return runBatch(images, profile, session, inputBuffer, start);
+        } finally {
+            preprocessor.release(inputBuffer);
+        }
+    }
+    
+    private List<List<YoloDetection>> runBatch(List<BufferedImage> images, YoloModelProfile profile, OrtSession session,
+                                               FloatBuffer inputBuffer, long start) throws OrtException {
+        int batchSize = images.size();
+        int inputSize = profile.getInputSize();
+        int imageFloats = 3 * inputSize * inputSize;
+        YoloPreprocessor.Letterbox[] letterboxes = new YoloPreprocessor.Letterbox[batchSize];
+        for (int i = 0; i < batchSize; i++) {
+            letterboxes[i] = preprocessor.letterbox(images.get(i), inputSize, inputBuffer, i * imageFloats);
+        }
+        start = recordStage("yolo_preprocess", start);
         
-        for (int i = 0; i < detections.size(); i++) {
-            if (suppressed[i]) continue;
-            
-            YoloDetection current = detections.get(i);
-            filteredDetections.add(current);
+        // Create input tensor (direct buffers are used by ONNX Runtime without copying)
+        long[] inputShape = {batchSize, 3, inputSize, inputSize};
+        try (OnnxTensor inputTensor = OnnxTensor.createTensor(env, inputBuffer, inputShape)) {
+            Map<String, OnnxTensor> inputs = Collections.singletonMap("images", inputTensor);
             
-            // Suppress overlapping detections
-            for (int j = i + 1; j < detections.size(); j++) {
-                if (suppressed[j]) continue;
-                
-                YoloDetection other = detections.get(j);
-                float iou = calculateIoU(current, other);
+            // Run inference
+            Result run;
+            try {
+                run = session.run(inputs);
+            } catch (OrtException e) {
+                pipelineMetrics.record("yolo_inference", PATH_YOLO, PipelineMetrics.OUTCOME_ERROR,
+                    start, System.nanoTime() - start);
+                throw e;
+            }
+            start = recordStage("yolo_inference", start);
+            try (Result result = run) {
+                // Output is [batch, features, anchors]; read it as one flat buffer instead of nested arrays
+                OnnxTensor outputTensor = (OnnxTensor) result.get(0);
+                long[] outputShape = outputTensor.getInfo().getShape();
+                int numFeatures = (int) outputShape[1];
+                int numAnchors = (int) outputShape[2];
+                FloatBuffer output = outputTensor.getFloatBuffer();
                 
-                if (iou > nmsThreshold) {
-                    suppressed[j] = true;
+                // Decode outputs for each image of the batch
+                List<List<YoloDetection>> detections = new ArrayList<>(batchSize);
+                for (int i = 0; i < batchSize; i++) {
+                    BufferedImage image = images.get(i);
+                    detections.add(outputDecoder.decode(output, i * numFeatures * numAnchors,
+                        numFeatures, numAnchors, inputSize, letterboxes[i], image.getWidth(), image.getHeight()));
                 }
+                recordStage("yolo_postprocess", start);
+                return detections;
             }
         }
-        
-        logger.info("📝 NMS: {} -> {} detections", detections.size(), filteredDetections.size());
-        return filteredDetections;
     }
     
     /**
-     * Calculate Intersection over Union (IoU) between two detections
+     * Record a successful stage that started at the given time; returns the end time, where the next stage starts
      */
-    private float calculateIoU(YoloDetection a, YoloDetection b) {
-        // Calculate intersection area
-        int x1 = Math.max(a.getX1(), b.getX1());
-        int y1 = Math.max(a.getY1(), b.getY1());
-        int x2 = Math.min(a.getX2(), b.getX2());
-        int y2 = Math.min(a.getY2(), b.getY2());
-        
-        if (x2 <= x1 || y2 <= y1) return 0.0f;
-        
-        int intersectionArea = (x2 - x1) * (y2 - y1);
-        
-        // Calculate union area
-        int areaA = a.getArea();
-        int areaB = b.getArea();
-        int unionArea = areaA + areaB - intersectionArea;
-        
-        return (float) intersectionArea / unionArea;
+    private long recordStage(String stage, long start) {
+        long end = System.nanoTime();
+        pipelineMetrics.record(stage, PATH_YOLO, PipelineMetrics.OUTCOME_SUCCESS, start, end - start);
+        return end;
+    }
+    
+    /**
+     * Largest batch the loaded model accepts: models exported with a fixed batch dimension only take 1
+     */
+    private int resolveMaxBatchSize() throws OrtException {
+        NodeInfo input = sessions.get(defaultProfile.getVariant()).getInputInfo().get("images");
+        if (input != null && input.getInfo() instanceof TensorInfo) {
+            long[] shape = ((TensorInfo) input.getInfo()).getShape();
+            if (shape.length > 0 && shape[0] > 0) {
+                logger.warn("YOLO model has a fixed batch size of {}, micro-batching limited accordingly", shape[0]);
+                return (int) Math.min(shape[0], batchMaxSize);
+            }
+        }
+        return batchMaxSize;
     }
     
     /**
@@ -0,0 +1,199 @@
+package com.nourishcare.visionservice.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Dynamic micro-batching for YOLO inference.
+ * Concurrent callers are queued; dispatcher threads collect up to maxBatchSize images within
+ * maxWait of the oldest request, run them as one [N,3,H,W] tensor and hand each caller its own detections.
+ * Callers that give up cancel their future; cancelled requests are dropped instead of being batched.
+ */
+public class YoloInferenceScheduler {
+
+    private static final Logger logger = LoggerFactory.getLogger(YoloInferenceScheduler.class);
+
+    /**
+     * Runs one batch and returns detections per image, in input order
+     */
+    public interface BatchRunner {
+        List<List<YoloFoodDetectionService.YoloDetection>> run(List<BufferedImage> images) throws Exception;
+    }
+
+    private final BatchRunner runner;
+    private final int maxBatchSize;
+    private final long maxWaitNanos;
+    private final BlockingQueue<PendingInference> queue;
+    private final List<Thread> dispatchers = new ArrayList<>();
+
+    private final DistributionSummary batchSizes;
+    private final Timer queueWait;
+    private final Timer batchLatency;
+    private final Counter cancelled;
+
+    private volatile boolean running;
+
+    public YoloInferenceScheduler(BatchRunner runner, int maxBatchSize, long maxWaitMillis,
+                                  int queueCapacity, int dispatcherCount, MeterRegistry meterRegistry) {
+        this.runner = runner;
+        this.maxBatchSize = maxBatchSize;
+        this.maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(maxWaitMillis);
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+
+        Gauge.builder("vision.yolo.queue.depth", queue, BlockingQueue::size)
+            .description("YOLO inference requests waiting to be batched")
+            .register(meterRegistry);
+        this.batchSizes = DistributionSummary.builder("vision.yolo.batch.size")
+            .description("Images per YOLO inference batch")
+            .register(meterRegistry);
+        this.queueWait = Timer.builder("vision.yolo.queue.wait")
+            .description("Time a YOLO request waited before its batch started")
+            .register(meterRegistry);
+        this.batchLatency = Timer.builder("vision.yolo.batch.latency")
+            .description("Wall time of one batched YOLO run")
+            .register(meterRegistry);
+        this.cancelled = Counter.builder("vision.yolo.queue.cancelled")
+            .description("YOLO requests dropped from the queue because their caller gave up")
+            .register(meterRegistry);
+
+        for (int i = 0; i < dispatcherCount; i++) {
+            Thread thread = new Thread(this::dispatchLoop, "yolo-batch-" + i);
+            thread.setDaemon(true);
+            dispatchers.add(thread);
+        }
+    }
+
+    public void start() {
+        running = true;
+        for (Thread thread : dispatchers) {
+            thread.start();
+        }
+        logger.info("✅ YOLO micro-batching started (max batch: {}, max wait: {} ms, dispatchers: {})",
+                    maxBatchSize, TimeUnit.NANOSECONDS.toMillis(maxWaitNanos), dispatchers.size());
+    }
+
+    public void shutdown() {
+        running = false;
+        for (Thread thread : dispatchers) {
+            thread.interrupt();
+        }
+
+        List<PendingInference> abandoned = new ArrayList<>();
+        queue.drainTo(abandoned);
+        for (PendingInference pending : abandoned) {
+            pending.future.completeExceptionally(new IllegalStateException("YOLO scheduler shut down"));
+        }
+    }
+
+    /**
+     * Queue an image for the next batch; cancel the returned future to withdraw the request
+     *
+     * @throws RejectedExecutionException when the queue is full
+     */
+    public CompletableFuture<List<YoloFoodDetectionService.YoloDetection>> submit(BufferedImage image) {
+        PendingInference pending = new PendingInference(image);
+        if (!running || !queue.offer(pending)) {
+            throw new RejectedExecutionException("YOLO inference queue is full");
+        }
+        return pending.future;
+    }
+
+    private void dispatchLoop() {
+        List<PendingInference> batch = new ArrayList<>(maxBatchSize);
+
+        while (running) {
+            try {
+                PendingInference first = queue.take();
+                if (isCancelled(first)) {
+                    continue;
+                }
+                batch.add(first);
+
+                // Fill the batch until it is full or the oldest request has waited long enough
+                long deadline = first.enqueuedNanos + maxWaitNanos;
+                while (batch.size() < maxBatchSize) {
+                    long remaining = deadline - System.nanoTime();
+                    PendingInference next = remaining > 0
+                        ? queue.poll(remaining, TimeUnit.NANOSECONDS)
+                        : queue.poll();
+                    if (next == null) {
+                        break;
+                    }
+                    if (!isCancelled(next)) {
+                        batch.add(next);
+                    }
+                }
+
+                // Callers may have given up while the batch was filling
+                batch.removeIf(this::isCancelled);
+                if (!batch.isEmpty()) {
+                    runBatch(batch);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                for (PendingInference pending : batch) {
+                    pending.future.completeExceptionally(e);
+                }
+                return;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private boolean isCancelled(PendingInference pending) {
+        if (pending.future.isCancelled()) {
+            cancelled.increment();
+            return true;
+        }
+        return false;
+    }
+
+    private void runBatch(List<PendingInference> batch) {
+        long start = System.nanoTime();
+        List<BufferedImage> images = new ArrayList<>(batch.size());
+        for (PendingInference pending : batch) {
+            queueWait.record(start - pending.enqueuedNanos, TimeUnit.NANOSECONDS);
+            images.add(pending.image);
+        }
+        batchSizes.record(batch.size());
+
+        try {
+            List<List<YoloFoodDetectionService.YoloDetection>> results = runner.run(images);
+            for (int i = 0; i < batch.size(); i++) {
+                batch.get(i).future.complete(results.get(i));
+            }
+        } catch (Throwable t) {
+            logger.error("❌ YOLO batch of {} failed: {}", batch.size(), t.getMessage());
+            for (PendingInference pending : batch) {
+                pending.future.completeExceptionally(t);
+            }
+        } finally {
+            batchLatency.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private static class PendingInference {
+        private final BufferedImage image;
+        private final long enqueuedNanos = System.nanoTime();
+        private final CompletableFuture<List<YoloFoodDetectionService.YoloDetection>> future = new CompletableFuture<>();
+
+        PendingInference(BufferedImage image) {
+            this.image = image;
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package com.nourishcare.visionservice.service;
+
+import java.util.Objects;
+
+/**
+ * One way of running YOLO: a loaded model variant (e.g. n, s, s-int8) at a square input size
+ */
+public final class YoloModelProfile {
+
+    private final String variant;
+    private final int inputSize;
+
+    public YoloModelProfile(String variant, int inputSize) {
+        this.variant = variant;
+        this.inputSize = inputSize;
+    }
+
+    public String getVariant() { return variant; }
+    public int getInputSize() { return inputSize; }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof YoloModelProfile)) return false;
+        YoloModelProfile that = (YoloModelProfile) o;
+        return inputSize == that.inputSize && variant.equals(that.variant);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(variant, inputSize);
+    }
+
+    @Override
+    public String toString() {
+        return variant + "@" + inputSize;
+    }
+}
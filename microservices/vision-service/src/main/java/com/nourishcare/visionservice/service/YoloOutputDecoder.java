@@ -0,0 +1,263 @@
+package com.nourishcare.visionservice.service;
+
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Allocation-light YOLOv8 output decoder.
+ * Reads the flat [features, anchors] output in place, finds the best class per anchor with
+ * contiguous row scans, filters by confidence before any object is created and runs
+ * class-aware NMS over primitive arrays, using a uniform grid so each box is only
+ * compared against kept boxes in the cells it overlaps.
+ */
+public final class YoloOutputDecoder {
+
+    // Grid cell size in model-input pixels for NMS bucketing
+    private static final float CELL_SIZE = 64f;
+
+    private final String[] classNames;
+    private final float confidenceThreshold;
+    private final float nmsThreshold;
+
+    private final ThreadLocal<Scratch> scratch = ThreadLocal.withInitial(Scratch::new);
+
+    public YoloOutputDecoder(String[] classNames, float confidenceThreshold, float nmsThreshold) {
+        this.classNames = classNames;
+        this.confidenceThreshold = confidenceThreshold;
+        this.nmsThreshold = nmsThreshold;
+    }
+
+    /**
+     * Decode one image's slice of the output.
+     *
+     * @param output       flat output buffer, [batch, features, anchors] in row-major order
+     * @param offset       float offset of this image's [features, anchors] block
+     * @param inputWidth   model input width the boxes are expressed in
+     * @param inputHeight  model input height the boxes are expressed in
+     * @param imageWidth   original image width to scale boxes to
+     * @param imageHeight  original image height to scale boxes to
+     */
+    public List<YoloFoodDetectionService.YoloDetection> decode(FloatBuffer output, int offset,
+                                                              int numFeatures, int numAnchors,
+                                                              int inputWidth, int inputHeight,
+                                                              int imageWidth, int imageHeight) {
+        return decode(output, offset, numFeatures, numAnchors, inputWidth, inputHeight,
+            (float) imageWidth / inputWidth, (float) imageHeight / inputHeight, 0, 0, imageWidth, imageHeight);
+    }
+
+    /**
+     * Decode one image's slice of the output for a letterboxed input
+     */
+    public List<YoloFoodDetectionService.YoloDetection> decode(FloatBuffer output, int offset,
+                                                              int numFeatures, int numAnchors, int inputSize,
+                                                              YoloPreprocessor.Letterbox letterbox,
+                                                              int imageWidth, int imageHeight) {
+        float scale = 1 / letterbox.getScale();
+        return decode(output, offset, numFeatures, numAnchors, inputSize, inputSize,
+            scale, scale, letterbox.getPadX(), letterbox.getPadY(), imageWidth, imageHeight);
+    }
+
+    /**
+     * Shared decoding: image = (input - pad) * scale, clamped to the image
+     */
+    private List<YoloFoodDetectionService.YoloDetection> decode(FloatBuffer output, int offset,
+                                                               int numFeatures, int numAnchors,
+                                                               int inputWidth, int inputHeight,
+                                                               float scaleX, float scaleY, int padX, int padY,
+                                                               int imageWidth, int imageHeight) {
+        Scratch s = scratch.get();
+        s.ensureAnchors(numAnchors);
+
+        // Class-major arg-max: every class row is a contiguous scan over all anchors
+        int numClasses = Math.min(numFeatures - 4, classNames.length);
+        Arrays.fill(s.bestScore, 0, numAnchors, 0f);
+        Arrays.fill(s.bestClass, 0, numAnchors, -1);
+        for (int c = 0; c < numClasses; c++) {
+            int row = offset + (4 + c) * numAnchors;
+            for (int a = 0; a < numAnchors; a++) {
+                float score = output.get(row + a);
+                if (score > s.bestScore[a]) {
+                    s.bestScore[a] = score;
+                    s.bestClass[a] = c;
+                }
+            }
+        }
+
+        // Confidence filter into primitive candidate arrays (corner format, model-input space)
+        int candidates = 0;
+        for (int a = 0; a < numAnchors; a++) {
+            float score = s.bestScore[a];
+            if (score <= confidenceThreshold || s.bestClass[a] < 0) {
+                continue;
+            }
+            float xCenter = output.get(offset + a);
+            float yCenter = output.get(offset + numAnchors + a);
+            float halfWidth = output.get(offset + 2 * numAnchors + a) / 2;
+            float halfHeight = output.get(offset + 3 * numAnchors + a) / 2;
+
+            s.ensureCandidates(candidates + 1);
+            s.x1[candidates] = xCenter - halfWidth;
+            s.y1[candidates] = yCenter - halfHeight;
+            s.x2[candidates] = xCenter + halfWidth;
+            s.y2[candidates] = yCenter + halfHeight;
+            s.score[candidates] = score;
+            s.cls[candidates] = s.bestClass[a];
+            // Positive float bits sort like the floats themselves; low bits carry the index
+            s.order[candidates] = ((long) Float.floatToIntBits(score) << 32) | candidates;
+            candidates++;
+        }
+
+        int kept = suppress(s, candidates, inputWidth, inputHeight);
+
+        // Only surviving boxes become objects, scaled to the original image and clamped
+        List<YoloFoodDetectionService.YoloDetection> detections = new ArrayList<>(kept);
+        for (int k = 0; k < kept; k++) {
+            int i = s.keep[k];
+            detections.add(new YoloFoodDetectionService.YoloDetection(
+                classNames[s.cls[i]], s.score[i],
+                (int) clamp((s.x1[i] - padX) * scaleX, imageWidth), (int) clamp((s.y1[i] - padY) * scaleY, imageHeight),
+                (int) clamp((s.x2[i] - padX) * scaleX, imageWidth), (int) clamp((s.y2[i] - padY) * scaleY, imageHeight)));
+        }
+        return detections;
+    }
+
+    /**
+     * Class-aware NMS over the candidate arrays; returns the number of kept indices in s.keep
+     */
+    private int suppress(Scratch s, int candidates, int inputWidth, int inputHeight) {
+        if (candidates == 0) {
+            return 0;
+        }
+        Arrays.sort(s.order, 0, candidates);
+
+        int gridColumns = Math.max(1, (int) Math.ceil(inputWidth / CELL_SIZE));
+        int gridRows = Math.max(1, (int) Math.ceil(inputHeight / CELL_SIZE));
+        s.resetGrid(gridColumns * gridRows);
+        s.ensureKeep(candidates);
+
+        int kept = 0;
+        for (int o = candidates - 1; o >= 0; o--) {
+            int i = (int) s.order[o];
+            int cx1 = cell(s.x1[i], gridColumns);
+            int cy1 = cell(s.y1[i], gridRows);
+            int cx2 = cell(s.x2[i], gridColumns);
+            int cy2 = cell(s.y2[i], gridRows);
+
+            boolean suppressed = false;
+            for (int cy = cy1; cy <= cy2 && !suppressed; cy++) {
+                for (int cx = cx1; cx <= cx2 && !suppressed; cx++) {
+                    for (int e = s.cellHead[cy * gridColumns + cx]; e >= 0; e = s.entryNext[e]) {
+                        int k = s.entryBox[e];
+                        if (s.cls[k] == s.cls[i] && iou(s, i, k) > nmsThreshold) {
+                            suppressed = true;
+                            break;
+                        }
+                    }
+                }
+            }
+            if (suppressed) {
+                continue;
+            }
+
+            s.keep[kept++] = i;
+            for (int cy = cy1; cy <= cy2; cy++) {
+                for (int cx = cx1; cx <= cx2; cx++) {
+                    s.addEntry(cy * gridColumns + cx, i);
+                }
+            }
+        }
+        return kept;
+    }
+
+    private static float iou(Scratch s, int a, int b) {
+        float ix1 = Math.max(s.x1[a], s.x1[b]);
+        float iy1 = Math.max(s.y1[a], s.y1[b]);
+        float ix2 = Math.min(s.x2[a], s.x2[b]);
+        float iy2 = Math.min(s.y2[a], s.y2[b]);
+        if (ix2 <= ix1 || iy2 <= iy1) {
+            return 0f;
+        }
+        float intersection = (ix2 - ix1) * (iy2 - iy1);
+        float areaA = (s.x2[a] - s.x1[a]) * (s.y2[a] - s.y1[a]);
+        float areaB = (s.x2[b] - s.x1[b]) * (s.y2[b] - s.y1[b]);
+        return intersection / (areaA + areaB - intersection);
+    }
+
+    private static int cell(float coordinate, int cells) {
+        int index = (int) (coordinate / CELL_SIZE);
+        return index < 0 ? 0 : (index >= cells ? cells - 1 : index);
+    }
+
+    private static float clamp(float value, int max) {
+        return value < 0 ? 0 : (value > max ? max : value);
+    }
+
+    /**
+     * Per-thread working arrays, grown on demand and reused across calls
+     */
+    private static final class Scratch {
+        float[] bestScore = new float[0];
+        int[] bestClass = new int[0];
+
+        float[] x1 = new float[64];
+        float[] y1 = new float[64];
+        float[] x2 = new float[64];
+        float[] y2 = new float[64];
+        float[] score = new float[64];
+        int[] cls = new int[64];
+        long[] order = new long[64];
+        int[] keep = new int[64];
+
+        int[] cellHead = new int[0];
+        int[] entryBox = new int[256];
+        int[] entryNext = new int[256];
+        int entries;
+
+        void ensureAnchors(int anchors) {
+            if (bestScore.length < anchors) {
+                bestScore = new float[anchors];
+                bestClass = new int[anchors];
+            }
+        }
+
+        void ensureCandidates(int size) {
+            if (x1.length < size) {
+                int capacity = Math.max(size, x1.length * 2);
+                x1 = Arrays.copyOf(x1, capacity);
+                y1 = Arrays.copyOf(y1, capacity);
+                x2 = Arrays.copyOf(x2, capacity);
+                y2 = Arrays.copyOf(y2, capacity);
+                score = Arrays.copyOf(score, capacity);
+                cls = Arrays.copyOf(cls, capacity);
+                order = Arrays.copyOf(order, capacity);
+            }
+        }
+
+        void ensureKeep(int size) {
+            if (keep.length < size) {
+                keep = new int[Math.max(size, keep.length * 2)];
+            }
+        }
+
+        void resetGrid(int cells) {
+            if (cellHead.length < cells) {
+                cellHead = new int[cells];
+            }
+            Arrays.fill(cellHead, 0, cells, -1);
+            entries = 0;
+        }
+
+        void addEntry(int cellIndex, int box) {
+            if (entries == entryBox.length) {
+                entryBox = Arrays.copyOf(entryBox, entries * 2);
+                entryNext = Arrays.copyOf(entryNext, entries * 2);
+            }
+            entryBox[entries] = box;
+            entryNext[entries] = cellHead[cellIndex];
+            cellHead[cellIndex] = entries;
+            entries++;
+        }
+    }
+}
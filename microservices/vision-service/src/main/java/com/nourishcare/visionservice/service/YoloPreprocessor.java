@@ -0,0 +1,260 @@
+package com.nourishcare.visionservice.service;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.Raster;
+import java.awt.image.SampleModel;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Fused YOLO preprocessing: nearest-neighbour resize, [0,1] normalisation and the
+ * HWC to CHW transpose in a single pass that reads the raster's backing array directly.
+ * Images are either stretched to the input or letterboxed (aspect ratio kept, grey padding).
+ * Output goes into direct buffers borrowed from a bounded pool, which ONNX Runtime wraps without copying.
+ * At most maxIdleBuffers are kept between inferences, however many threads have run one.
+ */
+public final class YoloPreprocessor {
+
+    private static final float[] NORMALIZED = new float[256];
+
+    // Letterbox padding colour used by Ultralytics training (114/255 grey)
+    private static final float PAD_VALUE = 114 / 255.0f;
+
+    static {
+        for (int i = 0; i < NORMALIZED.length; i++) {
+            NORMALIZED[i] = i / 255.0f;
+        }
+    }
+
+    private final BlockingQueue<FloatBuffer> idleBuffers;
+    private final ThreadLocal<int[]> columnTables = new ThreadLocal<>();
+
+    public YoloPreprocessor(int maxIdleBuffers) {
+        this.idleBuffers = new ArrayBlockingQueue<>(Math.max(1, maxIdleBuffers));
+    }
+
+    /**
+     * Direct buffer holding at least the given number of floats, positioned at 0 with its limit set
+     * to exactly that size; hand it back with {@link #release} once the tensor wrapping it is closed
+     */
+    public FloatBuffer borrow(int floats) {
+        FloatBuffer buffer = idleBuffers.poll();
+        if (buffer == null || buffer.capacity() < floats) {
+            // A pooled buffer that is too small is dropped; the larger one replaces it on release
+            buffer = ByteBuffer.allocateDirect(floats * Float.BYTES)
+                .order(ByteOrder.nativeOrder())
+                .asFloatBuffer();
+        }
+        buffer.clear();
+        buffer.limit(floats);
+        return buffer;
+    }
+
+    /**
+     * Return a borrowed buffer; it is dropped when the pool already holds maxIdleBuffers
+     */
+    public void release(FloatBuffer buffer) {
+        idleBuffers.offer(buffer);
+    }
+
+    /**
+     * Write the image, stretched to dstWidth x dstHeight, as normalised CHW planes
+     * starting at the given float offset of the destination buffer
+     */
+    public void preprocess(BufferedImage image, int dstWidth, int dstHeight, FloatBuffer dst, int offset) {
+        write(image, dstWidth, dstHeight, 0, 0, dstWidth, dstHeight, dst, offset);
+    }
+
+    /**
+     * Write the image scaled to fit a size x size input with its aspect ratio kept, centred on
+     * grey padding, as normalised CHW planes starting at the given float offset
+     *
+     * @return the scale and padding needed to map boxes back to image coordinates
+     */
+    public Letterbox letterbox(BufferedImage image, int size, FloatBuffer dst, int offset) {
+        int srcWidth = image.getWidth();
+        int srcHeight = image.getHeight();
+        float scale = Math.min((float) size / srcWidth, (float) size / srcHeight);
+        int width = Math.max(1, Math.min(size, Math.round(srcWidth * scale)));
+        int height = Math.max(1, Math.min(size, Math.round(srcHeight * scale)));
+        int padX = (size - width) / 2;
+        int padY = (size - height) / 2;
+
+        int plane = size * size;
+        for (int c = 0; c < 3; c++) {
+            int planeStart = offset + c * plane;
+            fill(dst, planeStart, planeStart + padY * size);
+            for (int y = padY; y < padY + height; y++) {
+                int row = planeStart + y * size;
+                fill(dst, row, row + padX);
+                fill(dst, row + padX + width, row + size);
+            }
+            fill(dst, planeStart + (padY + height) * size, planeStart + plane);
+        }
+
+        write(image, size, size, padX, padY, width, height, dst, offset);
+        return new Letterbox(scale, padX, padY);
+    }
+
+    private static void fill(FloatBuffer dst, int from, int to) {
+        for (int i = from; i < to; i++) {
+            dst.put(i, PAD_VALUE);
+        }
+    }
+
+    /**
+     * Write the image, resized to dstWidth x dstHeight, at (originX, originY) of planes that are
+     * planeWidth x planeHeight; pixels outside that rectangle are left untouched
+     */
+    private void write(BufferedImage image, int planeWidth, int planeHeight, int originX, int originY,
+                       int dstWidth, int dstHeight, FloatBuffer dst, int offset) {
+        Raster raster = image.getRaster();
+        SampleModel sampleModel = raster.getSampleModel();
+        DataBuffer dataBuffer = raster.getDataBuffer();
+
+        int srcWidth = image.getWidth();
+        int srcHeight = image.getHeight();
+
+        if (dataBuffer instanceof DataBufferInt && sampleModel instanceof SinglePixelPackedSampleModel
+                && dataBuffer.getNumBanks() == 1) {
+            SinglePixelPackedSampleModel packed = (SinglePixelPackedSampleModel) sampleModel;
+            int type = image.getType();
+            if (type == BufferedImage.TYPE_INT_RGB || type == BufferedImage.TYPE_INT_ARGB) {
+                preprocessPackedInt(((DataBufferInt) dataBuffer).getData(), raster, packed, 16, 8, 0,
+                    srcWidth, srcHeight, planeWidth, planeHeight, originX, originY, dstWidth, dstHeight, dst, offset);
+                return;
+            }
+            if (type == BufferedImage.TYPE_INT_BGR) {
+                preprocessPackedInt(((DataBufferInt) dataBuffer).getData(), raster, packed, 0, 8, 16,
+                    srcWidth, srcHeight, planeWidth, planeHeight, originX, originY, dstWidth, dstHeight, dst, offset);
+                return;
+            }
+        }
+
+        if (dataBuffer instanceof DataBufferByte && sampleModel instanceof ComponentSampleModel
+                && dataBuffer.getNumBanks() == 1 && isByteRgbOrGray(image)) {
+            preprocessInterleavedByte(((DataBufferByte) dataBuffer).getData(), raster, (ComponentSampleModel) sampleModel,
+                srcWidth, srcHeight, planeWidth, planeHeight, originX, originY, dstWidth, dstHeight, dst, offset);
+            return;
+        }
+
+        // Uncommon layouts (indexed, 16-bit, custom colour spaces): convert once, then take the fast path
+        BufferedImage converted = new BufferedImage(srcWidth, srcHeight, BufferedImage.TYPE_INT_RGB);
+        converted.getGraphics().drawImage(image, 0, 0, null);
+        write(converted, planeWidth, planeHeight, originX, originY, dstWidth, dstHeight, dst, offset);
+    }
+
+    private void preprocessPackedInt(int[] pixels, Raster raster, SinglePixelPackedSampleModel sampleModel,
+                                     int redShift, int greenShift, int blueShift,
+                                     int srcWidth, int srcHeight, int planeWidth, int planeHeight,
+                                     int originX, int originY, int dstWidth, int dstHeight,
+                                     FloatBuffer dst, int offset) {
+        int scanlineStride = sampleModel.getScanlineStride();
+        int base = raster.getDataBuffer().getOffset()
+            - raster.getSampleModelTranslateY() * scanlineStride
+            - raster.getSampleModelTranslateX();
+        int[] columns = columnTable(srcWidth, dstWidth, 1);
+
+        int plane = planeWidth * planeHeight;
+        for (int y = 0; y < dstHeight; y++) {
+            int rowStart = base + sourceIndex(y, srcHeight, dstHeight) * scanlineStride;
+            int out = offset + (originY + y) * planeWidth + originX;
+            for (int x = 0; x < dstWidth; x++, out++) {
+                int rgb = pixels[rowStart + columns[x]];
+                dst.put(out, NORMALIZED[(rgb >> redShift) & 0xFF]);
+                dst.put(out + plane, NORMALIZED[(rgb >> greenShift) & 0xFF]);
+                dst.put(out + 2 * plane, NORMALIZED[(rgb >> blueShift) & 0xFF]);
+            }
+        }
+    }
+
+    private void preprocessInterleavedByte(byte[] pixels, Raster raster, ComponentSampleModel sampleModel,
+                                           int srcWidth, int srcHeight, int planeWidth, int planeHeight,
+                                           int originX, int originY, int dstWidth, int dstHeight,
+                                           FloatBuffer dst, int offset) {
+        int pixelStride = sampleModel.getPixelStride();
+        int scanlineStride = sampleModel.getScanlineStride();
+        int[] bandOffsets = sampleModel.getBandOffsets();
+        int base = raster.getDataBuffer().getOffset()
+            - raster.getSampleModelTranslateY() * scanlineStride
+            - raster.getSampleModelTranslateX() * pixelStride;
+
+        // Band order is R, G, B (optionally A); grayscale images have a single band
+        boolean gray = bandOffsets.length < 3;
+        int redOffset = bandOffsets[0];
+        int greenOffset = gray ? bandOffsets[0] : bandOffsets[1];
+        int blueOffset = gray ? bandOffsets[0] : bandOffsets[2];
+        int[] columns = columnTable(srcWidth, dstWidth, pixelStride);
+
+        int plane = planeWidth * planeHeight;
+        for (int y = 0; y < dstHeight; y++) {
+            int rowStart = base + sourceIndex(y, srcHeight, dstHeight) * scanlineStride;
+            int out = offset + (originY + y) * planeWidth + originX;
+            for (int x = 0; x < dstWidth; x++, out++) {
+                int pixel = rowStart + columns[x];
+                dst.put(out, NORMALIZED[pixels[pixel + redOffset] & 0xFF]);
+                dst.put(out + plane, NORMALIZED[pixels[pixel + greenOffset] & 0xFF]);
+                dst.put(out + 2 * plane, NORMALIZED[pixels[pixel + blueOffset] & 0xFF]);
+            }
+        }
+    }
+
+    /**
+     * Source column offsets (in array elements) for each destination column, sampled at pixel centres
+     */
+    private int[] columnTable(int srcWidth, int dstWidth, int pixelStride) {
+        int[] table = columnTables.get();
+        if (table == null || table.length < dstWidth) {
+            table = new int[dstWidth];
+            columnTables.set(table);
+        }
+        for (int x = 0; x < dstWidth; x++) {
+            table[x] = sourceIndex(x, srcWidth, dstWidth) * pixelStride;
+        }
+        return table;
+    }
+
+    private static int sourceIndex(int dst, int srcSize, int dstSize) {
+        int src = (int) (((2L * dst + 1) * srcSize) / (2L * dstSize));
+        return Math.min(src, srcSize - 1);
+    }
+
+    private static boolean isByteRgbOrGray(BufferedImage image) {
+        switch (image.getType()) {
+            case BufferedImage.TYPE_3BYTE_BGR:
+            case BufferedImage.TYPE_4BYTE_ABGR:
+            case BufferedImage.TYPE_4BYTE_ABGR_PRE:
+            case BufferedImage.TYPE_BYTE_GRAY:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * How an image was placed in a letterboxed input: input = image * scale + padding
+     */
+    public static final class Letterbox {
+        private final float scale;
+        private final int padX;
+        private final int padY;
+
+        Letterbox(float scale, int padX, int padY) {
+            this.scale = scale;
+            this.padX = padX;
+            this.padY = padY;
+        }
+
+        public float getScale() { return scale; }
+        public int getPadX() { return padX; }
+        public int getPadY() { return padY; }
+    }
+}
@@ -0,0 +1,236 @@
+package com.nourishcare.visionservice.service;
+
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Tile planning and merging for tiled YOLO inference on high-resolution images.
+ * Overlapping tiles are cut at native resolution and their detections, shifted into image
+ * coordinates, are merged by one global class-aware NMS. A box cut off at an interior tile edge
+ * is also merged, taking the union, into an overlapping same-class box that mostly contains it,
+ * or into a box cut at the same seam from the other side and lined up with it along the seam,
+ * so an item straddling tiles is reported once at full size.
+ */
+public final class YoloTiling {
+
+    // Box edges this close to an interior tile edge count as cut off by the tile
+    private static final int EDGE_MARGIN = 2;
+
+    // Seam coordinate of an edge that was not cut
+    private static final int NOT_CUT = -1;
+
+    private YoloTiling() {
+    }
+
+    /**
+     * Overlapping tiles covering the image; edge tiles are shifted inwards rather than shrunk,
+     * so every tile has the full size unless the image itself is smaller
+     */
+    public static List<Rectangle> plan(int imageWidth, int imageHeight, int tileSize, float overlap) {
+        int stride = Math.max(1, Math.round(tileSize * (1 - overlap)));
+        List<Integer> xs = starts(imageWidth, tileSize, stride);
+        List<Integer> ys = starts(imageHeight, tileSize, stride);
+
+        List<Rectangle> tiles = new ArrayList<>(xs.size() * ys.size());
+        for (int y : ys) {
+            for (int x : xs) {
+                tiles.add(new Rectangle(x, y, Math.min(tileSize, imageWidth), Math.min(tileSize, imageHeight)));
+            }
+        }
+        return tiles;
+    }
+
+    private static List<Integer> starts(int length, int tileSize, int stride) {
+        List<Integer> starts = new ArrayList<>();
+        if (length <= tileSize) {
+            starts.add(0);
+            return starts;
+        }
+        int last = length - tileSize;
+        for (int start = 0; start < last; start += stride) {
+            starts.add(start);
+        }
+        starts.add(last);
+        return starts;
+    }
+
+    /**
+     * A tile detection shifted into image coordinates, with the interior tile edges (in image
+     * coordinates) that cut it off
+     */
+    public static Candidate toImage(YoloFoodDetectionService.YoloDetection detection, Rectangle tile,
+                                    int imageWidth, int imageHeight) {
+        int leftCut = tile.x > 0 && detection.getX1() <= EDGE_MARGIN ? tile.x : NOT_CUT;
+        int topCut = tile.y > 0 && detection.getY1() <= EDGE_MARGIN ? tile.y : NOT_CUT;
+        int rightCut = tile.x + tile.width < imageWidth && detection.getX2() >= tile.width - EDGE_MARGIN
+            ? tile.x + tile.width : NOT_CUT;
+        int bottomCut = tile.y + tile.height < imageHeight && detection.getY2() >= tile.height - EDGE_MARGIN
+            ? tile.y + tile.height : NOT_CUT;
+        return new Candidate(detection.getClassName(), detection.getConfidence(),
+            detection.getX1() + tile.x, detection.getY1() + tile.y,
+            detection.getX2() + tile.x, detection.getY2() + tile.y,
+            leftCut, topCut, rightCut, bottomCut);
+    }
+
+    /**
+     * Global class-aware NMS over all tiles, highest confidence first.
+     *
+     * @param iouThreshold          overlap above which the weaker of two boxes is dropped
+     * @param seamThreshold         share of the smaller box inside the other, or of the extents along the
+     *                              seam of two boxes cut at it from facing sides, above which a cut-off box is merged
+     */
+    public static List<YoloFoodDetectionService.YoloDetection> merge(List<Candidate> candidates,
+                                                                     float iouThreshold, float seamThreshold) {
+        List<Candidate> sorted = new ArrayList<>(candidates);
+        sorted.sort(Comparator.comparingDouble((Candidate c) -> c.confidence).reversed());
+
+        List<Candidate> kept = new ArrayList<>();
+        for (Candidate candidate : sorted) {
+            boolean suppressed = false;
+            for (Candidate keeper : kept) {
+                if (!keeper.className.equals(candidate.className)) {
+                    continue;
+                }
+                boolean seam = (keeper.isClipped() || candidate.isClipped())
+                    && (containment(keeper, candidate) > seamThreshold || aligned(keeper, candidate) > seamThreshold);
+                if (seam) {
+                    keeper.absorb(candidate);
+                    suppressed = true;
+                    break;
+                }
+                if (iou(keeper, candidate) > iouThreshold) {
+                    suppressed = true;
+                    break;
+                }
+            }
+            if (!suppressed) {
+                kept.add(candidate.copy());
+            }
+        }
+
+        List<YoloFoodDetectionService.YoloDetection> detections = new ArrayList<>(kept.size());
+        for (Candidate c : kept) {
+            detections.add(new YoloFoodDetectionService.YoloDetection(c.className, c.confidence, c.x1, c.y1, c.x2, c.y2));
+        }
+        return detections;
+    }
+
+    private static float iou(Candidate a, Candidate b) {
+        long intersection = intersection(a, b);
+        if (intersection == 0) {
+            return 0f;
+        }
+        return (float) intersection / (a.area() + b.area() - intersection);
+    }
+
+    /**
+     * Intersection over the smaller box's area
+     */
+    private static float containment(Candidate a, Candidate b) {
+        long intersection = intersection(a, b);
+        if (intersection == 0) {
+            return 0f;
+        }
+        return (float) intersection / Math.max(1, Math.min(a.area(), b.area()));
+    }
+
+    /**
+     * How well two intersecting boxes line up as the two halves of one item cut at a seam: only boxes cut
+     * from facing sides of the same seam qualify (one on its right edge, the other on its left edge,
+     * with the cuts being the two borders of the same tile overlap), and then their 1-D overlap along
+     * the seam counts. Two items merely overlapping near a seam are never cut from facing sides.
+     */
+    private static float aligned(Candidate a, Candidate b) {
+        if (intersection(a, b) == 0) {
+            return 0f;
+        }
+        float best = 0f;
+        if (facing(a.rightCut, b.leftCut) || facing(b.rightCut, a.leftCut)) {
+            best = Math.max(best, overlap1d(a.y1, a.y2, b.y1, b.y2));
+        }
+        if (facing(a.bottomCut, b.topCut) || facing(b.bottomCut, a.topCut)) {
+            best = Math.max(best, overlap1d(a.x1, a.x2, b.x1, b.x2));
+        }
+        return best;
+    }
+
+    /**
+     * Whether one box was cut at the far border of a tile overlap and the other at its near border,
+     * i.e. both at the same seam from facing sides
+     */
+    private static boolean facing(int farCut, int nearCut) {
+        return farCut != NOT_CUT && nearCut != NOT_CUT && nearCut < farCut;
+    }
+
+    private static float overlap1d(int a1, int a2, int b1, int b2) {
+        int inner = Math.min(a2, b2) - Math.max(a1, b1);
+        int outer = Math.max(a2, b2) - Math.min(a1, b1);
+        return outer <= 0 ? 0f : (float) inner / outer;
+    }
+
+    private static long intersection(Candidate a, Candidate b) {
+        int width = Math.min(a.x2, b.x2) - Math.max(a.x1, b.x1);
+        int height = Math.min(a.y2, b.y2) - Math.max(a.y1, b.y1);
+        return width <= 0 || height <= 0 ? 0 : (long) width * height;
+    }
+
+    /**
+     * Detection in image coordinates during merging
+     */
+    public static final class Candidate {
+        private final String className;
+        private final float confidence;
+        private int x1, y1, x2, y2;
+        // Image coordinate of the tile edge that cut each side, or NOT_CUT
+        private int leftCut, topCut, rightCut, bottomCut;
+
+        Candidate(String className, float confidence, int x1, int y1, int x2, int y2,
+                  int leftCut, int topCut, int rightCut, int bottomCut) {
+            this.className = className;
+            this.confidence = confidence;
+            this.x1 = x1;
+            this.y1 = y1;
+            this.x2 = x2;
+            this.y2 = y2;
+            this.leftCut = leftCut;
+            this.topCut = topCut;
+            this.rightCut = rightCut;
+            this.bottomCut = bottomCut;
+        }
+
+        public boolean isClipped() {
+            return leftCut != NOT_CUT || topCut != NOT_CUT || rightCut != NOT_CUT || bottomCut != NOT_CUT;
+        }
+
+        private long area() {
+            return (long) Math.max(0, x2 - x1) * Math.max(0, y2 - y1);
+        }
+
+        /**
+         * Grow to the union; each side keeps the cut of the box that provides it (none if either is whole there)
+         */
+        private void absorb(Candidate other) {
+            leftCut = outerCut(x1, other.x1, leftCut, other.leftCut, true);
+            topCut = outerCut(y1, other.y1, topCut, other.topCut, true);
+            rightCut = outerCut(x2, other.x2, rightCut, other.rightCut, false);
+            bottomCut = outerCut(y2, other.y2, bottomCut, other.bottomCut, false);
+            x1 = Math.min(x1, other.x1);
+            y1 = Math.min(y1, other.y1);
+            x2 = Math.max(x2, other.x2);
+            y2 = Math.max(y2, other.y2);
+        }
+
+        private static int outerCut(int edge, int otherEdge, int cut, int otherCut, boolean lowSide) {
+            if (edge == otherEdge) {
+                return cut == NOT_CUT || otherCut == NOT_CUT ? NOT_CUT : cut;
+            }
+            return (edge < otherEdge) == lowSide ? cut : otherCut;
+        }
+
+        private Candidate copy() {
+            return new Candidate(className, confidence, x1, y1, x2, y2, leftCut, topCut, rightCut, bottomCut);
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.nourishcare.visionservice.usda;
+
+/**
+ * Binary layout of the offline USDA FoodData Central index.
+ *
+ * <pre>
+ * header      int magic, int version, int recordCount, int nutrientCount, long descriptionsOffset
+ * records     recordCount fixed-size records sorted by fdcId:
+ *             int fdcId, byte dataType, 3 bytes padding, float[NUTRIENT_COUNT] per 100 g (NaN = unknown)
+ * descriptions int[recordCount + 1] byte offsets into the UTF-8 block, then the UTF-8 block
+ * </pre>
+ *
+ * All values are big-endian.
+ */
+public final class FdcIndexFormat {
+
+    public static final int MAGIC = 0x46444358; // "FDCX"
+    public static final int VERSION = 1;
+
+    public static final int HEADER_SIZE = 4 + 4 + 4 + 4 + 8;
+
+    // Nutrient slots, in record order
+    public static final int ENERGY_KCAL = 0;
+    public static final int PROTEIN = 1;
+    public static final int FAT = 2;
+    public static final int CARBOHYDRATE = 3;
+    public static final int FIBER = 4;
+    public static final int SUGARS = 5;
+    public static final int NUTRIENT_COUNT = 6;
+
+    public static final int RECORD_SIZE = 4 + 1 + 3 + 4 * NUTRIENT_COUNT;
+
+    /**
+     * FDC nutrient ids feeding each slot, most preferred first.
+     * Foundation foods often report energy only as Atwater factors (2047/2048) and sugars as 1063.
+     */
+    public static final int[][] NUTRIENT_IDS = {
+        {1008, 2048, 2047},  // Energy (kcal)
+        {1003},              // Protein
+        {1004},              // Total lipid (fat)
+        {1005},              // Carbohydrate, by difference
+        {1079},              // Fiber, total dietary
+        {2000, 1063}         // Sugars, total
+    };
+
+    public static final byte FOUNDATION = 0;
+    public static final byte SR_LEGACY = 1;
+    public static final byte SURVEY_FNDDS = 2;
+
+    private FdcIndexFormat() {
+    }
+
+    /**
+     * Map an FDC CSV data_type value to its code, or -1 for data types the index does not carry
+     */
+    public static byte dataTypeCode(String csvDataType) {
+        switch (csvDataType) {
+            case "foundation_food":
+                return FOUNDATION;
+            case "sr_legacy_food":
+                return SR_LEGACY;
+            case "survey_fndds_food":
+                return SURVEY_FNDDS;
+            default:
+                return -1;
+        }
+    }
+
+    /**
+     * Data type name as reported by the FDC search API
+     */
+    public static String dataTypeName(byte code) {
+        switch (code) {
+            case FOUNDATION:
+                return "Foundation";
+            case SR_LEGACY:
+                return "SR Legacy";
+            case SURVEY_FNDDS:
+                return "Survey (FNDDS)";
+            default:
+                return "Unknown";
+        }
+    }
+}
@@ -0,0 +1,265 @@
+package com.nourishcare.visionservice.usda;
+
+import java.io.BufferedReader;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Builds the offline FDC index from the public FoodData Central CSV downloads
+ * (Foundation, SR Legacy and FNDDS). Each download directory must contain food.csv
+ * and food_nutrient.csv; foods of other data types are skipped. Rows with a malformed id or amount
+ * are skipped and counted rather than aborting the import.
+ *
+ * <pre>
+ * java -cp vision-service.jar -Dloader.main=com.nourishcare.visionservice.usda.FdcIndexImporter \
+ *      org.springframework.boot.loader.PropertiesLauncher fdc-index.bin &lt;csv-dir&gt; [&lt;csv-dir&gt; ...]
+ * </pre>
+ */
+public final class FdcIndexImporter {
+
+    private FdcIndexImporter() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: FdcIndexImporter <output-file> <fdc-csv-dir> [<fdc-csv-dir> ...]");
+            System.exit(1);
+        }
+
+        List<Path> csvDirs = new ArrayList<>();
+        for (int i = 1; i < args.length; i++) {
+            csvDirs.add(Paths.get(args[i]));
+        }
+
+        int written = importCsv(csvDirs, Paths.get(args[0]));
+        System.out.println("Wrote " + written + " foods to " + args[0]);
+    }
+
+    /**
+     * Import the given CSV download directories into one index file; returns the number of foods written
+     */
+    public static int importCsv(List<Path> csvDirs, Path output) throws IOException {
+        TreeMap<Integer, FoodRecord> foods = new TreeMap<>();
+
+        for (Path dir : csvDirs) {
+            readFoods(dir.resolve("food.csv"), foods);
+        }
+        for (Path dir : csvDirs) {
+            readNutrients(dir.resolve("food_nutrient.csv"), foods);
+        }
+
+        Path tempFile = Files.createTempFile(output.toAbsolutePath().getParent(), "fdc-index", ".tmp");
+        try (OutputStream stream = Files.newOutputStream(tempFile);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream, 1 << 16))) {
+            write(foods, out);
+        }
+        Files.move(tempFile, output, StandardCopyOption.REPLACE_EXISTING);
+        return foods.size();
+    }
+
+    private static void readFoods(Path file, Map<Integer, FoodRecord> foods) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            Map<String, Integer> columns = header(reader.readLine());
+            int fdcIdColumn = column(columns, "fdc_id", file);
+            int dataTypeColumn = column(columns, "data_type", file);
+            int descriptionColumn = column(columns, "description", file);
+            int lastColumn = Math.max(fdcIdColumn, Math.max(dataTypeColumn, descriptionColumn));
+
+            int malformed = 0;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                List<String> fields = parseCsvLine(line);
+                if (fields.size() <= lastColumn) {
+                    malformed++;
+                    continue;
+                }
+                byte dataType = FdcIndexFormat.dataTypeCode(fields.get(dataTypeColumn));
+                if (dataType < 0) {
+                    continue;
+                }
+                int fdcId;
+                try {
+                    fdcId = Integer.parseInt(fields.get(fdcIdColumn).trim());
+                } catch (NumberFormatException e) {
+                    malformed++;
+                    continue;
+                }
+                foods.put(fdcId, new FoodRecord(dataType, fields.get(descriptionColumn)));
+            }
+            reportMalformed(file, malformed);
+        }
+    }
+
+    private static void readNutrients(Path file, Map<Integer, FoodRecord> foods) throws IOException {
+        // nutrient id -> (slot, preference rank)
+        Map<Integer, int[]> slots = new HashMap<>();
+        for (int slot = 0; slot < FdcIndexFormat.NUTRIENT_COUNT; slot++) {
+            int[] ids = FdcIndexFormat.NUTRIENT_IDS[slot];
+            for (int rank = 0; rank < ids.length; rank++) {
+                slots.put(ids[rank], new int[]{slot, rank});
+            }
+        }
+
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            Map<String, Integer> columns = header(reader.readLine());
+            int fdcIdColumn = column(columns, "fdc_id", file);
+            int nutrientIdColumn = column(columns, "nutrient_id", file);
+            int amountColumn = column(columns, "amount", file);
+            int lastColumn = Math.max(fdcIdColumn, Math.max(nutrientIdColumn, amountColumn));
+
+            int malformed = 0;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                List<String> fields = parseCsvLine(line);
+                if (fields.size() <= lastColumn) {
+                    malformed++;
+                    continue;
+                }
+                if (fields.get(amountColumn).isEmpty()) {
+                    continue;
+                }
+                try {
+                    FoodRecord food = foods.get(Integer.parseInt(fields.get(fdcIdColumn).trim()));
+                    int[] slot = slots.get(Integer.parseInt(fields.get(nutrientIdColumn).trim()));
+                    if (food == null || slot == null) {
+                        continue;
+                    }
+                    if (slot[1] < food.nutrientRanks[slot[0]]) {
+                        food.nutrients[slot[0]] = Float.parseFloat(fields.get(amountColumn));
+                        food.nutrientRanks[slot[0]] = slot[1];
+                    }
+                } catch (NumberFormatException e) {
+                    malformed++;
+                }
+            }
+            reportMalformed(file, malformed);
+        }
+    }
+
+    private static void reportMalformed(Path file, int malformed) {
+        if (malformed > 0) {
+            System.err.println("Skipped " + malformed + " malformed rows in " + file);
+        }
+    }
+
+    private static void write(TreeMap<Integer, FoodRecord> foods, DataOutputStream out) throws IOException {
+        int count = foods.size();
+        long descriptionsOffset = FdcIndexFormat.HEADER_SIZE + (long) count * FdcIndexFormat.RECORD_SIZE;
+
+        out.writeInt(FdcIndexFormat.MAGIC);
+        out.writeInt(FdcIndexFormat.VERSION);
+        out.writeInt(count);
+        out.writeInt(FdcIndexFormat.NUTRIENT_COUNT);
+        out.writeLong(descriptionsOffset);
+
+        ByteArrayOutputStream descriptions = new ByteArrayOutputStream();
+        int[] offsets = new int[count + 1];
+        int index = 0;
+
+        for (Map.Entry<Integer, FoodRecord> entry : foods.entrySet()) {
+            FoodRecord food = entry.getValue();
+            out.writeInt(entry.getKey());
+            out.writeByte(food.dataType);
+            out.write(new byte[3]);
+            for (float nutrient : food.nutrients) {
+                out.writeFloat(nutrient);
+            }
+
+            offsets[index++] = descriptions.size();
+            byte[] utf8 = food.description.getBytes(StandardCharsets.UTF_8);
+            descriptions.write(utf8, 0, utf8.length);
+        }
+        offsets[count] = descriptions.size();
+
+        for (int offset : offsets) {
+            out.writeInt(offset);
+        }
+        descriptions.writeTo(out);
+    }
+
+    private static Map<String, Integer> header(String line) throws IOException {
+        if (line == null) {
+            throw new IOException("Empty CSV file");
+        }
+        // Strip a UTF-8 byte order mark if present
+        if (!line.isEmpty() && line.charAt(0) == '\uFEFF') {
+            line = line.substring(1);
+        }
+        Map<String, Integer> columns = new HashMap<>();
+        List<String> names = parseCsvLine(line);
+        for (int i = 0; i < names.size(); i++) {
+            columns.put(names.get(i), i);
+        }
+        return columns;
+    }
+
+    private static int column(Map<String, Integer> columns, String name, Path file) throws IOException {
+        Integer index = columns.get(name);
+        if (index == null) {
+            throw new IOException("Column '" + name + "' missing in " + file);
+        }
+        return index;
+    }
+
+    /**
+     * Split one RFC 4180 CSV line, honouring quoted fields and doubled quotes
+     */
+    static List<String> parseCsvLine(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"') {
+                    if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                        field.append('"');
+                        i++;
+                    } else {
+                        quoted = false;
+                    }
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    private static class FoodRecord {
+        private final byte dataType;
+        private final String description;
+        private final float[] nutrients = new float[FdcIndexFormat.NUTRIENT_COUNT];
+        private final int[] nutrientRanks = new int[FdcIndexFormat.NUTRIENT_COUNT];
+
+        FoodRecord(byte dataType, String description) {
+            this.dataType = dataType;
+            this.description = description;
+            Arrays.fill(nutrients, Float.NaN);
+            Arrays.fill(nutrientRanks, Integer.MAX_VALUE);
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.nourishcare.visionservice.usda;
+
+import ai.djl.Application;
+import ai.djl.huggingface.translator.TextEmbeddingTranslatorFactory;
+import ai.djl.inference.Predictor;
+import ai.djl.repository.zoo.Criteria;
+import ai.djl.repository.zoo.ModelZoo;
+import ai.djl.repository.zoo.ZooModel;
+import com.nourishcare.visionservice.service.EmbeddingStore;
+import com.nourishcare.visionservice.service.ModelArtifactManager;
+import com.nourishcare.visionservice.service.SemanticMatchingService;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Builds the HNSW vector index from an offline FDC index (see {@link FdcIndexImporter}) by embedding
+ * every food description with the same MiniLM model the service uses for label matching.
+ *
+ * <pre>
+ * java -cp vision-service.jar -Dloader.main=com.nourishcare.visionservice.usda.FdcVectorIndexBuilder \
+ *      org.springframework.boot.loader.PropertiesLauncher fdc-index.bin fdc-vectors.hnsw [M] [efConstruction] [model-dir]
+ * </pre>
+ *
+ * Pass the same local model directory the service loads (vision.models.dir/all-MiniLM-L6-v2) when it
+ * runs from a local export: the index is tagged with the model's fingerprint and the service refuses
+ * an index built with any other model.
+ */
+public final class FdcVectorIndexBuilder {
+
+    private static final int DEFAULT_MAX_NEIGHBORS = 16;
+    private static final int DEFAULT_EF_CONSTRUCTION = 200;
+    private static final int EMBEDDING_BATCH_SIZE = 64;
+
+    private FdcVectorIndexBuilder() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2) {
+            System.err.println("Usage: FdcVectorIndexBuilder <fdc-index-file> <output-file> [M] [efConstruction] [model-dir]");
+            System.exit(1);
+        }
+        int maxNeighbors = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_MAX_NEIGHBORS;
+        int efConstruction = args.length > 3 ? Integer.parseInt(args[3]) : DEFAULT_EF_CONSTRUCTION;
+        Path modelDir = args.length > 4 ? Paths.get(args[4]) : null;
+
+        int written = build(Paths.get(args[0]), Paths.get(args[1]), maxNeighbors, efConstruction, modelDir);
+        System.out.println("Wrote " + written + " food vectors to " + args[1]);
+    }
+
+    /**
+     * Embed every food in the FDC index and write the graph; returns the number of foods indexed
+     *
+     * @param modelDir local model export to embed with, or null for the model zoo URL the service defaults to
+     */
+    public static int build(Path fdcIndexFile, Path output, int maxNeighbors, int efConstruction, Path modelDir)
+            throws Exception {
+        OfflineFdcIndex fdcIndex = OfflineFdcIndex.open(fdcIndexFile);
+        int count = fdcIndex.size();
+
+        int[] fdcIds = new int[count];
+        byte[] dataTypes = new byte[count];
+        String[] descriptions = new String[count];
+        for (int record = 0; record < count; record++) {
+            fdcIds[record] = fdcIndex.fdcIdAt(record);
+            dataTypes[record] = fdcIndex.dataTypeCode(record);
+            descriptions[record] = fdcIndex.descriptionAt(record);
+        }
+
+        // Same fingerprint as SemanticMatchingService computes for the model it loads
+        Criteria.Builder<String, float[]> builder = Criteria.builder()
+                .optApplication(Application.NLP.TEXT_EMBEDDING)
+                .setTypes(String.class, float[].class)
+                .optEngine("PyTorch");
+        String modelFingerprint;
+        if (modelDir != null) {
+            builder.optModelPath(modelDir)
+                .optTranslatorFactory(new TextEmbeddingTranslatorFactory());
+            modelFingerprint = "sha256:" + ModelArtifactManager.checksumDirectory(modelDir);
+        } else {
+            builder.optModelUrls(SemanticMatchingService.MODEL_URL);
+            modelFingerprint = SemanticMatchingService.MODEL_URL;
+        }
+        Criteria<String, float[]> criteria = builder.build();
+
+        HnswGraphBuilder graph = null;
+        try (ZooModel<String, float[]> model = ModelZoo.loadModel(criteria);
+             Predictor<String, float[]> predictor = model.newPredictor()) {
+            for (int start = 0; start < count; start += EMBEDDING_BATCH_SIZE) {
+                int end = Math.min(start + EMBEDDING_BATCH_SIZE, count);
+                List<String> batch = new ArrayList<>(end - start);
+                for (int record = start; record < end; record++) {
+                    batch.add(descriptions[record]);
+                }
+
+                List<float[]> embeddings = predictor.batchPredict(batch);
+                for (float[] embedding : embeddings) {
+                    if (graph == null) {
+                        graph = new HnswGraphBuilder(embedding.length, maxNeighbors, efConstruction, count);
+                    }
+                    graph.add(EmbeddingStore.normalize(embedding));
+                }
+                if (end % 5000 < EMBEDDING_BATCH_SIZE || end == count) {
+                    System.out.println("Indexed " + end + " / " + count + " foods");
+                }
+            }
+        }
+
+        if (graph == null) {
+            throw new IllegalStateException("FDC index " + fdcIndexFile + " contains no foods");
+        }
+        graph.write(output, modelFingerprint, fdcIds, dataTypes, descriptions);
+        return graph.getCount();
+    }
+}
@@ -0,0 +1,202 @@
+package com.nourishcare.visionservice.usda;
+
+import java.util.Arrays;
+
+/**
+ * Search routines shared by the in-memory HNSW builder and the memory-mapped index.
+ * Vectors are L2-normalised, so similarity is a dot product and larger is closer.
+ */
+abstract class HnswGraph {
+
+    private final ThreadLocal<Visited> visited = ThreadLocal.withInitial(Visited::new);
+
+    abstract int size();
+
+    abstract int entryPoint();
+
+    abstract int maxLevel();
+
+    abstract float similarity(float[] query, int node);
+
+    abstract int neighborCount(int node, int level);
+
+    abstract int neighbor(int node, int level, int index);
+
+    /**
+     * Greedy walk from the entry node down to (but not including) toLevel, returning the closest node found
+     */
+    int greedyClosest(float[] query, int entry, int fromLevel, int toLevel) {
+        int current = entry;
+        float best = similarity(query, current);
+        for (int level = fromLevel; level > toLevel; level--) {
+            boolean improved = true;
+            while (improved) {
+                improved = false;
+                int node = current;
+                int count = neighborCount(node, level);
+                for (int i = 0; i < count; i++) {
+                    int candidate = neighbor(node, level, i);
+                    float score = similarity(query, candidate);
+                    if (score > best) {
+                        best = score;
+                        current = candidate;
+                        improved = true;
+                    }
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Beam search over one layer; returns up to ef nearest nodes as a min-heap (weakest at the root)
+     */
+    NodeHeap searchLayer(float[] query, int entry, int ef, int level) {
+        Visited seen = visited.get();
+        seen.reset(size());
+
+        NodeHeap candidates = new NodeHeap(ef * 2, true);
+        NodeHeap results = new NodeHeap(ef + 1, false);
+
+        float entryScore = similarity(query, entry);
+        seen.mark(entry);
+        candidates.push(entry, entryScore);
+        results.push(entry, entryScore);
+
+        while (!candidates.isEmpty()) {
+            float candidateScore = candidates.peekScore();
+            int candidate = candidates.pop();
+            if (results.size() >= ef && candidateScore < results.peekScore()) {
+                break;
+            }
+
+            int count = neighborCount(candidate, level);
+            for (int i = 0; i < count; i++) {
+                int next = neighbor(candidate, level, i);
+                if (!seen.mark(next)) {
+                    continue;
+                }
+                float score = similarity(query, next);
+                if (results.size() < ef || score > results.peekScore()) {
+                    candidates.push(next, score);
+                    results.push(next, score);
+                    if (results.size() > ef) {
+                        results.pop();
+                    }
+                }
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Binary heap of (node, score) pairs; a max-heap pops the best score first, a min-heap the worst
+     */
+    static final class NodeHeap {
+        private final boolean max;
+        private int[] nodes;
+        private float[] scores;
+        private int size;
+
+        NodeHeap(int capacity, boolean max) {
+            this.max = max;
+            this.nodes = new int[Math.max(capacity, 4)];
+            this.scores = new float[nodes.length];
+        }
+
+        int size() {
+            return size;
+        }
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+
+        float peekScore() {
+            return scores[0];
+        }
+
+        int peekNode() {
+            return nodes[0];
+        }
+
+        void push(int node, float score) {
+            if (size == nodes.length) {
+                nodes = Arrays.copyOf(nodes, size * 2);
+                scores = Arrays.copyOf(scores, size * 2);
+            }
+            int index = size++;
+            while (index > 0) {
+                int parent = (index - 1) >>> 1;
+                if (!before(score, scores[parent])) {
+                    break;
+                }
+                nodes[index] = nodes[parent];
+                scores[index] = scores[parent];
+                index = parent;
+            }
+            nodes[index] = node;
+            scores[index] = score;
+        }
+
+        int pop() {
+            int top = nodes[0];
+            size--;
+            int node = nodes[size];
+            float score = scores[size];
+            int index = 0;
+            while (true) {
+                int child = 2 * index + 1;
+                if (child >= size) {
+                    break;
+                }
+                if (child + 1 < size && before(scores[child + 1], scores[child])) {
+                    child++;
+                }
+                if (!before(scores[child], score)) {
+                    break;
+                }
+                nodes[index] = nodes[child];
+                scores[index] = scores[child];
+                index = child;
+            }
+            nodes[index] = node;
+            scores[index] = score;
+            return top;
+        }
+
+        private boolean before(float a, float b) {
+            return max ? a > b : a < b;
+        }
+    }
+
+    /**
+     * Epoch-stamped visited set, reused per thread to avoid clearing or reallocating per search
+     */
+    private static final class Visited {
+        private int[] marks = new int[0];
+        private int epoch;
+
+        void reset(int size) {
+            if (marks.length < size) {
+                marks = new int[Math.max(size, marks.length * 2)];
+                epoch = 0;
+            }
+            if (++epoch == Integer.MAX_VALUE) {
+                Arrays.fill(marks, 0);
+                epoch = 1;
+            }
+        }
+
+        /**
+         * Mark the node; returns false if it was already marked in this epoch
+         */
+        boolean mark(int node) {
+            if (marks[node] == epoch) {
+                return false;
+            }
+            marks[node] = epoch;
+            return true;
+        }
+    }
+}
@@ -0,0 +1,312 @@
+package com.nourishcare.visionservice.usda;
+
+import com.nourishcare.visionservice.service.EmbeddingStore;
+import com.nourishcare.visionservice.service.VectorKernels;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * In-memory HNSW graph construction (Malkov and Yashunin) with the neighbour-selection heuristic,
+ * written out in the {@link HnswIndex} file layout.
+ */
+public final class HnswGraphBuilder extends HnswGraph {
+
+    private final int dimension;
+    private final int maxNeighbors;
+    private final int maxNeighborsLayer0;
+    private final int efConstruction;
+    private final double levelMultiplier;
+    private final Random random = new Random(42);
+
+    private float[] vectors;
+    private int[] levels;
+    // neighbors[node][level] = {count, n1, n2, ...}
+    private int[][][] neighbors;
+    private int count;
+    private int entryPoint = -1;
+    private int maxLevel = -1;
+
+    public HnswGraphBuilder(int dimension, int maxNeighbors, int efConstruction, int expectedSize) {
+        this.dimension = dimension;
+        this.maxNeighbors = maxNeighbors;
+        this.maxNeighborsLayer0 = maxNeighbors * 2;
+        this.efConstruction = efConstruction;
+        this.levelMultiplier = 1.0 / Math.log(maxNeighbors);
+        int capacity = Math.max(expectedSize, 16);
+        this.vectors = new float[capacity * dimension];
+        this.levels = new int[capacity];
+        this.neighbors = new int[capacity][][];
+    }
+
+    /**
+     * Insert an L2-normalised vector; returns its node id (insertion order)
+     */
+    public int add(float[] vector) {
+        if (vector.length != dimension) {
+            throw new IllegalArgumentException("Expected dimension " + dimension + " but got " + vector.length);
+        }
+        ensureCapacity(count + 1);
+
+        int node = count;
+        System.arraycopy(vector, 0, vectors, node * dimension, dimension);
+        int level = (int) (-Math.log(1.0 - random.nextDouble()) * levelMultiplier);
+        levels[node] = level;
+        neighbors[node] = new int[level + 1][];
+        for (int l = 0; l <= level; l++) {
+            neighbors[node][l] = new int[maxNeighborsFor(l) + 1];
+        }
+        count++;
+
+        if (entryPoint < 0) {
+            entryPoint = node;
+            maxLevel = level;
+            return node;
+        }
+
+        int entry = greedyClosest(vector, entryPoint, maxLevel, level);
+        for (int l = Math.min(level, maxLevel); l >= 0; l--) {
+            NodeHeap found = searchLayer(vector, entry, efConstruction, l);
+            int foundCount = found.size();
+            int[] foundNodes = new int[foundCount];
+            float[] foundScores = new float[foundCount];
+            // Drain the min-heap so the arrays end up best first
+            for (int i = foundCount - 1; i >= 0; i--) {
+                foundScores[i] = found.peekScore();
+                foundNodes[i] = found.pop();
+            }
+            entry = foundNodes[0];
+
+            int[] selected = selectNeighbors(foundNodes, foundScores, foundCount, maxNeighborsFor(l));
+            for (int neighbor : selected) {
+                connect(node, neighbor, l);
+                connect(neighbor, node, l);
+            }
+        }
+
+        if (level > maxLevel) {
+            maxLevel = level;
+            entryPoint = node;
+        }
+        return node;
+    }
+
+    /**
+     * Write the graph with per-node fdcIds, data type codes and descriptions (all indexed by node id),
+     * tagged with the fingerprint of the model that produced the vectors
+     */
+    public void write(Path output, String modelFingerprint, int[] fdcIds, byte[] dataTypes, String[] descriptions)
+            throws IOException {
+        if (fdcIds.length != count || dataTypes.length != count || descriptions.length != count) {
+            throw new IllegalArgumentException("Metadata arrays must have one entry per node");
+        }
+
+        HnswIndex.Layout layout = HnswIndex.Layout.of(count, dimension, maxNeighbors, levels);
+        byte[][] utf8 = new byte[count][];
+        long descriptionBytes = 0;
+        for (int i = 0; i < count; i++) {
+            utf8[i] = descriptions[i].getBytes(StandardCharsets.UTF_8);
+            descriptionBytes += utf8[i].length;
+        }
+        long totalSize = layout.descriptionsOffset + (count + 1) * 4L + descriptionBytes;
+        if (totalSize > Integer.MAX_VALUE) {
+            throw new IOException("HNSW index exceeds the 2 GB mapping limit");
+        }
+
+        Path tempFile = Files.createTempFile(output.toAbsolutePath().getParent(), "hnsw", ".tmp");
+        try (FileChannel channel = FileChannel.open(tempFile, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_WRITE, 0, totalSize);
+            ByteBuffer out = mapped.order(ByteOrder.LITTLE_ENDIAN);
+
+            out.putInt(0, HnswIndex.MAGIC);
+            out.putInt(4, HnswIndex.VERSION);
+            out.putInt(8, count);
+            out.putInt(12, dimension);
+            out.putInt(16, maxNeighbors);
+            out.putInt(20, maxLevel);
+            out.putInt(24, entryPoint);
+            byte[] fingerprint = EmbeddingStore.fingerprintBytes(modelFingerprint);
+            for (int i = 0; i < HnswIndex.FINGERPRINT_SIZE; i++) {
+                out.put(HnswIndex.FINGERPRINT_OFFSET + i, fingerprint[i]);
+            }
+
+            int upperCursor = 0;
+            for (int node = 0; node < count; node++) {
+                out.putInt((int) layout.fdcIdsOffset + node * 4, fdcIds[node]);
+                out.put((int) layout.dataTypesOffset + node, dataTypes[node]);
+                out.putInt((int) layout.levelsOffset + node * 4, levels[node]);
+                out.putInt((int) layout.upperIndexOffset + node * 4, levels[node] > 0 ? upperCursor : -1);
+
+                int vectorBase = (int) layout.vectorsOffset + node * dimension * 4;
+                for (int i = 0; i < dimension; i++) {
+                    out.putFloat(vectorBase + i * 4, vectors[node * dimension + i]);
+                }
+
+                writeList(out, (int) layout.layer0Offset + node * (maxNeighborsLayer0 + 1) * 4, neighbors[node][0]);
+                for (int l = 1; l <= levels[node]; l++) {
+                    writeList(out, (int) layout.upperOffset + upperCursor * 4, neighbors[node][l]);
+                    upperCursor += maxNeighbors + 1;
+                }
+            }
+
+            int offsetsBase = (int) layout.descriptionsOffset;
+            int dataBase = offsetsBase + (count + 1) * 4;
+            int cursor = 0;
+            for (int node = 0; node < count; node++) {
+                out.putInt(offsetsBase + node * 4, cursor);
+                for (int b = 0; b < utf8[node].length; b++) {
+                    out.put(dataBase + cursor + b, utf8[node][b]);
+                }
+                cursor += utf8[node].length;
+            }
+            out.putInt(offsetsBase + count * 4, cursor);
+            mapped.force();
+        }
+        Files.move(tempFile, output, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    @Override
+    int size() {
+        return count;
+    }
+
+    @Override
+    int entryPoint() {
+        return entryPoint;
+    }
+
+    @Override
+    int maxLevel() {
+        return maxLevel;
+    }
+
+    @Override
+    float similarity(float[] query, int node) {
+        return dot(query, node);
+    }
+
+    @Override
+    int neighborCount(int node, int level) {
+        return neighbors[node][level][0];
+    }
+
+    @Override
+    int neighbor(int node, int level, int index) {
+        return neighbors[node][level][index + 1];
+    }
+
+    private int maxNeighborsFor(int level) {
+        return level == 0 ? maxNeighborsLayer0 : maxNeighbors;
+    }
+
+    /**
+     * Heuristic selection: walk candidates best first and keep one only if it is closer to the
+     * base than to every neighbour already kept, which preserves links across clusters
+     */
+    private int[] selectNeighbors(int[] candidates, float[] scores, int candidateCount, int limit) {
+        int[] selected = new int[Math.min(limit, candidateCount)];
+        int kept = 0;
+        for (int i = 0; i < candidateCount && kept < selected.length; i++) {
+            int candidate = candidates[i];
+            boolean diverse = true;
+            for (int k = 0; k < kept; k++) {
+                if (nodeSimilarity(candidate, selected[k]) > scores[i]) {
+                    diverse = false;
+                    break;
+                }
+            }
+            if (diverse) {
+                selected[kept++] = candidate;
+            }
+        }
+        return Arrays.copyOf(selected, kept);
+    }
+
+    private void connect(int from, int to, int level) {
+        int[] list = neighbors[from][level];
+        int size = list[0];
+        for (int i = 1; i <= size; i++) {
+            if (list[i] == to) {
+                return;
+            }
+        }
+        if (size < list.length - 1) {
+            list[size + 1] = to;
+            list[0] = size + 1;
+            return;
+        }
+
+        // Full: re-select among the existing neighbours plus the new one
+        int[] candidates = new int[size + 1];
+        float[] scores = new float[size + 1];
+        for (int i = 0; i < size; i++) {
+            candidates[i] = list[i + 1];
+            scores[i] = nodeSimilarity(from, list[i + 1]);
+        }
+        candidates[size] = to;
+        scores[size] = nodeSimilarity(from, to);
+        sortBestFirst(candidates, scores);
+
+        int[] selected = selectNeighbors(candidates, scores, candidates.length, size);
+        list[0] = selected.length;
+        System.arraycopy(selected, 0, list, 1, selected.length);
+    }
+
+    private static void sortBestFirst(int[] nodes, float[] scores) {
+        for (int i = 1; i < nodes.length; i++) {
+            int node = nodes[i];
+            float score = scores[i];
+            int j = i - 1;
+            while (j >= 0 && scores[j] < score) {
+                nodes[j + 1] = nodes[j];
+                scores[j + 1] = scores[j];
+                j--;
+            }
+            nodes[j + 1] = node;
+            scores[j + 1] = score;
+        }
+    }
+
+    private float dot(float[] query, int node) {
+        return VectorKernels.dot(query, vectors, node * dimension, dimension);
+    }
+
+    private float nodeSimilarity(int a, int b) {
+        int baseA = a * dimension;
+        int baseB = b * dimension;
+        float sum = 0f;
+        for (int i = 0; i < dimension; i++) {
+            sum += vectors[baseA + i] * vectors[baseB + i];
+        }
+        return sum;
+    }
+
+    private void ensureCapacity(int size) {
+        if (levels.length < size) {
+            int capacity = Math.max(size, levels.length * 2);
+            vectors = Arrays.copyOf(vectors, capacity * dimension);
+            levels = Arrays.copyOf(levels, capacity);
+            neighbors = Arrays.copyOf(neighbors, capacity);
+        }
+    }
+
+    private static void writeList(ByteBuffer out, int offset, int[] list) {
+        for (int i = 0; i < list.length; i++) {
+            out.putInt(offset + i * 4, list[i]);
+        }
+    }
+}
@@ -0,0 +1,289 @@
+package com.nourishcare.visionservice.usda;
+
+import com.nourishcare.visionservice.service.EmbeddingStore;
+import com.nourishcare.visionservice.service.VectorKernels;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Memory-mapped HNSW index over FDC food description embeddings, written by {@link HnswGraphBuilder}.
+ * Nothing is decoded at open time; searches read vectors and adjacency lists straight from the mapping.
+ *
+ * <pre>
+ * header       int magic, int version, int count, int dimension, int M, int maxLevel, int entryPoint, pad to 32,
+ *              16 bytes model fingerprint (see {@link EmbeddingStore#fingerprintBytes}), pad to 64
+ * fdcIds       int[count]
+ * dataTypes    byte[count], padded to 4
+ * levels       int[count]
+ * upperIndex   int[count]   start of the node's level-1 list in the upper block, or -1
+ * vectors      float[count * dimension], L2-normalised
+ * layer0       int[count * (2M + 1)]  {neighbourCount, neighbours...}
+ * upper        int[]        per node, per level 1..level: {neighbourCount, M neighbour slots}
+ * descriptions int[count + 1] byte offsets, then UTF-8 bytes
+ * </pre>
+ *
+ * All values are little-endian. The fingerprint identifies the embedding model that wrote the vectors,
+ * so an index built with another model (or another export of it) is rejected rather than searched.
+ */
+public final class HnswIndex extends HnswGraph {
+
+    static final int MAGIC = 0x57534E48; // "HNSW" little-endian
+    static final int VERSION = 2;
+    static final int FINGERPRINT_OFFSET = 32;
+    static final int FINGERPRINT_SIZE = 16;
+    static final int HEADER_SIZE = 64;
+
+    private final ByteBuffer buffer;
+    private final int count;
+    private final int dimension;
+    private final int maxNeighbors;
+    private final int maxLevel;
+    private final int entryPoint;
+    private final Layout layout;
+
+    private final IntBuffer fdcIds;
+    private final IntBuffer upperIndex;
+    private final FloatBuffer vectors;
+    private final IntBuffer layer0;
+    private final IntBuffer upper;
+
+    // Per-thread view plus row buffer: one bulk copy per vector beats element-wise buffer reads
+    private final ThreadLocal<RowReader> rowReaders;
+
+    private HnswIndex(ByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+        if (buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not an HNSW index file");
+        }
+        if (buffer.getInt(4) != VERSION) {
+            throw new IOException("Unsupported HNSW index version " + buffer.getInt(4));
+        }
+        this.count = buffer.getInt(8);
+        this.dimension = buffer.getInt(12);
+        this.maxNeighbors = buffer.getInt(16);
+        this.maxLevel = buffer.getInt(20);
+        this.entryPoint = buffer.getInt(24);
+
+        // The upper block size depends on node levels, so read those before computing the layout
+        IntBuffer levels = section(HEADER_SIZE + count * 4L + align4(count)).asIntBuffer();
+        int[] nodeLevels = new int[count];
+        levels.get(nodeLevels);
+        this.layout = Layout.of(count, dimension, maxNeighbors, nodeLevels);
+
+        this.fdcIds = section(layout.fdcIdsOffset).asIntBuffer();
+        this.upperIndex = section(layout.upperIndexOffset).asIntBuffer();
+        this.vectors = section(layout.vectorsOffset).asFloatBuffer();
+        this.layer0 = section(layout.layer0Offset).asIntBuffer();
+        this.upper = section(layout.upperOffset).asIntBuffer();
+        this.rowReaders = ThreadLocal.withInitial(() -> new RowReader(vectors.duplicate(), dimension));
+    }
+
+    /**
+     * Map an index file
+     */
+    public static HnswIndex open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return new HnswIndex(mapped.order(ByteOrder.LITTLE_ENDIAN));
+        }
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public int getDimension() {
+        return dimension;
+    }
+
+    /**
+     * Whether the vectors were written by the model with this fingerprint (its URL or artefact checksum)
+     */
+    public boolean matchesModel(String modelFingerprint) {
+        byte[] stored = new byte[FINGERPRINT_SIZE];
+        for (int i = 0; i < FINGERPRINT_SIZE; i++) {
+            stored[i] = buffer.get(FINGERPRINT_OFFSET + i);
+        }
+        return Arrays.equals(stored, EmbeddingStore.fingerprintBytes(modelFingerprint));
+    }
+
+    /**
+     * Approximate top-k foods by similarity to an L2-normalised query, best first
+     *
+     * @param ef search beam width; larger trades latency for recall (at least k is used)
+     */
+    public List<Hit> search(float[] query, int k, int ef) {
+        if (query.length != dimension) {
+            throw new IllegalArgumentException("Expected query dimension " + dimension + " but got " + query.length);
+        }
+        List<Hit> hits = new ArrayList<>();
+        if (count == 0 || k <= 0) {
+            return hits;
+        }
+
+        int entry = greedyClosest(query, entryPoint, maxLevel, 0);
+        NodeHeap found = searchLayer(query, entry, Math.max(ef, k), 0);
+        while (found.size() > k) {
+            found.pop();
+        }
+
+        int size = found.size();
+        int[] nodes = new int[size];
+        float[] scores = new float[size];
+        for (int i = size - 1; i >= 0; i--) {
+            scores[i] = found.peekScore();
+            nodes[i] = found.pop();
+        }
+        for (int i = 0; i < size; i++) {
+            int node = nodes[i];
+            hits.add(new Hit(fdcIds.get(node), description(node),
+                FdcIndexFormat.dataTypeName(buffer.get((int) layout.dataTypesOffset + node)), scores[i]));
+        }
+        return hits;
+    }
+
+    @Override
+    int size() {
+        return count;
+    }
+
+    @Override
+    int entryPoint() {
+        return entryPoint;
+    }
+
+    @Override
+    int maxLevel() {
+        return maxLevel;
+    }
+
+    @Override
+    float similarity(float[] query, int node) {
+        RowReader reader = rowReaders.get();
+        reader.view.position(node * dimension);
+        reader.view.get(reader.row, 0, dimension);
+        return VectorKernels.dot(query, reader.row);
+    }
+
+    @Override
+    int neighborCount(int node, int level) {
+        return level > 0 ? upper.get(upperIndex.get(node) + (level - 1) * (maxNeighbors + 1))
+                         : layer0.get(node * (2 * maxNeighbors + 1));
+    }
+
+    @Override
+    int neighbor(int node, int level, int index) {
+        return level > 0 ? upper.get(upperIndex.get(node) + (level - 1) * (maxNeighbors + 1) + 1 + index)
+                         : layer0.get(node * (2 * maxNeighbors + 1) + 1 + index);
+    }
+
+    private String description(int node) {
+        int offsetsBase = (int) layout.descriptionsOffset;
+        int start = buffer.getInt(offsetsBase + node * 4);
+        int end = buffer.getInt(offsetsBase + (node + 1) * 4);
+        byte[] bytes = new byte[end - start];
+        int dataBase = offsetsBase + (count + 1) * 4;
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = buffer.get(dataBase + start + i);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private ByteBuffer section(long offset) {
+        ByteBuffer view = buffer.duplicate();
+        view.position((int) offset);
+        // slice() resets byte order, so set it again on the view
+        return view.slice().order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private static int align4(int bytes) {
+        return (bytes + 3) & ~3;
+    }
+
+    private static final class RowReader {
+        private final FloatBuffer view;
+        private final float[] row;
+
+        RowReader(FloatBuffer view, int dimension) {
+            this.view = view;
+            this.row = new float[dimension];
+        }
+    }
+
+    /**
+     * Section offsets for a graph of the given shape
+     */
+    static final class Layout {
+        long fdcIdsOffset;
+        long dataTypesOffset;
+        long levelsOffset;
+        long upperIndexOffset;
+        long vectorsOffset;
+        long layer0Offset;
+        long upperOffset;
+        long descriptionsOffset;
+
+        static Layout of(int count, int dimension, int maxNeighbors, int[] levels) {
+            long upperInts = 0;
+            for (int node = 0; node < count; node++) {
+                upperInts += (long) levels[node] * (maxNeighbors + 1);
+            }
+
+            Layout layout = new Layout();
+            layout.fdcIdsOffset = HEADER_SIZE;
+            layout.dataTypesOffset = layout.fdcIdsOffset + count * 4L;
+            layout.levelsOffset = layout.dataTypesOffset + align4(count);
+            layout.upperIndexOffset = layout.levelsOffset + count * 4L;
+            layout.vectorsOffset = layout.upperIndexOffset + count * 4L;
+            layout.layer0Offset = layout.vectorsOffset + (long) count * dimension * 4;
+            layout.upperOffset = layout.layer0Offset + (long) count * (2 * maxNeighbors + 1) * 4;
+            layout.descriptionsOffset = layout.upperOffset + upperInts * 4;
+            return layout;
+        }
+    }
+
+    /**
+     * A nearest-neighbour result
+     */
+    public static final class Hit {
+        private final int fdcId;
+        private final String description;
+        private final String dataType;
+        private final float similarity;
+
+        Hit(int fdcId, String description, String dataType, float similarity) {
+            this.fdcId = fdcId;
+            this.description = description;
+            this.dataType = dataType;
+            this.similarity = similarity;
+        }
+
+        public int getFdcId() {
+            return fdcId;
+        }
+
+        public String getDescription() {
+            return description;
+        }
+
+        public String getDataType() {
+            return dataType;
+        }
+
+        public float getSimilarity() {
+            return similarity;
+        }
+    }
+}
@@ -0,0 +1,263 @@
+package com.nourishcare.visionservice.usda;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Read-only view over an index file written by {@link FdcIndexImporter}.
+ * Nutrient records stay in the memory-mapped file and are found by binary search on fdcId;
+ * descriptions are decoded once at open time to build an in-memory inverted token index.
+ * Instances are immutable after {@link #open(Path)} and safe to share between threads.
+ */
+public final class OfflineFdcIndex {
+
+    private final MappedByteBuffer buffer;
+    private final int recordCount;
+    private final String[] descriptions;
+    private final String[][] descriptionTokens;
+    private final Map<String, int[]> postings;
+
+    private OfflineFdcIndex(MappedByteBuffer buffer, int recordCount, String[] descriptions) {
+        this.buffer = buffer;
+        this.recordCount = recordCount;
+        this.descriptions = descriptions;
+        this.descriptionTokens = new String[recordCount][];
+        this.postings = buildPostings();
+    }
+
+    /**
+     * Map the index file and build the description token index
+     */
+    public static OfflineFdcIndex open(Path file) throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+
+        if (buffer.getInt(0) != FdcIndexFormat.MAGIC) {
+            throw new IOException("Not an FDC index file: " + file);
+        }
+        int version = buffer.getInt(4);
+        if (version != FdcIndexFormat.VERSION) {
+            throw new IOException("Unsupported FDC index version " + version + " in " + file);
+        }
+        int recordCount = buffer.getInt(8);
+        if (buffer.getInt(12) != FdcIndexFormat.NUTRIENT_COUNT) {
+            throw new IOException("Unexpected nutrient count in " + file);
+        }
+        long descriptionsOffset = buffer.getLong(16);
+
+        int offsetsStart = (int) descriptionsOffset;
+        int dataStart = offsetsStart + (recordCount + 1) * 4;
+        String[] descriptions = new String[recordCount];
+        byte[] scratch = new byte[256];
+        for (int i = 0; i < recordCount; i++) {
+            int start = buffer.getInt(offsetsStart + i * 4);
+            int end = buffer.getInt(offsetsStart + (i + 1) * 4);
+            int length = end - start;
+            if (scratch.length < length) {
+                scratch = new byte[length];
+            }
+            for (int b = 0; b < length; b++) {
+                scratch[b] = buffer.get(dataStart + start + b);
+            }
+            descriptions[i] = new String(scratch, 0, length, StandardCharsets.UTF_8);
+        }
+
+        return new OfflineFdcIndex(buffer, recordCount, descriptions);
+    }
+
+    public int size() {
+        return recordCount;
+    }
+
+    /**
+     * Rank foods whose descriptions share tokens with the query.
+     * Foods matching more query tokens come first, then those whose leading description term
+     * matches, then Foundation over SR Legacy over FNDDS, then shorter descriptions.
+     */
+    public List<Match> search(String query, int maxResults) {
+        Set<String> queryTokens = new LinkedHashSet<>(tokenize(query));
+        if (queryTokens.isEmpty() || maxResults <= 0) {
+            return new ArrayList<>();
+        }
+
+        Map<Integer, Integer> hits = new HashMap<>();
+        for (String token : queryTokens) {
+            int[] records = postings.get(token);
+            if (records != null) {
+                for (int record : records) {
+                    hits.merge(record, 1, Integer::sum);
+                }
+            }
+        }
+
+        long[] ranked = new long[hits.size()];
+        int n = 0;
+        for (Map.Entry<Integer, Integer> hit : hits.entrySet()) {
+            int record = hit.getKey();
+            // Higher is better: pack the ranking criteria above the record index
+            long score = (long) hit.getValue() << 12;
+            if (queryTokens.contains(descriptionTokens[record][0])) {
+                score |= 1L << 11;
+            }
+            score |= (long) (3 - dataTypeCode(record)) << 9;
+            score |= 511 - Math.min(descriptions[record].length(), 511);
+            ranked[n++] = (score << 24) | (0xFFFFFF - record);
+        }
+        Arrays.sort(ranked);
+
+        List<Match> matches = new ArrayList<>(Math.min(maxResults, n));
+        for (int i = n - 1; i >= 0 && matches.size() < maxResults; i--) {
+            int record = 0xFFFFFF - (int) (ranked[i] & 0xFFFFFF);
+            matches.add(new Match(fdcIdAt(record), descriptions[record],
+                FdcIndexFormat.dataTypeName(dataTypeCode(record))));
+        }
+        return matches;
+    }
+
+    /**
+     * Description of a food, or null if the fdcId is not in the index
+     */
+    public String description(int fdcId) {
+        int record = find(fdcId);
+        return record < 0 ? null : descriptions[record];
+    }
+
+    /**
+     * Nutrients per 100 g in {@link FdcIndexFormat} slot order (NaN where unknown),
+     * or null if the fdcId is not in the index
+     */
+    public float[] nutrients(int fdcId) {
+        int record = find(fdcId);
+        if (record < 0) {
+            return null;
+        }
+        int base = recordOffset(record) + 8;
+        float[] values = new float[FdcIndexFormat.NUTRIENT_COUNT];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = buffer.getFloat(base + i * 4);
+        }
+        return values;
+    }
+
+    private int find(int fdcId) {
+        int low = 0;
+        int high = recordCount - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int value = fdcIdAt(mid);
+            if (value < fdcId) {
+                low = mid + 1;
+            } else if (value > fdcId) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    int fdcIdAt(int record) {
+        return buffer.getInt(recordOffset(record));
+    }
+
+    String descriptionAt(int record) {
+        return descriptions[record];
+    }
+
+    byte dataTypeCode(int record) {
+        return buffer.get(recordOffset(record) + 4);
+    }
+
+    private static int recordOffset(int record) {
+        return FdcIndexFormat.HEADER_SIZE + record * FdcIndexFormat.RECORD_SIZE;
+    }
+
+    private Map<String, int[]> buildPostings() {
+        Map<String, List<Integer>> lists = new HashMap<>();
+        for (int record = 0; record < recordCount; record++) {
+            List<String> tokens = tokenize(descriptions[record]);
+            descriptionTokens[record] = tokens.isEmpty() ? new String[]{""} : tokens.toArray(new String[0]);
+            for (String token : new LinkedHashSet<>(tokens)) {
+                lists.computeIfAbsent(token, k -> new ArrayList<>()).add(record);
+            }
+        }
+
+        Map<String, int[]> result = new HashMap<>(lists.size() * 2);
+        for (Map.Entry<String, List<Integer>> entry : lists.entrySet()) {
+            List<Integer> records = entry.getValue();
+            int[] array = new int[records.size()];
+            for (int i = 0; i < array.length; i++) {
+                array[i] = records.get(i);
+            }
+            result.put(entry.getKey(), array);
+        }
+        return result;
+    }
+
+    /**
+     * Lower-case alphabetic tokens with a light plural stem, so "tomatoes" and "tomato" share postings
+     */
+    static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        for (String raw : text.toLowerCase().split("[^a-z]+")) {
+            if (raw.length() < 2) {
+                continue;
+            }
+            tokens.add(stem(raw));
+        }
+        return tokens;
+    }
+
+    private static String stem(String token) {
+        if (token.length() > 4 && token.endsWith("ies")) {
+            return token.substring(0, token.length() - 3) + "y";
+        }
+        if (token.length() > 4 && token.endsWith("oes")) {
+            return token.substring(0, token.length() - 2);
+        }
+        if (token.length() > 3 && token.endsWith("s") && !token.endsWith("ss")) {
+            return token.substring(0, token.length() - 1);
+        }
+        return token;
+    }
+
+    /**
+     * A search hit, shaped like an FDC search API result
+     */
+    public static final class Match {
+        private final int fdcId;
+        private final String description;
+        private final String dataType;
+
+        Match(int fdcId, String description, String dataType) {
+            this.fdcId = fdcId;
+            this.description = description;
+            this.dataType = dataType;
+        }
+
+        public int getFdcId() {
+            return fdcId;
+        }
+
+        public String getDescription() {
+            return description;
+        }
+
+        public String getDataType() {
+            return dataType;
+        }
+    }
+}
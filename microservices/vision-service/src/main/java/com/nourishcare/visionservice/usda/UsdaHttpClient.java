@@ -0,0 +1,287 @@
+package com.nourishcare.visionservice.usda;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.apache.http.HttpEntity;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.util.EntityUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Outbound HTTP client for FoodData Central.
+ * Keeps TLS connections alive in a bounded pool, applies connect/read timeouts per request and
+ * a hard total deadline by aborting the request, caps response size and records latency and
+ * errors per logical endpoint.
+ */
+@Component
+public class UsdaHttpClient {
+
+    private static final Logger logger = LoggerFactory.getLogger(UsdaHttpClient.class);
+
+    // Deadline (System.nanoTime) of the caller's whole operation; requests are aborted by then at the latest
+    private static final ThreadLocal<Long> CALLER_DEADLINE = new ThreadLocal<>();
+
+    /**
+     * Parses a response body straight from the connection stream
+     */
+    public interface ResponseParser<T> {
+        T parse(InputStream body) throws IOException;
+    }
+
+    @Value("${usda.http.max-connections:20}")
+    private int maxConnections;
+
+    @Value("${usda.http.connect-timeout-ms:2000}")
+    private int connectTimeoutMs;
+
+    @Value("${usda.http.read-timeout-ms:5000}")
+    private int readTimeoutMs;
+
+    @Value("${usda.http.total-timeout-ms:8000}")
+    private long totalTimeoutMs;
+
+    @Value("${usda.http.pool-acquire-timeout-ms:1000}")
+    private int poolAcquireTimeoutMs;
+
+    @Value("${usda.http.max-response-bytes:2097152}")
+    private long maxResponseBytes;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private PoolingHttpClientConnectionManager connectionManager;
+    private CloseableHttpClient httpClient;
+    private ScheduledExecutorService deadlineScheduler;
+
+    @PostConstruct
+    public void initialize() {
+        connectionManager = new PoolingHttpClientConnectionManager(5, TimeUnit.MINUTES);
+        connectionManager.setMaxTotal(maxConnections);
+        // All traffic goes to one host, so the per-route limit is the pool size
+        connectionManager.setDefaultMaxPerRoute(maxConnections);
+        connectionManager.setValidateAfterInactivity(2000);
+
+        RequestConfig requestConfig = RequestConfig.custom()
+            .setConnectTimeout(connectTimeoutMs)
+            .setSocketTimeout(readTimeoutMs)
+            .setConnectionRequestTimeout(poolAcquireTimeoutMs)
+            .build();
+
+        httpClient = HttpClients.custom()
+            .setConnectionManager(connectionManager)
+            .setDefaultRequestConfig(requestConfig)
+            .evictIdleConnections(30, TimeUnit.SECONDS)
+            .disableCookieManagement()
+            .build();
+
+        deadlineScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "usda-http-deadline");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        logger.info("✅ USDA HTTP client ready (pool: {}, connect: {}ms, read: {}ms, total: {}ms)",
+                   maxConnections, connectTimeoutMs, readTimeoutMs, totalTimeoutMs);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        deadlineScheduler.shutdownNow();
+        try {
+            httpClient.close();
+        } catch (IOException e) {
+            logger.warn("Error closing USDA HTTP client: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Cap every request made by this thread at the given System.nanoTime deadline, on top of the
+     * client's own total timeout, until the returned scope is closed. A blocked socket read does not
+     * react to interruption, so this is what frees a worker whose caller has stopped waiting.
+     */
+    public static DeadlineScope withDeadline(long deadlineNanos) {
+        Long previous = CALLER_DEADLINE.get();
+        CALLER_DEADLINE.set(deadlineNanos);
+        return () -> {
+            if (previous == null) {
+                CALLER_DEADLINE.remove();
+            } else {
+                CALLER_DEADLINE.set(previous);
+            }
+        };
+    }
+
+    /**
+     * Restores the previous caller deadline
+     */
+    @FunctionalInterface
+    public interface DeadlineScope extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+    /**
+     * GET the URL once and parse the body with the given parser
+     *
+     * @param endpoint logical endpoint name used as the metrics tag (e.g. "search", "food")
+     * @throws NotFoundException if USDA answers 404 for the resource
+     * @throws IOException on connection failure, timeout, other non-2xx status or oversized response
+     */
+    public <T> T get(String endpoint, String url, ResponseParser<T> parser) throws IOException {
+        HttpGet request = new HttpGet(url);
+        request.setHeader("Accept", "application/json");
+
+        long timeoutMs = totalTimeoutMs;
+        Long callerDeadline = CALLER_DEADLINE.get();
+        if (callerDeadline != null) {
+            timeoutMs = Math.min(timeoutMs, TimeUnit.NANOSECONDS.toMillis(callerDeadline - System.nanoTime()));
+            if (timeoutMs <= 0) {
+                throw new IOException("USDA " + endpoint + " skipped, the caller's deadline has passed");
+            }
+        }
+        long abortAfterMs = timeoutMs;
+
+        AtomicBoolean timedOut = new AtomicBoolean();
+        ScheduledFuture<?> deadline = deadlineScheduler.schedule(() -> {
+            timedOut.set(true);
+            request.abort();
+        }, abortAfterMs, TimeUnit.MILLISECONDS);
+
+        long start = System.nanoTime();
+        String outcome = "success";
+        try (CloseableHttpResponse response = httpClient.execute(request)) {
+            int status = response.getStatusLine().getStatusCode();
+            HttpEntity entity = response.getEntity();
+            if (status < 200 || status >= 300) {
+                outcome = "status_" + (status / 100) + "xx";
+                EntityUtils.consumeQuietly(entity);
+                if (status == 404) {
+                    throw new NotFoundException("USDA " + endpoint + " returned HTTP 404");
+                }
+                throw new IOException("USDA " + endpoint + " returned HTTP " + status);
+            }
+            if (entity == null) {
+                outcome = "empty";
+                throw new IOException("USDA " + endpoint + " returned no body");
+            }
+            if (entity.getContentLength() > maxResponseBytes) {
+                outcome = "oversize";
+                throw new IOException("USDA " + endpoint + " response of " + entity.getContentLength()
+                    + " bytes exceeds limit of " + maxResponseBytes);
+            }
+
+            try (InputStream body = new LimitedInputStream(entity.getContent(), maxResponseBytes)) {
+                return parser.parse(body);
+            } catch (ResponseTooLargeException e) {
+                outcome = "oversize";
+                throw e;
+            }
+        } catch (IOException e) {
+            if (timedOut.get()) {
+                outcome = "timeout";
+                throw new IOException("USDA " + endpoint + " exceeded total timeout of " + abortAfterMs + "ms", e);
+            }
+            if ("success".equals(outcome)) {
+                outcome = "io_error";
+            }
+            throw e;
+        } finally {
+            deadline.cancel(false);
+            Timer.builder("usda.http.client.requests")
+                .description("Outbound FoodData Central requests")
+                .tag("endpoint", endpoint)
+                .tag("outcome", outcome)
+                .register(meterRegistry)
+                .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            if (!"success".equals(outcome)) {
+                Counter.builder("usda.http.client.errors")
+                    .description("Failed outbound FoodData Central requests")
+                    .tag("endpoint", endpoint)
+                    .tag("reason", outcome)
+                    .register(meterRegistry)
+                    .increment();
+            }
+        }
+    }
+
+    /**
+     * USDA has no such resource (for example an unknown fdcId); a definitive answer, not a transient failure
+     */
+    public static final class NotFoundException extends IOException {
+        NotFoundException(String message) {
+            super(message);
+        }
+    }
+
+    private static final class ResponseTooLargeException extends IOException {
+        ResponseTooLargeException(long limit) {
+            super("USDA response exceeds limit of " + limit + " bytes");
+        }
+    }
+
+    /**
+     * Fails the read once more than the allowed number of bytes have been consumed
+     */
+    static final class LimitedInputStream extends FilterInputStream {
+        private final long limit;
+        private long consumed;
+
+        LimitedInputStream(InputStream in, long limit) {
+            super(in);
+            this.limit = limit;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                count(1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int n = super.read(buffer, offset, length);
+            if (n > 0) {
+                count(n);
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count(skipped);
+            return skipped;
+        }
+
+        private void count(long n) throws IOException {
+            consumed += n;
+            if (consumed > limit) {
+                throw new ResponseTooLargeException(limit);
+            }
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package com.nourishcare.visionservice.usda;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Bounded TTL cache for outbound USDA lookups.
+ * <ul>
+ *   <li>Single flight: concurrent misses for one key share a single load.</li>
+ *   <li>Negative caching: a loader returning null ("no such food") is cached under its own, shorter TTL.</li>
+ *   <li>Stale-while-revalidate: for a grace period after expiry the old value is served immediately
+ *       while one background load refreshes it.</li>
+ * </ul>
+ * Failed loads are never cached; waiters on a failed load see the same exception.
+ */
+public final class UsdaLookupCache<K, V> {
+
+    private static final Logger logger = LoggerFactory.getLogger(UsdaLookupCache.class);
+
+    /**
+     * Loads the value for a key; returns null when the key definitively has no value
+     */
+    @FunctionalInterface
+    public interface Loader<K, V> {
+        V load(K key) throws IOException;
+    }
+
+    private final String name;
+    private final long ttlMillis;
+    private final long negativeTtlMillis;
+    private final long staleMillis;
+    private final Executor refreshExecutor;
+    private final MeterRegistry meterRegistry;
+
+    private final Map<K, Entry<V>> entries;
+    private final Map<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+
+    /**
+     * @param staleMillis how long past expiry an entry may still be served while it is refreshed
+     */
+    public UsdaLookupCache(String name, int maxEntries, long ttlMillis, long negativeTtlMillis, long staleMillis,
+                           Executor refreshExecutor, MeterRegistry meterRegistry) {
+        this.name = name;
+        this.ttlMillis = ttlMillis;
+        this.negativeTtlMillis = negativeTtlMillis;
+        this.staleMillis = staleMillis;
+        this.refreshExecutor = refreshExecutor;
+        this.meterRegistry = meterRegistry;
+
+        // Access-ordered map gives LRU eviction once the bound is reached
+        this.entries = new LinkedHashMap<K, Entry<V>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, Entry<V>> eldest) {
+                return size() > maxEntries;
+            }
+        };
+
+        Gauge.builder("usda.lookup.cache.size", this, UsdaLookupCache::size)
+            .description("Entries held by the USDA lookup cache")
+            .tag("cache", name)
+            .register(meterRegistry);
+    }
+
+    /**
+     * Cached value for the key (null for a cached negative), loading it through the loader when absent or expired
+     */
+    public V get(K key, Loader<K, V> loader) throws IOException {
+        long now = System.currentTimeMillis();
+        Entry<V> entry;
+        synchronized (entries) {
+            entry = entries.get(key);
+        }
+
+        if (entry != null && now < entry.expiresAt) {
+            record(entry.value == null ? "negative_hit" : "hit");
+            return entry.value;
+        }
+        if (entry != null && entry.value != null && now < entry.expiresAt + staleMillis) {
+            record("stale");
+            refreshInBackground(key, loader);
+            return entry.value;
+        }
+        return load(key, loader);
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    private V load(K key, Loader<K, V> loader) throws IOException {
+        CompletableFuture<V> mine = new CompletableFuture<>();
+        CompletableFuture<V> existing = inFlight.putIfAbsent(key, mine);
+        if (existing != null) {
+            record("coalesced");
+            return await(key, existing);
+        }
+
+        record("miss");
+        try {
+            V value = loader.load(key);
+            store(key, value);
+            mine.complete(value);
+            return value;
+        } catch (IOException | RuntimeException e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, mine);
+        }
+    }
+
+    private void refreshInBackground(K key, Loader<K, V> loader) {
+        CompletableFuture<V> mine = new CompletableFuture<>();
+        if (inFlight.putIfAbsent(key, mine) != null) {
+            return;
+        }
+
+        try {
+            refreshExecutor.execute(() -> {
+                try {
+                    V value = loader.load(key);
+                    store(key, value);
+                    mine.complete(value);
+                } catch (Exception e) {
+                    // Keep serving the stale value until the grace period runs out
+                    logger.warn("Background refresh of USDA {} cache entry '{}' failed: {}", name, key, e.getMessage());
+                    mine.completeExceptionally(e);
+                } finally {
+                    inFlight.remove(key, mine);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            inFlight.remove(key, mine);
+            mine.cancel(false);
+        }
+    }
+
+    private void store(K key, V value) {
+        long expiresAt = System.currentTimeMillis() + (value == null ? negativeTtlMillis : ttlMillis);
+        synchronized (entries) {
+            entries.put(key, new Entry<>(value, expiresAt));
+        }
+    }
+
+    private V await(K key, CompletableFuture<V> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted waiting for USDA " + name + " lookup of '" + key + "'", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException("USDA " + name + " lookup of '" + key + "' failed", cause);
+        } catch (CancellationException e) {
+            throw new IOException("USDA " + name + " lookup of '" + key + "' was cancelled", e);
+        }
+    }
+
+    private void record(String result) {
+        meterRegistry.counter("usda.lookup.cache", "cache", name, "result", result).increment();
+    }
+
+    private static final class Entry<V> {
+        final V value;
+        final long expiresAt;
+
+        Entry(V value, long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package com.nourishcare.visionservice.usda;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+/**
+ * Streaming parser for a FoodData Central /food/{fdcId} response.
+ * Walks the token stream once and keeps only the description and the six nutrients we use,
+ * accepting both the abridged shape ({"number": "208", "amount": 52}) and the full shape
+ * ({"nutrient": {"number": "208"}, "amount": 52}) of foodNutrients entries.
+ */
+public final class UsdaNutrientParser {
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    /**
+     * Nutrient numbers requested from the API, in {@link FdcIndexFormat} slot order
+     */
+    public static final String[] NUTRIENT_NUMBERS = {"208", "203", "204", "205", "291", "269"};
+
+    private UsdaNutrientParser() {
+    }
+
+    public static ParsedFood parse(InputStream body) throws IOException {
+        float[] nutrients = new float[FdcIndexFormat.NUTRIENT_COUNT];
+        Arrays.fill(nutrients, Float.NaN);
+        String description = null;
+
+        try (JsonParser parser = JSON_FACTORY.createParser(body)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("Expected a JSON object from USDA food endpoint");
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                JsonToken value = parser.nextToken();
+                if ("description".equals(field) && value == JsonToken.VALUE_STRING) {
+                    description = parser.getText();
+                } else if ("foodNutrients".equals(field) && value == JsonToken.START_ARRAY) {
+                    readNutrients(parser, nutrients);
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        }
+        return new ParsedFood(description, nutrients);
+    }
+
+    private static void readNutrients(JsonParser parser, float[] nutrients) throws IOException {
+        JsonToken token;
+        while ((token = parser.nextToken()) != JsonToken.END_ARRAY && token != null) {
+            if (token != JsonToken.START_OBJECT) {
+                parser.skipChildren();
+                continue;
+            }
+
+            String number = null;
+            double amount = Double.NaN;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                JsonToken value = parser.nextToken();
+                if ("number".equals(field) && value.isScalarValue()) {
+                    number = parser.getText();
+                } else if ("amount".equals(field) && value.isNumeric()) {
+                    amount = parser.getDoubleValue();
+                } else if ("nutrient".equals(field) && value == JsonToken.START_OBJECT) {
+                    number = readNestedNumber(parser, number);
+                } else {
+                    parser.skipChildren();
+                }
+            }
+
+            int slot = slotOf(number);
+            if (slot >= 0 && !Double.isNaN(amount) && Float.isNaN(nutrients[slot])) {
+                nutrients[slot] = (float) amount;
+            }
+        }
+    }
+
+    private static String readNestedNumber(JsonParser parser, String current) throws IOException {
+        String number = current;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            JsonToken value = parser.nextToken();
+            if ("number".equals(field) && value.isScalarValue()) {
+                number = parser.getText();
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return number;
+    }
+
+    private static int slotOf(String number) {
+        if (number == null) {
+            return -1;
+        }
+        for (int i = 0; i < NUTRIENT_NUMBERS.length; i++) {
+            if (NUTRIENT_NUMBERS[i].equals(number)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Description plus nutrients per 100 g in {@link FdcIndexFormat} slot order (NaN where absent)
+     */
+    public static final class ParsedFood {
+        private final String description;
+        private final float[] nutrients;
+
+        ParsedFood(String description, float[] nutrients) {
+            this.description = description;
+            this.nutrients = nutrients;
+        }
+
+        public String getDescription() {
+            return description;
+        }
+
+        public float[] getNutrients() {
+            return nutrients;
+        }
+    }
+}
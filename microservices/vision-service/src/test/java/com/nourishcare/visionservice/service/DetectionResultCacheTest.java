@@ -0,0 +1,162 @@
+package com.nourishcare.visionservice.service;
+
+import com.nourishcare.visionservice.model.CachedDetectionResult;
+import com.nourishcare.visionservice.model.FoodDetection;
+import com.nourishcare.visionservice.repository.CachedDetectionResultRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Proxy;
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+class DetectionResultCacheTest {
+
+    private static final long HASH = 0x5A5A_F00F_1234_8001L;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    // Documents the fake Mongo tier holds, by SHA-256
+    private final Map<String, CachedDetectionResult> mongoDocuments = new HashMap<>();
+    private DetectionResultCache cache;
+
+    @BeforeEach
+    void setUp() {
+        cache = newCache(100, 60, 3);
+    }
+
+    @Test
+    void exactMatchIsServedWithoutComputingThePerceptualHash() {
+        cache.put(new DetectionResultCache.ImageKey("a", HASH), "detection-a", foods());
+
+        DetectionResultCache.ImageKey key = new DetectionResultCache.ImageKey("a", () -> {
+            throw new AssertionError("perceptual hash computed for an exact hit");
+        });
+
+        assertEquals("detection-a", cache.lookup(key).get().getDetectionId());
+        assertEquals(1.0, count("memory", "exact", "hit"), 0.0);
+    }
+
+    @Test
+    void exactMatchInMongoWinsOverANearDuplicateInMemory() {
+        cache.put(new DetectionResultCache.ImageKey("near", HASH ^ 1L), "detection-near", foods());
+        CachedDetectionResult document = new CachedDetectionResult();
+        document.setSha256("exact");
+        document.setDetectionId("detection-exact");
+        document.setDetectedFoods(foods());
+        document.setExpiresAt(LocalDateTime.now().plusMinutes(5));
+        mongoDocuments.put("exact", document);
+
+        assertEquals("detection-exact", cache.lookup(new DetectionResultCache.ImageKey("exact", HASH)).get().getDetectionId());
+        assertEquals(1.0, count("mongo", "exact", "hit"), 0.0);
+        assertEquals(0.0, count("memory", "perceptual", "hit"), 0.0);
+    }
+
+    @Test
+    void nearDuplicateLookupReturnsTheClosestEntry() {
+        cache.put(new DetectionResultCache.ImageKey("three-bits", HASH ^ 0b111L), "detection-3", foods());
+        cache.put(new DetectionResultCache.ImageKey("one-bit", HASH ^ (1L << 40)), "detection-1", foods());
+        cache.put(new DetectionResultCache.ImageKey("two-bits", HASH ^ 0b11L), "detection-2", foods());
+
+        assertEquals("detection-1", cache.lookup(new DetectionResultCache.ImageKey("other", HASH)).get().getDetectionId());
+        assertEquals(1.0, count("memory", "perceptual", "hit"), 0.0);
+    }
+
+    @Test
+    void nearDuplicatesBeyondTheMaximumDistanceMiss() {
+        cache.put(new DetectionResultCache.ImageKey("four-bits", HASH ^ 0b1111L), "detection-4", foods());
+
+        assertFalse(cache.lookup(new DetectionResultCache.ImageKey("other", HASH)).isPresent());
+        assertEquals(1.0, count("all", "none", "miss"), 0.0);
+    }
+
+    @Test
+    void maximumDistanceIsCappedAtWhatTheBandsCanFind() {
+        cache = newCache(100, 60, 5);
+        cache.put(new DetectionResultCache.ImageKey("four-bits", HASH ^ 0b1111L), "detection-4", foods());
+
+        assertFalse(cache.lookup(new DetectionResultCache.ImageKey("other", HASH)).isPresent());
+    }
+
+    @Test
+    void leastRecentlyUsedEntryIsEvicted() {
+        // Hashes far apart, so evicted entries cannot come back as near-duplicates
+        cache = newCache(2, 60, 3);
+        cache.put(new DetectionResultCache.ImageKey("a", 0L), "detection-a", foods());
+        cache.put(new DetectionResultCache.ImageKey("b", -1L), "detection-b", foods());
+        // Touch a, so b is now the eldest
+        cache.lookup(new DetectionResultCache.ImageKey("a", 0L));
+        cache.put(new DetectionResultCache.ImageKey("c", 0x00FF_00FF_00FF_00FFL), "detection-c", foods());
+
+        assertFalse(cache.lookup(new DetectionResultCache.ImageKey("b", -1L)).isPresent());
+        assertEquals("detection-a", cache.lookup(new DetectionResultCache.ImageKey("a", 0L)).get().getDetectionId());
+        assertEquals("detection-c", cache.lookup(new DetectionResultCache.ImageKey("c", 0x00FF_00FF_00FF_00FFL)).get().getDetectionId());
+    }
+
+    @Test
+    void expiredEntriesAreNotServed() {
+        cache = newCache(100, 0, 3);
+        cache.put(new DetectionResultCache.ImageKey("a", HASH), "detection-a", foods());
+
+        assertFalse(cache.lookup(new DetectionResultCache.ImageKey("a", HASH)).isPresent());
+        assertFalse(cache.lookup(new DetectionResultCache.ImageKey("other", HASH)).isPresent());
+    }
+
+    private DetectionResultCache newCache(int memoryMaxEntries, long ttlMinutes, int maxHammingDistance) {
+        DetectionResultCache created = new DetectionResultCache();
+        set(created, "cachedDetectionResultRepository", fakeRepository());
+        set(created, "meterRegistry", meterRegistry);
+        set(created, "enabled", true);
+        set(created, "memoryMaxEntries", memoryMaxEntries);
+        set(created, "ttlMinutes", ttlMinutes);
+        set(created, "maxHammingDistance", maxHammingDistance);
+        // No MongoTemplate: index creation fails and is logged, as with Mongo down
+        created.initialize();
+        return created;
+    }
+
+    /**
+     * Mongo tier backed by mongoDocuments for exact lookups; it never has near-duplicates and drops saves
+     */
+    private CachedDetectionResultRepository fakeRepository() {
+        return (CachedDetectionResultRepository) Proxy.newProxyInstance(getClass().getClassLoader(),
+            new Class<?>[]{CachedDetectionResultRepository.class}, (proxy, method, args) -> {
+                switch (method.getName()) {
+                    case "findFirstBySha256AndExpiresAtAfter":
+                        return Optional.ofNullable(mongoDocuments.get((String) args[0]));
+                    case "findByAnyHashBand":
+                        return Collections.emptyList();
+                    case "save":
+                        return args[0];
+                    default:
+                        throw new UnsupportedOperationException(method.getName());
+                }
+            });
+    }
+
+    private double count(String tier, String match, String result) {
+        return meterRegistry.counter("vision.detection.cache", "tier", tier, "match", match, "result", result).count();
+    }
+
+    private static List<FoodDetection.DetectedFood> foods() {
+        return Collections.singletonList(new FoodDetection.DetectedFood("apple", 0.9f));
+    }
+
+    private static void set(Object target, String field, Object value) {
+        try {
+            Field declared = target.getClass().getDeclaredField(field);
+            declared.setAccessible(true);
+            declared.set(target, value);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package com.nourishcare.visionservice.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.lang.reflect.Field;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class EmbeddingStoreTest {
+
+    private static final float[] APPLE = {3f, 0f, 4f, 0f};
+
+    @TempDir
+    Path tempDir;
+
+    private final List<EmbeddingStore> opened = new ArrayList<>();
+
+    @AfterEach
+    void closeStores() {
+        opened.forEach(EmbeddingStore::close);
+    }
+
+    @Test
+    void lookupsBeforeOpenMiss() {
+        EmbeddingStore store = newStore(tempDir.resolve("embeddings.bin"), "");
+
+        assertNull(store.get("apple"));
+        assertVector(new float[] {0.6f, 0f, 0.8f, 0f}, store.put("apple", APPLE));
+        assertNull(store.get("apple"));
+    }
+
+    @Test
+    void reopeningWithTheSameModelServesVectorsFromDisk() {
+        Path file = tempDir.resolve("embeddings.bin");
+        EmbeddingStore first = open(file, 4, "sha256:model-a");
+        first.put("apple", APPLE);
+        first.close();
+
+        EmbeddingStore second = open(file, 4, "sha256:model-a");
+        assertVector(new float[] {0.6f, 0f, 0.8f, 0f}, second.get("apple"));
+    }
+
+    @Test
+    void reopeningWithADifferentModelDiscardsTheFile() {
+        Path file = tempDir.resolve("embeddings.bin");
+        EmbeddingStore first = open(file, 4, "sha256:model-a");
+        first.put("apple", APPLE);
+        first.close();
+
+        // Same dimension, other model: the old vectors must not be served
+        EmbeddingStore second = open(file, 4, "sha256:model-b");
+        assertNull(second.get("apple"));
+        second.put("banana", new float[] {0f, 1f, 0f, 0f});
+        second.close();
+
+        // The file now belongs to model-b; model-a's vectors are gone for good
+        EmbeddingStore third = open(file, 4, "sha256:model-b");
+        assertNull(third.get("apple"));
+        assertNotNull(third.get("banana"));
+        third.close();
+        EmbeddingStore fourth = open(file, 4, "sha256:model-a");
+        assertNull(fourth.get("apple"));
+        assertNull(fourth.get("banana"));
+    }
+
+    @Test
+    void reopeningWithADifferentDimensionDiscardsTheFile() {
+        Path file = tempDir.resolve("embeddings.bin");
+        EmbeddingStore first = open(file, 4, "sha256:model-a");
+        first.put("apple", APPLE);
+        first.close();
+
+        EmbeddingStore second = open(file, 8, "sha256:model-a");
+        assertNull(second.get("apple"));
+    }
+
+    @Test
+    void warmFileFromAnotherModelIsSkipped() {
+        Path warm = tempDir.resolve("warm.bin");
+        EmbeddingStore writer = open(warm, 4, "sha256:model-a");
+        writer.put("apple", APPLE);
+        writer.close();
+
+        EmbeddingStore sameModel = newStore(tempDir.resolve("same.bin"), warm.toString());
+        sameModel.open(4, "sha256:model-a");
+        assertNotNull(sameModel.get("apple"));
+
+        EmbeddingStore otherModel = newStore(tempDir.resolve("other.bin"), warm.toString());
+        otherModel.open(4, "sha256:model-b");
+        assertNull(otherModel.get("apple"));
+    }
+
+    private EmbeddingStore open(Path file, int dimension, String modelFingerprint) {
+        EmbeddingStore store = newStore(file, "");
+        store.open(dimension, modelFingerprint);
+        return store;
+    }
+
+    private EmbeddingStore newStore(Path file, String warmFile) {
+        EmbeddingStore store = new EmbeddingStore();
+        set(store, "meterRegistry", new SimpleMeterRegistry());
+        set(store, "memoryMaxEntries", 100);
+        set(store, "diskEnabled", true);
+        set(store, "diskPath", file.toString());
+        set(store, "diskMaxEntries", 64);
+        set(store, "warmFile", warmFile);
+        opened.add(store);
+        return store;
+    }
+
+    private static void assertVector(float[] expected, float[] actual) {
+        assertNotNull(actual);
+        assertEquals(expected.length, actual.length);
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(expected[i], actual[i], 1e-6f);
+        }
+    }
+
+    private static void set(Object target, String field, Object value) {
+        try {
+            Field declared = target.getClass().getDeclaredField(field);
+            declared.setAccessible(true);
+            declared.set(target, value);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package com.nourishcare.visionservice.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class ImageIngestionServiceTest {
+
+    private static final int RED = 0xFF0000;
+    private static final int GREEN = 0x00FF00;
+    private static final int BLUE = 0x0000FF;
+    private static final int WHITE = 0xFFFFFF;
+    private static final int BLACK = 0x000000;
+    private static final int GREY = 0x808080;
+
+    @Test
+    void readsOrientationFromLittleEndianExif() {
+        assertEquals(6, ImageIngestionService.jpegExifOrientation(jpegWithExif(6, true)));
+    }
+
+    @Test
+    void readsOrientationFromBigEndianExif() {
+        assertEquals(8, ImageIngestionService.jpegExifOrientation(jpegWithExif(8, false)));
+    }
+
+    @Test
+    void defaultsToUprightWithoutExif() {
+        byte[] jpeg = {(byte) 0xFF, (byte) 0xD8, (byte) 0xFF, (byte) 0xDA, 0, 2, (byte) 0xFF, (byte) 0xD9};
+        assertEquals(1, ImageIngestionService.jpegExifOrientation(jpeg));
+    }
+
+    @Test
+    void defaultsToUprightForOutOfRangeValues() {
+        assertEquals(1, ImageIngestionService.jpegExifOrientation(jpegWithExif(42, true)));
+    }
+
+    @Test
+    void skipsSegmentsBeforeTheExifSegment() {
+        ByteArrayOutputStream jpeg = new ByteArrayOutputStream();
+        byte[] withExif = jpegWithExif(3, true);
+        jpeg.write(withExif, 0, 2);
+        // A JFIF APP0 segment first, as most cameras and editors write
+        byte[] app0 = {(byte) 0xFF, (byte) 0xE0, 0, 16, 'J', 'F', 'I', 'F', 0, 1, 1, 0, 0, 1, 0, 1, 0, 0};
+        jpeg.write(app0, 0, app0.length);
+        jpeg.write(withExif, 2, withExif.length - 2);
+
+        assertEquals(3, ImageIngestionService.jpegExifOrientation(jpeg.toByteArray()));
+    }
+
+    @Test
+    void uprightOrientationReturnsTheSameImage() {
+        BufferedImage image = sample();
+        assertSame(image, ImageIngestionService.applyOrientation(image, 1));
+    }
+
+    @Test
+    void orientationSixRotatesClockwise() {
+        // 3x2 source:  R G B     rotated 90 clockwise (2x3):  W R
+        //              W K Y                                  K G
+        //                                                     Y B
+        BufferedImage rotated = ImageIngestionService.applyOrientation(sample(), 6);
+
+        assertEquals(2, rotated.getWidth());
+        assertEquals(3, rotated.getHeight());
+        assertPixels(rotated, new int[][]{{WHITE, RED}, {BLACK, GREEN}, {GREY, BLUE}});
+    }
+
+    @Test
+    void orientationThreeRotatesHalfATurn() {
+        BufferedImage rotated = ImageIngestionService.applyOrientation(sample(), 3);
+
+        assertEquals(3, rotated.getWidth());
+        assertEquals(2, rotated.getHeight());
+        assertPixels(rotated, new int[][]{{GREY, BLACK, WHITE}, {BLUE, GREEN, RED}});
+    }
+
+    @Test
+    void orientationEightRotatesCounterClockwise() {
+        BufferedImage rotated = ImageIngestionService.applyOrientation(sample(), 8);
+
+        assertEquals(2, rotated.getWidth());
+        assertEquals(3, rotated.getHeight());
+        assertPixels(rotated, new int[][]{{BLUE, GREY}, {GREEN, BLACK}, {RED, WHITE}});
+    }
+
+    @Test
+    void orientationTwoMirrorsHorizontally() {
+        BufferedImage mirrored = ImageIngestionService.applyOrientation(sample(), 2);
+
+        assertPixels(mirrored, new int[][]{{BLUE, GREEN, RED}, {GREY, BLACK, WHITE}});
+    }
+
+    private static BufferedImage sample() {
+        BufferedImage image = new BufferedImage(3, 2, BufferedImage.TYPE_INT_RGB);
+        int[][] rows = {{RED, GREEN, BLUE}, {WHITE, BLACK, GREY}};
+        for (int y = 0; y < rows.length; y++) {
+            for (int x = 0; x < rows[y].length; x++) {
+                image.setRGB(x, y, rows[y][x]);
+            }
+        }
+        return image;
+    }
+
+    private static void assertPixels(BufferedImage image, int[][] expected) {
+        for (int y = 0; y < expected.length; y++) {
+            for (int x = 0; x < expected[y].length; x++) {
+                assertEquals(expected[y][x], image.getRGB(x, y) & 0xFFFFFF, "pixel " + x + "," + y);
+            }
+        }
+    }
+
+    /**
+     * SOI, an APP1 Exif segment with a one-entry IFD0 holding the orientation tag, then SOS and EOI
+     */
+    private static byte[] jpegWithExif(int orientation, boolean littleEndian) {
+        ByteArrayOutputStream tiff = new ByteArrayOutputStream();
+        if (littleEndian) {
+            write(tiff, 'I', 'I', 42, 0, 8, 0, 0, 0);
+            write(tiff, 1, 0);                                // one entry
+            write(tiff, 0x12, 0x01, 3, 0, 1, 0, 0, 0);        // tag 0x0112, SHORT, count 1
+            write(tiff, orientation, 0, 0, 0);
+        } else {
+            write(tiff, 'M', 'M', 0, 42, 0, 0, 0, 8);
+            write(tiff, 0, 1);
+            write(tiff, 0x01, 0x12, 0, 3, 0, 0, 0, 1);
+            write(tiff, 0, orientation, 0, 0);
+        }
+        write(tiff, 0, 0, 0, 0);                              // no next IFD
+
+        int length = 2 + 6 + tiff.size();
+        ByteArrayOutputStream jpeg = new ByteArrayOutputStream();
+        write(jpeg, 0xFF, 0xD8, 0xFF, 0xE1, length >> 8, length & 0xFF, 'E', 'x', 'i', 'f', 0, 0);
+        byte[] body = tiff.toByteArray();
+        jpeg.write(body, 0, body.length);
+        write(jpeg, 0xFF, 0xDA, 0, 2, 0xFF, 0xD9);
+        return jpeg.toByteArray();
+    }
+
+    private static void write(ByteArrayOutputStream out, int... bytes) {
+        for (int b : bytes) {
+            out.write(b);
+        }
+    }
+}
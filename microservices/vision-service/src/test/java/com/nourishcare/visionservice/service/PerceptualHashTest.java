@@ -0,0 +1,134 @@
+package com.nourishcare.visionservice.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PerceptualHashTest {
+
+    @Test
+    void sha256IsLowerCaseHex() {
+        assertEquals("ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad",
+            PerceptualHash.sha256("abc".getBytes(StandardCharsets.US_ASCII)));
+    }
+
+    @Test
+    void dHashSetsABitWhereACellIsBrighterThanItsRightNeighbour() {
+        // Brightness falls from left to right: every cell is brighter than the next one
+        assertEquals(-1L, PerceptualHash.dHash(horizontalGradient(90, 80, true)));
+        assertEquals(0L, PerceptualHash.dHash(horizontalGradient(90, 80, false)));
+    }
+
+    @Test
+    void dHashIgnoresScale() {
+        BufferedImage cells = randomCells(new Random(5), 10);
+        BufferedImage larger = randomCells(new Random(5), 37);
+
+        assertEquals(PerceptualHash.dHash(cells), PerceptualHash.dHash(larger));
+    }
+
+    @Test
+    void dHashSeesAChangedCell() {
+        BufferedImage original = randomCells(new Random(9), 10);
+        BufferedImage edited = randomCells(new Random(9), 10);
+        fillCell(original, 3, 3, 10, 128);
+        fillCell(edited, 3, 3, 10, 128);
+        fillCell(original, 5, 3, 10, 128);
+        fillCell(edited, 5, 3, 10, 128);
+        // The middle cell turns from darker to brighter than both neighbours: exactly two bits change
+        fillCell(original, 4, 3, 10, 0);
+        fillCell(edited, 4, 3, 10, 255);
+
+        assertEquals(2, PerceptualHash.hammingDistance(PerceptualHash.dHash(original), PerceptualHash.dHash(edited)));
+    }
+
+    @Test
+    void hammingDistanceCountsDifferingBits() {
+        assertEquals(0, PerceptualHash.hammingDistance(0x1234L, 0x1234L));
+        assertEquals(3, PerceptualHash.hammingDistance(0b1011L, 0b0000L));
+        assertEquals(64, PerceptualHash.hammingDistance(0L, -1L));
+    }
+
+    @Test
+    void bandsAreTheFourSixteenBitSlicesOfTheHash() {
+        long hash = 0x0123_4567_89AB_CDEFL;
+
+        assertEquals(0xCDEF, PerceptualHash.band(hash, 0));
+        assertEquals(0x89AB, PerceptualHash.band(hash, 1));
+        assertEquals(0x4567, PerceptualHash.band(hash, 2));
+        assertEquals(0x0123, PerceptualHash.band(hash, 3));
+        assertEquals(0xFFFF, PerceptualHash.band(-1L, 3));
+    }
+
+    @Test
+    void hashesWithinDistanceThreeAlwaysShareABand() {
+        Random random = new Random(17);
+        for (int trial = 0; trial < 2000; trial++) {
+            long hash = random.nextLong();
+            long near = hash;
+            int flips = 1 + random.nextInt(3);
+            while (PerceptualHash.hammingDistance(hash, near) < flips) {
+                near ^= 1L << random.nextInt(64);
+            }
+            assertTrue(sharesBand(hash, near), "no shared band at distance " + flips);
+        }
+    }
+
+    @Test
+    void distanceFourCanChangeEveryBand() {
+        // Why the cache caps its near-duplicate distance at 3: one flip per band leaves no band in common
+        long hash = 0x0F0F_F0F0_1234_5678L;
+        long far = hash ^ (1L | 1L << 16 | 1L << 32 | 1L << 48);
+
+        assertEquals(4, PerceptualHash.hammingDistance(hash, far));
+        assertFalse(sharesBand(hash, far));
+    }
+
+    private static boolean sharesBand(long a, long b) {
+        for (int band = 0; band < 4; band++) {
+            if (PerceptualHash.band(a, band) == PerceptualHash.band(b, band)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static BufferedImage horizontalGradient(int width, int height, boolean fallingToTheRight) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        for (int x = 0; x < width; x++) {
+            int luma = 255 * x / (width - 1);
+            int value = fallingToTheRight ? 255 - luma : luma;
+            for (int y = 0; y < height; y++) {
+                image.setRGB(x, y, value << 16 | value << 8 | value);
+            }
+        }
+        return image;
+    }
+
+    /**
+     * A 9x8 grid of flat grey cells, cellSize pixels square, with random but well separated brightness
+     */
+    private static BufferedImage randomCells(Random random, int cellSize) {
+        BufferedImage image = new BufferedImage(9 * cellSize, 8 * cellSize, BufferedImage.TYPE_INT_RGB);
+        for (int cy = 0; cy < 8; cy++) {
+            for (int cx = 0; cx < 9; cx++) {
+                fillCell(image, cx, cy, cellSize, 16 * random.nextInt(16) + 8);
+            }
+        }
+        return image;
+    }
+
+    private static void fillCell(BufferedImage image, int cx, int cy, int cellSize, int grey) {
+        for (int y = cy * cellSize; y < (cy + 1) * cellSize; y++) {
+            for (int x = cx * cellSize; x < (cx + 1) * cellSize; x++) {
+                image.setRGB(x, y, grey << 16 | grey << 8 | grey);
+            }
+        }
+    }
+}
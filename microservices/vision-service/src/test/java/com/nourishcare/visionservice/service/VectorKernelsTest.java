@@ -0,0 +1,128 @@
+package com.nourishcare.visionservice.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class VectorKernelsTest {
+
+    private final Random random = new Random(7);
+
+    @Test
+    void dotMatchesTheNaiveSumForEveryRemainder() {
+        for (int dim = 0; dim <= 13; dim++) {
+            float[] a = randomVector(dim);
+            float[] b = randomVector(dim);
+            assertEquals(naiveDot(a, 0, b, 0, dim), VectorKernels.dot(a, b), 1e-5f, "dim " + dim);
+        }
+    }
+
+    @Test
+    void dotReadsTheMatrixAtTheOffset() {
+        float[] query = randomVector(7);
+        float[] matrix = randomVector(30);
+        assertEquals(naiveDot(query, 0, matrix, 11, 7), VectorKernels.dot(query, matrix, 11, 7), 1e-5f);
+    }
+
+    @Test
+    void dotRejectsMismatchedDimensions() {
+        assertThrows(IllegalArgumentException.class, () -> VectorKernels.dot(new float[3], new float[4]));
+    }
+
+    @Test
+    void scoreAllMatchesTheNaiveDotForRemainderRowsAndOddDimensions() {
+        // 4-row blocks plus 0..3 leftover rows, with dimensions that are and are not multiples of 4
+        for (int rows = 0; rows <= 11; rows++) {
+            for (int dim : new int[] {1, 4, 13, 384}) {
+                float[] query = randomVector(dim);
+                float[] matrix = randomVector(rows * dim);
+                float[] scores = new float[rows + 2];
+                Arrays.fill(scores, -99f);
+
+                VectorKernels.scoreAll(query, matrix, rows, dim, scores);
+
+                for (int row = 0; row < rows; row++) {
+                    assertEquals(naiveDot(query, 0, matrix, row * dim, dim), scores[row], 1e-4f,
+                        "row " + row + " of " + rows + ", dim " + dim);
+                }
+                assertEquals(-99f, scores[rows], 0f, "scores past the last row are untouched");
+            }
+        }
+    }
+
+    @Test
+    void scoreAllRejectsUndersizedBuffers() {
+        assertThrows(IllegalArgumentException.class,
+            () -> VectorKernels.scoreAll(new float[4], new float[15], 4, 4, new float[4]));
+        assertThrows(IllegalArgumentException.class,
+            () -> VectorKernels.scoreAll(new float[4], new float[16], 4, 4, new float[3]));
+        assertThrows(IllegalArgumentException.class,
+            () -> VectorKernels.scoreAll(new float[3], new float[16], 4, 4, new float[4]));
+    }
+
+    @Test
+    void topKMatchesAFullSortWithTies() {
+        for (int trial = 0; trial < 50; trial++) {
+            int n = 1 + random.nextInt(40);
+            float[] scores = new float[n + 5];
+            for (int i = 0; i < scores.length; i++) {
+                // Few distinct values, so ties are common; entries past n must be ignored
+                scores[i] = i < n ? random.nextInt(6) / 5f : 10f;
+            }
+            for (int k = 1; k <= n; k++) {
+                assertArrayEquals(sortedTopK(scores, n, k), VectorKernels.topK(scores, n, k));
+            }
+        }
+    }
+
+    @Test
+    void topKBreaksTiesByLowerIndex() {
+        float[] scores = {0.5f, 0.9f, 0.5f, 0.9f, 0.1f, 0.5f};
+        assertArrayEquals(new int[] {1, 3, 0, 2}, VectorKernels.topK(scores, scores.length, 4));
+    }
+
+    @Test
+    void topKReturnsEveryIndexWhenKExceedsN() {
+        float[] scores = {0.2f, 0.7f, 0.4f};
+        assertArrayEquals(new int[] {1, 2, 0}, VectorKernels.topK(scores, 3, 10));
+    }
+
+    @Test
+    void topKOfZeroOrOfNothingIsEmpty() {
+        float[] scores = {0.2f, 0.7f, 0.4f};
+        assertEquals(0, VectorKernels.topK(scores, 3, 0).length);
+        assertEquals(0, VectorKernels.topK(scores, 3, -1).length);
+        assertEquals(0, VectorKernels.topK(scores, 0, 5).length);
+    }
+
+    private float[] randomVector(int length) {
+        float[] vector = new float[length];
+        for (int i = 0; i < length; i++) {
+            vector[i] = random.nextFloat() * 2 - 1;
+        }
+        return vector;
+    }
+
+    private static float naiveDot(float[] a, int aOffset, float[] b, int bOffset, int dim) {
+        double sum = 0;
+        for (int i = 0; i < dim; i++) {
+            sum += (double) a[aOffset + i] * b[bOffset + i];
+        }
+        return (float) sum;
+    }
+
+    private static int[] sortedTopK(float[] scores, int n, int k) {
+        return IntStream.range(0, n).boxed()
+            .sorted(Comparator.<Integer>comparingDouble(i -> -scores[i]).thenComparingInt(i -> i))
+            .limit(k)
+            .mapToInt(Integer::intValue)
+            .toArray();
+    }
+}
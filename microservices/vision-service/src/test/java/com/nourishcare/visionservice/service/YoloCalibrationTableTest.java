@@ -0,0 +1,91 @@
+package com.nourishcare.visionservice.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class YoloCalibrationTableTest {
+
+    private static final YoloModelProfile NANO_320 = new YoloModelProfile("n", 320);
+    private static final YoloModelProfile NANO_640 = new YoloModelProfile("n", 640);
+    private static final YoloModelProfile SMALL_640 = new YoloModelProfile("s", 640);
+
+    private static final List<String> CSV = Arrays.asList(
+        "# measured on c6i.xlarge, p95 over 500 images",
+        "variant,input_size,latency_ms,accuracy",
+        "n,320,20,0.40",
+        "",
+        "n,640,60,0.55",
+        " s , 640 , 140 , 0.65 ");
+
+    private final Set<YoloModelProfile> all = new HashSet<>(Arrays.asList(NANO_320, NANO_640, SMALL_640));
+
+    @Test
+    void parseSkipsCommentsBlankLinesAndHeader() {
+        YoloCalibrationTable table = YoloCalibrationTable.parse(CSV);
+
+        assertEquals(3, table.getEntries().size());
+        YoloCalibrationTable.Entry small = table.getEntries().get(2);
+        assertEquals(SMALL_640, small.getProfile());
+        assertEquals(140.0, small.getLatencyMs(), 0.0);
+        assertEquals(0.65, small.getAccuracy(), 0.0);
+    }
+
+    @Test
+    void parseRejectsMalformedLines() {
+        assertThrows(IllegalArgumentException.class,
+            () -> YoloCalibrationTable.parse(Collections.singletonList("n,320,20")));
+        assertThrows(IllegalArgumentException.class,
+            () -> YoloCalibrationTable.parse(Collections.singletonList("n,large,20,0.4")));
+    }
+
+    @Test
+    void selectsTheCheapestProfileMeetingTheAccuracyTargetWithinBudget() {
+        YoloCalibrationTable table = YoloCalibrationTable.parse(CSV);
+
+        Optional<YoloCalibrationTable.Entry> selected = table.select(new InferenceBudget(150, 0.5, "test"), all);
+
+        assertEquals(NANO_640, selected.get().getProfile());
+    }
+
+    @Test
+    void unboundedBudgetStillPrefersTheCheapestAccurateProfile() {
+        YoloCalibrationTable table = YoloCalibrationTable.parse(CSV);
+
+        assertEquals(SMALL_640, table.select(new InferenceBudget(0, 0.6, "test"), all).get().getProfile());
+    }
+
+    @Test
+    void fallsBackToTheMostAccurateProfileWithinBudget() {
+        YoloCalibrationTable table = YoloCalibrationTable.parse(CSV);
+
+        // Nothing within 100 ms reaches 0.6; n@640 is the best that fits
+        assertEquals(NANO_640, table.select(new InferenceBudget(100, 0.6, "test"), all).get().getProfile());
+    }
+
+    @Test
+    void fallsBackToTheFastestProfileWhenNoneFitsTheBudget() {
+        YoloCalibrationTable table = YoloCalibrationTable.parse(CSV);
+
+        assertEquals(NANO_320, table.select(new InferenceBudget(10, 0.5, "test"), all).get().getProfile());
+    }
+
+    @Test
+    void ignoresProfilesThatAreNotLoaded() {
+        YoloCalibrationTable table = YoloCalibrationTable.parse(CSV);
+        Set<YoloModelProfile> onlySmall = Collections.singleton(SMALL_640);
+
+        assertEquals(SMALL_640, table.select(new InferenceBudget(50, 0.5, "test"), onlySmall).get().getProfile());
+        assertFalse(table.select(new InferenceBudget(50, 0.5, "test"),
+            Collections.singleton(new YoloModelProfile("x", 1280))).isPresent());
+    }
+}
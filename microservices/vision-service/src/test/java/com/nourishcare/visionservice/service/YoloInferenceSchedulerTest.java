@@ -0,0 +1,140 @@
+package com.nourishcare.visionservice.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class YoloInferenceSchedulerTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    // Image ids (their widths) of every batch the fake runner was handed, in order
+    private final List<List<Integer>> batches = new CopyOnWriteArrayList<>();
+    private final List<Long> batchStarts = new CopyOnWriteArrayList<>();
+    private YoloInferenceScheduler scheduler;
+
+    @AfterEach
+    void shutDown() {
+        if (scheduler != null) {
+            scheduler.shutdown();
+        }
+    }
+
+    @Test
+    void coalescesQueuedRequestsUpToTheMaximumBatchSize() throws Exception {
+        scheduler = start(3, 200, images -> label(images));
+
+        List<CompletableFuture<List<YoloFoodDetectionService.YoloDetection>>> futures = new ArrayList<>();
+        for (int id = 1; id <= 7; id++) {
+            futures.add(scheduler.submit(image(id)));
+        }
+
+        for (int id = 1; id <= 7; id++) {
+            assertEquals("image-" + id, futures.get(id - 1).get(5, TimeUnit.SECONDS).get(0).getClassName());
+        }
+        assertEquals(Arrays.asList(Arrays.asList(1, 2, 3), Arrays.asList(4, 5, 6), Collections.singletonList(7)), batches);
+        assertEquals(3, meterRegistry.get("vision.yolo.batch.size").summary().count());
+        assertEquals(7.0, meterRegistry.get("vision.yolo.batch.size").summary().totalAmount(), 0.0);
+    }
+
+    @Test
+    void flushesAPartialBatchOnceTheOldestRequestHasWaitedMaxWait() throws Exception {
+        scheduler = start(8, 50, images -> label(images));
+
+        long submitted = System.nanoTime();
+        CompletableFuture<List<YoloFoodDetectionService.YoloDetection>> future = scheduler.submit(image(1));
+
+        assertEquals("image-1", future.get(5, TimeUnit.SECONDS).get(0).getClassName());
+        assertEquals(Collections.singletonList(Collections.singletonList(1)), batches);
+        long waitedMillis = TimeUnit.NANOSECONDS.toMillis(batchStarts.get(0) - submitted);
+        assertTrue(waitedMillis >= 45, "batch ran after " + waitedMillis + "ms, before max-wait");
+    }
+
+    @Test
+    void cancelledRequestsAreSkipped() throws Exception {
+        CountDownLatch firstBatchRunning = new CountDownLatch(1);
+        CountDownLatch releaseFirstBatch = new CountDownLatch(1);
+        scheduler = start(4, 0, images -> {
+            if (batches.size() == 1) {
+                firstBatchRunning.countDown();
+                releaseFirstBatch.await();
+            }
+            return label(images);
+        });
+
+        // The dispatcher is busy with the first request while the rest queue up behind it
+        CompletableFuture<List<YoloFoodDetectionService.YoloDetection>> first = scheduler.submit(image(1));
+        assertTrue(firstBatchRunning.await(5, TimeUnit.SECONDS));
+        CompletableFuture<List<YoloFoodDetectionService.YoloDetection>> second = scheduler.submit(image(2));
+        CompletableFuture<List<YoloFoodDetectionService.YoloDetection>> abandoned = scheduler.submit(image(3));
+        CompletableFuture<List<YoloFoodDetectionService.YoloDetection>> fourth = scheduler.submit(image(4));
+        CompletableFuture<List<YoloFoodDetectionService.YoloDetection>> abandonedLast = scheduler.submit(image(5));
+        abandoned.cancel(false);
+        abandonedLast.cancel(false);
+        releaseFirstBatch.countDown();
+
+        assertEquals("image-1", first.get(5, TimeUnit.SECONDS).get(0).getClassName());
+        assertEquals("image-2", second.get(5, TimeUnit.SECONDS).get(0).getClassName());
+        assertEquals("image-4", fourth.get(5, TimeUnit.SECONDS).get(0).getClassName());
+        assertEquals(Arrays.asList(Collections.singletonList(1), Arrays.asList(2, 4)), batches);
+        assertEquals(2.0, meterRegistry.get("vision.yolo.queue.cancelled").counter().count(), 0.0);
+    }
+
+    @Test
+    void aFailedBatchFailsEveryCallerInIt() throws Exception {
+        scheduler = start(2, 200, images -> {
+            throw new IllegalStateException("session closed");
+        });
+
+        CompletableFuture<List<YoloFoodDetectionService.YoloDetection>> first = scheduler.submit(image(1));
+        CompletableFuture<List<YoloFoodDetectionService.YoloDetection>> second = scheduler.submit(image(2));
+
+        for (CompletableFuture<List<YoloFoodDetectionService.YoloDetection>> future : Arrays.asList(first, second)) {
+            try {
+                future.get(5, TimeUnit.SECONDS);
+                throw new AssertionError("batch failure not propagated");
+            } catch (ExecutionException e) {
+                assertEquals("session closed", e.getCause().getMessage());
+            }
+        }
+    }
+
+    private YoloInferenceScheduler start(int maxBatchSize, long maxWaitMillis, YoloInferenceScheduler.BatchRunner fake) {
+        YoloInferenceScheduler.BatchRunner recording = images -> {
+            batchStarts.add(System.nanoTime());
+            batches.add(images.stream().map(BufferedImage::getWidth).collect(Collectors.toList()));
+            return fake.run(images);
+        };
+        YoloInferenceScheduler started = new YoloInferenceScheduler(recording, maxBatchSize, maxWaitMillis, 16, 1, meterRegistry);
+        started.start();
+        return started;
+    }
+
+    // One detection per image naming it, so each caller can check it got its own result
+    private static List<List<YoloFoodDetectionService.YoloDetection>> label(List<BufferedImage> images) {
+        List<List<YoloFoodDetectionService.YoloDetection>> results = new ArrayList<>();
+        for (BufferedImage image : images) {
+            results.add(Collections.singletonList(
+                new YoloFoodDetectionService.YoloDetection("image-" + image.getWidth(), 0.9f, 0, 0, 1, 1)));
+        }
+        return results;
+    }
+
+    private static BufferedImage image(int id) {
+        return new BufferedImage(id, 1, BufferedImage.TYPE_3BYTE_BGR);
+    }
+}
@@ -0,0 +1,271 @@
+package com.nourishcare.visionservice.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class YoloOutputDecoderTest {
+
+    private static final String[] CLASSES = {"apple", "banana", "carrot"};
+    private static final int INPUT = 640;
+
+    private final YoloOutputDecoder decoder = new YoloOutputDecoder(CLASSES, 0.25f, 0.45f);
+
+    @Test
+    void picksTheBestClassPerAnchor() {
+        Output output = new Output(1);
+        output.box(0, 100, 100, 40, 40);
+        output.score(0, 0, 0.3f);
+        output.score(0, 1, 0.8f);
+        output.score(0, 2, 0.5f);
+
+        List<YoloFoodDetectionService.YoloDetection> detections = decode(output);
+
+        assertEquals(1, detections.size());
+        assertEquals("banana", detections.get(0).getClassName());
+        assertEquals(0.8f, detections.get(0).getConfidence(), 0f);
+        assertBox(detections.get(0), 80, 80, 120, 120);
+    }
+
+    @Test
+    void dropsAnchorsAtOrBelowTheConfidenceThreshold() {
+        Output output = new Output(2);
+        output.box(0, 100, 100, 40, 40);
+        output.score(0, 0, 0.25f);
+        output.box(1, 300, 300, 40, 40);
+        output.score(1, 2, 0.26f);
+
+        List<YoloFoodDetectionService.YoloDetection> detections = decode(output);
+
+        assertEquals(1, detections.size());
+        assertEquals("carrot", detections.get(0).getClassName());
+    }
+
+    @Test
+    void overlappingBoxesOfTheSameClassSuppress() {
+        Output output = new Output(2);
+        output.box(0, 100, 100, 40, 40);
+        output.score(0, 0, 0.6f);
+        output.box(1, 104, 100, 40, 40);
+        output.score(1, 0, 0.9f);
+
+        List<YoloFoodDetectionService.YoloDetection> detections = decode(output);
+
+        assertEquals(1, detections.size());
+        assertEquals(0.9f, detections.get(0).getConfidence(), 0f);
+    }
+
+    @Test
+    void overlappingBoxesOfDifferentClassesBothSurvive() {
+        Output output = new Output(2);
+        output.box(0, 100, 100, 40, 40);
+        output.score(0, 0, 0.6f);
+        output.box(1, 104, 100, 40, 40);
+        output.score(1, 1, 0.9f);
+
+        List<YoloFoodDetectionService.YoloDetection> detections = decode(output);
+
+        assertEquals(2, detections.size());
+        assertEquals("banana", detections.get(0).getClassName());
+        assertEquals("apple", detections.get(1).getClassName());
+    }
+
+    @Test
+    void boxesInNeighbouringGridCellsStillSuppress() {
+        // The kept box spans grid cells 0 and 1 (64 px cells); the weaker one lies in cell 1 only.
+        // IoU is 24/50 = 0.48, above the 0.45 threshold.
+        Output output = new Output(2);
+        output.box(0, 70, 20, 40, 20);
+        output.score(0, 2, 0.9f);
+        output.box(1, 83, 20, 34, 20);
+        output.score(1, 2, 0.7f);
+
+        List<YoloFoodDetectionService.YoloDetection> detections = decode(output);
+
+        assertEquals(1, detections.size());
+        assertBox(detections.get(0), 50, 10, 90, 30);
+    }
+
+    @Test
+    void scalesAndClampsBoxesToTheImage() {
+        Output output = new Output(1);
+        output.box(0, 620, 100, 60, 40);
+        output.score(0, 0, 0.9f);
+
+        List<YoloFoodDetectionService.YoloDetection> detections =
+            decoder.decode(output.buffer(), 0, output.features(), output.anchors, INPUT, INPUT, 1280, 1280);
+
+        assertBox(detections.get(0), 1180, 160, 1280, 240);
+    }
+
+    @Test
+    void removesLetterboxPadding() {
+        Output output = new Output(1);
+        output.box(0, 320, 320, 100, 100);
+        output.score(0, 0, 0.9f);
+        // A 1280x640 image letterboxed into 640x640: scale 0.5, 160 px bars top and bottom
+        YoloPreprocessor.Letterbox letterbox = new YoloPreprocessor.Letterbox(0.5f, 0, 160);
+
+        List<YoloFoodDetectionService.YoloDetection> detections =
+            decoder.decode(output.buffer(), 0, output.features(), output.anchors, INPUT, letterbox, 1280, 640);
+
+        assertBox(detections.get(0), 540, 220, 740, 420);
+    }
+
+    @Test
+    void decodesTheImageAtTheGivenOffsetOfABatch() {
+        Output first = new Output(1);
+        first.box(0, 100, 100, 40, 40);
+        first.score(0, 0, 0.9f);
+        Output second = new Output(1);
+        second.box(0, 300, 300, 40, 40);
+        second.score(0, 1, 0.9f);
+        FloatBuffer batch = FloatBuffer.allocate(first.values.length * 2);
+        batch.put(first.values).put(second.values).flip();
+
+        List<YoloFoodDetectionService.YoloDetection> detections =
+            decoder.decode(batch, first.values.length, first.features(), 1, INPUT, INPUT, INPUT, INPUT);
+
+        assertEquals("banana", detections.get(0).getClassName());
+        assertBox(detections.get(0), 280, 280, 320, 320);
+    }
+
+    @Test
+    void matchesPairwiseNmsOnRandomOutputs() {
+        Random random = new Random(23);
+        for (int trial = 0; trial < 50; trial++) {
+            // Clustered boxes, so plenty of them overlap across grid cells
+            Output output = new Output(300);
+            for (int a = 0; a < output.anchors; a++) {
+                float cx = 100 + random.nextInt(4) * 150 + (float) random.nextGaussian() * 30;
+                float cy = 100 + random.nextInt(4) * 150 + (float) random.nextGaussian() * 30;
+                output.box(a, cx, cy, 20 + random.nextFloat() * 120, 20 + random.nextFloat() * 120);
+                for (int c = 0; c < CLASSES.length; c++) {
+                    output.score(a, c, random.nextFloat() * 0.6f);
+                }
+            }
+
+            List<YoloFoodDetectionService.YoloDetection> expected = referenceDecode(output, 0.25f, 0.45f);
+            List<YoloFoodDetectionService.YoloDetection> actual = decode(output);
+
+            assertEquals(expected.size(), actual.size(), "kept boxes in trial " + trial);
+            for (int i = 0; i < expected.size(); i++) {
+                assertEquals(expected.get(i).toString(), actual.get(i).toString(), "box " + i + " in trial " + trial);
+            }
+        }
+    }
+
+    private List<YoloFoodDetectionService.YoloDetection> decode(Output output) {
+        return decoder.decode(output.buffer(), 0, output.features(), output.anchors, INPUT, INPUT, INPUT, INPUT);
+    }
+
+    /**
+     * The straightforward decode: per-anchor arg-max, threshold, then greedy class-aware NMS over all pairs
+     */
+    private static List<YoloFoodDetectionService.YoloDetection> referenceDecode(Output output, float confidence,
+                                                                               float nmsThreshold) {
+        List<float[]> candidates = new ArrayList<>();
+        for (int a = 0; a < output.anchors; a++) {
+            int best = -1;
+            float bestScore = 0;
+            for (int c = 0; c < CLASSES.length; c++) {
+                if (output.get(4 + c, a) > bestScore) {
+                    bestScore = output.get(4 + c, a);
+                    best = c;
+                }
+            }
+            if (best < 0 || bestScore <= confidence) {
+                continue;
+            }
+            float halfWidth = output.get(2, a) / 2;
+            float halfHeight = output.get(3, a) / 2;
+            candidates.add(new float[]{output.get(0, a) - halfWidth, output.get(1, a) - halfHeight,
+                output.get(0, a) + halfWidth, output.get(1, a) + halfHeight, bestScore, best, candidates.size()});
+        }
+        // Best first; equal scores in reverse candidate order, as the decoder sorts them
+        candidates.sort((p, q) -> p[4] != q[4] ? Float.compare(q[4], p[4]) : Float.compare(q[6], p[6]));
+
+        List<float[]> kept = new ArrayList<>();
+        for (float[] candidate : candidates) {
+            boolean suppressed = false;
+            for (float[] other : kept) {
+                if (other[5] == candidate[5] && iou(other, candidate) > nmsThreshold) {
+                    suppressed = true;
+                    break;
+                }
+            }
+            if (!suppressed) {
+                kept.add(candidate);
+            }
+        }
+
+        List<YoloFoodDetectionService.YoloDetection> detections = new ArrayList<>();
+        for (float[] box : kept) {
+            detections.add(new YoloFoodDetectionService.YoloDetection(CLASSES[(int) box[5]], box[4],
+                (int) clamp(box[0]), (int) clamp(box[1]), (int) clamp(box[2]), (int) clamp(box[3])));
+        }
+        return detections;
+    }
+
+    private static float iou(float[] a, float[] b) {
+        float width = Math.min(a[2], b[2]) - Math.max(a[0], b[0]);
+        float height = Math.min(a[3], b[3]) - Math.max(a[1], b[1]);
+        if (width <= 0 || height <= 0) {
+            return 0;
+        }
+        float intersection = width * height;
+        return intersection / ((a[2] - a[0]) * (a[3] - a[1]) + (b[2] - b[0]) * (b[3] - b[1]) - intersection);
+    }
+
+    private static float clamp(float value) {
+        return value < 0 ? 0 : (value > INPUT ? INPUT : value);
+    }
+
+    private static void assertBox(YoloFoodDetectionService.YoloDetection detection, int x1, int y1, int x2, int y2) {
+        assertEquals(x1, detection.getX1(), "x1");
+        assertEquals(y1, detection.getY1(), "y1");
+        assertEquals(x2, detection.getX2(), "x2");
+        assertEquals(y2, detection.getY2(), "y2");
+    }
+
+    /**
+     * One image's [4 + classes, anchors] output block, as YOLOv8 lays it out
+     */
+    private static final class Output {
+        final int anchors;
+        final float[] values;
+
+        Output(int anchors) {
+            this.anchors = anchors;
+            this.values = new float[(4 + CLASSES.length) * anchors];
+        }
+
+        int features() {
+            return 4 + CLASSES.length;
+        }
+
+        void box(int anchor, float xCenter, float yCenter, float width, float height) {
+            values[anchor] = xCenter;
+            values[anchors + anchor] = yCenter;
+            values[2 * anchors + anchor] = width;
+            values[3 * anchors + anchor] = height;
+        }
+
+        void score(int anchor, int classIndex, float score) {
+            values[(4 + classIndex) * anchors + anchor] = score;
+        }
+
+        float get(int feature, int anchor) {
+            return values[feature * anchors + anchor];
+        }
+
+        FloatBuffer buffer() {
+            return FloatBuffer.wrap(values);
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package com.nourishcare.visionservice.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class YoloTilingTest {
+
+    private static final float IOU_THRESHOLD = 0.4f;
+    private static final float SEAM_THRESHOLD = 0.6f;
+
+    // Two tiles side by side over a 1152x640 image, overlapping on x 512..640
+    private static final int IMAGE_WIDTH = 1152;
+    private static final int IMAGE_HEIGHT = 640;
+    private static final Rectangle LEFT = new Rectangle(0, 0, 640, 640);
+    private static final Rectangle RIGHT = new Rectangle(512, 0, 640, 640);
+
+    @Test
+    void planCoversImageWithFullSizeTilesShiftedInwardsAtTheEdges() {
+        List<Rectangle> tiles = YoloTiling.plan(1600, 1000, 640, 0.2f);
+
+        assertEquals(6, tiles.size());
+        List<Integer> xs = new ArrayList<>();
+        List<Integer> ys = new ArrayList<>();
+        for (Rectangle tile : tiles) {
+            assertEquals(640, tile.width);
+            assertEquals(640, tile.height);
+            if (!xs.contains(tile.x)) {
+                xs.add(tile.x);
+            }
+            if (!ys.contains(tile.y)) {
+                ys.add(tile.y);
+            }
+        }
+        assertEquals(Arrays.asList(0, 512, 960), xs);
+        assertEquals(Arrays.asList(0, 360), ys);
+    }
+
+    @Test
+    void planUsesOneImageSizedTileForSmallImages() {
+        List<Rectangle> tiles = YoloTiling.plan(500, 300, 640, 0.2f);
+
+        assertEquals(1, tiles.size());
+        assertEquals(new Rectangle(0, 0, 500, 300), tiles.get(0));
+    }
+
+    @Test
+    void toImageFlagsOnlyInteriorTileEdges() {
+        // Touches the left image border (not a seam) and the right tile border (a seam)
+        YoloTiling.Candidate cut = YoloTiling.toImage(detection("Apple", 0.9f, 0, 100, 640, 300), LEFT, IMAGE_WIDTH, IMAGE_HEIGHT);
+        YoloTiling.Candidate whole = YoloTiling.toImage(detection("Apple", 0.9f, 100, 0, 300, 640), LEFT, IMAGE_WIDTH, IMAGE_HEIGHT);
+
+        assertTrue(cut.isClipped());
+        assertFalse(whole.isClipped());
+    }
+
+    @Test
+    void mergeJoinsTheTwoHalvesOfAnItemCutAtASeam() {
+        // One item spanning x 400..800: the left tile sees 400..640, the right tile 512..800
+        List<YoloTiling.Candidate> candidates = Arrays.asList(
+            YoloTiling.toImage(detection("Pizza", 0.8f, 400, 100, 640, 300), LEFT, IMAGE_WIDTH, IMAGE_HEIGHT),
+            YoloTiling.toImage(detection("Pizza", 0.7f, 0, 105, 288, 298), RIGHT, IMAGE_WIDTH, IMAGE_HEIGHT));
+
+        List<YoloFoodDetectionService.YoloDetection> merged = YoloTiling.merge(candidates, IOU_THRESHOLD, SEAM_THRESHOLD);
+
+        assertEquals(1, merged.size());
+        YoloFoodDetectionService.YoloDetection item = merged.get(0);
+        assertEquals(400, item.getX1());
+        assertEquals(100, item.getY1());
+        assertEquals(800, item.getX2());
+        assertEquals(300, item.getY2());
+        assertEquals(0.8f, item.getConfidence(), 0f);
+    }
+
+    @Test
+    void mergeKeepsSameClassItemsCutOnTheSameSideOfASeam() {
+        // Two apples in the left tile, both cut by its right edge and overlapping slightly
+        List<YoloTiling.Candidate> candidates = Arrays.asList(
+            YoloTiling.toImage(detection("Apple", 0.9f, 500, 100, 640, 300), LEFT, IMAGE_WIDTH, IMAGE_HEIGHT),
+            YoloTiling.toImage(detection("Apple", 0.8f, 520, 280, 640, 480), LEFT, IMAGE_WIDTH, IMAGE_HEIGHT));
+
+        assertEquals(2, YoloTiling.merge(candidates, IOU_THRESHOLD, SEAM_THRESHOLD).size());
+    }
+
+    @Test
+    void mergeKeepsFacingCutItemsThatDoNotLineUpAlongTheSeam() {
+        // Cut from facing sides of the same seam, but at different heights
+        List<YoloTiling.Candidate> candidates = Arrays.asList(
+            YoloTiling.toImage(detection("Apple", 0.9f, 450, 100, 640, 300), LEFT, IMAGE_WIDTH, IMAGE_HEIGHT),
+            YoloTiling.toImage(detection("Apple", 0.8f, 0, 280, 200, 480), RIGHT, IMAGE_WIDTH, IMAGE_HEIGHT));
+
+        assertEquals(2, YoloTiling.merge(candidates, IOU_THRESHOLD, SEAM_THRESHOLD).size());
+    }
+
+    @Test
+    void mergeNeverJoinsDifferentClasses() {
+        List<YoloTiling.Candidate> candidates = Arrays.asList(
+            YoloTiling.toImage(detection("Pizza", 0.8f, 400, 100, 640, 300), LEFT, IMAGE_WIDTH, IMAGE_HEIGHT),
+            YoloTiling.toImage(detection("Salad", 0.7f, 0, 100, 288, 300), RIGHT, IMAGE_WIDTH, IMAGE_HEIGHT));
+
+        assertEquals(2, YoloTiling.merge(candidates, IOU_THRESHOLD, SEAM_THRESHOLD).size());
+    }
+
+    @Test
+    void mergeSuppressesTheWeakerCopyOfAnItemSeenWholeByTwoTiles() {
+        // Inside the overlap, so both tiles see it whole at the same image position
+        List<YoloTiling.Candidate> candidates = Arrays.asList(
+            YoloTiling.toImage(detection("Egg", 0.6f, 550, 200, 620, 260), LEFT, IMAGE_WIDTH, IMAGE_HEIGHT),
+            YoloTiling.toImage(detection("Egg", 0.9f, 38, 202, 108, 261), RIGHT, IMAGE_WIDTH, IMAGE_HEIGHT));
+
+        List<YoloFoodDetectionService.YoloDetection> merged = YoloTiling.merge(candidates, IOU_THRESHOLD, SEAM_THRESHOLD);
+
+        assertEquals(1, merged.size());
+        assertEquals(0.9f, merged.get(0).getConfidence(), 0f);
+    }
+
+    private static YoloFoodDetectionService.YoloDetection detection(String className, float confidence,
+                                                                   int x1, int y1, int x2, int y2) {
+        return new YoloFoodDetectionService.YoloDetection(className, confidence, x1, y1, x2, y2);
+    }
+}
@@ -0,0 +1,145 @@
+package com.nourishcare.visionservice.usda;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HnswIndexTest {
+
+    private static final int DIMENSION = 32;
+    private static final int COUNT = 2000;
+    private static final int K = 10;
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void recallAgainstBruteForceTopK() throws IOException {
+        Random random = new Random(7);
+        float[][] vectors = new float[COUNT][];
+        HnswGraphBuilder builder = new HnswGraphBuilder(DIMENSION, 16, 100, COUNT);
+        for (int i = 0; i < COUNT; i++) {
+            vectors[i] = randomUnitVector(random);
+            builder.add(vectors[i]);
+        }
+        HnswIndex index = write(builder, "test-model");
+
+        int found = 0;
+        int queries = 100;
+        for (int q = 0; q < queries; q++) {
+            float[] query = randomUnitVector(random);
+            Set<Integer> expected = bruteForceTopK(vectors, query, K);
+
+            List<HnswIndex.Hit> hits = index.search(query, K, 64);
+            assertEquals(K, hits.size());
+            for (int i = 0; i < hits.size(); i++) {
+                if (i > 0) {
+                    assertTrue(hits.get(i - 1).getSimilarity() >= hits.get(i).getSimilarity(), "hits best first");
+                }
+                if (expected.contains(hits.get(i).getFdcId())) {
+                    found++;
+                }
+            }
+        }
+
+        double recall = (double) found / (queries * K);
+        assertTrue(recall >= 0.9, "recall@" + K + " was " + recall);
+    }
+
+    @Test
+    void exactMatchIsTheTopHitWithItsMetadata() throws IOException {
+        Random random = new Random(11);
+        float[][] vectors = new float[200][];
+        HnswGraphBuilder builder = new HnswGraphBuilder(DIMENSION, 8, 50, vectors.length);
+        for (int i = 0; i < vectors.length; i++) {
+            vectors[i] = randomUnitVector(random);
+            builder.add(vectors[i]);
+        }
+        HnswIndex index = write(builder, "test-model");
+
+        HnswIndex.Hit top = index.search(vectors[42], 1, 32).get(0);
+        assertEquals(fdcId(42), top.getFdcId());
+        assertEquals("food 42", top.getDescription());
+        assertEquals("SR Legacy", top.getDataType());
+        assertEquals(1.0f, top.getSimilarity(), 1e-4f);
+    }
+
+    @Test
+    void recordsTheModelFingerprint() throws IOException {
+        HnswGraphBuilder builder = new HnswGraphBuilder(DIMENSION, 8, 50, 16);
+        builder.add(randomUnitVector(new Random(3)));
+        HnswIndex index = write(builder, "sha256:abc");
+
+        assertEquals(1, index.getCount());
+        assertEquals(DIMENSION, index.getDimension());
+        assertTrue(index.matchesModel("sha256:abc"));
+        assertFalse(index.matchesModel("sha256:def"));
+    }
+
+    private HnswIndex write(HnswGraphBuilder builder, String modelFingerprint) throws IOException {
+        int count = builder.getCount();
+        int[] fdcIds = new int[count];
+        byte[] dataTypes = new byte[count];
+        String[] descriptions = new String[count];
+        for (int i = 0; i < count; i++) {
+            fdcIds[i] = fdcId(i);
+            dataTypes[i] = FdcIndexFormat.dataTypeCode("sr_legacy_food");
+            descriptions[i] = "food " + i;
+        }
+        Path file = tempDir.resolve("fdc.hnsw");
+        builder.write(file, modelFingerprint, fdcIds, dataTypes, descriptions);
+        return HnswIndex.open(file);
+    }
+
+    private static int fdcId(int node) {
+        return 100000 + node;
+    }
+
+    private static Set<Integer> bruteForceTopK(float[][] vectors, float[] query, int k) {
+        Integer[] order = new Integer[vectors.length];
+        float[] similarity = new float[vectors.length];
+        for (int i = 0; i < vectors.length; i++) {
+            order[i] = i;
+            similarity[i] = dot(vectors[i], query);
+        }
+        Arrays.sort(order, (a, b) -> Float.compare(similarity[b], similarity[a]));
+        Set<Integer> top = new HashSet<>();
+        for (int i = 0; i < k; i++) {
+            top.add(fdcId(order[i]));
+        }
+        return top;
+    }
+
+    private static float dot(float[] a, float[] b) {
+        float sum = 0;
+        for (int i = 0; i < a.length; i++) {
+            sum += a[i] * b[i];
+        }
+        return sum;
+    }
+
+    private static float[] randomUnitVector(Random random) {
+        float[] vector = new float[DIMENSION];
+        double norm = 0;
+        for (int i = 0; i < DIMENSION; i++) {
+            vector[i] = (float) random.nextGaussian();
+            norm += vector[i] * vector[i];
+        }
+        float scale = (float) (1 / Math.sqrt(norm));
+        for (int i = 0; i < DIMENSION; i++) {
+            vector[i] *= scale;
+        }
+        return vector;
+    }
+}
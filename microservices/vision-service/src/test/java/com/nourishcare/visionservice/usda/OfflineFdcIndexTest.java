@@ -0,0 +1,152 @@
+package com.nourishcare.visionservice.usda;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class OfflineFdcIndexTest {
+
+    private static final String FOOD_CSV = String.join("\n",
+        "\"fdc_id\",\"data_type\",\"description\",\"food_category_id\",\"publication_date\"",
+        "\"1001\",\"foundation_food\",\"Apples, raw, with skin\",\"9\",\"2019-04-01\"",
+        "\"1002\",\"sr_legacy_food\",\"Apples, raw, with skin\",\"9\",\"2019-04-01\"",
+        "\"1003\",\"survey_fndds_food\",\"Apple pie, commercially prepared\",\"18\",\"2020-10-30\"",
+        "\"1004\",\"sr_legacy_food\",\"Juice, apple, canned\",\"14\",\"2019-04-01\"",
+        "\"1005\",\"sr_legacy_food\",\"Apples, dried, sulfured, uncooked\",\"9\",\"2019-04-01\"",
+        "\"1006\",\"branded_food\",\"Apple sauce\",\"\",\"2021-01-01\"",
+        "\"1008\",\"sr_legacy_food\",\"Apples, raw, with skin\",\"9\",\"2019-04-01\"",
+        "\"12O9\",\"sr_legacy_food\",\"Apple butter\",\"9\",\"2019-04-01\"",
+        "\"1010\"",
+        "\"1011\",\"foundation_food\",\"Carrots, \"\"baby\"\", raw\",\"11\",\"2019-04-01\"");
+
+    private static final String FOOD_NUTRIENT_CSV = String.join("\n",
+        "\"id\",\"fdc_id\",\"nutrient_id\",\"amount\"",
+        "\"1\",\"1001\",\"2047\",\"54\"",
+        "\"2\",\"1001\",\"1008\",\"52\"",
+        "\"3\",\"1001\",\"1003\",\"0.26\"",
+        "\"4\",\"1001\",\"2000\",\"10.4\"",
+        "\"5\",\"1001\",\"1063\",\"11\"",
+        "\"6\",\"1002\",\"1008\",\"n/a\"",
+        "\"7\",\"1002\",\"1004\",\"0.17\"",
+        "\"8\",\"9999\",\"1008\",\"1\"",
+        "\"9\",\"1001\"",
+        "\"10\",\"1002\",\"1005\",\"\"");
+
+    private static final float NAN = Float.NaN;
+
+    @TempDir
+    Path tempDir;
+
+    private Path csvDir;
+    private OfflineFdcIndex index;
+    private String importLog;
+
+    @BeforeEach
+    void importFixture() throws IOException {
+        csvDir = Files.createDirectories(tempDir.resolve("sr"));
+        Files.write(csvDir.resolve("food.csv"), FOOD_CSV.getBytes(StandardCharsets.UTF_8));
+        Files.write(csvDir.resolve("food_nutrient.csv"), FOOD_NUTRIENT_CSV.getBytes(StandardCharsets.UTF_8));
+        Path output = tempDir.resolve("fdc-index.bin");
+
+        PrintStream originalErr = System.err;
+        ByteArrayOutputStream err = new ByteArrayOutputStream();
+        System.setErr(new PrintStream(err, true));
+        try {
+            assertEquals(7, FdcIndexImporter.importCsv(Collections.singletonList(csvDir), output));
+        } finally {
+            System.setErr(originalErr);
+        }
+        importLog = new String(err.toByteArray(), StandardCharsets.UTF_8);
+        index = OfflineFdcIndex.open(output);
+    }
+
+    @Test
+    void skipsAndReportsMalformedRows() {
+        assertEquals(7, index.size());
+        assertNull(index.description(1010));
+        // A non-numeric id and a short row in food.csv; a non-numeric amount and a short row in food_nutrient.csv
+        assertTrue(importLog.contains("Skipped 2 malformed rows in " + csvDir.resolve("food.csv")), importLog);
+        assertTrue(importLog.contains("Skipped 2 malformed rows in " + csvDir.resolve("food_nutrient.csv")), importLog);
+    }
+
+    @Test
+    void skipsDataTypesTheIndexDoesNotCarry() {
+        assertNull(index.description(1006));
+        assertNull(index.nutrients(1006));
+    }
+
+    @Test
+    void findsEveryImportedFood() {
+        for (int fdcId : new int[]{1001, 1002, 1003, 1004, 1005, 1008, 1011}) {
+            assertTrue(index.description(fdcId) != null, "fdcId " + fdcId);
+        }
+        assertEquals("Carrots, \"baby\", raw", index.description(1011));
+        assertNull(index.description(1000));
+        assertNull(index.description(1007));
+        assertNull(index.description(2000));
+        assertNull(index.nutrients(0));
+    }
+
+    @Test
+    void keepsThePreferredNutrientSourceAndNaNForUnknowns() {
+        // Energy prefers 1008 over 2047 and sugars 2000 over 1063, regardless of row order
+        assertNutrients(new float[]{52f, 0.26f, NAN, NAN, NAN, 10.4f}, index.nutrients(1001));
+        // The malformed energy row and the empty carbohydrate amount leave their slots unknown
+        assertNutrients(new float[]{NAN, NAN, 0.17f, NAN, NAN, NAN}, index.nutrients(1002));
+    }
+
+    @Test
+    void ranksByMatchedTermsLeadingTermDataTypeLengthThenRecord() {
+        List<OfflineFdcIndex.Match> matches = index.search("raw apples", 10);
+
+        // 1001, 1002, 1008: both terms, same leading term; Foundation first, then SR Legacy in index order.
+        // 1005: one term with "apple" leading, SR Legacy; 1003: same but FNDDS, ranked lower despite being shorter.
+        // 1011 and 1004: one term that does not lead the description; Foundation 1011 before SR Legacy 1004.
+        assertEquals(Arrays.asList(1001, 1002, 1008, 1005, 1003, 1011, 1004), fdcIds(matches));
+        assertEquals("Foundation", matches.get(0).getDataType());
+        assertEquals("SR Legacy", matches.get(1).getDataType());
+        assertEquals("Survey (FNDDS)", matches.get(4).getDataType());
+        assertEquals("Apples, raw, with skin", matches.get(0).getDescription());
+    }
+
+    @Test
+    void limitsResults() {
+        assertEquals(Arrays.asList(1001, 1002), fdcIds(index.search("apple raw", 2)));
+        assertTrue(index.search("apple", 0).isEmpty());
+        assertTrue(index.search("zucchini", 5).isEmpty());
+        assertTrue(index.search("?!", 5).isEmpty());
+    }
+
+    private static void assertNutrients(float[] expected, float[] actual) {
+        assertEquals(expected.length, actual.length);
+        for (int i = 0; i < expected.length; i++) {
+            if (Float.isNaN(expected[i])) {
+                assertTrue(Float.isNaN(actual[i]), "slot " + i + " was " + actual[i]);
+            } else {
+                assertEquals(expected[i], actual[i], 1e-6f, "slot " + i);
+            }
+        }
+    }
+
+    private static List<Integer> fdcIds(List<OfflineFdcIndex.Match> matches) {
+        Integer[] ids = new Integer[matches.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = matches.get(i).getFdcId();
+        }
+        return Arrays.asList(ids);
+    }
+}
@@ -0,0 +1,190 @@
+package com.nourishcare.visionservice.usda;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+class UsdaLookupCacheTest {
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final AtomicInteger loads = new AtomicInteger();
+
+    @Test
+    void servesFreshEntriesWithoutReloading() throws IOException {
+        UsdaLookupCache<String, String> cache = cache(60_000, 60_000, 0);
+
+        assertEquals("apple#1", cache.get("apple", this::versioned));
+        assertEquals("apple#1", cache.get("apple", this::versioned));
+        assertEquals(1, loads.get());
+        assertEquals(1.0, count("hit"), 0.0);
+    }
+
+    @Test
+    void cachesNegativeResults() throws IOException {
+        UsdaLookupCache<String, String> cache = cache(60_000, 60_000, 0);
+        UsdaLookupCache.Loader<String, String> notFound = key -> {
+            loads.incrementAndGet();
+            return null;
+        };
+
+        assertNull(cache.get("unobtainium", notFound));
+        assertNull(cache.get("unobtainium", notFound));
+        assertEquals(1, loads.get());
+        assertEquals(1.0, count("negative_hit"), 0.0);
+    }
+
+    @Test
+    void expiredNegativeResultsAreReloadedRatherThanServedStale() throws IOException {
+        UsdaLookupCache<String, String> cache = cache(60_000, 0, 60_000);
+        UsdaLookupCache.Loader<String, String> notFound = key -> {
+            loads.incrementAndGet();
+            return null;
+        };
+
+        cache.get("unobtainium", notFound);
+        cache.get("unobtainium", notFound);
+        assertEquals(2, loads.get());
+        assertEquals(0.0, count("stale"), 0.0);
+    }
+
+    @Test
+    void servesStaleValueWhileRefreshing() throws IOException {
+        // TTL 0: every entry is expired as soon as it is stored, but within the stale grace period
+        UsdaLookupCache<String, String> cache = cache(0, 0, 60_000);
+
+        assertEquals("apple#1", cache.get("apple", this::versioned));
+        // The refresh runs on the (inline) executor, but the caller still gets the old value
+        assertEquals("apple#1", cache.get("apple", this::versioned));
+        assertEquals(2, loads.get());
+        assertEquals("apple#2", cache.get("apple", this::versioned));
+        assertEquals(2.0, count("stale"), 0.0);
+    }
+
+    @Test
+    void loadsAgainOnceTheStalePeriodHasPassed() throws IOException, InterruptedException {
+        UsdaLookupCache<String, String> cache = cache(0, 0, 1);
+
+        cache.get("apple", this::versioned);
+        Thread.sleep(5);
+        assertEquals("apple#2", cache.get("apple", this::versioned));
+        assertEquals(0.0, count("stale"), 0.0);
+    }
+
+    @Test
+    void concurrentMissesShareOneLoad() throws Exception {
+        UsdaLookupCache<String, String> cache = cache(60_000, 60_000, 0);
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        UsdaLookupCache.Loader<String, String> slow = key -> {
+            loading.countDown();
+            awaitQuietly(release);
+            return versioned(key);
+        };
+
+        ExecutorService callers = Executors.newFixedThreadPool(2);
+        try {
+            Future<String> first = callers.submit(() -> cache.get("apple", slow));
+            assertTrue(loading.await(5, TimeUnit.SECONDS));
+            Future<String> second = callers.submit(() -> cache.get("apple", slow));
+            awaitCount("coalesced", 1);
+            release.countDown();
+
+            assertEquals("apple#1", first.get(5, TimeUnit.SECONDS));
+            assertEquals("apple#1", second.get(5, TimeUnit.SECONDS));
+            assertEquals(1, loads.get());
+        } finally {
+            callers.shutdownNow();
+        }
+    }
+
+    @Test
+    void waitersSeeTheFailureOfTheSharedLoadAndFailuresAreNotCached() throws Exception {
+        UsdaLookupCache<String, String> cache = cache(60_000, 60_000, 0);
+        IOException failure = new IOException("USDA unavailable");
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        UsdaLookupCache.Loader<String, String> failing = key -> {
+            loads.incrementAndGet();
+            loading.countDown();
+            awaitQuietly(release);
+            throw failure;
+        };
+
+        ExecutorService callers = Executors.newFixedThreadPool(2);
+        try {
+            Future<String> first = callers.submit(() -> cache.get("apple", failing));
+            assertTrue(loading.await(5, TimeUnit.SECONDS));
+            Future<String> second = callers.submit(() -> cache.get("apple", failing));
+            awaitCount("coalesced", 1);
+            release.countDown();
+
+            assertSame(failure, causeOf(first));
+            assertSame(failure, causeOf(second));
+        } finally {
+            callers.shutdownNow();
+        }
+
+        assertThrows(IOException.class, () -> cache.get("apple", failing));
+        assertEquals(2, loads.get());
+        assertEquals("apple#3", cache.get("apple", this::versioned));
+    }
+
+    private UsdaLookupCache<String, String> cache(long ttlMillis, long negativeTtlMillis, long staleMillis) {
+        return new UsdaLookupCache<>("test", 100, ttlMillis, negativeTtlMillis, staleMillis, Runnable::run, meterRegistry);
+    }
+
+    private String versioned(String key) {
+        return key + "#" + loads.incrementAndGet();
+    }
+
+    private double count(String result) {
+        return meterRegistry.counter("usda.lookup.cache", "cache", "test", "result", result).count();
+    }
+
+    private void awaitCount(String result, double expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (count(result) < expected) {
+            if (System.currentTimeMillis() > deadline) {
+                fail("Timed out waiting for " + result + " count " + expected);
+            }
+            Thread.sleep(1);
+        }
+    }
+
+    private static Throwable causeOf(Future<String> future) throws InterruptedException {
+        try {
+            future.get(5, TimeUnit.SECONDS);
+        } catch (ExecutionException e) {
+            return e.getCause();
+        } catch (TimeoutException e) {
+            fail("Lookup did not finish");
+        }
+        fail("Lookup should have failed");
+        return null;
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package com.nourishcare.visionservice.usda;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class UsdaNutrientParserTest {
+
+    // Slots in UsdaNutrientParser.NUTRIENT_NUMBERS order
+    private static final int ENERGY = 0;
+    private static final int PROTEIN = 1;
+    private static final int FAT = 2;
+    private static final int CARBOHYDRATE = 3;
+    private static final int FIBER = 4;
+    private static final int SUGARS = 5;
+
+    @Test
+    void readsTheAbridgedShape() throws IOException {
+        UsdaNutrientParser.ParsedFood food = parse("{"
+            + "\"fdcId\": 171688, \"description\": \"Apples, raw, with skin\","
+            + "\"foodNutrients\": ["
+            + "  {\"number\": \"208\", \"name\": \"Energy\", \"amount\": 52, \"unitName\": \"KCAL\"},"
+            + "  {\"number\": \"203\", \"amount\": 0.26},"
+            + "  {\"number\": \"205\", \"amount\": 13.8}"
+            + "]}");
+
+        assertEquals("Apples, raw, with skin", food.getDescription());
+        assertEquals(52f, food.getNutrients()[ENERGY], 0f);
+        assertEquals(0.26f, food.getNutrients()[PROTEIN], 1e-6f);
+        assertEquals(13.8f, food.getNutrients()[CARBOHYDRATE], 1e-6f);
+    }
+
+    @Test
+    void readsTheFullShape() throws IOException {
+        UsdaNutrientParser.ParsedFood food = parse("{"
+            + "\"description\": \"Bananas, raw\","
+            + "\"foodNutrients\": ["
+            + "  {\"type\": \"FoodNutrient\", \"id\": 1,"
+            + "   \"nutrient\": {\"id\": 1008, \"number\": \"208\", \"name\": \"Energy\", \"unitName\": \"kcal\"},"
+            + "   \"amount\": 89.0},"
+            + "  {\"nutrient\": {\"number\": \"291\", \"rank\": 1200}, \"amount\": 2.6,"
+            + "   \"foodNutrientDerivation\": {\"code\": \"A\", \"foodNutrientSource\": {\"id\": 1}}}"
+            + "]}");
+
+        assertEquals("Bananas, raw", food.getDescription());
+        assertEquals(89f, food.getNutrients()[ENERGY], 0f);
+        assertEquals(2.6f, food.getNutrients()[FIBER], 1e-6f);
+    }
+
+    @Test
+    void leavesAbsentNutrientsAsNaN() throws IOException {
+        UsdaNutrientParser.ParsedFood food = parse("{\"foodNutrients\": [{\"number\": \"204\", \"amount\": 0.2}]}");
+
+        assertEquals(0.2f, food.getNutrients()[FAT], 1e-6f);
+        for (int slot : new int[]{ENERGY, PROTEIN, CARBOHYDRATE, FIBER, SUGARS}) {
+            assertTrue(Float.isNaN(food.getNutrients()[slot]), "slot " + slot);
+        }
+        assertNull(food.getDescription());
+    }
+
+    @Test
+    void firstValueForANutrientWins() throws IOException {
+        UsdaNutrientParser.ParsedFood food = parse("{\"foodNutrients\": ["
+            + "{\"number\": \"208\", \"amount\": 52},"
+            + "{\"nutrient\": {\"number\": \"208\"}, \"amount\": 218}"
+            + "]}");
+
+        assertEquals(52f, food.getNutrients()[ENERGY], 0f);
+    }
+
+    @Test
+    void entriesWithoutAnAmountDoNotClaimTheSlot() throws IOException {
+        UsdaNutrientParser.ParsedFood food = parse("{\"foodNutrients\": ["
+            + "{\"number\": \"269\"},"
+            + "{\"number\": \"269\", \"amount\": \"n/a\"},"
+            + "{\"number\": \"269\", \"amount\": 10.4}"
+            + "]}");
+
+        assertEquals(10.4f, food.getNutrients()[SUGARS], 1e-6f);
+    }
+
+    @Test
+    void skipsUnknownNutrientsAndNestedFields() throws IOException {
+        UsdaNutrientParser.ParsedFood food = parse("{"
+            + "\"foodPortions\": [{\"amount\": 1, \"measureUnit\": {\"name\": \"cup\", \"number\": \"208\"}}],"
+            + "\"inputFoods\": [{\"description\": \"not this one\"}],"
+            + "\"foodNutrients\": ["
+            + "  {\"number\": \"301\", \"name\": \"Calcium\", \"amount\": 6},"
+            + "  [\"not\", \"an\", \"object\"],"
+            + "  {\"number\": \"203\", \"amount\": 1.1, \"dataPoints\": [1, 2, {\"amount\": 99}]}"
+            + "],"
+            + "\"description\": \"Carrots, raw\","
+            + "\"labelNutrients\": {\"calories\": {\"value\": 41}}"
+            + "}");
+
+        assertEquals("Carrots, raw", food.getDescription());
+        assertEquals(1.1f, food.getNutrients()[PROTEIN], 1e-6f);
+        assertTrue(Float.isNaN(food.getNutrients()[ENERGY]));
+    }
+
+    @Test
+    void rejectsANonObjectBody() {
+        assertThrows(IOException.class, () -> parse("[{\"number\": \"208\", \"amount\": 52}]"));
+    }
+
+    @Test
+    void responseSizeCapAllowsBodiesUpToTheLimit() throws IOException {
+        byte[] body = "{\"description\": \"Apples\"}".getBytes(StandardCharsets.UTF_8);
+
+        try (InputStream limited = new UsdaHttpClient.LimitedInputStream(new ByteArrayInputStream(body), body.length)) {
+            assertEquals("Apples", UsdaNutrientParser.parse(limited).getDescription());
+        }
+    }
+
+    @Test
+    void responseSizeCapFailsTheReadPastTheLimit() throws IOException {
+        byte[] body = "{\"description\": \"Apples\"}".getBytes(StandardCharsets.UTF_8);
+
+        try (InputStream limited = new UsdaHttpClient.LimitedInputStream(new ByteArrayInputStream(body), body.length - 1)) {
+            IOException e = assertThrows(IOException.class, () -> UsdaNutrientParser.parse(limited));
+            assertTrue(e.getMessage().contains("exceeds limit"), e.getMessage());
+        }
+    }
+
+    @Test
+    void responseSizeCapCountsSingleByteReadsAndSkips() throws IOException {
+        try (InputStream limited = new UsdaHttpClient.LimitedInputStream(new ByteArrayInputStream(new byte[10]), 4)) {
+            assertEquals(3, limited.skip(3));
+            assertEquals(0, limited.read());
+            assertThrows(IOException.class, limited::read);
+        }
+    }
+
+    private static UsdaNutrientParser.ParsedFood parse(String json) throws IOException {
+        return UsdaNutrientParser.parse(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)));
+    }
+}